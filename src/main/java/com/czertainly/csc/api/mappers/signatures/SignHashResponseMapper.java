@@ -0,0 +1,21 @@
+package com.czertainly.csc.api.mappers.signatures;
+
+import com.czertainly.csc.api.signhash.SignHashResponseDto;
+import com.czertainly.csc.model.SignedHashes;
+import org.springframework.stereotype.Component;
+
+import java.util.Base64;
+import java.util.List;
+
+@Component
+public class SignHashResponseMapper {
+
+    Base64.Encoder encoder = Base64.getEncoder();
+
+    public SignHashResponseDto map(SignedHashes model) {
+        List<String> signatures = model.signatures().stream()
+                                       .map(signature -> encoder.encodeToString(signature.value()))
+                                       .toList();
+        return new SignHashResponseDto(signatures, null);
+    }
+}
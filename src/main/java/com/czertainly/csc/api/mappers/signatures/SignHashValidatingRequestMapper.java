@@ -11,6 +11,7 @@ import com.czertainly.csc.model.SignHashParameters;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.UUID;
 
 @Component
 public class SignHashValidatingRequestMapper {
@@ -24,6 +25,7 @@ public class SignHashValidatingRequestMapper {
     }
 
     public SignHashParameters map(SignHashRequestDto dto, SignatureActivationData sad) {
+        final UUID credentialID;
         final List<String> hashes;
         final String keyAlgo;
         final String digestAlgo;
@@ -45,8 +47,17 @@ public class SignHashValidatingRequestMapper {
                                  .orElseThrow(() -> InvalidInputDataException.of(
                                          "Missing userID in Signature Activation Data"));
 
-        if (dto.getHashes().isEmpty()) {
+        if (dto.getCredentialID().isEmpty()) {
             throw InvalidInputDataException.of("Missing (or invalid type) string parameter credentialID.");
+        }
+        try {
+            credentialID = UUID.fromString(dto.getCredentialID().get());
+        } catch (IllegalArgumentException e) {
+            throw InvalidInputDataException.of("Invalid parameter credentialID.");
+        }
+
+        if (dto.getHashes().isEmpty() || dto.getHashes().get().isEmpty()) {
+            throw InvalidInputDataException.of("Missing (or invalid type) array parameter hashes.");
         } else {
             hashes = dto.getHashes().get();
         }
@@ -73,6 +84,6 @@ public class SignHashValidatingRequestMapper {
 
         clientData = dto.getClientData().orElse("");
 
-        return new SignHashParameters(userID, hashes, keyAlgo, digestAlgo, sad, operationMode, clientData);
+        return new SignHashParameters(userID, credentialID, hashes, keyAlgo, digestAlgo, sad, operationMode, clientData);
     }
 }
@@ -0,0 +1,12 @@
+package com.czertainly.csc.clients.ejbca;
+
+import com.czertainly.csc.model.CertificateRevocationReason;
+
+/**
+ * Published when a certificate was revoked in EJBCA by this application.
+ */
+public record CertificateRevokedEvent(
+        String certificateSerialNumberHex,
+        String issuerDN,
+        CertificateRevocationReason revocationReason
+) {}
@@ -12,6 +12,7 @@ import com.czertainly.csc.signing.configuration.profiles.Profile;
 import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
@@ -26,10 +27,16 @@ public class EjbcaClient {
 
     private final EjbcaWsClient ejbcaWsClient;
     private final CertificateValidityCalculator certificateValidityCalculator;
+    private final RevocationStatusCache revocationStatusCache;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public EjbcaClient(EjbcaWsClient ejbcaWsClient, CertificateValidityCalculator certificateValidityCalculator) {
+    public EjbcaClient(EjbcaWsClient ejbcaWsClient, CertificateValidityCalculator certificateValidityCalculator,
+                       RevocationStatusCache revocationStatusCache, ApplicationEventPublisher eventPublisher
+    ) {
         this.ejbcaWsClient = ejbcaWsClient;
         this.certificateValidityCalculator = certificateValidityCalculator;
+        this.revocationStatusCache = revocationStatusCache;
+        this.eventPublisher = eventPublisher;
     }
 
     public Result<EndEntity, TextError> createEndEntity(EndEntity endEntity, Profile profile) {
@@ -82,6 +89,14 @@ public class EjbcaClient {
 
     public Result<RevocationStatus, TextError> getCertificateRevocationStatus(
             String certificateSerialNumberHex, String issuerDN
+    ) {
+        return revocationStatusCache.get(certificateSerialNumberHex, issuerDN,
+                                         () -> checkRevocationStatus(certificateSerialNumberHex, issuerDN)
+        );
+    }
+
+    private Result<RevocationStatus, TextError> checkRevocationStatus(
+            String certificateSerialNumberHex, String issuerDN
     ) {
         return ejbcaWsClient
                 .checkRevocationStatus(issuerDN, certificateSerialNumberHex)
@@ -118,10 +133,17 @@ public class EjbcaClient {
 
     public Result<?, TextError> revokeCertificate(String certificateSerialNumberHex, String issuerDN,
                                                   CertificateRevocationReason revocationReason) {
-        return ejbcaWsClient.revokeCertificate(certificateSerialNumberHex, issuerDN, revocationReason)
-                            .mapError(e -> e.extend("Failed to revoke certificate '%s' issued by '%s'",
-                                                   certificateSerialNumberHex, issuerDN
-                            ));
+        try {
+            return ejbcaWsClient.revokeCertificate(certificateSerialNumberHex, issuerDN, revocationReason)
+                                .mapError(e -> e.extend("Failed to revoke certificate '%s' issued by '%s'",
+                                                       certificateSerialNumberHex, issuerDN
+                                ))
+                                .ifSuccess(() -> eventPublisher.publishEvent(new CertificateRevokedEvent(
+                                        certificateSerialNumberHex, issuerDN, revocationReason
+                                )));
+        } finally {
+            revocationStatusCache.invalidate(certificateSerialNumberHex, issuerDN);
+        }
     }
 
     public Result<EndEntity, TextError> getEndEntity(String username) {
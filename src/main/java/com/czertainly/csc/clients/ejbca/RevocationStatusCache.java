@@ -0,0 +1,163 @@
+package com.czertainly.csc.clients.ejbca;
+
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.model.RevocationStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bouncycastle.asn1.x500.RDN;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.IETFUtils;
+
+import java.math.BigInteger;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Caches the revocation status of certificates obtained from EJBCA.
+ * <p>
+ * The entries are keyed by the issuer DN and the serial number of the certificate. Both are normalized, so that
+ * the different string forms of the same DN or serial number share an entry. Revocation statuses are cached for
+ * {@code ttl}, failed lookups for {@code negativeTtl}; a zero duration disables the respective caching.
+ * When the cache grows over {@code maxSize}, the expired entries are evicted first, followed by arbitrary ones.
+ * <p>
+ * An entry is invalidated when the certificate is revoked by this application. A lookup which was running while
+ * a certificate was invalidated doesn't store its result, as it could be the status from before the revocation.
+ * <p>
+ * The lookups are counted by the {@value #METRIC_NAME} counter tagged with the result, which is {@code hit}
+ * or {@code miss}, and the number of entries is exposed by the {@value #SIZE_METRIC_NAME} gauge.
+ */
+public class RevocationStatusCache {
+
+    public static final String METRIC_NAME = "csc.ejbca.revocation.status.cache";
+    public static final String SIZE_METRIC_NAME = "csc.ejbca.revocation.status.cache.size";
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final int maxSize;
+    private final Clock clock;
+    private final Counter hits;
+    private final Counter misses;
+
+    public RevocationStatusCache(Duration ttl, Duration negativeTtl, int maxSize, MeterRegistry meterRegistry) {
+        this(ttl, negativeTtl, maxSize, meterRegistry, Clock.systemUTC());
+    }
+
+    public RevocationStatusCache(Duration ttl, Duration negativeTtl, int maxSize, MeterRegistry meterRegistry,
+                                 Clock clock
+    ) {
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.hits = lookupsCounter(meterRegistry, "hit");
+        this.misses = lookupsCounter(meterRegistry, "miss");
+        Gauge.builder(SIZE_METRIC_NAME, entries, Map::size)
+             .description("Number of cached certificate revocation statuses")
+             .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached revocation status of the certificate, or loads it by the {@code loader} if it is not cached.
+     */
+    public Result<RevocationStatus, TextError> get(String serialNumberHex, String issuerDn,
+                                                   Supplier<Result<RevocationStatus, TextError>> loader
+    ) {
+        Key key = Key.of(serialNumberHex, issuerDn);
+        Instant now = clock.instant();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isValidAt(now)) {
+            hits.increment();
+            return entry.status();
+        }
+
+        misses.increment();
+        long invalidationsBeforeLoad = invalidations.get();
+        Result<RevocationStatus, TextError> status = loader.get();
+        Duration entryTtl = status instanceof Error ? negativeTtl : ttl;
+        if (entryTtl.isPositive() && invalidations.get() == invalidationsBeforeLoad) {
+            entries.put(key, new Entry(status, now.plus(entryTtl)));
+            evictIfFull(now);
+        }
+        return status;
+    }
+
+    /**
+     * Removes the cached revocation status of the certificate.
+     */
+    public void invalidate(String serialNumberHex, String issuerDn) {
+        invalidations.incrementAndGet();
+        entries.remove(Key.of(serialNumberHex, issuerDn));
+    }
+
+    private void evictIfFull(Instant now) {
+        if (entries.size() <= maxSize) return;
+        entries.values().removeIf(entry -> !entry.isValidAt(now));
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static Counter lookupsCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder(METRIC_NAME)
+                      .description("Number of certificate revocation status lookups in the cache")
+                      .tag("result", result)
+                      .register(meterRegistry);
+    }
+
+    private record Key(String serialNumber, String issuerDn) {
+
+        static Key of(String serialNumberHex, String issuerDn) {
+            return new Key(normalizeSerialNumber(serialNumberHex), normalizeDn(issuerDn));
+        }
+
+        private static String normalizeSerialNumber(String serialNumberHex) {
+            try {
+                return new BigInteger(serialNumberHex, 16).toString(16);
+            } catch (NumberFormatException e) {
+                return serialNumberHex.toLowerCase(Locale.ROOT);
+            }
+        }
+
+        private static String normalizeDn(String dn) {
+            try {
+                return Arrays.stream(new X500Name(dn).getRDNs())
+                             .map(Key::normalizeRdn)
+                             .sorted()
+                             .collect(Collectors.joining(","));
+            } catch (IllegalArgumentException e) {
+                return dn;
+            }
+        }
+
+        private static String normalizeRdn(RDN rdn) {
+            return Arrays.stream(rdn.getTypesAndValues())
+                         .map(typeAndValue -> typeAndValue.getType().getId() + "="
+                                 + IETFUtils.canonicalString(typeAndValue.getValue()))
+                         .sorted()
+                         .collect(Collectors.joining("+"));
+        }
+    }
+
+    private record Entry(Result<RevocationStatus, TextError> status, Instant expiresAt) {
+        boolean isValidAt(Instant instant) {
+            return expiresAt.isAfter(instant);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.czertainly.csc.clients.idp;
 
 import com.czertainly.csc.common.errorhandling.ErrorResultRetryException;
+import com.czertainly.csc.common.metrics.OutboundCallMetrics;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
 import com.czertainly.csc.common.result.TextErrorWithRetryIndication;
@@ -9,6 +10,7 @@ import com.czertainly.csc.model.UserInfo;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -37,14 +39,19 @@ public class IdpClient {
     private final boolean canDownloadUserInfo;
     private final String jwksUri;
     private final String userInfoUri;
+    private final OutboundCallMetrics metrics;
+    private final ObjectMapper objectMapper;
 
     public IdpClient(IdpConfiguration idpConfiguration,
-                     @Qualifier("idpClientRequestFactory") HttpComponentsClientHttpRequestFactory requestFactory
+                     @Qualifier("idpClientRequestFactory") HttpComponentsClientHttpRequestFactory requestFactory,
+                     MeterRegistry meterRegistry, ObjectMapper objectMapper
     ) {
         String userInfoUrl = idpConfiguration.userInfoUrl();
         canDownloadUserInfo = idpConfiguration.userInfoUrl() != null && !userInfoUrl.isBlank();
         this.userInfoUri = userInfoUrl;
         this.jwksUri = idpConfiguration.jwksUri();
+        this.metrics = new OutboundCallMetrics(meterRegistry, "idp");
+        this.objectMapper = objectMapper;
 
         this.restClient = RestClient.builder()
                                     .requestFactory(requestFactory)
@@ -57,6 +64,14 @@ public class IdpClient {
 
 
     public Result<UserInfo, TextError> downloadUserInfo(String token) {
+        return metrics.record("userinfo", () -> doDownloadUserInfo(token));
+    }
+
+    public Result<String, TextError> downloadJwks() {
+        return metrics.record("jwks", this::doDownloadJwks);
+    }
+
+    private Result<UserInfo, TextError> doDownloadUserInfo(String token) {
         try {
             if (!canDownloadUserInfo) {
                 Result.error(TextErrorWithRetryIndication.doNotRetry("Application is not configured to download user info."));
@@ -72,7 +87,7 @@ public class IdpClient {
                                                         .toEntity(String.class);
 
 
-            JsonNode json = new ObjectMapper().readTree(response.getBody());
+            JsonNode json = objectMapper.readTree(response.getBody());
             Map<String, String> attributes = new HashMap<>();
             var fields = json.fields();
             while (fields.hasNext()) {
@@ -90,7 +105,7 @@ public class IdpClient {
         }
     }
 
-    public Result<String, TextError> downloadJwks() {
+    private Result<String, TextError> doDownloadJwks() {
         logger.debug("Downloading JWKS from the IDP.");
         try {
             String jwks = restClient.get()
@@ -1,5 +1,6 @@
 package com.czertainly.csc.clients.signserver;
 
+import com.czertainly.csc.clients.signserver.rest.SignserverAsyncRestClient;
 import com.czertainly.csc.clients.signserver.rest.SignserverProcessEncoding;
 import com.czertainly.csc.clients.signserver.rest.SignserverRestClient;
 import com.czertainly.csc.clients.signserver.ws.SignserverWsClient;
@@ -8,6 +9,7 @@ import com.czertainly.csc.clients.signserver.ws.dto.TokenEntry;
 import com.czertainly.csc.common.result.Error;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.common.utils.ParallelExecution;
 import com.czertainly.csc.crypto.CertificateParser;
 import com.czertainly.csc.crypto.DigestAlgorithmJavaName;
 import com.czertainly.csc.model.SignedDocuments;
@@ -21,11 +23,18 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Component
@@ -34,46 +43,73 @@ public class SignserverClient {
     private static final Logger logger = LoggerFactory.getLogger(SignserverClient.class);
     private final SignserverWsClient signserverWSClient;
     private final SignserverRestClient signserverRestClient;
+    private final SignserverAsyncRestClient signserverAsyncRestClient;
     private final KeySpecificationParser keySpecificationParser;
     private final ObjectMapper objectMapper;
     private final CertificateParser certificateParser;
-
+    private final ExecutorService multisignExecutor;
+    private final int multisignChunkSize;
+    private final int multisignMaxParallelChunks;
+
+    /**
+     * @param multisignChunkSize         maximum number of hashes sent to Signserver in a single batch signature
+     *                                   request, larger batches are split into chunks
+     * @param multisignMaxParallelChunks maximum number of chunks of a single batch sent concurrently
+     */
     public SignserverClient(SignserverWsClient signserverWSClient, SignserverRestClient signserverRestClient,
+                            @Lazy SignserverAsyncRestClient signserverAsyncRestClient,
                             KeySpecificationParser keySpecificationParser, ObjectMapper objectMapper,
-                            CertificateParser certificateParser
+                            CertificateParser certificateParser,
+                            @Qualifier("signingExecutor") ExecutorService multisignExecutor,
+                            @Value("${signingProvider.signserver.client.multisign.chunkSize:100}") int multisignChunkSize,
+                            @Value("${signingProvider.signserver.client.multisign.maxParallelChunks:4}") int multisignMaxParallelChunks
     ) {
         this.signserverWSClient = signserverWSClient;
         this.signserverRestClient = signserverRestClient;
+        this.signserverAsyncRestClient = signserverAsyncRestClient;
         this.keySpecificationParser = keySpecificationParser;
         this.objectMapper = objectMapper;
         this.certificateParser = certificateParser;
+        this.multisignExecutor = multisignExecutor;
+        this.multisignChunkSize = Math.max(1, multisignChunkSize);
+        this.multisignMaxParallelChunks = multisignMaxParallelChunks;
     }
 
     public Result<Signature, TextError> signSingleContent(
-            String workerName, byte[] data, String keyAlias, SignaturePackaging signaturePackaging
+            String workerName, String encodedData, String keyAlias, SignaturePackaging signaturePackaging
     ) {
-        Base64.Decoder decoder = Base64.getDecoder();
-
         // Metadata can be used to pass additional information to the signing process
         var metadata = new HashMap<String, String>();
 
-        return sign(workerName, data, keyAlias, metadata, SignserverProcessEncoding.BASE64)
-                .flatMap(encodedSignatures -> base64Decode(decoder, encodedSignatures))
+        return signEncoded(workerName, encodedData, keyAlias, metadata)
                 .map(signatureBytes -> new Signature(signatureBytes, signaturePackaging));
     }
 
+    /**
+     * Asynchronous counterpart of {@link #signSingleContent(String, String, String, SignaturePackaging)}.
+     */
+    public CompletableFuture<Result<Signature, TextError>> signSingleContentAsync(
+            String workerName, String encodedData, String keyAlias, SignaturePackaging signaturePackaging
+    ) {
+        var metadata = new HashMap<String, String>();
+        metadata.put("ALIAS", keyAlias);
+
+        return signserverAsyncRestClient.processEncoded(workerName, encodedData, metadata)
+                                        .thenApply(result -> result.map(
+                                                signatureBytes -> new Signature(signatureBytes, signaturePackaging)
+                                        ));
+    }
+
     public Result<SignedDocuments, TextError> signSingleContentWithValidationData(
-            String workerName, byte[] data, String keyAlias, SignaturePackaging signaturePackaging
+            String workerName, String encodedData, String keyAlias, SignaturePackaging signaturePackaging
     ) {
         Base64.Decoder decoder = Base64.getDecoder();
 
         // Metadata can be used to pass additional information to the signing process
         var metadata = new HashMap<String, String>();
 
-        return sign(workerName, data, keyAlias, metadata, SignserverProcessEncoding.BASE64)
-                .flatMap(encodedSignatures -> mapToObject(
-                        decoder, encodedSignatures, EncodedValidationDataWrapper.class
-                ))
+        return signEncoded(workerName, encodedData, keyAlias, metadata)
+                .flatMap(signatureData -> readObject(signatureData, EncodedValidationDataWrapper.class))
                 .flatMap(signatureWithValidationData ->
                         base64Decode(decoder, signatureWithValidationData.signatureData().getBytes())
                                 .map(signatureBytes -> new SignedDocuments(
@@ -89,10 +125,20 @@ public class SignserverClient {
     public Result<Signature, TextError> signSingleHash(
             String workerName, byte[] data, String keyAlias, String digestAlgorithm
     ) {
-        Base64.Decoder decoder = Base64.getDecoder();
         return singleSign(workerName, data, keyAlias, digestAlgorithm)
-                .flatMap(encodedSignatures -> base64Decode(decoder, encodedSignatures))
-                .map(signatureBytes -> new Signature(signatureBytes, SignaturePackaging.DETACHED));
+                .flatMap(this::toDetachedSignature);
+    }
+
+    /**
+     * Asynchronous counterpart of {@link #signSingleHash(String, byte[], String, String)}.
+     */
+    public CompletableFuture<Result<Signature, TextError>> signSingleHashAsync(
+            String workerName, byte[] data, String keyAlias, String digestAlgorithm
+    ) {
+        var metadata = singleSignMetadata(digestAlgorithm);
+        metadata.put("ALIAS", keyAlias);
+        return signserverAsyncRestClient.process(workerName, data, metadata, SignserverProcessEncoding.NONE)
+                                        .thenApply(result -> result.flatMap(this::toDetachedSignature));
     }
 
     public Result<SignedDocuments, TextError> signSingleHashWithValidationData(
@@ -115,32 +161,65 @@ public class SignserverClient {
                 );
     }
 
+    /**
+     * Signs the hashes by batch signature requests. Batches larger than the chunk size are split into chunks
+     * which are sent concurrently, the signatures are returned in the order of the hashes.
+     */
     public Result<List<Signature>, TextError> signMultipleHashes(String workerName, List<String> data, String keyAlias,
                                                                  String digestAlgorithm
     ) {
-        Base64.Decoder decoder = Base64.getDecoder();
-        return multisign(workerName, data, keyAlias, digestAlgorithm)
-                .flatMap(encodedSignatures -> mapToObject(decoder, encodedSignatures, BatchSignaturesResponse.class))
-                .map(batchSignatures -> mapToSignaturesList(batchSignatures, decoder));
+        return multisignInChunks(workerName, data, keyAlias, digestAlgorithm, this::toSignaturesList)
+                .map(chunks -> chunks.stream().flatMap(List::stream).toList());
+    }
+
+    /**
+     * Asynchronous counterpart of {@link #signMultipleHashes(String, List, String, String)}.
+     */
+    public CompletableFuture<Result<List<Signature>, TextError>> signMultipleHashesAsync(
+            String workerName, List<String> data, String keyAlias, String digestAlgorithm
+    ) {
+        List<MultisignChunk> chunks = splitIntoChunks(data);
+        if (chunks.size() > 1) {
+            logger.debug("Signing {} hashes on worker {} in {} chunks.", data.size(), workerName, chunks.size());
+        }
+        List<Supplier<CompletableFuture<Result<List<Signature>, TextError>>>> tasks = new ArrayList<>(chunks.size());
+        for (MultisignChunk chunk : chunks) {
+            tasks.add(() -> {
+                var metadata = multisignMetadata(digestAlgorithm);
+                metadata.put("ALIAS", keyAlias);
+                return signserverAsyncRestClient
+                        .process(workerName, multisignRequest(chunk, digestAlgorithm), metadata,
+                                 SignserverProcessEncoding.NONE
+                        )
+                        .thenApply(result -> result.flatMap(encoded -> toSignaturesList(encoded, chunk.requestIds())));
+            });
+        }
+        return ParallelExecution.runAllAsync(tasks, multisignMaxParallelChunks)
+                                .thenApply(result -> result.map(
+                                        signatures -> signatures.stream().flatMap(List::stream).toList()
+                                ));
     }
 
     public Result<SignedDocuments, TextError> signMultipleHashesWithValidationData(
             String workerName, List<String> data, String keyAlias, String digestAlgorithm
     ) {
         Base64.Decoder decoder = Base64.getDecoder();
-        return multisign(workerName, data, keyAlias, digestAlgorithm)
-                .flatMap(encodedSignatures -> mapToObject(decoder, encodedSignatures,
-                                                          BatchSignatureWithValidationData.class
-                ))
-                .map(batchSignatures -> {
-                    List<Signature> signatures = mapToSignaturesList(batchSignatures.signatureData(), decoder);
-                    return new SignedDocuments(
-                            signatures,
-                            new HashSet<>(batchSignatures.validationData().crl()),
-                            new HashSet<>(batchSignatures.validationData().ocsp()),
-                            new HashSet<>(batchSignatures.validationData().certificates())
-                    );
-                });
+        return multisignInChunks(
+                workerName, data, keyAlias, digestAlgorithm,
+                (encodedSignatures, requestIds) -> mapToObject(
+                        decoder, encodedSignatures, BatchSignatureWithValidationData.class
+                ).flatMap(batchSignatures -> toOrderedSignatures(batchSignatures.signatureData(), requestIds, decoder)
+                        .map(signatures -> new SignedDocuments(
+                                new ArrayList<>(signatures),
+                                new HashSet<>(batchSignatures.validationData().crl()),
+                                new HashSet<>(batchSignatures.validationData().ocsp()),
+                                new HashSet<>(batchSignatures.validationData().certificates())
+                        )))
+        ).map(chunks -> {
+            SignedDocuments signedDocuments = SignedDocuments.empty();
+            chunks.forEach(signedDocuments::extend);
+            return signedDocuments;
+        });
     }
 
     public Result<byte[], TextError> generateCSR(
@@ -233,11 +312,16 @@ public class SignserverClient {
                                                  String keyAlgorithm, String keySpec
     ) {
         return signserverWSClient.generateKey(cryptoToken.id(), keyAlias, keyAlgorithm, keySpec)
-                                 .flatMap(partialAlias -> queryCryptoTokenKeys(cryptoToken, false, 0, 2,
-                                                                               partialAlias + "%"
-                                 ))
-                                 .flatMap(this::extractKeyAlias);
-
+                                 .flatMap(partialAlias -> {
+                                     // The returned alias may be only a prefix of the alias assigned by the crypto
+                                     // token, it's used as it is only for crypto tokens trusted to return the
+                                     // final alias
+                                     if (cryptoToken.trustGeneratedKeyAlias() && partialAlias.equals(keyAlias)) {
+                                         return Result.success(partialAlias);
+                                     }
+                                     return queryCryptoTokenKeys(cryptoToken, false, 0, 2, partialAlias + "%")
+                                             .flatMap(this::extractKeyAlias);
+                                 });
     }
 
     public Result<Void, TextError> removeKey(int workerId, String keyAlias) {
@@ -251,44 +335,95 @@ public class SignserverClient {
     private Result<byte[], TextError> singleSign(
             String workerName, byte[] data, String keyAlias, String digestAlgorithm
     ) {
+        // SignserverProcessEncoding.NONE is used as hash is already base64 encoded, so no need to encode it again
+        return sign(workerName, data, keyAlias, singleSignMetadata(digestAlgorithm), SignserverProcessEncoding.NONE);
+    }
+
+    private static Map<String, String> singleSignMetadata(String digestAlgorithm) {
         var metadata = new HashMap<String, String>();
         metadata.put("USING_CLIENTSUPPLIED_HASH", "true");
         metadata.put("CLIENTSIDE_HASHDIGESTALGORITHM", DigestAlgorithmJavaName.get(digestAlgorithm));
+        return metadata;
+    }
 
-        // SignserverProcessEncoding.NONE is used as hash is already base64 encoded, so no need to encode it again
-        return sign(workerName, data, keyAlias, metadata, SignserverProcessEncoding.NONE);
+    private <T> Result<List<T>, TextError> multisignInChunks(
+            String workerName, List<String> data, String keyAlias, String digestAlgorithm,
+            BiFunction<byte[], List<String>, Result<T, TextError>> chunkResultMapper
+    ) {
+        List<MultisignChunk> chunks = splitIntoChunks(data);
+        if (chunks.size() > 1) {
+            logger.debug("Signing {} hashes on worker {} in {} chunks.", data.size(), workerName, chunks.size());
+        }
+        List<Supplier<Result<T, TextError>>> tasks = new ArrayList<>(chunks.size());
+        for (MultisignChunk chunk : chunks) {
+            tasks.add(() -> multisign(workerName, chunk, keyAlias, digestAlgorithm)
+                    .flatMap(encoded -> chunkResultMapper.apply(encoded, chunk.requestIds())));
+        }
+        return ParallelExecution.runAll(tasks, multisignExecutor, multisignMaxParallelChunks);
     }
 
-    private Result<byte[], TextError> multisign(String workerName, List<String> data, String keyAlias,
+    private Result<byte[], TextError> multisign(String workerName, MultisignChunk chunk, String keyAlias,
                                                 String digestAlgorithm
     ) {
-        var signatureRequests = new ArrayList<BatchSignatureRequest>();
-        int i = 0;
-
-        for (String hash : data) {
-            var signatureRequest = new BatchSignatureRequest(hash,
-                                                             DigestAlgorithmJavaName.get(digestAlgorithm),
-                                                             "r" + i
-            );
-            signatureRequests.add(signatureRequest);
+        return sign(workerName, multisignRequest(chunk, digestAlgorithm), keyAlias, multisignMetadata(digestAlgorithm),
+                    SignserverProcessEncoding.NONE
+        );
+    }
+
+    /*
+     * The request identifiers are unique within the whole batch, so that the signatures of each chunk
+     * can be matched to the hashes.
+     */
+    private List<MultisignChunk> splitIntoChunks(List<String> data) {
+        List<MultisignChunk> chunks = new ArrayList<>();
+        for (int offset = 0; offset < data.size(); offset += multisignChunkSize) {
+            List<String> hashes = data.subList(offset, Math.min(offset + multisignChunkSize, data.size()));
+            List<String> requestIds = new ArrayList<>(hashes.size());
+            for (int i = 0; i < hashes.size(); i++) {
+                requestIds.add("r" + (offset + i));
+            }
+            chunks.add(new MultisignChunk(hashes, requestIds));
         }
+        return chunks;
+    }
 
-        var batchRequest = new BatchSignatureRequests(signatureRequests);
+    private record MultisignChunk(List<String> hashes, List<String> requestIds) {}
+
+    private static Map<String, String> multisignMetadata(String digestAlgorithm) {
         var metadata = new HashMap<String, String>();
         metadata.put("USING_CLIENTSUPPLIED_HASH", "true");
         metadata.put("USING_BATCHSIGNING", "true");
         metadata.put("CLIENTSIDE_HASHDIGESTALGORITHM", DigestAlgorithmJavaName.get(digestAlgorithm));
+        return metadata;
+    }
 
-        final byte[] requestBytes;
+    private byte[] multisignRequest(MultisignChunk chunk, String digestAlgorithm) {
+        var signatureRequests = new ArrayList<BatchSignatureRequest>(chunk.hashes().size());
+        String hashingAlgorithm = DigestAlgorithmJavaName.get(digestAlgorithm);
+
+        for (int i = 0; i < chunk.hashes().size(); i++) {
+            signatureRequests.add(new BatchSignatureRequest(chunk.hashes().get(i), hashingAlgorithm,
+                                                            chunk.requestIds().get(i)
+            ));
+        }
+
+        var batchRequest = new BatchSignatureRequests(signatureRequests);
         try {
-            requestBytes = objectMapper.writeValueAsBytes(batchRequest);
+            return objectMapper.writeValueAsBytes(batchRequest);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Serialization of batch signature request has failed.", e);
         }
+    }
 
-        return sign(workerName, requestBytes, keyAlias, metadata,
-                    SignserverProcessEncoding.NONE
-        );
+    private Result<Signature, TextError> toDetachedSignature(byte[] encodedSignature) {
+        return base64Decode(Base64.getDecoder(), encodedSignature)
+                .map(signatureBytes -> new Signature(signatureBytes, SignaturePackaging.DETACHED));
+    }
+
+    private Result<List<Signature>, TextError> toSignaturesList(byte[] encodedSignatures, List<String> requestIds) {
+        Base64.Decoder decoder = Base64.getDecoder();
+        return mapToObject(decoder, encodedSignatures, BatchSignaturesResponse.class)
+                .flatMap(batchSignatures -> toOrderedSignatures(batchSignatures, requestIds, decoder));
     }
 
     // Returns the signed data encoded in base64
@@ -300,6 +435,14 @@ public class SignserverClient {
         return signserverRestClient.process(workerName, data, metadata, encoding);
     }
 
+    // Sends the already base64 encoded data and returns the decoded signed data
+    private Result<byte[], TextError> signEncoded(String workerName, String encodedData, String keyAlias,
+                                                  Map<String, String> metadata
+    ) {
+        metadata.put("ALIAS", keyAlias);
+        return signserverRestClient.processEncoded(workerName, encodedData, metadata);
+    }
+
     private Result<String, TextError> extractKeyAlias(List<CryptoTokenKey> keys) {
         if (keys.isEmpty()) {
             return Result.error(TextError.of("Newly generated key not found."));
@@ -317,7 +460,7 @@ public class SignserverClient {
         return Result.success(alias);
     }
 
-    private Result<byte[], TextError> base64Decode(Base64.Decoder decoder, byte[] encodedSignatureData) {
+    private static Result<byte[], TextError> base64Decode(Base64.Decoder decoder, byte[] encodedSignatureData) {
         try {
             byte[] decoded = decoder.decode(encodedSignatureData);
             return Result.success(decoded);
@@ -330,20 +473,58 @@ public class SignserverClient {
     private <T> Result<T, TextError> mapToObject(Base64.Decoder decoder, byte[] encodedSignatureData, Class<T> clazz) {
         try {
             byte[] decoded = decoder.decode(encodedSignatureData);
-            return Result.success(objectMapper.readValue(decoded, clazz));
+            return readObject(decoded, clazz);
+        } catch (IllegalArgumentException e) {
+            logger.error("Decoding of the signature data to object has failed.", e);
+            return Result.error(TextError.of("The decoding of the signature data has failed."));
+        }
+    }
+
+    private <T> Result<T, TextError> readObject(byte[] signatureData, Class<T> clazz) {
+        try {
+            return Result.success(objectMapper.readValue(signatureData, clazz));
         } catch (IOException e) {
             logger.error("Decoding of the signature data to object has failed.", e);
             return Result.error(TextError.of("The decoding of the signature data has failed."));
         }
     }
 
-    private static List<Signature> mapToSignaturesList(BatchSignaturesResponse batchSignatures, Base64.Decoder decoder
+    /*
+     * Orders the signatures by the identifiers of the requests. When the identifiers of the responses do not match
+     * the identifiers of the requests, the responses are expected to be in the order of the requests.
+     */
+    private static Result<List<Signature>, TextError> toOrderedSignatures(BatchSignaturesResponse batchSignatures,
+                                                                          List<String> requestIds,
+                                                                          Base64.Decoder decoder
     ) {
-        List<Signature> signatures = new ArrayList<>();
-        for (BatchSignatureResponse response : batchSignatures.signatures()) {
-            signatures.add(new Signature(decoder.decode(response.signature()), SignaturePackaging.DETACHED));
+        List<BatchSignatureResponse> responses = batchSignatures.signatures();
+        if (responses.size() != requestIds.size()) {
+            logger.error("Signserver has returned {} signatures for {} hashes.", responses.size(), requestIds.size());
+            return Result.error(TextError.of("The number of signatures does not match the number of hashes."));
+        }
+
+        Map<String, BatchSignatureResponse> responsesById = new HashMap<>();
+        for (BatchSignatureResponse response : responses) {
+            responsesById.put(response.customIdentifier(), response);
+        }
+        List<BatchSignatureResponse> orderedResponses = responses;
+        if (responsesById.keySet().equals(new HashSet<>(requestIds))) {
+            orderedResponses = requestIds.stream().map(responsesById::get).toList();
+        }
+
+        List<Signature> signatures = new ArrayList<>(orderedResponses.size());
+        for (BatchSignatureResponse response : orderedResponses) {
+            if (response.signature() == null) {
+                logger.error("Signserver has returned no signature for the request '{}'.", response.customIdentifier());
+                return Result.error(TextError.of("The decoding of the signature data has failed."));
+            }
+            var decodeResult = base64Decode(decoder, response.signature().getBytes());
+            if (decodeResult instanceof Error(var err)) {
+                return Result.error(err);
+            }
+            signatures.add(new Signature(decodeResult.unwrap(), SignaturePackaging.DETACHED));
         }
-        return signatures;
+        return Result.success(signatures);
     }
 }
 
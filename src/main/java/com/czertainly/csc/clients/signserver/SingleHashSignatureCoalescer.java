@@ -0,0 +1,201 @@
+package com.czertainly.csc.clients.signserver;
+
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.common.result.TextErrorWithRetryIndication;
+import com.czertainly.csc.configuration.csc.CscConfiguration;
+import com.czertainly.csc.configuration.csc.SignatureCoalescingSettings;
+import com.czertainly.csc.signing.Signature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent requests to sign a single hash with the same worker, key and digest algorithm into
+ * a single batch signature request.
+ * <p>
+ * The first request for a combination of worker, key and digest algorithm opens a batch, which is sent
+ * when the configured window elapses or when it reaches the maximum batch size, whichever comes first.
+ * The signatures of the batch are then handed back to the individual callers. A batch with a single hash
+ * is sent as an ordinary single hash signature request.
+ * <p>
+ * A batch rejected with an error that doesn't indicate a retry may have been rejected because of a single
+ * invalid hash, so its hashes are then signed individually and every caller gets the result of its own hash.
+ */
+@Component
+public class SingleHashSignatureCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleHashSignatureCoalescer.class);
+
+    private final SignserverClient signserverClient;
+    private final ExecutorService executor;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final Map<BatchKey, PendingBatch> openBatches = new ConcurrentHashMap<>();
+
+    public SingleHashSignatureCoalescer(SignserverClient signserverClient, CscConfiguration cscConfiguration,
+                                        @Qualifier("signingExecutor") ExecutorService executor
+    ) {
+        this(signserverClient, cscConfiguration.signatureCoalescing() == null
+                ? SignatureCoalescingSettings.defaults()
+                : cscConfiguration.signatureCoalescing(), executor);
+    }
+
+    public SingleHashSignatureCoalescer(SignserverClient signserverClient, SignatureCoalescingSettings settings,
+                                        ExecutorService executor
+    ) {
+        this.signserverClient = signserverClient;
+        this.executor = executor;
+        this.enabled = settings.enabled();
+        this.window = settings.window();
+        this.maxBatchSize = settings.maxBatchSize();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Signs the hash as a part of a batch of the concurrent requests for the same worker, key and digest
+     * algorithm. The calling thread waits until the batch is processed.
+     */
+    public Result<Signature, TextError> signSingleHash(String workerName, String hash, String keyAlias,
+                                                       String digestAlgorithm
+    ) {
+        if (!enabled) {
+            return signserverClient.signSingleHash(workerName, hash.getBytes(), keyAlias, digestAlgorithm);
+        }
+        return submit(new BatchKey(workerName, keyAlias, digestAlgorithm), hash).join();
+    }
+
+    CompletableFuture<Result<Signature, TextError>> submit(BatchKey key, String hash) {
+        CompletableFuture<Result<Signature, TextError>> future = new CompletableFuture<>();
+        PendingBatch[] fullBatch = new PendingBatch[1];
+        openBatches.compute(key, (batchKey, batch) -> {
+            if (batch == null) {
+                batch = new PendingBatch(batchKey);
+                scheduleFlush(batch);
+            }
+            batch.add(hash, future);
+            if (batch.size() >= maxBatchSize) {
+                fullBatch[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (fullBatch[0] != null) {
+            executor.execute(() -> send(fullBatch[0]));
+        }
+        return future;
+    }
+
+    private void scheduleFlush(PendingBatch batch) {
+        var delayedExecutor = CompletableFuture.delayedExecutor(window.toNanos(), TimeUnit.NANOSECONDS, executor);
+        delayedExecutor.execute(() -> {
+            // The batch has already been sent if it was filled up before the window has elapsed
+            if (openBatches.remove(batch.key, batch)) {
+                send(batch);
+            }
+        });
+    }
+
+    private void send(PendingBatch batch) {
+        try {
+            if (batch.size() == 1) {
+                batch.callers.getFirst().complete(signSingle(batch.key, batch.hashes.getFirst()));
+                return;
+            }
+
+            logger.debug("Sending batch of {} coalesced hashes to worker {}.", batch.size(), batch.key.workerName());
+            var signResult = signserverClient.signMultipleHashes(batch.key.workerName(), batch.hashes,
+                                                                 batch.key.keyAlias(), batch.key.digestAlgorithm()
+            );
+            if (signResult instanceof Error(var err)) {
+                if (TextErrorWithRetryIndication.indicatesRetry(err)) {
+                    batch.completeAll(Result.error(err.extend("Failed to sign batch of coalesced hashes.")));
+                } else {
+                    logger.warn("Batch of {} coalesced hashes was rejected by worker {}, signing the hashes "
+                                        + "individually. {}", batch.size(), batch.key.workerName(), err.getErrorText()
+                    );
+                    signIndividually(batch);
+                }
+                return;
+            }
+            List<Signature> signatures = signResult.unwrap();
+            if (signatures.size() != batch.size()) {
+                logger.error("The batch of {} coalesced hashes was answered with {} signatures.", batch.size(),
+                             signatures.size()
+                );
+                batch.completeAll(Result.error(TextError.of(
+                        "The number of signatures does not match the number of coalesced hashes.")));
+                return;
+            }
+            for (int i = 0; i < signatures.size(); i++) {
+                batch.callers.get(i).complete(Result.success(signatures.get(i)));
+            }
+        } catch (Exception e) {
+            logger.error("Signing of a batch of coalesced hashes has failed.", e);
+            batch.completeAll(Result.error(TextError.of("Signing of a batch of coalesced hashes has failed.")));
+        }
+    }
+
+    private void signIndividually(PendingBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            String hash = batch.hashes.get(i);
+            CompletableFuture<Result<Signature, TextError>> caller = batch.callers.get(i);
+            executor.execute(() -> caller.complete(signSingle(batch.key, hash)));
+        }
+    }
+
+    private Result<Signature, TextError> signSingle(BatchKey key, String hash) {
+        try {
+            return signserverClient.signSingleHash(key.workerName(), hash.getBytes(), key.keyAlias(),
+                                                   key.digestAlgorithm()
+            );
+        } catch (Exception e) {
+            logger.error("Signing of a coalesced hash has failed.", e);
+            return Result.error(TextError.of("Signing of a coalesced hash has failed."));
+        }
+    }
+
+    record BatchKey(String workerName, String keyAlias, String digestAlgorithm) {}
+
+    /*
+     * Only modified inside of ConcurrentHashMap.compute, which makes the modifications visible to the thread
+     * that sends the batch after it is removed from the map.
+     */
+    private static class PendingBatch {
+        private final BatchKey key;
+        private final List<String> hashes = new ArrayList<>();
+        private final List<CompletableFuture<Result<Signature, TextError>>> callers = new ArrayList<>();
+
+        PendingBatch(BatchKey key) {
+            this.key = key;
+        }
+
+        void add(String hash, CompletableFuture<Result<Signature, TextError>> caller) {
+            hashes.add(hash);
+            callers.add(caller);
+        }
+
+        int size() {
+            return hashes.size();
+        }
+
+        void completeAll(Result<Signature, TextError> result) {
+            callers.forEach(caller -> caller.complete(result));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.czertainly.csc.clients.signserver.rest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the base64 encoded data of a Signserver process response directly into the decoded bytes,
+ * skipping all other fields of the response.
+ */
+final class ProcessResponseDecoder {
+
+    private ProcessResponseDecoder() {}
+
+    static byte[] readDecodedData(ObjectMapper objectMapper, InputStream body) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected format of the process response.");
+            }
+            byte[] data = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                if ("data".equals(fieldName) && valueToken == JsonToken.VALUE_STRING) {
+                    data = parser.getBinaryValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return data;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.czertainly.csc.clients.signserver.rest;
+
+import com.czertainly.csc.common.metrics.OutboundCallMetrics;
+import com.czertainly.csc.common.resilience.ResilientCallExecutor;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.common.result.TextErrorWithRetryIndication;
+import com.czertainly.csc.configuration.SignApiAuthorization;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import static com.czertainly.csc.clients.signserver.rest.SignserverRestClient.PROCESS_ENDPOINT;
+import static com.czertainly.csc.clients.signserver.rest.SignserverRestClient.RETRYABLE_STATUSES;
+import static com.czertainly.csc.clients.signserver.rest.SignserverRestClient.WORKER_PROCESS_REST_API_PATH;
+import static com.czertainly.csc.clients.signserver.rest.SignserverRestClient.logProcessCall;
+
+/**
+ * Non-blocking client of the Signserver process REST API.
+ * <p>
+ * The requests are sent by the asynchronous HttpClient, which multiplexes concurrent requests over a single
+ * connection when Signserver supports HTTP/2. No thread is held while a request is processed by Signserver.
+ * The responses are parsed on the signing executor, not on the I/O threads of the HttpClient.
+ * <p>
+ * The client and its HttpClient are created on the first asynchronous call, so no connection pool and
+ * I/O threads are started when the asynchronous signing is not used.
+ */
+@Lazy
+@Component
+public class SignserverAsyncRestClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(SignserverAsyncRestClient.class);
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final String signserverUrl;
+    private final String basicAuthHeader;
+    private final ObjectMapper objectMapper;
+    private final ResilientCallExecutor callExecutor;
+    private final ExecutorService responseExecutor;
+    private final OutboundCallMetrics metrics;
+
+    public SignserverAsyncRestClient(
+            @Value("${signingProvider.signserver.url}") String signserverUrl,
+            @Value("${signingProvider.signserver.client.authType}") SignApiAuthorization authzType,
+            @Value("${signingProvider.signserver.client.basic.username}") String basicAuthUsername,
+            @Value("${signingProvider.signserver.client.basic.password}") String basicAuthPassword,
+            @Qualifier("signserverAsyncHttpClient") CloseableHttpAsyncClient httpClient,
+            ObjectMapper objectMapper,
+            @Qualifier("signserverCallExecutor") ResilientCallExecutor callExecutor,
+            @Qualifier("signingExecutor") ExecutorService responseExecutor,
+            MeterRegistry meterRegistry
+    ) {
+        this.httpClient = httpClient;
+        this.signserverUrl = signserverUrl;
+        if (authzType == SignApiAuthorization.BASIC) {
+            basicAuthHeader = "Basic " + Base64.getEncoder().encodeToString((basicAuthUsername + ":" + basicAuthPassword).getBytes());
+        } else {
+            basicAuthHeader = null;
+        }
+        this.objectMapper = objectMapper;
+        this.callExecutor = callExecutor;
+        this.responseExecutor = responseExecutor;
+        this.metrics = new OutboundCallMetrics(meterRegistry, "signserver-rest-async");
+    }
+
+    /**
+     * Asynchronous counterpart of {@link SignserverRestClient#process(String, byte[], Map, SignserverProcessEncoding)}.
+     */
+    public CompletableFuture<Result<byte[], TextError>> process(String workerName, byte[] data,
+                                                                Map<String, String> metadata,
+                                                                SignserverProcessEncoding encoding
+    ) {
+        final String requestData;
+        if (encoding == SignserverProcessEncoding.BASE64) {
+            requestData = Base64.getEncoder().encodeToString(data);
+        } else {
+            requestData = new String(data);
+        }
+        return callExecutor.executeAsync(workerName, PROCESS_ENDPOINT, () -> {
+            logProcessCall(workerName, encoding, metadata);
+            return metrics.recordAsync(PROCESS_ENDPOINT, () -> send(
+                    workerName, new WorkerProcessRequest(requestData, metadata, encoding), response -> {
+                        WorkerProcessResponse processResponse = objectMapper.readValue(
+                                response, WorkerProcessResponse.class);
+                        return processResponse == null || processResponse.data() == null
+                                ? null
+                                : processResponse.data().getBytes();
+                    }
+            ));
+        });
+    }
+
+    /**
+     * Asynchronous counterpart of {@link SignserverRestClient#processEncoded(String, String, Map)}.
+     */
+    public CompletableFuture<Result<byte[], TextError>> processEncoded(String workerName, String base64Data,
+                                                                       Map<String, String> metadata
+    ) {
+        return callExecutor.executeAsync(workerName, PROCESS_ENDPOINT, () -> {
+            logProcessCall(workerName, SignserverProcessEncoding.BASE64, metadata);
+            return metrics.recordAsync(PROCESS_ENDPOINT, () -> send(
+                    workerName, new WorkerProcessRequest(base64Data, metadata, SignserverProcessEncoding.BASE64),
+                    response -> ProcessResponseDecoder.readDecodedData(
+                            objectMapper, new ByteArrayInputStream(response))
+            ));
+        });
+    }
+
+    private CompletableFuture<Result<byte[], TextError>> send(String workerName, WorkerProcessRequest processRequest,
+                                                              ResponseReader responseReader
+    ) {
+        final SimpleHttpRequest request;
+        try {
+            URI uri = UriComponentsBuilder.fromUriString(signserverUrl)
+                                          .path(WORKER_PROCESS_REST_API_PATH)
+                                          .buildAndExpand(workerName)
+                                          .encode()
+                                          .toUri();
+            SimpleRequestBuilder requestBuilder = SimpleRequestBuilder
+                    .post(uri)
+                    .setBody(objectMapper.writeValueAsBytes(processRequest), ContentType.APPLICATION_JSON)
+                    .addHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+            if (basicAuthHeader != null) {
+                requestBuilder.addHeader(HttpHeaders.AUTHORIZATION, basicAuthHeader);
+            }
+            request = requestBuilder.build();
+        } catch (Exception e) {
+            logger.error("Failed to create process request for worker {}", workerName, e);
+            return CompletableFuture.completedFuture(Result.error(
+                    TextErrorWithRetryIndication.doNotRetry("Processing failed on worker " + workerName)));
+        }
+
+        CompletableFuture<SimpleHttpResponse> responseFuture = new CompletableFuture<>();
+        httpClient.execute(request, new FutureCallback<>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                responseFuture.complete(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                responseFuture.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                responseFuture.cancel(false);
+            }
+        });
+
+        return responseFuture.handleAsync(
+                (response, throwable) -> toResult(workerName, response, throwable, responseReader),
+                responseExecutor
+        );
+    }
+
+    private Result<byte[], TextError> toResult(String workerName, SimpleHttpResponse response, Throwable throwable,
+                                               ResponseReader responseReader
+    ) {
+        if (throwable != null) {
+            logger.error("Processing failed on worker {}", workerName, throwable);
+            return Result.error(TextErrorWithRetryIndication.doRetry("Processing failed on worker " + workerName));
+        }
+        if (response.getCode() >= 400) {
+            logger.error("Processing failed on worker {} with status {}", workerName, response.getCode());
+            return Result.error(TextErrorWithRetryIndication.of(
+                    "Processing failed on worker " + workerName, RETRYABLE_STATUSES.contains(response.getCode())
+            ));
+        }
+        try {
+            byte[] data = response.getBodyBytes() == null ? null : responseReader.read(response.getBodyBytes());
+            if (data == null) {
+                logger.error("Processing failed on worker {}. The response contains no data.", workerName);
+                return Result.error(
+                        TextErrorWithRetryIndication.doNotRetry("Processing failed on worker " + workerName));
+            }
+            return Result.success(data);
+        } catch (Exception e) {
+            logger.error("Processing has failed on worker {}", workerName, e);
+            return Result.error(TextErrorWithRetryIndication.doNotRetry("Processing failed on worker " + workerName));
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResponseReader {
+        byte[] read(byte[] responseBody) throws Exception;
+    }
+}
@@ -1,41 +1,51 @@
 package com.czertainly.csc.clients.signserver.rest;
 
-import com.czertainly.csc.common.errorhandling.ErrorResultRetryException;
+import com.czertainly.csc.common.metrics.OutboundCallMetrics;
+import com.czertainly.csc.common.resilience.ResilientCallExecutor;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
 import com.czertainly.csc.common.result.TextErrorWithRetryIndication;
 import com.czertainly.csc.configuration.SignApiAuthorization;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
 
 import java.util.Base64;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Client of the Signserver REST API.
+ * <p>
+ * Calls are guarded by a circuit breaker per worker and endpoint and failed calls are retried within a retry
+ * budget, see {@link ResilientCallExecutor}.
+ */
 @Component
-@Retryable(
-        retryFor = {ErrorResultRetryException.class},
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000, multiplier = 2),
-        listeners = {"resultRetryListener"})
 public class SignserverRestClient {
 
     public static final Logger logger = LoggerFactory.getLogger(SignserverRestClient.class);
 
     public static final String WORKERS_REST_API_PATH = "/rest/v1/";
     public static final String WORKER_PROCESS_REST_API_PATH = WORKERS_REST_API_PATH + "workers/{workerName}/process";
+    static final String PROCESS_ENDPOINT = "process";
+    // Statuses indicating that the request has not been processed and may be retried
+    static final Set<Integer> RETRYABLE_STATUSES = Set.of(502, 503, 504);
 
     private final RestClient restClient;
     private final String basicAuthHeader;
+    private final ObjectMapper objectMapper;
+    private final ResilientCallExecutor callExecutor;
+    private final OutboundCallMetrics metrics;
 
 
     public SignserverRestClient(
@@ -43,7 +53,10 @@ public class SignserverRestClient {
             @Value("${signingProvider.signserver.client.authType}") SignApiAuthorization authzType,
             @Value("${signingProvider.signserver.client.basic.username}") String basicAuthUsername,
             @Value("${signingProvider.signserver.client.basic.password}") String basicAuthPassword,
-            @Qualifier("signserverRequestFactory") HttpComponentsClientHttpRequestFactory requestFactory
+            @Qualifier("signserverRequestFactory") HttpComponentsClientHttpRequestFactory requestFactory,
+            ObjectMapper objectMapper,
+            @Qualifier("signserverCallExecutor") ResilientCallExecutor callExecutor,
+            MeterRegistry meterRegistry
     ) {
         logger.debug("Creating SignserverRestClient with base URL: {}", signserverUrl);
         restClient = RestClient.builder().requestFactory(requestFactory).baseUrl(signserverUrl).build();
@@ -52,17 +65,40 @@ public class SignserverRestClient {
         } else {
             basicAuthHeader = null;
         }
+        this.objectMapper = objectMapper;
+        this.callExecutor = callExecutor;
+        this.metrics = new OutboundCallMetrics(meterRegistry, "signserver-rest");
     }
 
     public Result<byte[], TextError> process(String workerName, byte[] data, Map<String, String> metadata,
                                                             SignserverProcessEncoding encoding
     ) {
-        logger.debug("Calling Signserver process API. WorkerName: {}, Encoding: {}, metadata: [{}]",
-                     workerName, encoding,
-                     metadata.entrySet().stream()
-                          .map(e -> e.getKey() + "=" + e.getValue())
-                          .collect(Collectors.joining(", "))
+        return callExecutor.execute(workerName, PROCESS_ENDPOINT,
+                                    () -> metrics.record(PROCESS_ENDPOINT,
+                                                         () -> doProcess(workerName, data, metadata, encoding)
+                                    )
+        );
+    }
+
+    /**
+     * Processes data that is already base64 encoded and returns the decoded data of the response.
+     * The request data is passed to Signserver as it is and the response data is decoded while it is read
+     * from the response stream, so that no intermediate copies of large documents are created.
+     */
+    public Result<byte[], TextError> processEncoded(String workerName, String base64Data,
+                                                    Map<String, String> metadata
+    ) {
+        return callExecutor.execute(workerName, PROCESS_ENDPOINT,
+                                    () -> metrics.record(PROCESS_ENDPOINT,
+                                                         () -> doProcessEncoded(workerName, base64Data, metadata)
+                                    )
         );
+    }
+
+    private Result<byte[], TextError> doProcess(String workerName, byte[] data, Map<String, String> metadata,
+                                                SignserverProcessEncoding encoding
+    ) {
+        logProcessCall(workerName, encoding, metadata);
         final String requestData;
         if (encoding == SignserverProcessEncoding.BASE64) {
             requestData = Base64.getEncoder().encodeToString(data);
@@ -84,9 +120,69 @@ public class SignserverRestClient {
         } catch (ResourceAccessException e) {
             logger.error("Processing failed on worker {}", workerName, e);
             return Result.error(TextErrorWithRetryIndication.doRetry("Processing failed on worker " + workerName));
+        } catch (RestClientResponseException e) {
+            logger.error("Processing failed on worker {} with status {}", workerName, e.getStatusCode(), e);
+            return Result.error(TextErrorWithRetryIndication.of(
+                    "Processing failed on worker " + workerName,
+                    RETRYABLE_STATUSES.contains(e.getStatusCode().value())
+            ));
+        } catch (Exception e) {
+            logger.error("Processing has failed on worker {}", workerName, e);
+            return Result.error(TextErrorWithRetryIndication.doNotRetry("Processing failed on worker " + workerName));
+        }
+    }
+
+    private Result<byte[], TextError> doProcessEncoded(String workerName, String base64Data,
+                                                       Map<String, String> metadata
+    ) {
+        logProcessCall(workerName, SignserverProcessEncoding.BASE64, metadata);
+        WorkerProcessRequest workerProcessRequest = new WorkerProcessRequest(
+                base64Data, metadata, SignserverProcessEncoding.BASE64
+        );
+        try {
+            byte[] data = restClient.post().uri(WORKER_PROCESS_REST_API_PATH, workerName).body(workerProcessRequest)
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .header("Authorization", basicAuthHeader)
+                                    .accept(MediaType.APPLICATION_JSON)
+                                    .exchange((request, response) -> {
+                                        if (response.getStatusCode().isError()) {
+                                            throw new RestClientResponseException(
+                                                    "Signserver responded with an error status.",
+                                                    response.getStatusCode(), response.getStatusText(),
+                                                    response.getHeaders(), null, null
+                                            );
+                                        }
+                                        return ProcessResponseDecoder.readDecodedData(objectMapper, response.getBody());
+                                    });
+
+            if (data == null) {
+                logger.error("Processing failed on worker {}. The response contains no data.", workerName);
+                return Result.error(TextErrorWithRetryIndication.doNotRetry("Processing failed on worker " + workerName));
+            }
+            return Result.success(data);
+        } catch (ResourceAccessException e) {
+            logger.error("Processing failed on worker {}", workerName, e);
+            return Result.error(TextErrorWithRetryIndication.doRetry("Processing failed on worker " + workerName));
+        } catch (RestClientResponseException e) {
+            logger.error("Processing failed on worker {} with status {}", workerName, e.getStatusCode(), e);
+            return Result.error(TextErrorWithRetryIndication.of(
+                    "Processing failed on worker " + workerName,
+                    RETRYABLE_STATUSES.contains(e.getStatusCode().value())
+            ));
         } catch (Exception e) {
             logger.error("Processing has failed on worker {}", workerName, e);
             return Result.error(TextErrorWithRetryIndication.doNotRetry("Processing failed on worker " + workerName));
         }
     }
-}
\ No newline at end of file
+
+    static void logProcessCall(String workerName, SignserverProcessEncoding encoding,
+                                       Map<String, String> metadata
+    ) {
+        logger.debug("Calling Signserver process API. WorkerName: {}, Encoding: {}, metadata: [{}]",
+                     workerName, encoding,
+                     metadata.entrySet().stream()
+                          .map(e -> e.getKey() + "=" + e.getValue())
+                          .collect(Collectors.joining(", "))
+        );
+    }
+}
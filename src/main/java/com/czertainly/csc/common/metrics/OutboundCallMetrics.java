@@ -0,0 +1,93 @@
+package com.czertainly.csc.common.metrics;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.Success;
+import com.czertainly.csc.common.result.TextError;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records the duration of calls to an external system as the {@value #METRIC_NAME} timer.
+ * <p>
+ * The timer is tagged with the name of the client, the called operation and the outcome of the call,
+ * which is {@code success}, {@code error} if the call returned an error result, or {@code exception}
+ * if the call has thrown.
+ * <p>
+ * The percentile histogram is published only by the {@value #LATENCY_METRIC_NAME} timer, which is tagged with
+ * the client and the outcome, so that the number of histogram buckets doesn't grow with the number of operations.
+ */
+public class OutboundCallMetrics {
+
+    public static final String METRIC_NAME = "csc.client.requests";
+    public static final String LATENCY_METRIC_NAME = "csc.client.requests.latency";
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_EXCEPTION = "exception";
+
+    private final MeterRegistry meterRegistry;
+    private final String client;
+
+    public OutboundCallMetrics(MeterRegistry meterRegistry, String client) {
+        this.meterRegistry = meterRegistry;
+        this.client = client;
+    }
+
+    public <T> Result<T, TextError> record(String operation, Supplier<Result<T, TextError>> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_EXCEPTION;
+        try {
+            Result<T, TextError> result = call.get();
+            outcome = outcomeOf(result);
+            return result;
+        } finally {
+            stop(sample, operation, outcome);
+        }
+    }
+
+    public <T> CompletableFuture<Result<T, TextError>> recordAsync(
+            String operation, Supplier<CompletableFuture<Result<T, TextError>>> call
+    ) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CompletableFuture<Result<T, TextError>> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            stop(sample, operation, OUTCOME_EXCEPTION);
+            throw e;
+        }
+        return future.whenComplete((result, throwable) -> stop(
+                sample, operation, throwable == null ? outcomeOf(result) : OUTCOME_EXCEPTION
+        ));
+    }
+
+    /**
+     * Starts measuring a call that is finished by {@link #stop(Timer.Sample, String, String)}.
+     */
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stop(Timer.Sample sample, String operation, String outcome) {
+        long duration = sample.stop(Timer.builder(METRIC_NAME)
+                                         .description("Duration of the calls to external systems")
+                                         .tag("client", client)
+                                         .tag("operation", operation)
+                                         .tag("outcome", outcome)
+                                         .register(meterRegistry));
+        Timer.builder(LATENCY_METRIC_NAME)
+             .description("Distribution of the duration of the calls to external systems")
+             .tag("client", client)
+             .tag("outcome", outcome)
+             .publishPercentileHistogram()
+             .register(meterRegistry)
+             .record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    private static String outcomeOf(Result<?, TextError> result) {
+        return result instanceof Success ? OUTCOME_SUCCESS : OUTCOME_ERROR;
+    }
+}
@@ -0,0 +1,77 @@
+package com.czertainly.csc.common.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ws.FaultAwareWebServiceMessage;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.client.support.interceptor.ClientInterceptor;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.server.endpoint.support.PayloadRootUtils;
+import org.springframework.xml.transform.TransformerHelper;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Records the duration of the calls made by a web service client, see {@link OutboundCallMetrics}.
+ * The operation is the local name of the root element of the request payload.
+ */
+public class WebServiceCallMetricsInterceptor implements ClientInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebServiceCallMetricsInterceptor.class);
+    private static final String SAMPLE_PROPERTY = WebServiceCallMetricsInterceptor.class.getName() + ".sample";
+    private static final String UNKNOWN_OPERATION = "unknown";
+
+    private final OutboundCallMetrics metrics;
+    private final TransformerHelper transformerHelper = new TransformerHelper();
+
+    public WebServiceCallMetricsInterceptor(OutboundCallMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean handleRequest(MessageContext messageContext) {
+        messageContext.setProperty(SAMPLE_PROPERTY, metrics.start());
+        return true;
+    }
+
+    @Override
+    public boolean handleResponse(MessageContext messageContext) {
+        return true;
+    }
+
+    @Override
+    public boolean handleFault(MessageContext messageContext) {
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(MessageContext messageContext, Exception ex) {
+        if (!(messageContext.getProperty(SAMPLE_PROPERTY) instanceof Timer.Sample sample)) {
+            return;
+        }
+        metrics.stop(sample, operationOf(messageContext.getRequest()), outcomeOf(messageContext, ex));
+    }
+
+    private String operationOf(WebServiceMessage request) {
+        try {
+            QName payloadRoot = PayloadRootUtils.getPayloadRootQName(request.getPayloadSource(), transformerHelper);
+            return payloadRoot == null ? UNKNOWN_OPERATION : payloadRoot.getLocalPart();
+        } catch (Exception e) {
+            logger.debug("Failed to determine the operation of the web service request.", e);
+            return UNKNOWN_OPERATION;
+        }
+    }
+
+    private static String outcomeOf(MessageContext messageContext, Exception ex) {
+        if (ex != null) {
+            return OutboundCallMetrics.OUTCOME_EXCEPTION;
+        }
+        if (messageContext.hasResponse()
+                && messageContext.getResponse() instanceof FaultAwareWebServiceMessage response
+                && response.hasFault()) {
+            return OutboundCallMetrics.OUTCOME_ERROR;
+        }
+        return OutboundCallMetrics.OUTCOME_SUCCESS;
+    }
+}
@@ -0,0 +1,97 @@
+package com.czertainly.csc.common.resilience;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Circuit breaker guarding calls to a single remote endpoint.
+ * <p>
+ * The breaker is {@link State#CLOSED} while the calls succeed. After {@code failureThreshold} consecutive
+ * failures it opens and rejects all calls for the {@code openDuration}. Then it becomes
+ * {@link State#HALF_OPEN} and lets through at most {@code halfOpenMaxCalls} concurrent probing calls.
+ * A successful probe closes the breaker again, a failed probe opens it for another {@code openDuration}.
+ * <p>
+ * Every permitted call must be followed by exactly one call of {@link #onSuccess()} or {@link #onFailure()}.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final int halfOpenMaxCalls;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private Instant openedUntil;
+    private int halfOpenCalls;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, int halfOpenMaxCalls,
+                          Clock clock
+    ) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenMaxCalls = halfOpenMaxCalls;
+        this.clock = clock;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true if the call may proceed, false if it should fail fast
+     */
+    public synchronized boolean tryAcquirePermission() {
+        switch (currentState()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (halfOpenCalls < halfOpenMaxCalls) {
+                    halfOpenCalls++;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            openedUntil = null;
+            halfOpenCalls = 0;
+        }
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedUntil = clock.instant().plus(openDuration);
+            halfOpenCalls = 0;
+        }
+    }
+
+    public synchronized State getState() {
+        return currentState();
+    }
+
+    private State currentState() {
+        if (state == State.OPEN && !clock.instant().isBefore(openedUntil)) {
+            state = State.HALF_OPEN;
+            halfOpenCalls = 0;
+        }
+        return state;
+    }
+}
@@ -0,0 +1,56 @@
+package com.czertainly.csc.common.resilience;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds a circuit breaker for every combination of a remote target (e.g. a Signserver worker) and an endpoint
+ * called on it. The breakers are created on their first use.
+ */
+public class CircuitBreakerRegistry {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, CircuitBreaker>> circuitBreakers =
+            new ConcurrentHashMap<>();
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final int halfOpenMaxCalls;
+    private final Clock clock;
+
+    public CircuitBreakerRegistry(int failureThreshold, Duration openDuration, int halfOpenMaxCalls) {
+        this(failureThreshold, openDuration, halfOpenMaxCalls, Clock.systemUTC());
+    }
+
+    public CircuitBreakerRegistry(int failureThreshold, Duration openDuration, int halfOpenMaxCalls, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenMaxCalls = halfOpenMaxCalls;
+        this.clock = clock;
+    }
+
+    public CircuitBreaker get(String target, String endpoint) {
+        return circuitBreakers
+                .computeIfAbsent(target, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(endpoint, e -> new CircuitBreaker(
+                        target + "/" + endpoint, failureThreshold, openDuration, halfOpenMaxCalls, clock
+                ));
+    }
+
+    /**
+     * @return false if any of the circuit breakers of the target is open, true otherwise
+     */
+    public boolean isAvailable(String target) {
+        Map<String, CircuitBreaker> targetBreakers = circuitBreakers.get(target);
+        if (targetBreakers == null) {
+            return true;
+        }
+        for (CircuitBreaker circuitBreaker : targetBreakers.values()) {
+            if (circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package com.czertainly.csc.common.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter: the delay before the n-th retry is a random duration between zero
+ * and {@code min(maxDelay, initialDelay * 2^(n-1))}. The randomization prevents retries of many concurrent
+ * requests from hitting the remote system at the same time.
+ */
+public record JitteredBackoff(Duration initialDelay, Duration maxDelay) {
+
+    public Duration delayBeforeRetry(int retry) {
+        long ceilingMillis = initialDelay.toMillis() << Math.min(Math.max(retry - 1, 0), 20);
+        ceilingMillis = Math.min(ceilingMillis, maxDelay.toMillis());
+        if (ceilingMillis <= 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceilingMillis + 1));
+    }
+}
@@ -0,0 +1,155 @@
+package com.czertainly.csc.common.resilience;
+
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.common.result.TextErrorWithRetryIndication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Executes calls to a remote system guarded by a circuit breaker per target and endpoint and retries
+ * failed calls within a retry budget.
+ * <p>
+ * A call is considered failed, and is retried, when it returns a {@link TextErrorWithRetryIndication}
+ * that indicates a retry. Other errors mean that the remote system has responded and count as a success
+ * for the circuit breaker. The backoff between the retries of a blocking call is a sleep of the calling thread,
+ * which does not block a platform thread when the call is made from a virtual thread. Asynchronous calls are
+ * retried from a delayed executor without blocking any thread.
+ */
+public class ResilientCallExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientCallExecutor.class);
+
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final RetryBudget retryBudget;
+    private final JitteredBackoff backoff;
+    private final int maxAttempts;
+
+    public ResilientCallExecutor(CircuitBreakerRegistry circuitBreakers, RetryBudget retryBudget,
+                                 JitteredBackoff backoff, int maxAttempts
+    ) {
+        this.circuitBreakers = circuitBreakers;
+        this.retryBudget = retryBudget;
+        this.backoff = backoff;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public <T> Result<T, TextError> execute(String target, String endpoint, Supplier<Result<T, TextError>> call) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(target, endpoint);
+        retryBudget.onRequest();
+        for (int attempt = 1; ; attempt++) {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                return rejected(circuitBreaker);
+            }
+
+            Result<T, TextError> result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                circuitBreaker.onFailure();
+                throw e;
+            }
+
+            Duration retryDelay = evaluate(circuitBreaker, result, attempt);
+            if (retryDelay == null || !sleep(retryDelay)) {
+                return result;
+            }
+            logRetry(circuitBreaker, attempt + 1);
+        }
+    }
+
+    public <T> CompletableFuture<Result<T, TextError>> executeAsync(
+            String target, String endpoint, Supplier<CompletableFuture<Result<T, TextError>>> call
+    ) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(target, endpoint);
+        retryBudget.onRequest();
+        return attemptAsync(circuitBreaker, call, 1);
+    }
+
+    private <T> CompletableFuture<Result<T, TextError>> attemptAsync(
+            CircuitBreaker circuitBreaker, Supplier<CompletableFuture<Result<T, TextError>>> call, int attempt
+    ) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return CompletableFuture.completedFuture(rejected(circuitBreaker));
+        }
+
+        CompletableFuture<Result<T, TextError>> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            circuitBreaker.onFailure();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return future.handle((result, throwable) -> {
+            if (throwable != null) {
+                circuitBreaker.onFailure();
+                return CompletableFuture.<Result<T, TextError>>failedFuture(throwable);
+            }
+            Duration retryDelay = evaluate(circuitBreaker, result, attempt);
+            if (retryDelay == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            logRetry(circuitBreaker, attempt + 1);
+            var delayedExecutor = CompletableFuture.delayedExecutor(retryDelay.toMillis(), TimeUnit.MILLISECONDS);
+            return CompletableFuture.supplyAsync(() -> null, delayedExecutor)
+                                    .thenCompose(ignored -> attemptAsync(circuitBreaker, call, attempt + 1));
+        }).thenCompose(resultFuture -> resultFuture);
+    }
+
+    /**
+     * Records the result of the call to the circuit breaker and decides whether the call should be retried.
+     *
+     * @return the delay before the retry or null if the call should not be retried
+     */
+    private Duration evaluate(CircuitBreaker circuitBreaker, Result<?, TextError> result, int attempt) {
+        if (!(result instanceof Error(var err)) || !shouldRetry(err)) {
+            circuitBreaker.onSuccess();
+            return null;
+        }
+
+        circuitBreaker.onFailure();
+        if (attempt >= maxAttempts) {
+            logger.info("Call to '{}' has failed in all {} attempts.", circuitBreaker.getName(), attempt);
+            return null;
+        }
+        if (!retryBudget.tryAcquireRetry()) {
+            logger.info("Call to '{}' has failed and will not be retried, the retry budget is exhausted.",
+                        circuitBreaker.getName()
+            );
+            return null;
+        }
+        return backoff.delayBeforeRetry(attempt);
+    }
+
+    private <T> Result<T, TextError> rejected(CircuitBreaker circuitBreaker) {
+        logger.warn("Circuit breaker '{}' is open, the call is rejected.", circuitBreaker.getName());
+        return Result.error(TextErrorWithRetryIndication.doNotRetry(
+                "Circuit breaker '" + circuitBreaker.getName() + "' is open."));
+    }
+
+    private void logRetry(CircuitBreaker circuitBreaker, int attempt) {
+        logger.info("Retrying call to '{}', attempt {} of {}.", circuitBreaker.getName(), attempt, maxAttempts);
+    }
+
+    private static boolean shouldRetry(TextError error) {
+        return error instanceof TextErrorWithRetryIndication retryIndication
+                && Boolean.TRUE.equals(retryIndication.getShouldRetry());
+    }
+
+    private static boolean sleep(Duration delay) {
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.czertainly.csc.common.resilience;
+
+import java.time.Clock;
+
+/**
+ * Limits the number of retries relative to the number of requests, so that retries cannot multiply
+ * the load of a remote system that is already degraded.
+ * <p>
+ * Every request deposits {@code retryRatio} of a retry to the budget and every retry withdraws one. In addition,
+ * {@code minRetriesPerSecond} retries are always allowed so that retries work under low traffic. The budget
+ * never holds more than the retries allowed within ten seconds.
+ */
+public class RetryBudget {
+
+    private static final int MAX_BALANCE_SECONDS = 10;
+
+    private final double retryRatio;
+    private final double minRetriesPerSecond;
+    private final double maxBalance;
+    private final Clock clock;
+
+    private double balance;
+    private long lastRefillMillis;
+
+    public RetryBudget(double retryRatio, int minRetriesPerSecond) {
+        this(retryRatio, minRetriesPerSecond, Clock.systemUTC());
+    }
+
+    public RetryBudget(double retryRatio, int minRetriesPerSecond, Clock clock) {
+        this.retryRatio = retryRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.maxBalance = Math.max(1, minRetriesPerSecond * MAX_BALANCE_SECONDS);
+        this.clock = clock;
+        this.balance = minRetriesPerSecond;
+        this.lastRefillMillis = clock.millis();
+    }
+
+    public synchronized void onRequest() {
+        refill();
+        balance = Math.min(maxBalance, balance + retryRatio);
+    }
+
+    /**
+     * @return true if the retry is within the budget, false if it should not be attempted
+     */
+    public synchronized boolean tryAcquireRetry() {
+        refill();
+        if (balance >= 1) {
+            balance -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private void refill() {
+        long now = clock.millis();
+        long elapsedMillis = now - lastRefillMillis;
+        if (elapsedMillis > 0) {
+            balance = Math.min(maxBalance, balance + elapsedMillis * minRetriesPerSecond / 1000.0);
+            lastRefillMillis = now;
+        }
+    }
+}
@@ -14,6 +14,13 @@ public abstract class ExtendableErrorValue<T> implements ErrorValue {
         this.error = error;
     }
 
+    /**
+     * @return the error extended by this error or null if this error does not extend any error
+     */
+    public ExtendableErrorValue<T> getExtendedError() {
+        return extended;
+    }
+
     public String getErrorText() {
         return toString();
     }
@@ -25,4 +25,16 @@ public class TextErrorWithRetryIndication extends TextError {
     public Boolean getShouldRetry() {
         return shouldRetry;
     }
+
+    /**
+     * @return true if the error or any of the errors it extends indicates that the failed call should be retried
+     */
+    public static boolean indicatesRetry(ExtendableErrorValue<?> error) {
+        for (ExtendableErrorValue<?> e = error; e != null; e = e.getExtendedError()) {
+            if (e instanceof TextErrorWithRetryIndication retryIndication) {
+                return Boolean.TRUE.equals(retryIndication.getShouldRetry());
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,185 @@
+package com.czertainly.csc.common.utils;
+
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.Success;
+import com.czertainly.csc.common.result.TextError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Runs a list of independent tasks on an executor with a bounded number of tasks in flight.
+ * Results are returned in the order of the tasks. When any task fails, no further tasks are started
+ * and the first error is returned once all already running tasks have finished.
+ * <p>
+ * Asynchronous tasks are bounded the same way, a next task is started when a running task completes,
+ * so no thread waits for the tasks.
+ */
+public final class ParallelExecution {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelExecution.class);
+
+    private ParallelExecution() {}
+
+    public static <T> Result<List<T>, TextError> runAll(
+            List<Supplier<Result<T, TextError>>> tasks, ExecutorService executor, int maxParallelism
+    ) {
+        if (tasks.size() == 1 || maxParallelism <= 1) {
+            return runSequentially(tasks);
+        }
+
+        Semaphore permits = new Semaphore(maxParallelism);
+        AtomicReference<TextError> firstError = new AtomicReference<>();
+        List<Future<Result<T, TextError>>> futures = new ArrayList<>(tasks.size());
+
+        try {
+            for (Supplier<Result<T, TextError>> task : tasks) {
+                permits.acquire();
+                if (firstError.get() != null) {
+                    permits.release();
+                    break;
+                }
+                futures.add(executor.submit(() -> {
+                    try {
+                        Result<T, TextError> result = task.get();
+                        if (result instanceof Error(var err)) {
+                            firstError.compareAndSet(null, err);
+                        }
+                        return result;
+                    } catch (Exception e) {
+                        logger.error("Parallel task has failed unexpectedly.", e);
+                        TextError err = TextError.of(e);
+                        firstError.compareAndSet(null, err);
+                        return Result.error(err);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            firstError.compareAndSet(null, TextError.of("Interrupted while waiting for parallel tasks."));
+        }
+
+        // Wait for all started tasks, so that none of them outlives the caller.
+        List<T> values = new ArrayList<>(futures.size());
+        for (Future<Result<T, TextError>> future : futures) {
+            try {
+                Result<T, TextError> result = future.get();
+                if (result instanceof Success<T, TextError>(var value)) {
+                    values.add(value);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                firstError.compareAndSet(null, TextError.of("Interrupted while waiting for parallel tasks."));
+            } catch (ExecutionException e) {
+                firstError.compareAndSet(null, TextError.of(e));
+            }
+        }
+
+        if (firstError.get() != null) {
+            return Result.error(firstError.get());
+        }
+        return Result.success(values);
+    }
+
+    public static <T> CompletableFuture<Result<List<T>, TextError>> runAllAsync(
+            List<Supplier<CompletableFuture<Result<T, TextError>>>> tasks, int maxParallelism
+    ) {
+        return new AsyncExecution<>(tasks).start(Math.max(1, maxParallelism));
+    }
+
+    private static <T> Result<List<T>, TextError> runSequentially(List<Supplier<Result<T, TextError>>> tasks) {
+        List<T> values = new ArrayList<>(tasks.size());
+        for (Supplier<Result<T, TextError>> task : tasks) {
+            Result<T, TextError> result = task.get();
+            if (result instanceof Error(var err)) {
+                return Result.error(err);
+            }
+            values.add(result.unwrap());
+        }
+        return Result.success(values);
+    }
+
+    private static final class AsyncExecution<T> {
+
+        private final List<Supplier<CompletableFuture<Result<T, TextError>>>> tasks;
+        private final AtomicReferenceArray<T> values;
+        private final AtomicInteger nextTask = new AtomicInteger();
+        // Includes the starting caller, so that the execution doesn't complete before all initial tasks are started
+        private final AtomicInteger unfinished = new AtomicInteger(1);
+        private final AtomicReference<TextError> firstError = new AtomicReference<>();
+        private final CompletableFuture<Result<List<T>, TextError>> result = new CompletableFuture<>();
+
+        private AsyncExecution(List<Supplier<CompletableFuture<Result<T, TextError>>>> tasks) {
+            this.tasks = tasks;
+            this.values = new AtomicReferenceArray<>(tasks.size());
+        }
+
+        private CompletableFuture<Result<List<T>, TextError>> start(int maxParallelism) {
+            for (int i = 0; i < maxParallelism; i++) {
+                startNext();
+            }
+            finishOne();
+            return result;
+        }
+
+        private void startNext() {
+            if (firstError.get() != null) {
+                return;
+            }
+            int index = nextTask.getAndIncrement();
+            if (index >= tasks.size()) {
+                return;
+            }
+            unfinished.incrementAndGet();
+            CompletableFuture<Result<T, TextError>> future;
+            try {
+                future = tasks.get(index).get();
+            } catch (Exception e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((taskResult, throwable) -> onTaskFinished(index, taskResult, throwable));
+        }
+
+        private void onTaskFinished(int index, Result<T, TextError> taskResult, Throwable throwable) {
+            if (throwable != null) {
+                logger.error("Parallel task has failed unexpectedly.", throwable);
+                firstError.compareAndSet(null, TextError.of(ThrowableUtil.chainedString(throwable)));
+            } else if (taskResult instanceof Error(var err)) {
+                firstError.compareAndSet(null, err);
+            } else {
+                values.set(index, taskResult.unwrap());
+            }
+            startNext();
+            finishOne();
+        }
+
+        private void finishOne() {
+            if (unfinished.decrementAndGet() > 0) {
+                return;
+            }
+            if (firstError.get() != null) {
+                result.complete(Result.error(firstError.get()));
+                return;
+            }
+            List<T> orderedValues = new ArrayList<>(values.length());
+            for (int i = 0; i < values.length(); i++) {
+                orderedValues.add(values.get(i));
+            }
+            result.complete(Result.success(orderedValues));
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package com.czertainly.csc.components;
 
-import com.czertainly.csc.clients.ejbca.EjbcaClient;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.components.revocation.RevocationStatusProvider;
 import com.czertainly.csc.model.csc.CertificateStatus;
 import org.springframework.stereotype.Component;
 
@@ -16,13 +16,13 @@ public class CertificateValidityDecider {
 
     private final DateConverter dateConverter;
 
-    private final EjbcaClient ejbcaClient;
+    private final RevocationStatusProvider revocationStatusProvider;
 
     private final ZoneId utcZoneId = ZoneId.of("UTC");
 
-    public CertificateValidityDecider(DateConverter dateConverter, EjbcaClient ejbcaClient) {
+    public CertificateValidityDecider(DateConverter dateConverter, RevocationStatusProvider revocationStatusProvider) {
         this.dateConverter = dateConverter;
-        this.ejbcaClient = ejbcaClient;
+        this.revocationStatusProvider = revocationStatusProvider;
     }
 
     public Result<CertificateStatus, TextError> decideStatus(X509Certificate certificate) {
@@ -54,18 +54,11 @@ public class CertificateValidityDecider {
     }
 
     private Result<CertificateStatus, TextError> getRevocationStatus(X509Certificate certificate) {
-        try {
-            String serialNumberHex = certificate.getSerialNumber().toString(16);
-            String issuerDn = certificate.getIssuerX500Principal().getName();
-
-            return ejbcaClient.getCertificateRevocationStatus(serialNumberHex, issuerDn)
-                              .map(revocationStatus -> switch (revocationStatus) {
-                                  case REVOKED -> CertificateStatus.REVOKED;
-                                  case SUSPENDED -> CertificateStatus.SUSPENDED;
-                                  case NOT_REVOKED -> CertificateStatus.VALID;
-                              });
-        } catch (Exception e) {
-            return Result.error(TextError.of(e));
-        }
+        return revocationStatusProvider.getRevocationStatus(certificate)
+                                       .map(revocationStatus -> switch (revocationStatus) {
+                                           case REVOKED -> CertificateStatus.REVOKED;
+                                           case SUSPENDED -> CertificateStatus.SUSPENDED;
+                                           case NOT_REVOKED -> CertificateStatus.VALID;
+                                       });
     }
 }
@@ -0,0 +1,214 @@
+package com.czertainly.csc.components.revocation;
+
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import org.bouncycastle.asn1.ASN1BitString;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.ASN1SequenceParser;
+import org.bouncycastle.asn1.ASN1StreamParser;
+import org.bouncycastle.asn1.ASN1TaggedObject;
+import org.bouncycastle.asn1.ASN1TaggedObjectParser;
+import org.bouncycastle.asn1.ASN1UTCTime;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.operator.ContentVerifier;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+
+/**
+ * Parses DER encoded CRLs without building the object model of the whole CRL.
+ * <p>
+ * The signature of the CRL is verified against the certificate of its issuing CA on the raw bytes of the
+ * to-be-signed part, then the revoked certificates are read one by one and passed to the {@link EntryConsumer},
+ * so only a single entry of the CRL is materialized at a time.
+ */
+class CrlParser {
+
+    private static final int SEQUENCE_TAG = 0x30;
+
+    /**
+     * Verifies and parses the CRL issued by the CA.
+     *
+     * @param crl           the DER encoded CRL
+     * @param caCertificate certificate of the CA which issued the CRL
+     * @param entryConsumer receives the revoked certificates of the CRL
+     */
+    Result<CrlInfo, TextError> parse(byte[] crl, X509Certificate caCertificate, EntryConsumer entryConsumer) {
+        try {
+            DerElement certificateList = DerElement.at(crl, 0, SEQUENCE_TAG);
+            DerElement tbsCertList = DerElement.at(crl, certificateList.contentOffset(), SEQUENCE_TAG);
+
+            var verifyResult = verifySignature(crl, tbsCertList, certificateList, caCertificate);
+            if (verifyResult instanceof Error(var err)) {
+                return Result.error(err);
+            }
+
+            X500Name caName = X500Name.getInstance(caCertificate.getSubjectX500Principal().getEncoded());
+            return parseTbsCertList(crl, tbsCertList, caName, entryConsumer);
+        } catch (IOException | RuntimeException e) {
+            return Result.error(TextError.of("Failed to parse CRL. %s", e.getMessage()));
+        }
+    }
+
+    private Result<Void, TextError> verifySignature(byte[] crl, DerElement tbsCertList, DerElement certificateList,
+                                                    X509Certificate caCertificate
+    ) throws IOException {
+        int signatureOffset = tbsCertList.end();
+        try (ASN1InputStream signatureInput = new ASN1InputStream(new ByteArrayInputStream(
+                crl, signatureOffset, certificateList.end() - signatureOffset))) {
+            AlgorithmIdentifier signatureAlgorithm = AlgorithmIdentifier.getInstance(signatureInput.readObject());
+            byte[] signature = ASN1BitString.getInstance(signatureInput.readObject()).getOctets();
+
+            ContentVerifier verifier = new JcaContentVerifierProviderBuilder().build(caCertificate)
+                                                                              .get(signatureAlgorithm);
+            try (OutputStream verifierInput = verifier.getOutputStream()) {
+                verifierInput.write(crl, tbsCertList.offset(), tbsCertList.end() - tbsCertList.offset());
+            }
+            if (!verifier.verify(signature)) {
+                return Result.error(TextError.of("Signature of the CRL is not valid."));
+            }
+            return Result.emptySuccess();
+        } catch (Exception e) {
+            return Result.error(TextError.of("Failed to verify signature of the CRL. %s", e.getMessage()));
+        }
+    }
+
+    private Result<CrlInfo, TextError> parseTbsCertList(byte[] crl, DerElement tbsCertList, X500Name caName,
+                                                        EntryConsumer entryConsumer
+    ) throws IOException {
+        ASN1StreamParser parser = new ASN1StreamParser(new ByteArrayInputStream(
+                crl, tbsCertList.offset(), tbsCertList.end() - tbsCertList.offset()));
+        ASN1SequenceParser tbs = (ASN1SequenceParser) parser.readObject();
+
+        ASN1Encodable field = tbs.readObject();
+        if (field instanceof ASN1Integer) {
+            field = tbs.readObject();
+        }
+        // the signature algorithm is covered by the verified signature of the CRL, it's only read to be skipped
+        field.toASN1Primitive();
+        X500Name issuer = X500Name.getInstance(tbs.readObject().toASN1Primitive());
+        if (!issuer.equals(caName)) {
+            return Result.error(TextError.of("CRL issued by '%s' doesn't belong to the CA '%s'.", issuer, caName));
+        }
+        Instant thisUpdate = Time.getInstance(tbs.readObject().toASN1Primitive()).getDate().toInstant();
+
+        Instant nextUpdate = null;
+        field = tbs.readObject();
+        if (field instanceof ASN1UTCTime || field instanceof ASN1GeneralizedTime) {
+            nextUpdate = Time.getInstance(field).getDate().toInstant();
+            field = tbs.readObject();
+        }
+
+        if (field instanceof ASN1SequenceParser revokedCertificates) {
+            ASN1Encodable entry;
+            while ((entry = revokedCertificates.readObject()) != null) {
+                readEntry(ASN1Sequence.getInstance(entry.toASN1Primitive()), entryConsumer);
+            }
+            field = tbs.readObject();
+        }
+
+        BigInteger crlNumber = null;
+        BigInteger baseCrlNumber = null;
+        if (field instanceof ASN1TaggedObjectParser crlExtensions) {
+            Extensions extensions = Extensions.getInstance(
+                    ASN1TaggedObject.getInstance(crlExtensions.toASN1Primitive()), true);
+            Extension number = extensions.getExtension(Extension.cRLNumber);
+            if (number != null) {
+                crlNumber = CRLNumber.getInstance(number.getParsedValue()).getCRLNumber();
+            }
+            Extension deltaIndicator = extensions.getExtension(Extension.deltaCRLIndicator);
+            if (deltaIndicator != null) {
+                baseCrlNumber = CRLNumber.getInstance(deltaIndicator.getParsedValue()).getCRLNumber();
+            }
+        }
+        return Result.success(new CrlInfo(issuer, thisUpdate, nextUpdate, crlNumber, baseCrlNumber));
+    }
+
+    private static void readEntry(ASN1Sequence entry, EntryConsumer entryConsumer) {
+        BigInteger serialNumber = ASN1Integer.getInstance(entry.getObjectAt(0)).getValue();
+        int reason = CRLReason.unspecified;
+        if (entry.size() > 2) {
+            Extension reasonCode = Extensions.getInstance(entry.getObjectAt(2)).getExtension(Extension.reasonCode);
+            if (reasonCode != null) {
+                reason = CRLReason.getInstance(reasonCode.getParsedValue()).getValue().intValue();
+            }
+        }
+        entryConsumer.accept(serialNumber, reason);
+    }
+
+    /**
+     * Receives the revoked certificates of a CRL.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+        /**
+         * @param serialNumber serial number of the revoked certificate
+         * @param reason       reason code of the revocation as defined by {@link CRLReason}
+         */
+        void accept(BigInteger serialNumber, int reason);
+    }
+
+    /**
+     * @param crlNumber     number of the CRL, {@code null} if the CRL has no number
+     * @param baseCrlNumber number of the base CRL of a delta CRL, {@code null} if the CRL is not a delta CRL
+     */
+    record CrlInfo(X500Name issuer, Instant thisUpdate, Instant nextUpdate, BigInteger crlNumber,
+                   BigInteger baseCrlNumber
+    ) {
+        boolean isDelta() {
+            return baseCrlNumber != null;
+        }
+    }
+
+    /**
+     * Position of a DER element in an encoding.
+     *
+     * @param offset        offset of the tag of the element
+     * @param contentOffset offset of the content of the element
+     * @param end           offset after the last byte of the content
+     */
+    private record DerElement(int offset, int contentOffset, int end) {
+
+        static DerElement at(byte[] encoding, int offset, int expectedTag) throws IOException {
+            if (offset + 2 > encoding.length || (encoding[offset] & 0xFF) != expectedTag) {
+                throw new IOException("Unexpected DER element at offset " + offset + ".");
+            }
+            int lengthByte = encoding[offset + 1] & 0xFF;
+            int contentOffset = offset + 2;
+            long length = lengthByte;
+            if (lengthByte > 0x80 && lengthByte <= 0x84) {
+                int lengthOctets = lengthByte & 0x7F;
+                if (contentOffset + lengthOctets > encoding.length) {
+                    throw new IOException("Truncated DER length at offset " + offset + ".");
+                }
+                length = 0;
+                for (int i = 0; i < lengthOctets; i++) {
+                    length = (length << 8) | (encoding[contentOffset + i] & 0xFF);
+                }
+                contentOffset += lengthOctets;
+            } else if (lengthByte >= 0x80) {
+                throw new IOException("Unsupported DER length at offset " + offset + ".");
+            }
+            if (contentOffset + length > encoding.length) {
+                throw new IOException("Truncated DER element at offset " + offset + ".");
+            }
+            return new DerElement(offset, contentOffset, (int) (contentOffset + length));
+        }
+    }
+}
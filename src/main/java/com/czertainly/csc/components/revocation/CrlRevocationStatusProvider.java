@@ -0,0 +1,214 @@
+package com.czertainly.csc.components.revocation;
+
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.configuration.revocation.CrlLocation;
+import com.czertainly.csc.model.CertificateRevocationReason;
+import com.czertainly.csc.model.RevocationStatus;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Looks up the revocation status of certificates in the CRLs of their issuing CAs.
+ * <p>
+ * The full CRL and, if configured, the delta CRL of every configured CA are fetched by {@link #refresh()},
+ * verified against the certificate of the CA and parsed into a {@link RevokedSerialIndex}, which answers
+ * the lookups until the next refresh. A CA whose CRLs fail to refresh keeps its previous index. A certificate
+ * is not answered for if its issuer has no index or if the CRL of the index is past its next update,
+ * so that revoked certificates are never reported as valid because of an outdated CRL.
+ * <p>
+ * Certificates revoked by this application are kept in a local overlay per issuer, which is consulted before
+ * the index, so that they are reported as revoked before the CA publishes a new CRL. An entry of the overlay
+ * is dropped once a CRL of the issuer that lists the certificate is loaded. The overlay is not shared between
+ * the instances of the application.
+ */
+public class CrlRevocationStatusProvider implements RevocationStatusProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrlRevocationStatusProvider.class);
+
+    private final List<CrlLocation> crlLocations;
+    private final CrlSource crlSource;
+    private final CrlParser crlParser = new CrlParser();
+    private final Clock clock;
+    private volatile Map<X500Name, IssuerRevocations> revocations = Map.of();
+    private final ConcurrentMap<X500Name, Map<BigInteger, RevocationStatus>> localRevocations =
+            new ConcurrentHashMap<>();
+
+    public CrlRevocationStatusProvider(List<CrlLocation> crlLocations, CrlSource crlSource) {
+        this(crlLocations, crlSource, Clock.systemUTC());
+    }
+
+    public CrlRevocationStatusProvider(List<CrlLocation> crlLocations, CrlSource crlSource, Clock clock) {
+        this.crlLocations = crlLocations;
+        this.crlSource = crlSource;
+        this.clock = clock;
+    }
+
+    @Override
+    public Result<RevocationStatus, TextError> getRevocationStatus(X509Certificate certificate) {
+        try {
+            X500Name issuer = X500Name.getInstance(certificate.getIssuerX500Principal().getEncoded());
+            RevocationStatus localStatus = localRevocations.getOrDefault(issuer, Map.of())
+                                                           .get(certificate.getSerialNumber());
+            if (localStatus != null) {
+                return Result.success(localStatus);
+            }
+            IssuerRevocations issuerRevocations = revocations.get(issuer);
+            if (issuerRevocations == null) {
+                return Result.error(TextError.of("No CRL of the issuer '%s' is available.", issuer));
+            }
+            if (issuerRevocations.nextUpdate() != null && clock.instant().isAfter(issuerRevocations.nextUpdate())) {
+                return Result.error(TextError.of("CRL of the issuer '%s' is outdated since '%s'.", issuer,
+                                                 issuerRevocations.nextUpdate()
+                ));
+            }
+            return Result.success(issuerRevocations.index().statusOf(certificate.getSerialNumber()));
+        } catch (Exception e) {
+            return Result.error(TextError.of(e));
+        }
+    }
+
+    @Override
+    public void refresh() {
+        Map<X500Name, IssuerRevocations> refreshed = new HashMap<>(revocations);
+        for (CrlLocation location : crlLocations) {
+            var loadResult = load(location);
+            if (loadResult instanceof Error(var err)) {
+                logger.error("Failed to refresh CRL from '{}'. {}", location.url(), err.getErrorText());
+            } else {
+                IssuerRevocations issuerRevocations = loadResult.unwrap();
+                refreshed.put(issuerRevocations.issuer(), issuerRevocations);
+            }
+        }
+        revocations = Map.copyOf(refreshed);
+        refreshed.values().forEach(this::dropPublishedRevocations);
+    }
+
+    @Override
+    public void certificateRevoked(String certificateSerialNumberHex, String issuerDN,
+                                   CertificateRevocationReason revocationReason
+    ) {
+        try {
+            X500Name issuer = new X500Name(issuerDN);
+            BigInteger serialNumber = new BigInteger(certificateSerialNumberHex, 16);
+            RevocationStatus status = revocationReason == CertificateRevocationReason.CERTIFICATE_HOLD
+                    ? RevocationStatus.SUSPENDED : RevocationStatus.REVOKED;
+            // The maps of the issuers are replaced instead of modified, so that lookups can read them without locking
+            localRevocations.compute(issuer, (key, serialNumbers) -> {
+                Map<BigInteger, RevocationStatus> updated = new HashMap<>();
+                if (serialNumbers != null) updated.putAll(serialNumbers);
+                updated.put(serialNumber, status);
+                return Map.copyOf(updated);
+            });
+        } catch (Exception e) {
+            logger.warn("Failed to record the revocation of certificate '{}' issued by '{}'. The revocation will be "
+                                + "reported once it is published in a CRL.", certificateSerialNumberHex, issuerDN, e
+            );
+        }
+    }
+
+    private void dropPublishedRevocations(IssuerRevocations issuerRevocations) {
+        localRevocations.computeIfPresent(issuerRevocations.issuer(), (key, serialNumbers) -> {
+            Map<BigInteger, RevocationStatus> unpublished = new HashMap<>(serialNumbers);
+            RevokedSerialIndex index = issuerRevocations.index();
+            unpublished.keySet().removeIf(serialNumber -> index.statusOf(serialNumber) != RevocationStatus.NOT_REVOKED);
+            return unpublished.isEmpty() ? null : Map.copyOf(unpublished);
+        });
+    }
+
+    private Result<IssuerRevocations, TextError> load(CrlLocation location) {
+        var caCertificateResult = loadCaCertificate(location.caCertificate());
+        if (caCertificateResult instanceof Error(var err)) return Result.error(err);
+        X509Certificate caCertificate = caCertificateResult.unwrap();
+
+        Map<BigInteger, RevocationStatus> revoked = new HashMap<>();
+        var fullCrlResult = crlSource.fetch(location.url())
+                                     .flatMap(crl -> crlParser.parse(crl, caCertificate, (serialNumber, reason) -> {
+                                         if (reason != CRLReason.removeFromCRL) {
+                                             revoked.put(serialNumber, statusOf(reason));
+                                         }
+                                     }));
+        if (fullCrlResult instanceof Error(var err)) return Result.error(err);
+        CrlParser.CrlInfo fullCrl = fullCrlResult.unwrap();
+        if (fullCrl.isDelta()) {
+            return Result.error(TextError.of("CRL at '%s' is a delta CRL, a full CRL is expected.", location.url()));
+        }
+
+        Instant nextUpdate = fullCrl.nextUpdate();
+        if (location.deltaUrl() != null && !location.deltaUrl().isBlank()) {
+            Map<BigInteger, Integer> deltaEntries = new HashMap<>();
+            var deltaCrlResult = crlSource.fetch(location.deltaUrl())
+                                          .flatMap(crl -> crlParser.parse(crl, caCertificate, deltaEntries::put));
+            if (deltaCrlResult instanceof Error(var err)) {
+                logger.warn("Failed to load delta CRL from '{}', only the full CRL will be used. {}",
+                            location.deltaUrl(), err.getErrorText()
+                );
+            } else if (isApplicable(deltaCrlResult.unwrap(), fullCrl)) {
+                deltaEntries.forEach((serialNumber, reason) -> {
+                    if (reason == CRLReason.removeFromCRL) {
+                        revoked.remove(serialNumber);
+                    } else {
+                        revoked.put(serialNumber, statusOf(reason));
+                    }
+                });
+                nextUpdate = earlierOf(nextUpdate, deltaCrlResult.unwrap().nextUpdate());
+            } else {
+                logger.warn("Delta CRL from '{}' doesn't apply to the full CRL from '{}', only the full CRL will be used.",
+                            location.deltaUrl(), location.url()
+                );
+            }
+        }
+
+        revoked.keySet().removeIf(serialNumber -> serialNumber.signum() < 0);
+        RevokedSerialIndex index = RevokedSerialIndex.of(revoked);
+        logger.info("Loaded {} revoked certificates of the issuer '{}' from the CRL at '{}'.", index.size(),
+                    fullCrl.issuer(), location.url()
+        );
+        return Result.success(new IssuerRevocations(fullCrl.issuer(), index, nextUpdate));
+    }
+
+    private static boolean isApplicable(CrlParser.CrlInfo deltaCrl, CrlParser.CrlInfo fullCrl) {
+        return deltaCrl.isDelta()
+                && fullCrl.crlNumber() != null
+                && deltaCrl.baseCrlNumber().compareTo(fullCrl.crlNumber()) <= 0
+                && (deltaCrl.crlNumber() == null || deltaCrl.crlNumber().compareTo(fullCrl.crlNumber()) > 0);
+    }
+
+    private static RevocationStatus statusOf(int reason) {
+        return reason == CRLReason.certificateHold ? RevocationStatus.SUSPENDED : RevocationStatus.REVOKED;
+    }
+
+    private static Instant earlierOf(Instant first, Instant second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        return first.isBefore(second) ? first : second;
+    }
+
+    private static Result<X509Certificate, TextError> loadCaCertificate(String path) {
+        try (InputStream certificate = Files.newInputStream(Path.of(path))) {
+            return Result.success((X509Certificate) CertificateFactory.getInstance("X.509")
+                                                                      .generateCertificate(certificate));
+        } catch (Exception e) {
+            return Result.error(TextError.of("Failed to load CA certificate from '%s'. %s", path, e.getMessage()));
+        }
+    }
+
+    private record IssuerRevocations(X500Name issuer, RevokedSerialIndex index, Instant nextUpdate) {}
+}
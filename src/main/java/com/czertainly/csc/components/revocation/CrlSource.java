@@ -0,0 +1,13 @@
+package com.czertainly.csc.components.revocation;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+
+public interface CrlSource {
+
+    /**
+     * Returns the DER encoded CRL published at the location.
+     */
+    Result<byte[], TextError> fetch(String location);
+
+}
@@ -0,0 +1,32 @@
+package com.czertainly.csc.components.revocation;
+
+import com.czertainly.csc.clients.ejbca.EjbcaClient;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.model.RevocationStatus;
+
+import java.security.cert.X509Certificate;
+
+/**
+ * Checks the revocation status of every certificate in EJBCA.
+ */
+public class EjbcaRevocationStatusProvider implements RevocationStatusProvider {
+
+    private final EjbcaClient ejbcaClient;
+
+    public EjbcaRevocationStatusProvider(EjbcaClient ejbcaClient) {
+        this.ejbcaClient = ejbcaClient;
+    }
+
+    @Override
+    public Result<RevocationStatus, TextError> getRevocationStatus(X509Certificate certificate) {
+        try {
+            String serialNumberHex = certificate.getSerialNumber().toString(16);
+            String issuerDn = certificate.getIssuerX500Principal().getName();
+
+            return ejbcaClient.getCertificateRevocationStatus(serialNumberHex, issuerDn);
+        } catch (Exception e) {
+            return Result.error(TextError.of(e));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.czertainly.csc.components.revocation;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.model.CertificateRevocationReason;
+import com.czertainly.csc.model.RevocationStatus;
+
+import java.security.cert.X509Certificate;
+
+public interface RevocationStatusProvider {
+
+    Result<RevocationStatus, TextError> getRevocationStatus(X509Certificate certificate);
+
+    /**
+     * Refreshes the revocation data kept locally by the provider, if any.
+     */
+    default void refresh() {}
+
+    /**
+     * Notifies the provider about a certificate revoked by this application, so that a provider which keeps
+     * revocation data locally can report the revocation before its data are refreshed.
+     */
+    default void certificateRevoked(String certificateSerialNumberHex, String issuerDN,
+                                    CertificateRevocationReason revocationReason
+    ) {}
+
+}
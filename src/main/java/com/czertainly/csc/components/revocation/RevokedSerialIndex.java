@@ -0,0 +1,81 @@
+package com.czertainly.csc.components.revocation;
+
+import com.czertainly.csc.model.RevocationStatus;
+import org.bouncycastle.util.BigIntegers;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * Immutable index of the revoked serial numbers of a single issuer.
+ * <p>
+ * The serial numbers are stored as unsigned big-endian numbers of the same width, sorted and packed into a single
+ * byte array, and looked up by a binary search. Serial numbers of suspended certificates are marked in a bit set.
+ */
+class RevokedSerialIndex {
+
+    private final int width;
+    private final int size;
+    private final byte[] serialNumbers;
+    private final BitSet suspended;
+
+    private RevokedSerialIndex(int width, int size, byte[] serialNumbers, BitSet suspended) {
+        this.width = width;
+        this.size = size;
+        this.serialNumbers = serialNumbers;
+        this.suspended = suspended;
+    }
+
+    /**
+     * Creates an index of the revoked serial numbers.
+     *
+     * @param revocations revocation statuses of the revoked serial numbers, the serial numbers must not be negative
+     */
+    static RevokedSerialIndex of(Map<BigInteger, RevocationStatus> revocations) {
+        int width = 1;
+        for (BigInteger serialNumber : revocations.keySet()) {
+            width = Math.max(width, BigIntegers.getUnsignedByteLength(serialNumber));
+        }
+
+        BigInteger[] sortedSerialNumbers = revocations.keySet().toArray(new BigInteger[0]);
+        Arrays.sort(sortedSerialNumbers);
+        byte[] serialNumbers = new byte[sortedSerialNumbers.length * width];
+        BitSet suspended = new BitSet();
+        for (int i = 0; i < sortedSerialNumbers.length; i++) {
+            BigIntegers.asUnsignedByteArray(sortedSerialNumbers[i], serialNumbers, i * width, width);
+            if (revocations.get(sortedSerialNumbers[i]) == RevocationStatus.SUSPENDED) {
+                suspended.set(i);
+            }
+        }
+        return new RevokedSerialIndex(width, sortedSerialNumbers.length, serialNumbers, suspended);
+    }
+
+    RevocationStatus statusOf(BigInteger serialNumber) {
+        if (serialNumber.signum() < 0 || BigIntegers.getUnsignedByteLength(serialNumber) > width) {
+            return RevocationStatus.NOT_REVOKED;
+        }
+        byte[] key = BigIntegers.asUnsignedByteArray(width, serialNumber);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Arrays.compareUnsigned(serialNumbers, middle * width, (middle + 1) * width,
+                                                    key, 0, width
+            );
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return suspended.get(middle) ? RevocationStatus.SUSPENDED : RevocationStatus.REVOKED;
+            }
+        }
+        return RevocationStatus.NOT_REVOKED;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,81 @@
+package com.czertainly.csc.components.revocation;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Downloads CRLs from {@code http} and {@code https} URLs and reads them from local {@code file} URLs.
+ * A local file can stand in for the distribution point of a CA that is not reachable.
+ * CRLs larger than the maximum size are rejected without being read completely.
+ */
+public class UrlCrlSource implements CrlSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(UrlCrlSource.class);
+
+    private final RestClient restClient;
+    private final long maxCrlSize;
+
+    public UrlCrlSource(RestClient restClient, long maxCrlSize) {
+        this.restClient = restClient;
+        this.maxCrlSize = maxCrlSize;
+    }
+
+    @Override
+    public Result<byte[], TextError> fetch(String location) {
+        try {
+            URI uri = URI.create(location);
+            if ("file".equalsIgnoreCase(uri.getScheme())) {
+                Path path = Path.of(uri);
+                if (Files.size(path) > maxCrlSize) {
+                    return Result.error(TextError.of(tooLarge(location)));
+                }
+                return Result.success(Files.readAllBytes(path));
+            }
+            byte[] crl = restClient.get()
+                                   .uri(uri)
+                                   .exchange((request, response) -> {
+                                       if (response.getStatusCode().isError()) {
+                                           throw new RestClientResponseException(
+                                                   "CRL distribution point responded with an error status.",
+                                                   response.getStatusCode(), response.getStatusText(),
+                                                   response.getHeaders(), null, null
+                                           );
+                                       }
+                                       if (response.getHeaders().getContentLength() > maxCrlSize) {
+                                           throw new IOException(tooLarge(location));
+                                       }
+                                       try (InputStream body = response.getBody()) {
+                                           // One byte more than allowed is read to detect a CRL that is too large
+                                           byte[] data = body.readNBytes((int) Math.min(maxCrlSize + 1,
+                                                                                        Integer.MAX_VALUE - 8
+                                           ));
+                                           if (data.length > maxCrlSize) {
+                                               throw new IOException(tooLarge(location));
+                                           }
+                                           return data.length == 0 ? null : data;
+                                       }
+                                   });
+            if (crl == null) {
+                return Result.error(TextError.of("Empty CRL downloaded from '%s'.", location));
+            }
+            return Result.success(crl);
+        } catch (Exception e) {
+            logger.error("Failed to fetch CRL from '{}'.", location, e);
+            return Result.error(TextError.of("Failed to fetch CRL from '%s'. %s", location, e.getMessage()));
+        }
+    }
+
+    private String tooLarge(String location) {
+        return String.format("CRL '%s' exceeds the maximum size of %d bytes.", location, maxCrlSize);
+    }
+}
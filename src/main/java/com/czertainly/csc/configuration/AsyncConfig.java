@@ -12,6 +12,7 @@ import org.springframework.security.concurrent.DelegatingSecurityContextExecutor
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 
 @Configuration
@@ -39,6 +40,18 @@ public class AsyncConfig {
         return new DelegatingSecurityContextExecutorService(base);
     }
 
+    @Bean(name = "sessionKeyDeletionExecutor", destroyMethod = "close")
+    public ExecutorService sessionKeyDeletionExecutor() {
+        ThreadFactory tf = Thread.ofVirtual()
+                .name("session-key-del-", 0)
+                .uncaughtExceptionHandler(
+                        (t, e) -> logger.error("Uncaught exception in session key deletion thread: {}",
+                                t.getName(), e))
+                .factory();
+        ExecutorService base = Executors.newFixedThreadPool(cscConfig.concurrency().maxKeyDeletion(), tf);
+        return new DelegatingSecurityContextExecutorService(base);
+    }
+
     @Bean(name = "keyGenerationExecutor", destroyMethod = "close")
     public ExecutorService keyGenerationExecutor() {
         ThreadFactory tf = Thread.ofVirtual()
@@ -51,6 +64,52 @@ public class AsyncConfig {
         return new DelegatingSecurityContextExecutorService(base);
     }
 
+    /**
+     * Scheduler of the key pool replenishments triggered by a pool dropping below its low watermark.
+     */
+    @Bean(name = "keyReplenishScheduler", destroyMethod = "close")
+    public ScheduledExecutorService keyReplenishScheduler() {
+        ThreadFactory tf = Thread.ofVirtual()
+                .name("key-replenish-", 0)
+                .uncaughtExceptionHandler(
+                        (t, e) -> logger.error("Uncaught exception in key replenish thread: {}",
+                                t.getName(), e))
+                .factory();
+        return Executors.newSingleThreadScheduledExecutor(tf);
+    }
+
+    /**
+     * Executor for signing independent parts of a single signature request concurrently.
+     * Virtual threads are created per task, the parallelism is limited by the caller.
+     */
+    @Bean(name = "signingExecutor", destroyMethod = "close")
+    public ExecutorService signingExecutor() {
+        ThreadFactory tf = Thread.ofVirtual()
+                .name("signing-", 0)
+                .uncaughtExceptionHandler(
+                        (t, e) -> logger.error("Uncaught exception in signing thread: {}",
+                                t.getName(), e))
+                .factory();
+        ExecutorService base = Executors.newThreadPerTaskExecutor(tf);
+        return new DelegatingSecurityContextExecutorService(base);
+    }
+
+    /**
+     * Executor for the independent steps of the issuance of a single credential.
+     * Virtual threads are created per task, the number of steps of an issuance is small and fixed.
+     */
+    @Bean(name = "credentialIssuanceExecutor", destroyMethod = "close")
+    public ExecutorService credentialIssuanceExecutor() {
+        ThreadFactory tf = Thread.ofVirtual()
+                .name("credential-issuance-", 0)
+                .uncaughtExceptionHandler(
+                        (t, e) -> logger.error("Uncaught exception in credential issuance thread: {}",
+                                t.getName(), e))
+                .factory();
+        ExecutorService base = Executors.newThreadPerTaskExecutor(tf);
+        return new DelegatingSecurityContextExecutorService(base);
+    }
+
     /** Global handler for uncaught exceptions in @Async void methods */
     @Bean
     public AsyncUncaughtExceptionHandler asyncExceptionHandler() {
@@ -1,32 +1,66 @@
 package com.czertainly.csc.configuration;
 
 import com.czertainly.csc.api.auth.authn.CscJwtAuthenticationConverter;
+import com.czertainly.csc.clients.ejbca.EjbcaClient;
+import com.czertainly.csc.clients.ejbca.RevocationStatusCache;
 import com.czertainly.csc.clients.ejbca.ws.EjbcaWsClient;
 import com.czertainly.csc.clients.signserver.ws.SignserverWsClient;
 import com.czertainly.csc.common.exceptions.ApplicationConfigurationException;
+import com.czertainly.csc.common.metrics.OutboundCallMetrics;
+import com.czertainly.csc.common.metrics.WebServiceCallMetricsInterceptor;
+import com.czertainly.csc.common.resilience.CircuitBreakerRegistry;
+import com.czertainly.csc.common.resilience.JitteredBackoff;
+import com.czertainly.csc.common.resilience.ResilientCallExecutor;
+import com.czertainly.csc.common.resilience.RetryBudget;
+import com.czertainly.csc.components.revocation.CrlRevocationStatusProvider;
+import com.czertainly.csc.components.revocation.EjbcaRevocationStatusProvider;
+import com.czertainly.csc.components.revocation.RevocationStatusProvider;
+import com.czertainly.csc.components.revocation.UrlCrlSource;
+import com.czertainly.csc.configuration.csc.CscConfiguration;
+import com.czertainly.csc.configuration.csc.WorkerSelectionSettings;
+import com.czertainly.csc.configuration.http.HttpClientPoolSettings;
 import com.czertainly.csc.configuration.idp.IdpAuthentication;
 import com.czertainly.csc.configuration.idp.IdpConfiguration;
+import com.czertainly.csc.configuration.revocation.RevocationConfiguration;
 import com.czertainly.csc.signing.configuration.WorkerRepository;
 import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
 import com.czertainly.csc.signing.configuration.loader.WorkerConfigurationLoader;
+import com.czertainly.csc.signing.configuration.selection.WorkerLoadTracker;
+import com.czertainly.csc.signing.configuration.selection.WorkerSelectionStrategies;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
 import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
 import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
 import org.apache.hc.client5.http.ssl.TlsSocketStrategy;
 import org.apache.hc.core5.http.HttpRequestInterceptor;
 import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
 import org.apache.hc.core5.ssl.SSLContextBuilder;
 import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.ssl.SslBundle;
 import org.springframework.boot.ssl.SslBundles;
 import org.springframework.boot.ssl.SslStoreBundle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.oxm.jaxb.Jaxb2Marshaller;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -35,14 +69,16 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.web.client.RestClient;
+import org.springframework.ws.client.support.interceptor.ClientInterceptor;
 import org.springframework.ws.transport.http.HttpComponents5ClientFactory;
 import org.springframework.ws.transport.http.HttpComponents5MessageSender;
 import org.springframework.ws.transport.http.SimpleHttpComponents5MessageSender;
 
 import javax.net.ssl.SSLContext;
 import java.security.*;
+import java.time.Duration;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
@@ -52,11 +88,21 @@ import static org.springframework.security.config.Customizer.withDefaults;
 @PropertySource(value = "file:${csc.profilesConfigurationDirectory}/key-pool-profiles.yml", factory = MultipleYamlPropertySourceFactory.class)
 public class ServerConfiguration {
 
+    // Property names passed to the Binder must be in the canonical form, they match the camelCase names as well
+    private static final String SIGNSERVER_CLIENT_CONNECTION_POOL = "signingprovider.signserver.client.connection-pool";
+
     @Bean
     SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
                 .sessionManagement(sessionConf -> sessionConf.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .csrf(AbstractHttpConfigurer::disable)
+                // The metrics reveal the names of the workers, crypto tokens and profiles, only the health
+                // endpoint is public
+                .authorizeHttpRequests(authorize -> authorize
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
+                        .requestMatchers(EndpointRequest.toAnyEndpoint()).authenticated()
+                        .anyRequest().permitAll()
+                )
                 .oauth2ResourceServer(
                         oauth2 -> {
                             oauth2.jwt(withDefaults());
@@ -71,18 +117,28 @@ public class ServerConfiguration {
     public SimpleHttpComponents5MessageSender signserverHttpComponentsMessageSender(
             @Value("${signingProvider.signserver.admin.keystoreBundle:none}") String keystoreBundleName,
             @Value("${signingProvider.signserver.truststoreBundle:none}") String truststoreBundleName,
-            SslBundles sslBundles
+            SslBundles sslBundles,
+            Environment environment,
+            MeterRegistry meterRegistry
     ) throws ApplicationConfigurationException {
-        return getHttpComponentsMessageSender(keystoreBundleName, truststoreBundleName, sslBundles);
+        return getHttpComponentsMessageSender(
+                "signserver-admin", keystoreBundleName, truststoreBundleName, sslBundles,
+                connectionPoolSettings(environment, "signingprovider.signserver.admin.connection-pool"), meterRegistry
+        );
     }
 
     @Bean("ejbcaMessageSender")
     public SimpleHttpComponents5MessageSender ejbcaHttpComponentsMessageSender(
             @Value("${caProvider.ejbca.admin.keystoreBundle:none}") String keystoreBundleName,
             @Value("${caProvider.ejbca.truststoreBundle:none}") String truststoreBundleName,
-            SslBundles sslBundles
+            SslBundles sslBundles,
+            Environment environment,
+            MeterRegistry meterRegistry
     ) throws ApplicationConfigurationException {
-        return getHttpComponentsMessageSender(keystoreBundleName, truststoreBundleName, sslBundles);
+        return getHttpComponentsMessageSender(
+                "ejbca", keystoreBundleName, truststoreBundleName, sslBundles,
+                connectionPoolSettings(environment, "caprovider.ejbca.connection-pool"), meterRegistry
+        );
     }
 
     @Bean(name = "signserverWsMarshaller")
@@ -104,30 +160,19 @@ public class ServerConfiguration {
             @Value("${signingProvider.signserver.client.authType}") SignApiAuthorization authzType,
             @Value("${signingProvider.signserver.client.certificate.keystoreBundle:none}") String keystoreBundleName,
             @Value("${signingProvider.signserver.truststoreBundle:none}") String truststoreBundleName,
-            SslBundles sslBundles
+            SslBundles sslBundles,
+            Environment environment,
+            MeterRegistry meterRegistry
     ) throws ApplicationConfigurationException {
         try {
-            SSLContextBuilder builder = SSLContexts.custom();
-
-            if (!truststoreBundleName.equals("none") && !truststoreBundleName.isBlank()) {
-                SslBundle truststoreBundle = sslBundles.getBundle(truststoreBundleName);
-                KeyStore truststore = truststoreBundle.getStores().getTrustStore();
-                builder.loadTrustMaterial(truststore, null);
-            }
-
-            if (authzType == SignApiAuthorization.CERTIFICATE) {
-                if (keystoreBundleName.equals("none") || keystoreBundleName.isBlank()) {
-                    throw new ApplicationConfigurationException(
-                            "Keystore bundle name must be provided when using certificate authorization.");
-                }
-                SslStoreBundle keystoreBundle = sslBundles.getBundle(keystoreBundleName).getStores();
-                KeyStore keystore = keystoreBundle.getKeyStore();
-                builder.loadKeyMaterial(keystore, keystoreBundle.getKeyStorePassword().toCharArray());
-            }
-
-            SSLContext sslContext = builder.build();
+            SSLContext sslContext = getSignserverClientSslContext(authzType, keystoreBundleName, truststoreBundleName,
+                                                                  sslBundles
+            );
 
-            final HttpClient httpClient = getHttpClient(sslContext, null);
+            final HttpClient httpClient = getHttpClient(
+                    "signserver-client", sslContext,
+                    connectionPoolSettings(environment, SIGNSERVER_CLIENT_CONNECTION_POOL), null, meterRegistry
+            );
 
             return new HttpComponentsClientHttpRequestFactory(httpClient);
         } catch (Exception e) {
@@ -135,10 +180,79 @@ public class ServerConfiguration {
         }
     }
 
+    // Started only when the asynchronous client is first used
+    @Lazy
+    @Bean(value = "signserverAsyncHttpClient", destroyMethod = "close")
+    public CloseableHttpAsyncClient signserverAsyncHttpClient(
+            @Value("${signingProvider.signserver.client.authType}") SignApiAuthorization authzType,
+            @Value("${signingProvider.signserver.client.certificate.keystoreBundle:none}") String keystoreBundleName,
+            @Value("${signingProvider.signserver.truststoreBundle:none}") String truststoreBundleName,
+            @Value("${signingProvider.signserver.client.httpVersionPolicy:NEGOTIATE}") HttpVersionPolicy versionPolicy,
+            SslBundles sslBundles,
+            Environment environment,
+            MeterRegistry meterRegistry
+    ) throws ApplicationConfigurationException {
+        try {
+            SSLContext sslContext = getSignserverClientSslContext(authzType, keystoreBundleName, truststoreBundleName,
+                                                                  sslBundles
+            );
+            HttpClientPoolSettings poolSettings = connectionPoolSettings(environment,
+                                                                         SIGNSERVER_CLIENT_CONNECTION_POOL
+            );
+            var connectionManager = PoolingAsyncClientConnectionManagerBuilder
+                    .create()
+                    .setTlsStrategy(ClientTlsStrategyBuilder.create().setSslContext(sslContext).build())
+                    .setMaxConnTotal(poolSettings.maxTotal())
+                    .setMaxConnPerRoute(poolSettings.maxPerRoute())
+                    .setDefaultConnectionConfig(connectionConfig(poolSettings))
+                    .build();
+            new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "signserver-client-async")
+                    .bindTo(meterRegistry);
+            CloseableHttpAsyncClient httpClient = HttpAsyncClients
+                    .custom()
+                    .setVersionPolicy(versionPolicy)
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(requestConfig(poolSettings))
+                    .evictExpiredConnections()
+                    .evictIdleConnections(TimeValue.of(poolSettings.idleEvictionTime()))
+                    .build();
+            httpClient.start();
+            return httpClient;
+        } catch (Exception e) {
+            throw new ApplicationConfigurationException("Failed to configure application." + e.getMessage());
+        }
+    }
+
+    private static SSLContext getSignserverClientSslContext(SignApiAuthorization authzType, String keystoreBundleName,
+                                                            String truststoreBundleName, SslBundles sslBundles
+    ) throws GeneralSecurityException, ApplicationConfigurationException {
+        SSLContextBuilder builder = SSLContexts.custom();
+
+        if (!truststoreBundleName.equals("none") && !truststoreBundleName.isBlank()) {
+            SslBundle truststoreBundle = sslBundles.getBundle(truststoreBundleName);
+            KeyStore truststore = truststoreBundle.getStores().getTrustStore();
+            builder.loadTrustMaterial(truststore, null);
+        }
+
+        if (authzType == SignApiAuthorization.CERTIFICATE) {
+            if (keystoreBundleName.equals("none") || keystoreBundleName.isBlank()) {
+                throw new ApplicationConfigurationException(
+                        "Keystore bundle name must be provided when using certificate authorization.");
+            }
+            SslStoreBundle keystoreBundle = sslBundles.getBundle(keystoreBundleName).getStores();
+            KeyStore keystore = keystoreBundle.getKeyStore();
+            builder.loadKeyMaterial(keystore, keystoreBundle.getKeyStorePassword().toCharArray());
+        }
+
+        return builder.build();
+    }
+
     @Bean("idpClientRequestFactory")
     public HttpComponentsClientHttpRequestFactory idpRequestFactory(
             IdpConfiguration idpConfiguration,
-            SslBundles sslBundles
+            SslBundles sslBundles,
+            Environment environment,
+            MeterRegistry meterRegistry
     ) throws ApplicationConfigurationException {
         try {
             SSLContextBuilder builder = SSLContexts.custom();
@@ -159,7 +273,10 @@ public class ServerConfiguration {
 
             SSLContext sslContext = builder.build();
 
-            final HttpClient httpClient = getHttpClient(sslContext, null);
+            final HttpClient httpClient = getHttpClient(
+                    "idp", sslContext, connectionPoolSettings(environment, "idp.client.connection-pool"), null,
+                    meterRegistry
+            );
 
             return new HttpComponentsClientHttpRequestFactory(httpClient);
         } catch (Exception e) {
@@ -170,39 +287,150 @@ public class ServerConfiguration {
     @Bean
     public EjbcaWsClient ejbcaWsClient(@Qualifier("ejbcaWsMarshaller") Jaxb2Marshaller marshaller,
                                        @Qualifier("ejbcaMessageSender") SimpleHttpComponents5MessageSender httpComponentsMessageSender,
-                                       @Value("${caProvider.ejbca.url}") String ejbcaUrl
-
+                                       @Value("${caProvider.ejbca.url}") String ejbcaUrl,
+                                       MeterRegistry meterRegistry
     ) {
         EjbcaWsClient client = new EjbcaWsClient(ejbcaUrl);
         client.setMessageSender(httpComponentsMessageSender);
         client.setMarshaller(marshaller);
         client.setUnmarshaller(marshaller);
+        client.setInterceptors(new ClientInterceptor[]{
+                new WebServiceCallMetricsInterceptor(new OutboundCallMetrics(meterRegistry, "ejbca-ws"))
+        });
         return client;
     }
 
     @Bean
-    public WorkerRepository signerSelector(WorkerConfigurationLoader workerConfigurationLoader) {
+    public RevocationStatusCache revocationStatusCache(
+            @Value("${caProvider.ejbca.revocationStatusCache.ttl:PT1M}") Duration ttl,
+            @Value("${caProvider.ejbca.revocationStatusCache.negativeTtl:PT10S}") Duration negativeTtl,
+            @Value("${caProvider.ejbca.revocationStatusCache.maxSize:10000}") int maxSize,
+            MeterRegistry meterRegistry
+    ) {
+        return new RevocationStatusCache(ttl, negativeTtl, maxSize, meterRegistry);
+    }
+
+    @Bean
+    public RevocationStatusProvider revocationStatusProvider(RevocationConfiguration revocationConfiguration,
+                                                             EjbcaClient ejbcaClient,
+                                                             SslBundles sslBundles,
+                                                             Environment environment,
+                                                             MeterRegistry meterRegistry
+    ) throws ApplicationConfigurationException {
+        return switch (revocationConfiguration.provider()) {
+            case EJBCA -> new EjbcaRevocationStatusProvider(ejbcaClient);
+            case CRL -> new CrlRevocationStatusProvider(
+                    revocationConfiguration.crls(),
+                    new UrlCrlSource(
+                            RestClient.builder()
+                                      .requestFactory(crlRequestFactory(revocationConfiguration, sslBundles,
+                                                                        environment, meterRegistry
+                                      ))
+                                      .build(),
+                            revocationConfiguration.maxCrlSize().toBytes()
+                    )
+            );
+        };
+    }
+
+    private static HttpComponentsClientHttpRequestFactory crlRequestFactory(
+            RevocationConfiguration revocationConfiguration,
+            SslBundles sslBundles,
+            Environment environment,
+            MeterRegistry meterRegistry
+    ) throws ApplicationConfigurationException {
+        try {
+            SSLContextBuilder builder = SSLContexts.custom();
+
+            String truststoreBundleName = revocationConfiguration.truststoreBundle();
+            if (truststoreBundleName != null && !truststoreBundleName.isBlank()) {
+                SslBundle truststoreBundle = sslBundles.getBundle(truststoreBundleName);
+                KeyStore truststore = truststoreBundle.getStores().getTrustStore();
+                builder.loadTrustMaterial(truststore, null);
+            }
+
+            final HttpClient httpClient = getHttpClient(
+                    "crl", builder.build(), connectionPoolSettings(environment, "caprovider.revocation.connection-pool"),
+                    null, meterRegistry
+            );
+
+            return new HttpComponentsClientHttpRequestFactory(httpClient);
+        } catch (Exception e) {
+            throw new ApplicationConfigurationException("Failed to configure application." + e.getMessage());
+        }
+    }
+
+    @Bean
+    public CircuitBreakerRegistry signserverCircuitBreakers(
+            @Value("${signingProvider.signserver.client.resilience.circuitBreaker.failureThreshold:5}") int failureThreshold,
+            @Value("${signingProvider.signserver.client.resilience.circuitBreaker.openDuration:PT10S}") Duration openDuration,
+            @Value("${signingProvider.signserver.client.resilience.circuitBreaker.halfOpenMaxCalls:1}") int halfOpenMaxCalls
+    ) {
+        return new CircuitBreakerRegistry(failureThreshold, openDuration, halfOpenMaxCalls);
+    }
+
+    @Bean
+    public ResilientCallExecutor signserverCallExecutor(
+            @Qualifier("signserverCircuitBreakers") CircuitBreakerRegistry circuitBreakers,
+            @Value("${signingProvider.signserver.client.resilience.retry.maxAttempts:3}") int maxAttempts,
+            @Value("${signingProvider.signserver.client.resilience.retry.initialBackoff:PT0.2S}") Duration initialBackoff,
+            @Value("${signingProvider.signserver.client.resilience.retry.maxBackoff:PT2S}") Duration maxBackoff,
+            @Value("${signingProvider.signserver.client.resilience.retry.budgetRatio:0.2}") double budgetRatio,
+            @Value("${signingProvider.signserver.client.resilience.retry.minRetriesPerSecond:5}") int minRetriesPerSecond
+    ) {
+        return new ResilientCallExecutor(circuitBreakers, new RetryBudget(budgetRatio, minRetriesPerSecond),
+                                         new JitteredBackoff(initialBackoff, maxBackoff), maxAttempts
+        );
+    }
+
+    @Bean
+    public WorkerLoadTracker workerLoadTracker(CscConfiguration cscConfiguration) {
+        WorkerSelectionSettings settings = workerSelectionSettings(cscConfiguration);
+        return new WorkerLoadTracker(settings.failureThreshold(), settings.ejectionDuration());
+    }
+
+    @Bean
+    public WorkerRepository signerSelector(WorkerConfigurationLoader workerConfigurationLoader,
+                                           CscConfiguration cscConfiguration, WorkerLoadTracker workerLoadTracker,
+                                           @Qualifier("signserverCircuitBreakers") CircuitBreakerRegistry circuitBreakers
+    ) {
         List<WorkerWithCapabilities> workers = workerConfigurationLoader.getWorkers();
+        WorkerSelectionSettings settings = workerSelectionSettings(cscConfiguration);
+
+        return new WorkerRepository(workers, WorkerSelectionStrategies.create(settings, workerLoadTracker),
+                                    workerLoadTracker, circuitBreakers
+        );
+    }
 
-        return new WorkerRepository(workers);
+    private static WorkerSelectionSettings workerSelectionSettings(CscConfiguration cscConfiguration) {
+        return cscConfiguration.workerSelection() == null
+                ? WorkerSelectionSettings.defaults()
+                : cscConfiguration.workerSelection();
     }
 
     @Bean
     public SignserverWsClient signserverWSClient(@Qualifier("signserverWsMarshaller") Jaxb2Marshaller marshaller,
                                                  @Qualifier("signserverMessageSender") SimpleHttpComponents5MessageSender httpComponentsMessageSender,
-                                                 @Value("${signingProvider.signserver.url}") String signserverUrl
+                                                 @Value("${signingProvider.signserver.url}") String signserverUrl,
+                                                 MeterRegistry meterRegistry
     ) {
         SignserverWsClient client = new SignserverWsClient(signserverUrl);
         client.setMarshaller(marshaller);
         client.setUnmarshaller(marshaller);
         client.setMessageSender(httpComponentsMessageSender);
+        client.setInterceptors(new ClientInterceptor[]{
+                new WebServiceCallMetricsInterceptor(new OutboundCallMetrics(meterRegistry, "signserver-ws"))
+        });
         return client;
     }
 
     private SimpleHttpComponents5MessageSender getHttpComponentsMessageSender(
+            String poolName,
             String keystoreBundleName,
             String truststoreBundleName,
-            SslBundles sslBundles
+            SslBundles sslBundles,
+            HttpClientPoolSettings poolSettings,
+            MeterRegistry meterRegistry
     ) {
         try {
             SSLContextBuilder builder = SSLContexts.custom();
@@ -223,7 +451,10 @@ public class ServerConfiguration {
 
             SSLContext sslContext = builder.build();
 
-           final HttpClient httpClient = getHttpClient(sslContext, new HttpComponents5ClientFactory.RemoveSoapHeadersInterceptor());
+           final HttpClient httpClient = getHttpClient(poolName, sslContext, poolSettings,
+                                                       new HttpComponents5ClientFactory.RemoveSoapHeadersInterceptor(),
+                                                       meterRegistry
+           );
 
             return new SimpleHttpComponents5MessageSender(httpClient);
         } catch (KeyStoreException | NoSuchAlgorithmException | UnrecoverableKeyException | KeyManagementException e) {
@@ -231,15 +462,32 @@ public class ServerConfiguration {
         }
     }
 
-    private static HttpClient getHttpClient(SSLContext sslContext, HttpRequestInterceptor interceptor) {
+    /**
+     * Creates an HTTP client with a connection pool configured by the pool settings. The state of the pool
+     * is published as the {@code httpcomponents.httpclient.pool.*} metrics tagged with the pool name.
+     */
+    private static HttpClient getHttpClient(String poolName, SSLContext sslContext,
+                                            HttpClientPoolSettings poolSettings, HttpRequestInterceptor interceptor,
+                                            MeterRegistry meterRegistry
+    ) {
         TlsSocketStrategy tlsSocketStrategy = new DefaultClientTlsStrategy(sslContext);
-        SocketConfig socketConfig = SocketConfig.custom().setSoTimeout(10, TimeUnit.SECONDS).build();
+        SocketConfig socketConfig = SocketConfig.custom()
+                                                .setSoTimeout(Timeout.of(poolSettings.responseTimeout()))
+                                                .build();
         final var connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
                                                                                .setDefaultSocketConfig(socketConfig)
                                                                                .setTlsSocketStrategy(tlsSocketStrategy)
+                                                                               .setMaxConnTotal(poolSettings.maxTotal())
+                                                                               .setMaxConnPerRoute(poolSettings.maxPerRoute())
+                                                                               .setDefaultConnectionConfig(connectionConfig(poolSettings))
                                                                                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, poolName).bindTo(meterRegistry);
 
-        HttpClientBuilder builder = HttpClients.custom().setConnectionManager(connectionManager);
+        HttpClientBuilder builder = HttpClients.custom()
+                                               .setConnectionManager(connectionManager)
+                                               .setDefaultRequestConfig(requestConfig(poolSettings))
+                                               .evictExpiredConnections()
+                                               .evictIdleConnections(TimeValue.of(poolSettings.idleEvictionTime()));
 
         if (interceptor != null) {
             builder.addRequestInterceptorFirst(interceptor);
@@ -247,4 +495,26 @@ public class ServerConfiguration {
 
         return builder.build();
     }
+
+    private static ConnectionConfig connectionConfig(HttpClientPoolSettings poolSettings) {
+        return ConnectionConfig.custom()
+                               .setConnectTimeout(Timeout.of(poolSettings.connectTimeout()))
+                               .setSocketTimeout(Timeout.of(poolSettings.responseTimeout()))
+                               .setTimeToLive(TimeValue.of(poolSettings.timeToLive()))
+                               .setValidateAfterInactivity(TimeValue.of(poolSettings.validateAfterInactivity()))
+                               .build();
+    }
+
+    private static RequestConfig requestConfig(HttpClientPoolSettings poolSettings) {
+        return RequestConfig.custom()
+                            .setConnectionRequestTimeout(Timeout.of(poolSettings.connectionRequestTimeout()))
+                            .setResponseTimeout(Timeout.of(poolSettings.responseTimeout()))
+                            .build();
+    }
+
+    private static HttpClientPoolSettings connectionPoolSettings(Environment environment, String prefix) {
+        return Binder.get(environment)
+                     .bind(prefix, HttpClientPoolSettings.class)
+                     .orElseGet(HttpClientPoolSettings::defaults);
+    }
 }
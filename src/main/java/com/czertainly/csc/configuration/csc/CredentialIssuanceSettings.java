@@ -0,0 +1,15 @@
+package com.czertainly.csc.configuration.csc;
+
+import java.time.Duration;
+
+public record CredentialIssuanceSettings(
+        Duration stepTimeout
+) {
+    public CredentialIssuanceSettings(Duration stepTimeout) {
+        this.stepTimeout = (stepTimeout == null) ? Duration.ofSeconds(30) : stepTimeout;
+    }
+
+    public static CredentialIssuanceSettings defaults() {
+        return new CredentialIssuanceSettings(null);
+    }
+}
@@ -1,6 +1,7 @@
 package com.czertainly.csc.configuration.csc;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -16,5 +17,25 @@ public record CscConfiguration(
         @NotBlank String profilesConfigurationDirectory,
         @NotNull SigningSessions signingSessions,
         @NotNull OneTimeKeysCleanupSettings oneTimeKeys,
-        @Valid ConcurrencySettings concurrency
-) {}
+        @Valid ConcurrencySettings concurrency,
+        @Valid WorkerSelectionSettings workerSelection,
+        @Valid SignatureCoalescingSettings signatureCoalescing,
+        @Valid KeyReservationSettings keyReservation,
+        @Valid KeyReplenishmentSettings keyReplenishment,
+        @Valid CredentialIssuanceSettings credentialIssuance
+) {
+
+    /**
+     * Reserved one-time keys are marked as used, so they must be released before the cleanup of used-up keys
+     * can delete them.
+     */
+    @AssertTrue(message = "keyReservation.maxReservationAge extended by keyReservation.sweepInterval must be shorter"
+            + " than oneTimeKeys.usedUpKeyKeepTime")
+    public boolean isKeyReservationReleasedBeforeUsedUpKeysCleanup() {
+        if (keyReservation == null || oneTimeKeys == null || oneTimeKeys.usedUpKeyKeepTime() == null) {
+            return true;
+        }
+        return keyReservation.maxReservationAge().plus(keyReservation.sweepInterval())
+                             .compareTo(oneTimeKeys.usedUpKeyKeepTime()) < 0;
+    }
+}
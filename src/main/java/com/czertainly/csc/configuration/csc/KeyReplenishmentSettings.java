@@ -0,0 +1,20 @@
+package com.czertainly.csc.configuration.csc;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+
+import java.time.Duration;
+
+public record KeyReplenishmentSettings(
+        @DecimalMin("0.0") @DecimalMax("1.0") Double lowWatermark,
+        Duration debounce
+) {
+    public KeyReplenishmentSettings(@DecimalMin("0.0") @DecimalMax("1.0") Double lowWatermark, Duration debounce) {
+        this.lowWatermark = (lowWatermark == null) ? 0.5 : lowWatermark;
+        this.debounce = (debounce == null) ? Duration.ofSeconds(1) : debounce;
+    }
+
+    public static KeyReplenishmentSettings defaults() {
+        return new KeyReplenishmentSettings(null, null);
+    }
+}
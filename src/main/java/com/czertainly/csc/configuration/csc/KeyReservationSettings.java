@@ -0,0 +1,37 @@
+package com.czertainly.csc.configuration.csc;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+
+import java.time.Duration;
+
+public record KeyReservationSettings(
+        @Min(1) Integer batchSize,
+        @Min(0) Integer refillThreshold,
+        Duration maxReservationAge,
+        Duration sweepInterval,
+        Duration orphanedReservationAge
+) {
+    public KeyReservationSettings(@Min(1) Integer batchSize, @Min(0) Integer refillThreshold,
+                                  Duration maxReservationAge, Duration sweepInterval, Duration orphanedReservationAge
+    ) {
+        this.batchSize = (batchSize == null) ? 10 : batchSize;
+        this.refillThreshold = (refillThreshold == null) ? this.batchSize / 5 : refillThreshold;
+        this.maxReservationAge = (maxReservationAge == null) ? Duration.ofMinutes(5) : maxReservationAge;
+        this.sweepInterval = (sweepInterval == null) ? Duration.ofMinutes(1) : sweepInterval;
+        this.orphanedReservationAge = (orphanedReservationAge == null) ? Duration.ofHours(1) : orphanedReservationAge;
+    }
+
+    public static KeyReservationSettings defaults() {
+        return new KeyReservationSettings(null, null, null, null, null);
+    }
+
+    /**
+     * A running instance never hands out a key reserved for longer than the maximum reservation age, so only
+     * the reservations of stopped instances are old enough to be released as orphaned.
+     */
+    @AssertTrue(message = "orphanedReservationAge must be longer than maxReservationAge")
+    public boolean isOrphanedReservationAgeLongerThanMaxReservationAge() {
+        return orphanedReservationAge.compareTo(maxReservationAge) > 0;
+    }
+}
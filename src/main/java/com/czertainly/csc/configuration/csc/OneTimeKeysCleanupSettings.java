@@ -1,5 +1,6 @@
 package com.czertainly.csc.configuration.csc;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
@@ -7,5 +8,30 @@ import java.time.Duration;
 
 public record OneTimeKeysCleanupSettings(
         @NotNull Duration usedUpKeyKeepTime,
-        @NotBlank String cleanupCronExpression
-) {}
+        @NotBlank String cleanupCronExpression,
+        @Min(1) Integer deletionBatchSize,
+        Duration deletionInterval,
+        @Min(1) Integer maxParallelDeletionsPerCryptoToken,
+        Duration cleanupTimeBudget,
+        Duration deletionRetryDelay,
+        Duration maxDeletionRetryDelay,
+        Duration deletionLeaseTime
+) {
+    public OneTimeKeysCleanupSettings(@NotNull Duration usedUpKeyKeepTime, @NotBlank String cleanupCronExpression,
+                                      @Min(1) Integer deletionBatchSize, Duration deletionInterval,
+                                      @Min(1) Integer maxParallelDeletionsPerCryptoToken, Duration cleanupTimeBudget,
+                                      Duration deletionRetryDelay, Duration maxDeletionRetryDelay,
+                                      Duration deletionLeaseTime
+    ) {
+        this.usedUpKeyKeepTime = usedUpKeyKeepTime;
+        this.cleanupCronExpression = cleanupCronExpression;
+        this.deletionBatchSize = (deletionBatchSize == null) ? 100 : deletionBatchSize;
+        this.deletionInterval = (deletionInterval == null) ? Duration.ofSeconds(5) : deletionInterval;
+        this.maxParallelDeletionsPerCryptoToken = (maxParallelDeletionsPerCryptoToken == null)
+                ? 4 : maxParallelDeletionsPerCryptoToken;
+        this.cleanupTimeBudget = (cleanupTimeBudget == null) ? Duration.ofMinutes(10) : cleanupTimeBudget;
+        this.deletionRetryDelay = (deletionRetryDelay == null) ? Duration.ofSeconds(30) : deletionRetryDelay;
+        this.maxDeletionRetryDelay = (maxDeletionRetryDelay == null) ? Duration.ofHours(1) : maxDeletionRetryDelay;
+        this.deletionLeaseTime = (deletionLeaseTime == null) ? Duration.ofMinutes(5) : deletionLeaseTime;
+    }
+}
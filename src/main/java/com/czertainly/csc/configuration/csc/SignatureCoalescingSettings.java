@@ -0,0 +1,21 @@
+package com.czertainly.csc.configuration.csc;
+
+import jakarta.validation.constraints.Min;
+
+import java.time.Duration;
+
+public record SignatureCoalescingSettings(
+        Boolean enabled,
+        Duration window,
+        @Min(1) Integer maxBatchSize
+) {
+    public SignatureCoalescingSettings(Boolean enabled, Duration window, @Min(1) Integer maxBatchSize) {
+        this.enabled = enabled != null && enabled;
+        this.window = (window == null) ? Duration.ofMillis(5) : window;
+        this.maxBatchSize = (maxBatchSize == null) ? 32 : maxBatchSize;
+    }
+
+    public static SignatureCoalescingSettings defaults() {
+        return new SignatureCoalescingSettings(null, null, null);
+    }
+}
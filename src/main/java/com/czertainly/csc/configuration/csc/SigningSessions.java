@@ -1,5 +1,6 @@
 package com.czertainly.csc.configuration.csc;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
@@ -7,5 +8,20 @@ import java.time.Duration;
 
 public record SigningSessions(
         @NotNull Duration expiredSessionsKeepTime,
-        @NotBlank String cleanupCronExpression
-) {}
+        @NotBlank String cleanupCronExpression,
+        @Min(1) Integer cleanupChunkSize,
+        @Min(1) Integer maxParallelKeyRemovalsPerCryptoToken,
+        Duration cleanupTimeBudget
+) {
+    public SigningSessions(@NotNull Duration expiredSessionsKeepTime, @NotBlank String cleanupCronExpression,
+                           @Min(1) Integer cleanupChunkSize, @Min(1) Integer maxParallelKeyRemovalsPerCryptoToken,
+                           Duration cleanupTimeBudget
+    ) {
+        this.expiredSessionsKeepTime = expiredSessionsKeepTime;
+        this.cleanupCronExpression = cleanupCronExpression;
+        this.cleanupChunkSize = (cleanupChunkSize == null) ? 500 : cleanupChunkSize;
+        this.maxParallelKeyRemovalsPerCryptoToken = (maxParallelKeyRemovalsPerCryptoToken == null)
+                ? 4 : maxParallelKeyRemovalsPerCryptoToken;
+        this.cleanupTimeBudget = (cleanupTimeBudget == null) ? Duration.ofMinutes(10) : cleanupTimeBudget;
+    }
+}
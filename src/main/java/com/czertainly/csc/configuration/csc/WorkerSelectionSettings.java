@@ -0,0 +1,26 @@
+package com.czertainly.csc.configuration.csc;
+
+import jakarta.validation.constraints.Min;
+
+import java.time.Duration;
+import java.util.Map;
+
+public record WorkerSelectionSettings(
+        WorkerSelectionStrategyType strategy,
+        Map<String, @Min(1) Integer> weights,
+        @Min(1) Integer failureThreshold,
+        Duration ejectionDuration
+) {
+    public WorkerSelectionSettings(WorkerSelectionStrategyType strategy, Map<String, @Min(1) Integer> weights,
+                                   @Min(1) Integer failureThreshold, Duration ejectionDuration
+    ) {
+        this.strategy = (strategy == null) ? WorkerSelectionStrategyType.FIRST_MATCH : strategy;
+        this.weights = (weights == null) ? Map.of() : Map.copyOf(weights);
+        this.failureThreshold = (failureThreshold == null) ? 3 : failureThreshold;
+        this.ejectionDuration = (ejectionDuration == null) ? Duration.ofSeconds(30) : ejectionDuration;
+    }
+
+    public static WorkerSelectionSettings defaults() {
+        return new WorkerSelectionSettings(null, null, null, null);
+    }
+}
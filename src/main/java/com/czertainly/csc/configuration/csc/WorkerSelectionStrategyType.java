@@ -0,0 +1,8 @@
+package com.czertainly.csc.configuration.csc;
+
+public enum WorkerSelectionStrategyType {
+    FIRST_MATCH,
+    ROUND_ROBIN,
+    WEIGHTED,
+    LEAST_OUTSTANDING_REQUESTS
+}
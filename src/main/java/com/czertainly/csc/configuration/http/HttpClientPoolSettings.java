@@ -0,0 +1,55 @@
+package com.czertainly.csc.configuration.http;
+
+import java.time.Duration;
+
+/**
+ * Settings of the connection pool and timeouts of an HTTP client used to call an external system.
+ * <p>
+ * The settings are bound by the {@link org.springframework.boot.context.properties.bind.Binder} without
+ * the bean validation, so the constraints are checked by the constructor.
+ *
+ * @param maxTotal                 maximum number of connections in the pool
+ * @param maxPerRoute              maximum number of connections to a single host
+ * @param timeToLive               maximum lifetime of a connection, after that it is closed and not reused
+ * @param idleEvictionTime         connections idle for longer than this time are closed by a background thread
+ * @param validateAfterInactivity  connections idle for longer than this time are checked before they are leased
+ * @param connectTimeout           timeout for establishing a new connection
+ * @param connectionRequestTimeout timeout for leasing a connection from the pool
+ * @param responseTimeout          timeout for waiting for the response data
+ */
+public record HttpClientPoolSettings(
+        Integer maxTotal,
+        Integer maxPerRoute,
+        Duration timeToLive,
+        Duration idleEvictionTime,
+        Duration validateAfterInactivity,
+        Duration connectTimeout,
+        Duration connectionRequestTimeout,
+        Duration responseTimeout
+) {
+    public HttpClientPoolSettings(Integer maxTotal, Integer maxPerRoute, Duration timeToLive,
+                                  Duration idleEvictionTime, Duration validateAfterInactivity, Duration connectTimeout,
+                                  Duration connectionRequestTimeout, Duration responseTimeout
+    ) {
+        this.maxTotal = (maxTotal == null) ? 50 : maxTotal;
+        this.maxPerRoute = (maxPerRoute == null) ? this.maxTotal : maxPerRoute;
+        if (this.maxTotal < 1) {
+            throw new IllegalArgumentException("maxTotal must be at least 1, was " + this.maxTotal);
+        }
+        if (this.maxPerRoute < 1) {
+            throw new IllegalArgumentException("maxPerRoute must be at least 1, was " + this.maxPerRoute);
+        }
+        this.timeToLive = (timeToLive == null) ? Duration.ofMinutes(5) : timeToLive;
+        this.idleEvictionTime = (idleEvictionTime == null) ? Duration.ofMinutes(1) : idleEvictionTime;
+        this.validateAfterInactivity = (validateAfterInactivity == null)
+                ? Duration.ofSeconds(2) : validateAfterInactivity;
+        this.connectTimeout = (connectTimeout == null) ? Duration.ofSeconds(5) : connectTimeout;
+        this.connectionRequestTimeout = (connectionRequestTimeout == null)
+                ? Duration.ofSeconds(5) : connectionRequestTimeout;
+        this.responseTimeout = (responseTimeout == null) ? Duration.ofSeconds(10) : responseTimeout;
+    }
+
+    public static HttpClientPoolSettings defaults() {
+        return new HttpClientPoolSettings(null, null, null, null, null, null, null, null);
+    }
+}
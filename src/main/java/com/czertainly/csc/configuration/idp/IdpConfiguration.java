@@ -1,6 +1,7 @@
 package com.czertainly.csc.configuration.idp;
 
 import com.czertainly.csc.configuration.validations.Url;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -22,7 +23,8 @@ public record IdpConfiguration(
         @NotBlank String audience,
         @NotNull @DurationUnit(ChronoUnit.SECONDS) Duration clockSkewSeconds,
         String truststoreBundle,
-        @NotNull IdpClientAuth client
+        @NotNull IdpClientAuth client,
+        @Valid UserInfoCacheSettings userInfoCache
 ) implements Validator {
 
     @Override
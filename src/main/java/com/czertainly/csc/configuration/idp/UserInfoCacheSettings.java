@@ -0,0 +1,19 @@
+package com.czertainly.csc.configuration.idp;
+
+import jakarta.validation.constraints.Min;
+
+import java.time.Duration;
+
+public record UserInfoCacheSettings(
+        Duration maxTtl,
+        @Min(1) Integer maxSize
+) {
+    public UserInfoCacheSettings(Duration maxTtl, @Min(1) Integer maxSize) {
+        this.maxTtl = (maxTtl == null) ? Duration.ofMinutes(5) : maxTtl;
+        this.maxSize = (maxSize == null) ? 10_000 : maxSize;
+    }
+
+    public static UserInfoCacheSettings defaults() {
+        return new UserInfoCacheSettings(null, null);
+    }
+}
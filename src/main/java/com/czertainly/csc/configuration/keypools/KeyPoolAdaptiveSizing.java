@@ -0,0 +1,21 @@
+package com.czertainly.csc.configuration.keypools;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+
+public record KeyPoolAdaptiveSizing(
+        @Min(1) int minSize,
+        @Min(1) int maxSize,
+        @DecimalMin(value = "0.0", inclusive = false) @DecimalMax("1.0") Double smoothingFactor,
+        @Min(1) Integer replenishIntervalsCovered
+) {
+    public KeyPoolAdaptiveSizing(@Min(1) int minSize, @Min(1) int maxSize, Double smoothingFactor,
+                                 Integer replenishIntervalsCovered
+    ) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.smoothingFactor = (smoothingFactor == null) ? 0.3 : smoothingFactor;
+        this.replenishIntervalsCovered = (replenishIntervalsCovered == null) ? 2 : replenishIntervalsCovered;
+    }
+}
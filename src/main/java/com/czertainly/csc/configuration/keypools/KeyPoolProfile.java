@@ -1,5 +1,6 @@
 package com.czertainly.csc.configuration.keypools;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -11,7 +12,8 @@ public record KeyPoolProfile(
         @NotBlank String keyPrefix,
         @Min(1) int desiredSize,
         @Min(1) int maxKeysGeneratedPerReplenish,
-        @NotNull KeyUsageDesignation designatedUsage
+        @NotNull KeyUsageDesignation designatedUsage,
+        @Valid KeyPoolAdaptiveSizing adaptiveSizing
 ) {
 
 }
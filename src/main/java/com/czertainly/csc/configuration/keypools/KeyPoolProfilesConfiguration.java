@@ -28,6 +28,14 @@ public record KeyPoolProfilesConfiguration(List<KeyPoolProfile> keyPoolProfiles)
 
         Map<String, KeyPoolProfile> keyPoolProfileConfiguration = new HashMap<>();
         for (KeyPoolProfile p : config.keyPoolProfiles()) {
+            if (p.adaptiveSizing() != null && p.adaptiveSizing().minSize() > p.adaptiveSizing().maxSize()) {
+                errors.rejectValue("keyPoolProfiles", "keyPoolProfiles.adaptiveSizing",
+                                   String.format(
+                                           "Adaptive sizing of key pool profile '%s' has minimal size greater than its maximal size.",
+                                           p.name()
+                                   )
+                );
+            }
             String configString = String.format("%s:%s:%s", p.designatedUsage(), p.keyAlgorithm(),
                                                 p.keySpecification()
             );
@@ -0,0 +1,9 @@
+package com.czertainly.csc.configuration.revocation;
+
+import jakarta.validation.constraints.NotBlank;
+
+public record CrlLocation(
+        @NotBlank String url,
+        String deltaUrl,
+        @NotBlank String caCertificate
+) {}
@@ -0,0 +1,45 @@
+package com.czertainly.csc.configuration.revocation;
+
+import jakarta.validation.Valid;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+import java.util.List;
+
+@Validated
+@ConfigurationProperties(prefix = "ca-provider.revocation")
+public record RevocationConfiguration(
+        RevocationProvider provider,
+        Duration crlRefreshInterval,
+        @Valid List<CrlLocation> crls,
+        DataSize maxCrlSize,
+        String truststoreBundle
+) implements Validator {
+
+    public RevocationConfiguration(RevocationProvider provider, Duration crlRefreshInterval, List<CrlLocation> crls,
+                                   DataSize maxCrlSize, String truststoreBundle
+    ) {
+        this.provider = (provider == null) ? RevocationProvider.EJBCA : provider;
+        this.crlRefreshInterval = (crlRefreshInterval == null) ? Duration.ofMinutes(5) : crlRefreshInterval;
+        this.crls = (crls == null) ? List.of() : crls;
+        this.maxCrlSize = (maxCrlSize == null) ? DataSize.ofMegabytes(20) : maxCrlSize;
+        this.truststoreBundle = truststoreBundle;
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return RevocationConfiguration.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        RevocationConfiguration conf = (RevocationConfiguration) target;
+        if (conf.provider() == RevocationProvider.CRL && conf.crls().isEmpty()) {
+            errors.rejectValue("crls", "crls.required", "CRLs must be configured when the provider is CRL.");
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.czertainly.csc.configuration.revocation;
+
+public enum RevocationProvider {
+    /**
+     * The revocation status of every certificate is checked in EJBCA.
+     */
+    EJBCA,
+    /**
+     * The revocation status is looked up in the periodically downloaded CRLs of the issuing CAs.
+     */
+    CRL
+}
@@ -6,6 +6,7 @@ import com.czertainly.csc.api.auth.TokenValidator;
 import com.czertainly.csc.api.common.ErrorDto;
 import com.czertainly.csc.api.mappers.signatures.SignDocResponseMapper;
 import com.czertainly.csc.api.mappers.signatures.SignDocValidatingRequestMapper;
+import com.czertainly.csc.api.mappers.signatures.SignHashResponseMapper;
 import com.czertainly.csc.api.mappers.signatures.SignHashValidatingRequestMapper;
 import com.czertainly.csc.api.signdoc.SignDocRequestDto;
 import com.czertainly.csc.api.signdoc.SignDocResponseDto;
@@ -33,8 +34,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("csc/v2/signatures")
 @PreAuthorize("hasAuthority('SCOPE_credential') || hasAuthority('SCOPE_service')")
@@ -74,6 +73,7 @@ public class SignatureController {
 
     final TokenValidator tokenValidator;
     final SignHashValidatingRequestMapper signHashValidationRequestMapper;
+    final SignHashResponseMapper signHashResponseMapper;
     final SignDocValidatingRequestMapper signDocValidatingRequestMapper;
     final SignDocResponseMapper signDocResponseMapper;
 
@@ -82,13 +82,15 @@ public class SignatureController {
             SignHashValidatingRequestMapper signHashValidationRequestMapper,
             TokenValidator tokenValidator, SignatureFacade signatureFacade,
             SignDocValidatingRequestMapper signDocValidatingRequestMapper,
-            SignDocResponseMapper signDocResponseMapper
+            SignDocResponseMapper signDocResponseMapper,
+            SignHashResponseMapper signHashResponseMapper
     ) {
         this.tokenValidator = tokenValidator;
         this.signHashValidationRequestMapper = signHashValidationRequestMapper;
         this.signatureFacade = signatureFacade;
         this.signDocValidatingRequestMapper = signDocValidatingRequestMapper;
         this.signDocResponseMapper = signDocResponseMapper;
+        this.signHashResponseMapper = signHashResponseMapper;
     }
 
     @RequestMapping(
@@ -115,12 +117,12 @@ public class SignatureController {
     ) {
         logger.trace("Serving signHash request.");
         SignHashParameters parameters = signHashValidationRequestMapper
-                    .map(signHashRequest, getSadIfAvailable(authentication));
-
-                    return new SignHashResponseDto(
-                                    List.of("signature1", "signature2"), null);
-
-
+                .map(signHashRequest, getSadIfAvailable(authentication));
+        return signatureFacade.signHashes(parameters)
+                              .map(signHashResponseMapper::map)
+                              .mapError(e -> e.extend("Failed to sign the hashes."))
+                              .consumeError(this::logAndThrowError)
+                              .unwrap();
     }
 
     @RequestMapping(
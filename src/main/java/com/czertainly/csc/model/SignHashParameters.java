@@ -4,9 +4,11 @@ import com.czertainly.csc.api.OperationMode;
 import com.czertainly.csc.api.auth.SignatureActivationData;
 
 import java.util.List;
+import java.util.UUID;
 
 public record SignHashParameters(
         String userID,
+        UUID credentialID,
         List<String> hashes,
         String keyAlgo,
         String digestAlgo,
@@ -1,4 +1,10 @@
 package com.czertainly.csc.model;
 
-public class SignedHashes {
+import com.czertainly.csc.signing.Signature;
+
+import java.util.List;
+
+public record SignedHashes(
+        List<Signature> signatures
+) {
 }
@@ -4,7 +4,15 @@ import com.czertainly.csc.configuration.keypools.KeyPoolProfile;
 
 import java.util.List;
 
-public record CryptoToken(String name, int id, List<KeyPoolProfile> keyPoolProfiles) {
+/**
+ * @param trustGeneratedKeyAlias whether the alias returned by Signserver for a generated key is used without
+ *                               looking the key up on the crypto token
+ */
+public record CryptoToken(String name, int id, List<KeyPoolProfile> keyPoolProfiles, boolean trustGeneratedKeyAlias) {
+
+    public CryptoToken(String name, int id, List<KeyPoolProfile> keyPoolProfiles) {
+        this(name, id, keyPoolProfiles, false);
+    }
 
     public String identifier() {
         return String.format("%s (%d)", name, id);
@@ -2,13 +2,20 @@ package com.czertainly.csc.repository;
 
 import com.czertainly.csc.repository.entities.KeyEntity;
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.hibernate.exception.JDBCConnectionException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.SQLNonTransientConnectionException;
 import java.sql.SQLRecoverableException;
@@ -32,10 +39,70 @@ import java.util.UUID;
         listeners = {"retryLoggingListener"})
 public interface KeyRepository<T extends KeyEntity> extends CrudRepository<T, UUID> {
 
+    // Lock timeout that makes Hibernate render the dialect specific SKIP LOCKED clause
+    String SKIP_LOCKED = "-2";
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Optional<T> findFirstByCryptoTokenIdAndKeyAlgorithmAndInUse(int cryptoTokenId, String keyAlgorithm, boolean inUse);
 
-    int countByCryptoTokenIdAndKeyAlgorithmAndInUse(int cryptoTokenId, String keyAlgorithm, boolean inUse);
+    /**
+     * Selects and locks free keys of the crypto token with the given key algorithm. Keys locked by other
+     * transactions are skipped ({@code FOR UPDATE SKIP LOCKED}), so concurrent callers lock disjoint sets of keys
+     * instead of waiting for each other. Must be called within a transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = SKIP_LOCKED))
+    @Query("select k from #{#entityName} k where k.cryptoTokenId = :cryptoTokenId and k.keyAlgorithm = :keyAlgorithm and k.inUse = false")
+    List<T> lockFreeKeys(@Param("cryptoTokenId") int cryptoTokenId, @Param("keyAlgorithm") String keyAlgorithm,
+                         Limit limit
+    );
+
+    /**
+     * Marks the keys as used by a reservation. Reserved keys have no acquisition time until they are handed out.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update #{#entityName} k set k.inUse = true, k.reservedAt = :reservedAt, k.acquiredAt = null"
+            + " where k.id in :ids")
+    int markReserved(@Param("ids") List<UUID> ids, @Param("reservedAt") ZonedDateTime reservedAt);
+
+    /**
+     * Records the acquisition time of a reserved key that is handed out.
+     *
+     * @return 1 if the key was marked as acquired, 0 if the key is no longer reserved or was already handed out
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update #{#entityName} k set k.acquiredAt = :acquiredAt"
+            + " where k.id = :id and k.inUse = true and k.acquiredAt is null")
+    int markAcquired(@Param("id") UUID id, @Param("acquiredAt") ZonedDateTime acquiredAt);
 
-    List<T> findByInUseAndAcquiredAtBeforeOrderByAcquiredAtAsc(boolean inUse, ZonedDateTime instant);
+    /**
+     * Returns reserved keys that were never handed out back to the pool of free keys. Keys that were handed out
+     * are not released, as they may already be bound to a certificate.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update #{#entityName} k set k.inUse = false, k.reservedAt = null"
+            + " where k.id in :ids and k.inUse = true and k.acquiredAt is null")
+    int release(@Param("ids") List<UUID> ids);
+
+    /**
+     * Finds the keys reserved before the given time that were never handed out.
+     */
+    @Query("select k from #{#entityName} k where k.inUse = true and k.acquiredAt is null"
+            + " and k.reservedAt < :reservedBefore")
+    List<T> findReservedBefore(@Param("reservedBefore") ZonedDateTime reservedBefore, Limit limit);
+
+    /**
+     * Marks the key as used, unless it has already been marked as used by someone else.
+     *
+     * @return 1 if the key was marked as used, 0 if the key is already in use or does not exist
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update #{#entityName} k set k.inUse = true, k.acquiredAt = :acquiredAt where k.id = :id and k.inUse = false")
+    int markInUseIfFree(@Param("id") UUID id, @Param("acquiredAt") ZonedDateTime acquiredAt);
+
+    int countByCryptoTokenIdAndKeyAlgorithmAndInUse(int cryptoTokenId, String keyAlgorithm, boolean inUse);
 }
@@ -1,7 +1,101 @@
 package com.czertainly.csc.repository;
 
 import com.czertainly.csc.repository.entities.OneTimeKeyEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
 
 @Repository
-public interface OneTimeKeyRepository extends KeyRepository<OneTimeKeyEntity> {}
+public interface OneTimeKeyRepository extends KeyRepository<OneTimeKeyEntity> {
+
+    /**
+     * Marks the key to be deleted by the one-time key deletion queue.
+     *
+     * @return the number of keys marked for deletion, 0 if the key does not exist
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update OneTimeKeyEntity k set k.deleting = true where k.id = :id")
+    int markForDeletion(@Param("id") UUID id);
+
+    /**
+     * Marks the keys to be deleted by the one-time key deletion queue, the keys already queued are skipped.
+     *
+     * @return the number of keys marked for deletion
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update OneTimeKeyEntity k set k.deleting = true where k.id in :ids and k.deleting = false")
+    int markAllForDeletion(@Param("ids") List<UUID> ids);
+
+    /**
+     * Selects and locks the keys queued for deletion whose next deletion attempt is due, the keys with the fewest
+     * failed attempts first. Keys locked by other transactions are skipped ({@code FOR UPDATE SKIP LOCKED}), so
+     * concurrent callers lock disjoint sets of keys instead of waiting for each other. Must be called within
+     * a transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = SKIP_LOCKED))
+    @Query("select k from OneTimeKeyEntity k where k.deleting = true"
+            + " and (k.nextDeletionAttemptAt is null or k.nextDeletionAttemptAt <= :now)"
+            + " order by k.deletionAttempts asc, k.id asc")
+    List<OneTimeKeyEntity> lockDueForDeletion(@Param("now") ZonedDateTime now, Limit limit);
+
+    /**
+     * Postpones the next deletion attempt of the keys without counting a failed attempt, so that the keys being
+     * deleted are not due for deletion again until the given time.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update OneTimeKeyEntity k set k.nextDeletionAttemptAt = :leasedUntil where k.id in :ids")
+    int leaseDeletion(@Param("ids") List<UUID> ids, @Param("leasedUntil") ZonedDateTime leasedUntil);
+
+    /**
+     * Records a failed deletion attempt of the keys and postpones their next attempt.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update OneTimeKeyEntity k set k.deletionAttempts = :attempts, k.nextDeletionAttemptAt = :nextAttemptAt"
+            + " where k.id in :ids")
+    int postponeDeletion(@Param("ids") List<UUID> ids, @Param("attempts") int attempts,
+                         @Param("nextAttemptAt") ZonedDateTime nextAttemptAt
+    );
+
+    long countByDeleting(boolean deleting);
+
+    /**
+     * Finds the first page of the used keys acquired before the given time that are not queued for deletion,
+     * ordered by their acquisition time and id.
+     */
+    @Query("select k from OneTimeKeyEntity k where k.inUse = true and k.deleting = false and k.acquiredAt < :before"
+            + " order by k.acquiredAt asc, k.id asc")
+    List<OneTimeKeyEntity> findUsedKeysAcquiredBefore(@Param("before") ZonedDateTime before, Limit limit);
+
+    /**
+     * Finds the next page of the used keys acquired before the given time that are not queued for deletion,
+     * continuing after the key with the given acquisition time and id.
+     */
+    @Query("select k from OneTimeKeyEntity k where k.inUse = true and k.deleting = false and k.acquiredAt < :before"
+            + " and (k.acquiredAt > :lastAcquiredAt or (k.acquiredAt = :lastAcquiredAt and k.id > :lastId))"
+            + " order by k.acquiredAt asc, k.id asc")
+    List<OneTimeKeyEntity> findUsedKeysAcquiredBeforeAfter(@Param("before") ZonedDateTime before,
+                                                          @Param("lastAcquiredAt") ZonedDateTime lastAcquiredAt,
+                                                          @Param("lastId") UUID lastId, Limit limit
+    );
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from OneTimeKeyEntity k where k.id in :ids")
+    int deleteAllByIdIn(@Param("ids") List<UUID> ids);
+}
@@ -3,15 +3,20 @@ package com.czertainly.csc.repository;
 
 import com.czertainly.csc.repository.entities.SessionCredentialMetadataEntity;
 import org.hibernate.exception.JDBCConnectionException;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.SQLNonTransientConnectionException;
 import java.sql.SQLRecoverableException;
 import java.sql.SQLTransientException;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
@@ -28,4 +33,9 @@ import java.util.UUID;
         backoff = @Backoff(delay = 1000, multiplier = 2),
         listeners = {"retryLoggingListener"})
 public interface SessionCredentialsRepository extends CrudRepository<SessionCredentialMetadataEntity, UUID> {
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from SessionCredentialMetadataEntity c where c.id in :ids")
+    int deleteAllByIdIn(@Param("ids") List<UUID> ids);
 }
@@ -1,7 +1,20 @@
 package com.czertainly.csc.repository;
 
 import com.czertainly.csc.repository.entities.SessionKeyEntity;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
 
 @Repository
-public interface SessionKeyRepository extends KeyRepository<SessionKeyEntity> { }
+public interface SessionKeyRepository extends KeyRepository<SessionKeyEntity> {
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from SessionKeyEntity k where k.id in :ids")
+    int deleteAllByIdIn(@Param("ids") List<UUID> ids);
+}
@@ -3,11 +3,16 @@ package com.czertainly.csc.repository;
 
 import com.czertainly.csc.repository.entities.SigningSessionEntity;
 import org.hibernate.exception.JDBCConnectionException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.SQLNonTransientConnectionException;
 import java.sql.SQLRecoverableException;
@@ -33,4 +38,27 @@ public interface SigningSessionsRepository extends CrudRepository<SigningSession
 
     List<SigningSessionEntity> findByExpiresInBeforeOrderByExpiresInAsc(ZonedDateTime instant);
 
+    /**
+     * Finds the first page of the sessions that expired before the given time, ordered by their expiration and id.
+     */
+    @Query("select s from SigningSessionEntity s where s.expiresIn < :before order by s.expiresIn asc, s.id asc")
+    List<SigningSessionEntity> findExpiredBefore(@Param("before") ZonedDateTime before, Limit limit);
+
+    /**
+     * Finds the next page of the sessions that expired before the given time, continuing after the session with
+     * the given expiration and id.
+     */
+    @Query("select s from SigningSessionEntity s where s.expiresIn < :before"
+            + " and (s.expiresIn > :lastExpiresIn or (s.expiresIn = :lastExpiresIn and s.id > :lastId))"
+            + " order by s.expiresIn asc, s.id asc")
+    List<SigningSessionEntity> findExpiredBeforeAfter(@Param("before") ZonedDateTime before,
+                                                      @Param("lastExpiresIn") ZonedDateTime lastExpiresIn,
+                                                      @Param("lastId") UUID lastId, Limit limit
+    );
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from SigningSessionEntity s where s.id in :ids")
+    int deleteAllByIdIn(@Param("ids") List<UUID> ids);
+
 }
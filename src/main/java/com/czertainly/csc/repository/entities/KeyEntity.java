@@ -16,6 +16,7 @@ public abstract class KeyEntity {
     String keyAlgorithm;
     Boolean inUse;
     ZonedDateTime acquiredAt;
+    ZonedDateTime reservedAt;
 
     public KeyEntity() {
     }
@@ -78,4 +79,12 @@ public abstract class KeyEntity {
     public void setAcquiredAt(ZonedDateTime acquiredAt) {
         this.acquiredAt = acquiredAt;
     }
+
+    public ZonedDateTime getReservedAt() {
+        return reservedAt;
+    }
+
+    public void setReservedAt(ZonedDateTime reservedAt) {
+        this.reservedAt = reservedAt;
+    }
 }
@@ -10,6 +10,12 @@ import java.util.UUID;
 @Table(name = "one_time_keys")
 public class OneTimeKeyEntity extends KeyEntity {
 
+    boolean deleting;
+
+    int deletionAttempts;
+
+    ZonedDateTime nextDeletionAttemptAt;
+
     public OneTimeKeyEntity() {
     }
 
@@ -18,4 +24,28 @@ public class OneTimeKeyEntity extends KeyEntity {
     ) {
         super(id, cryptoTokenId, keyAlias, keyAlgorithm, inUse, acquiredAt);
     }
+
+    public boolean isDeleting() {
+        return deleting;
+    }
+
+    public void setDeleting(boolean deleting) {
+        this.deleting = deleting;
+    }
+
+    public int getDeletionAttempts() {
+        return deletionAttempts;
+    }
+
+    public void setDeletionAttempts(int deletionAttempts) {
+        this.deletionAttempts = deletionAttempts;
+    }
+
+    public ZonedDateTime getNextDeletionAttemptAt() {
+        return nextDeletionAttemptAt;
+    }
+
+    public void setNextDeletionAttemptAt(ZonedDateTime nextDeletionAttemptAt) {
+        this.nextDeletionAttemptAt = nextDeletionAttemptAt;
+    }
 }
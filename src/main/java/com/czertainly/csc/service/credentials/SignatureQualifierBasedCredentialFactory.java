@@ -7,6 +7,8 @@ import com.czertainly.csc.clients.signserver.SignserverClient;
 import com.czertainly.csc.common.result.Error;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.configuration.csc.CredentialIssuanceSettings;
+import com.czertainly.csc.configuration.csc.CscConfiguration;
 import com.czertainly.csc.crypto.CertificateParser;
 import com.czertainly.csc.crypto.PasswordGenerator;
 import com.czertainly.csc.model.CertificateRevocationReason;
@@ -21,9 +23,17 @@ import com.czertainly.csc.signing.configuration.profiles.signaturequalifierprofi
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Component
 public class SignatureQualifierBasedCredentialFactory {
@@ -36,12 +46,16 @@ public class SignatureQualifierBasedCredentialFactory {
     private final SignserverClient signserverClient;
     private final EjbcaClient ejbcaClient;
     private final CertificateParser certificateParser;
+    private final ExecutorService issuanceExecutor;
+    private final Duration stepTimeout;
 
     public SignatureQualifierBasedCredentialFactory(UserInfoProvider userInfoProvider,
                                                     PasswordGenerator passwordGenerator,
                                                     CredentialProfileRepository credentialProfileRepository,
                                                     SignserverClient signserverClient, EjbcaClient ejbcaClient,
-                                                    CertificateParser certificateParser
+                                                    CertificateParser certificateParser,
+                                                    @Qualifier("credentialIssuanceExecutor") ExecutorService issuanceExecutor,
+                                                    CscConfiguration cscConfiguration
     ) {
         this.userInfoProvider = userInfoProvider;
         this.passwordGenerator = passwordGenerator;
@@ -49,6 +63,10 @@ public class SignatureQualifierBasedCredentialFactory {
         this.signserverClient = signserverClient;
         this.ejbcaClient = ejbcaClient;
         this.certificateParser = certificateParser;
+        this.issuanceExecutor = issuanceExecutor;
+        this.stepTimeout = (cscConfiguration.credentialIssuance() == null
+                ? CredentialIssuanceSettings.defaults()
+                : cscConfiguration.credentialIssuance()).stepTimeout();
     }
 
     public <K extends SigningKey> Result<SignatureQualifierBasedCredentialMetadata<K>, TextError> createCredential(
@@ -58,15 +76,41 @@ public class SignatureQualifierBasedCredentialFactory {
             SignatureActivationData sad,
             CscAuthenticationToken cscAuthenticationToken
     ) {
-        String accessToken = cscAuthenticationToken.getToken().getTokenValue();
-        var getUserInfoResult = userInfoProvider.getUserInfo(accessToken);
-        if (getUserInfoResult instanceof Error(var err)) {
-            return Result.error(err);
-        }
-        UserInfo userInfo = getUserInfoResult.unwrap();
+        // The key is owned by the caller, who disposes it when the credential can't be created
+        return acquireKeyAndCreateCredential(() -> Result.success(key), unusedKey -> {}, signatureQualifier, userId,
+                                             sad, cscAuthenticationToken
+        );
+    }
 
-        KeyValueSource keyValueSource = new KeyValueSource(
-                key.keyAlias(), userInfo, cscAuthenticationToken, sad
+    /**
+     * Acquires a key and creates a credential for it.
+     * <p>
+     * The steps of the creation that don't depend on each other run concurrently. The key is acquired while
+     * the user info is downloaded from the IDP, and the end entity is created in EJBCA while Signserver
+     * generates the CSR. Each remote step is limited by the step timeout. When the certificate can't be
+     * imported to Signserver, it is revoked.
+     * <p>
+     * A step that times out keeps running in the background and its side effects are compensated when it finishes:
+     * a key acquired too late is passed to the {@code unusedKeyDisposal}, a certificate issued too late is revoked
+     * and a certificate whose import timed out is revoked once the import finishes. The acquired key is passed to
+     * the {@code unusedKeyDisposal} as well when the credential can't be created.
+     */
+    public <K extends SigningKey> Result<SignatureQualifierBasedCredentialMetadata<K>, TextError> acquireKeyAndCreateCredential(
+            Supplier<Result<K, TextError>> keyAcquisition,
+            Consumer<K> unusedKeyDisposal,
+            String signatureQualifier,
+            String userId,
+            SignatureActivationData sad,
+            CscAuthenticationToken cscAuthenticationToken
+    ) {
+        String accessToken = cscAuthenticationToken.getToken().getTokenValue();
+        Instant accessTokenExpiresAt = cscAuthenticationToken.getToken().getExpiresAt();
+        var userInfoStep = startStep("user info download",
+                                     () -> userInfoProvider.getUserInfo(accessToken, accessTokenExpiresAt),
+                                     lateResult -> {}
+        );
+        var keyStep = startStep("key acquisition", keyAcquisition,
+                                lateKeyResult -> lateKeyResult.consume(unusedKeyDisposal)
         );
 
         var getProfileResult = credentialProfileRepository
@@ -78,9 +122,34 @@ public class SignatureQualifierBasedCredentialFactory {
                     logger.debug(signatureQualifierProfile.toString());
                 })
                 .mapError(err -> err.extend("Failed to load signature qualifier profile."));
+
+        // Both steps are awaited, so that an acquired key is known to the caller whatever fails
+        var acquireKeyResult = keyStep.join();
+        var getUserInfoResult = userInfoStep.join();
+        if (acquireKeyResult instanceof Error(var err)) return Result.error(err);
+        K key = acquireKeyResult.unwrap();
+
+        return createCredential(key, getUserInfoResult, getProfileResult, userId, sad, cscAuthenticationToken)
+                .ifError(() -> unusedKeyDisposal.accept(key));
+    }
+
+    private <K extends SigningKey> Result<SignatureQualifierBasedCredentialMetadata<K>, TextError> createCredential(
+            K key,
+            Result<UserInfo, TextError> getUserInfoResult,
+            Result<SignatureQualifierProfile, TextError> getProfileResult,
+            String userId,
+            SignatureActivationData sad,
+            CscAuthenticationToken cscAuthenticationToken
+    ) {
+        if (getUserInfoResult instanceof Error(var err)) return Result.error(err);
+        UserInfo userInfo = getUserInfoResult.unwrap();
         if (getProfileResult instanceof Error(var err)) return Result.error(err);
         SignatureQualifierProfile signatureQualifierProfile = getProfileResult.unwrap();
 
+        KeyValueSource keyValueSource = new KeyValueSource(
+                key.keyAlias(), userInfo, cscAuthenticationToken, sad
+        );
+
         var getDnResult = signatureQualifierProfile.getDistinguishedNameProvider()
                                                    .getDistinguishedName(keyValueSource.getSupplier());
         if (getDnResult instanceof Error(var err)) {
@@ -109,12 +178,27 @@ public class SignatureQualifierBasedCredentialFactory {
         var password = getPasswordResult.unwrap();
 
         EndEntity endEntity = new EndEntity(username, password, dn, san);
-        var createEndEndtityResult = ejbcaClient.createEndEntity(endEntity, signatureQualifierProfile);
-        if (createEndEndtityResult instanceof Error(var err)) {
+        var createEndEntityStep = startStep(
+                "end entity creation", () -> ejbcaClient.createEndEntity(endEntity, signatureQualifierProfile),
+                lateResult -> {}
+        );
+        var generateCsrStep = startStep(
+                "CSR generation", () -> signserverClient.generateCSR(
+                        key.cryptoToken(), key.keyAlias(), dn, signatureQualifierProfile.getCsrSignatureAlgorithm()
+                ), lateResult -> {}
+        );
+        var createEndEntityResult = createEndEntityStep.join();
+        var generateCsrResult = generateCsrStep.join();
+        if (createEndEntityResult instanceof Error(var err)) {
+            return Result.error(err);
+        }
+        if (generateCsrResult instanceof Error(var err)) {
             return Result.error(err);
         }
 
-        var certifyKeyResult = generateCertificateForSigningKey(key, dn, endEntity, signatureQualifierProfile);
+        var certifyKeyResult = certifySigningKey(key, endEntity, signatureQualifierProfile,
+                                                 generateCsrResult.unwrap()
+        );
         if (certifyKeyResult instanceof Error(var err)) {
             return Result.error(err);
         }
@@ -130,19 +214,14 @@ public class SignatureQualifierBasedCredentialFactory {
         revokeCertificate(credentialMetadata.certificate());
     }
 
-    private Result<X509CertificateHolder, TextError> generateCertificateForSigningKey(
-            SigningKey key, String dn, EndEntity endEntity, SignatureQualifierProfile signatureQualifierProfile
+    private Result<X509CertificateHolder, TextError> certifySigningKey(
+            SigningKey key, EndEntity endEntity, SignatureQualifierProfile signatureQualifierProfile, byte[] csr
     ) {
-        var csrSignResult = signserverClient.generateCSR(
-                                       key.cryptoToken(), key.keyAlias(), dn,
-                                       signatureQualifierProfile.getCsrSignatureAlgorithm()
-                               )
-                               .flatMap(csr -> ejbcaClient.signCertificateRequest(
-                                       endEntity,
-                                       signatureQualifierProfile,
-                                       csr
-                               ));
-
+        var csrSignResult = startStep(
+                "certificate request", () -> ejbcaClient.signCertificateRequest(
+                        endEntity, signatureQualifierProfile, csr
+                ), lateResult -> lateResult.consume(this::revokeCertificateChain)
+        ).join();
         if (csrSignResult instanceof Error(var err)) {
             return Result.error(err);
         }
@@ -156,9 +235,54 @@ public class SignatureQualifierBasedCredentialFactory {
         }
         X509CertificateHolder certificate = parseCertificateResult.unwrap();
 
-        return signserverClient.importCertificateChain(key.cryptoToken(), key.keyAlias(), List.of(certificateChain))
-                               .ifError(() -> revokeCertificate(certificate))
-                               .map((v) -> certificate);
+        // The certificate is revoked only after the import has finished, even when the step times out
+        return startStep(
+                "certificate chain import", () -> signserverClient.importCertificateChain(
+                        key.cryptoToken(), key.keyAlias(), List.of(certificateChain)
+                ).ifError(() -> revokeCertificate(certificate)),
+                lateResult -> lateResult.ifSuccess(() -> revokeCertificate(certificate))
+        ).join().map((v) -> certificate);
+    }
+
+    /**
+     * Starts the step on the issuance executor. A step that doesn't finish within the step timeout
+     * completes with an error, the step itself is left to finish in the background and its result
+     * is passed to the {@code lateResultCompensation} when it finishes.
+     */
+    private <T> CompletableFuture<Result<T, TextError>> startStep(
+            String name, Supplier<? extends Result<T, TextError>> step,
+            Consumer<Result<T, TextError>> lateResultCompensation
+    ) {
+        CompletableFuture<Result<T, TextError>> outcome = new CompletableFuture<>();
+        CompletableFuture.<Result<T, TextError>>supplyAsync(step::get, issuanceExecutor)
+                         .exceptionally(e -> {
+                             logger.error("Step '{}' of the credential creation has failed.", name, e);
+                             return Result.error(TextError.of("Step '%s' of the credential creation has failed.",
+                                                              name
+                             ));
+                         })
+                         .thenAccept(result -> {
+                             // The outcome is already completed only when the step has timed out
+                             if (!outcome.complete(result)) {
+                                 logger.warn("Step '{}' of the credential creation finished after it timed out,"
+                                                     + " compensating its result.", name);
+                                 lateResultCompensation.accept(result);
+                             }
+                         });
+        return outcome.completeOnTimeout(
+                Result.error(TextError.of(
+                        "Step '%s' of the credential creation timed out after %s.", name, stepTimeout
+                )), stepTimeout.toMillis(), TimeUnit.MILLISECONDS
+        );
+    }
+
+    private void revokeCertificateChain(byte[] certificateChain) {
+        certificateParser.getEndCertificateFromPkcs7Chain(certificateChain)
+                         .consume(this::revokeCertificate)
+                         .consumeError(e -> logger.error(e.extend(
+                                 "Failed to parse the certificate issued after the certificate request timed out."
+                                 + " The certificate should be revoked manually."
+                         ).getErrorText()));
     }
 
     private void revokeCertificate(X509CertificateHolder certificate) {
@@ -1,79 +1,260 @@
 package com.czertainly.csc.service.credentials;
 
+import com.czertainly.csc.clients.signserver.SignserverClient;
 import com.czertainly.csc.common.result.Error;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
 import com.czertainly.csc.configuration.csc.CscConfiguration;
-import com.czertainly.csc.model.csc.SessionCredentialMetadata;
-import com.czertainly.csc.service.keys.SessionKeysService;
+import com.czertainly.csc.repository.SessionCredentialsRepository;
+import com.czertainly.csc.repository.SessionKeyRepository;
+import com.czertainly.csc.repository.SigningSessionsRepository;
+import com.czertainly.csc.repository.entities.SessionCredentialMetadataEntity;
+import com.czertainly.csc.repository.entities.SessionKeyEntity;
+import com.czertainly.csc.repository.entities.SigningSessionEntity;
+import com.czertainly.csc.service.keys.KeyRemover;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 
+/**
+ * Deletes the signing sessions that expired before the keep time together with their credentials and keys.
+ * <p>
+ * The sessions are read in chunks ordered by their expiration and id, each chunk continuing after the last session
+ * of the previous one. The keys of a chunk are removed from Signserver by the {@link KeyRemover}, then the sessions,
+ * credentials and keys of the chunk are deleted from the database by one statement per table in a single
+ * transaction. If the transaction fails, the sessions of the chunk are deleted one by one, each in its own
+ * transaction, so that a single failing session doesn't keep the rest of the chunk. Sessions whose key could not
+ * be removed or that failed to be deleted are kept, the cleanup continues past them and retries them once
+ * it reaches the end of the sessions.
+ * <p>
+ * A cleanup stops after a chunk once its time budget is exhausted and remembers the last session as a checkpoint,
+ * from which the next cleanup continues. The processed sessions are counted by the {@value #SESSIONS_METRIC_NAME}
+ * counter tagged with the outcome, which is {@code deleted} or {@code failed}, and the duration of the chunks is
+ * recorded by the {@value #CHUNK_DURATION_METRIC_NAME} timer.
+ */
 @Component
 public class SigningSessionCleanupService {
 
+    public static final String SESSIONS_METRIC_NAME = "csc.signing.sessions.cleanup";
+    public static final String CHUNK_DURATION_METRIC_NAME = "csc.signing.sessions.cleanup.chunk.duration";
+
     private static final Logger logger = LoggerFactory.getLogger(SigningSessionCleanupService.class);
 
-    private final SigningSessionsService signingSessionsService;
-    private final SessionKeysService sessionKeysService;
-    private final SessionCredentialsService sessionCredentialsService;
+    private final SigningSessionsRepository signingSessionsRepository;
+    private final SessionCredentialsRepository sessionCredentialsRepository;
+    private final SessionKeyRepository sessionKeyRepository;
+    private final KeyRemover keyRemover;
     private final Duration expiredSessionsKeepTime;
+    private final int chunkSize;
+    private final Duration timeBudget;
     private final TransactionTemplate transactionTemplate;
+    private final Counter deletedSessions;
+    private final Counter failedSessions;
+    private final Timer chunkDuration;
+    private volatile Checkpoint checkpoint;
 
     public SigningSessionCleanupService(
-            SigningSessionsService signingSessionsService,
-            SessionKeysService sessionKeysService, SessionCredentialsService sessionCredentialsService,
-            CscConfiguration cscConfiguration, PlatformTransactionManager transactionManager
+            SigningSessionsRepository signingSessionsRepository,
+            SessionCredentialsRepository sessionCredentialsRepository, SessionKeyRepository sessionKeyRepository,
+            SignserverClient signserverClient,
+            @Qualifier("sessionKeyDeletionExecutor") ExecutorService keyDeletionExecutor,
+            CscConfiguration cscConfiguration, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry
     ) {
-        this.signingSessionsService = signingSessionsService;
-        this.sessionKeysService = sessionKeysService;
-        this.sessionCredentialsService = sessionCredentialsService;
+        this.signingSessionsRepository = signingSessionsRepository;
+        this.sessionCredentialsRepository = sessionCredentialsRepository;
+        this.sessionKeyRepository = sessionKeyRepository;
+        this.keyRemover = new KeyRemover(signserverClient, keyDeletionExecutor,
+                                         cscConfiguration.signingSessions().maxParallelKeyRemovalsPerCryptoToken()
+        );
         this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.expiredSessionsKeepTime = cscConfiguration.signingSessions().expiredSessionsKeepTime();
+        this.chunkSize = cscConfiguration.signingSessions().cleanupChunkSize();
+        this.timeBudget = cscConfiguration.signingSessions().cleanupTimeBudget();
+        this.deletedSessions = sessionsCounter(meterRegistry, "deleted");
+        this.failedSessions = sessionsCounter(meterRegistry, "failed");
+        this.chunkDuration = Timer.builder(CHUNK_DURATION_METRIC_NAME)
+                                  .description("Duration of the cleanup of a chunk of expired signing sessions")
+                                  .register(meterRegistry);
     }
 
     public void cleanExpiredSessions() {
-        logger.info(
-                "Starting periodic cleanup of expired signing sessions. All sessions that are expired for more than '{}' will be deleted.",
-                expiredSessionsKeepTime
-        );
-        signingSessionsService.getExpiredSessions(expiredSessionsKeepTime)
-                              .consume(expiredSessions -> {
-                                  for (SigningSession expired : expiredSessions) {
-                                      deleteSessionAndRelatedResources(expired).consumeError(
-                                              e -> logger.error(e.getErrorText()));
-                                  }
-                              })
-                              .consumeError(
-                                      err -> logger.error("An error occurred while cleaning up expired sessions. {}",
-                                                          err.getErrorText()
-                                      )
-                              );
+        ZonedDateTime before = ZonedDateTime.now().minus(expiredSessionsKeepTime);
+        long deadline = System.nanoTime() + timeBudget.toNanos();
+        Checkpoint last = checkpoint;
+        if (last == null) {
+            logger.info("Starting periodic cleanup of signing sessions that expired before '{}'.", before);
+        } else {
+            logger.info("Resuming periodic cleanup of signing sessions that expired before '{}' after session '{}'.",
+                        before, last.id()
+            );
+        }
+
+        int processed = 0;
+        int deleted = 0;
+        while (true) {
+            List<SigningSessionEntity> chunk;
+            try {
+                chunk = last == null
+                        ? signingSessionsRepository.findExpiredBefore(before, Limit.of(chunkSize))
+                        : signingSessionsRepository.findExpiredBeforeAfter(before, last.expiresIn(), last.id(),
+                                                                           Limit.of(chunkSize)
+                        );
+            } catch (Exception e) {
+                logger.error("An error occurred while searching for expired signing sessions.", e);
+                break;
+            }
+
+            if (!chunk.isEmpty()) {
+                processed += chunk.size();
+                deleted += purge(chunk);
+                SigningSessionEntity lastSession = chunk.getLast();
+                last = new Checkpoint(lastSession.getExpiresIn(), lastSession.getId());
+            }
+
+            if (chunk.size() < chunkSize) {
+                last = null;
+                break;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                logger.info("Time budget of the cleanup of expired sessions exhausted, the next cleanup will continue.");
+                break;
+            }
+        }
+        checkpoint = last;
+        logger.info("Deleted {} of {} expired signing sessions.", deleted, processed);
     }
 
-    public Result<Void, TextError> deleteSessionAndRelatedResources(SigningSession session) {
-
-        var getSessionCredential = sessionCredentialsService.getSessionCredential(session);
-        if (getSessionCredential instanceof Error(var err)) return Result.error(err);
-        SessionCredentialMetadata sessionCredentialMetadata = getSessionCredential.unwrap();
-
-        return transactionTemplate.execute(
-                (status) ->
-                        signingSessionsService
-                                .deleteSession(session)
-                                .flatMap(v -> sessionCredentialsService.deleteCredential(session.credentialId()))
-                                .flatMap(v -> sessionKeysService.deleteKey(sessionCredentialMetadata.keyId()))
-                                .mapError(e -> e.extend(
-                                                  "An error occurred while deleting session '%s' and it's related resources. %s",
-                                                  session.id(), e.getErrorText()
-                                          )
-                                )
-        );
+    private int purge(List<SigningSessionEntity> sessions) {
+        Timer.Sample sample = Timer.start();
+        try {
+            var purgesResult = prepare(sessions);
+            if (purgesResult instanceof Error(var err)) {
+                logger.error("Expired sessions will be skipped until the next pass of the cleanup. {}",
+                             err.getErrorText()
+                );
+                failedSessions.increment(sessions.size());
+                return 0;
+            }
+            List<SessionPurge> purges = purgesResult.unwrap();
+
+            int deleted;
+            try {
+                transactionTemplate.executeWithoutResult(status -> delete(purges));
+                deleted = purges.size();
+            } catch (Exception e) {
+                logger.warn("Failed to delete {} expired sessions and their related resources together, "
+                                    + "deleting them one by one.", purges.size(), e
+                );
+                deleted = deleteOneByOne(purges);
+            }
+            deletedSessions.increment(deleted);
+            failedSessions.increment(sessions.size() - deleted);
+            return deleted;
+        } finally {
+            sample.stop(chunkDuration);
+        }
+    }
 
+    /*
+     * Removes the keys of the sessions from Signserver and returns the sessions that can be deleted from the database
+     * together with their credentials and keys.
+     */
+    private Result<List<SessionPurge>, TextError> prepare(List<SigningSessionEntity> sessions) {
+        Map<UUID, SessionCredentialMetadataEntity> credentials = new LinkedHashMap<>();
+        Map<UUID, SessionKeyEntity> keys = new LinkedHashMap<>();
+        try {
+            sessionCredentialsRepository
+                    .findAllById(sessions.stream().map(SigningSessionEntity::getCredentialId).toList())
+                    .forEach(credential -> credentials.put(credential.getId(), credential));
+            sessionKeyRepository
+                    .findAllById(credentials.values().stream().map(SessionCredentialMetadataEntity::getKeyId)
+                                            .toList())
+                    .forEach(key -> keys.put(key.getId(), key));
+        } catch (Exception e) {
+            logger.error("Failed to load credentials and keys of {} expired sessions.", sessions.size(), e);
+            return Result.error(TextError.of("Failed to load credentials and keys of %d expired sessions.",
+                                             sessions.size()
+            ));
+        }
+
+        Set<UUID> removedKeys = new HashSet<>(keyRemover.remove(keys.values()));
+        List<SessionPurge> purges = new ArrayList<>(sessions.size());
+        for (SigningSessionEntity session : sessions) {
+            UUID credentialId = null;
+            UUID keyId = null;
+            SessionCredentialMetadataEntity credential = credentials.get(session.getCredentialId());
+            if (credential != null) {
+                credentialId = credential.getId();
+                if (keys.containsKey(credential.getKeyId())) {
+                    if (!removedKeys.contains(credential.getKeyId())) continue;
+                    keyId = credential.getKeyId();
+                }
+            }
+            purges.add(new SessionPurge(session.getId(), credentialId, keyId));
+        }
+        return Result.success(purges);
+    }
+
+    private int deleteOneByOne(List<SessionPurge> purges) {
+        int deleted = 0;
+        for (SessionPurge purge : purges) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> delete(List.of(purge)));
+                deleted++;
+            } catch (Exception e) {
+                logger.error("Failed to delete expired session '{}' and its related resources.", purge.sessionId(),
+                             e
+                );
+            }
+        }
+        return deleted;
+    }
+
+    private void delete(List<SessionPurge> purges) {
+        List<UUID> sessionIds = new ArrayList<>(purges.size());
+        List<UUID> credentialIds = new ArrayList<>(purges.size());
+        List<UUID> keyIds = new ArrayList<>(purges.size());
+        for (SessionPurge purge : purges) {
+            sessionIds.add(purge.sessionId());
+            if (purge.credentialId() != null) credentialIds.add(purge.credentialId());
+            if (purge.keyId() != null) keyIds.add(purge.keyId());
+        }
+        if (!sessionIds.isEmpty()) signingSessionsRepository.deleteAllByIdIn(sessionIds);
+        if (!credentialIds.isEmpty()) sessionCredentialsRepository.deleteAllByIdIn(credentialIds);
+        if (!keyIds.isEmpty()) sessionKeyRepository.deleteAllByIdIn(keyIds);
     }
+
+    private static Counter sessionsCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder(SESSIONS_METRIC_NAME)
+                      .description("Number of expired signing sessions processed by the cleanup")
+                      .tag("outcome", outcome)
+                      .register(meterRegistry);
+    }
+
+    private record Checkpoint(ZonedDateTime expiresIn, UUID id) {}
+
+    /**
+     * @param credentialId id of the credential of the session, {@code null} if the session has no credential
+     * @param keyId        id of the key of the credential, {@code null} if the credential has no key
+     */
+    private record SessionPurge(UUID sessionId, UUID credentialId, UUID keyId) {}
 }
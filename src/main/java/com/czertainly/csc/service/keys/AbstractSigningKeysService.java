@@ -1,43 +1,67 @@
 package com.czertainly.csc.service.keys;
 
 import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.common.result.Error;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.configuration.csc.KeyReservationSettings;
+import com.czertainly.csc.configuration.keypools.KeyUsageDesignation;
 import com.czertainly.csc.model.signserver.CryptoToken;
 import com.czertainly.csc.repository.KeyRepository;
 import com.czertainly.csc.repository.entities.KeyEntity;
 import com.czertainly.csc.signing.configuration.WorkerRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Allows to generate new signing keys on Signserver and stores them in database.
  * Also allows to acquire the key for signature.
+ * <p>
+ * Free keys are handed out from a {@link KeyReservationQueue} of keys reserved for this instance in batches.
+ * A reserved key gets its acquisition time when it is handed out, so that reserved keys can be told apart from
+ * the keys in use. The keys taken from and returned to the pool are published as {@link KeyPoolDepthChangedEvent}s.
  */
 @Service
 public abstract class AbstractSigningKeysService<E extends KeyEntity, K extends SigningKey> implements KeysService<K> {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractSigningKeysService.class);
+    private static final int ORPHANED_RESERVATIONS_BATCH_SIZE = 500;
     protected final KeyRepository<E> keysRepository;
     private final SignserverClient signserverClient;
     protected final WorkerRepository workerRepository;
-    
-    // Lock objects per crypto token ID to ensure proper synchronization across different CryptoToken instances
-    private static final ConcurrentHashMap<Integer, Object> cryptoTokenLocks = new ConcurrentHashMap<>();
+    private final KeyReservationQueue<E> reservationQueue;
+    private final Duration orphanedReservationAge;
 
 
     public AbstractSigningKeysService(KeyRepository<E> keysRepository, SignserverClient signserverClient,
-                                      WorkerRepository workerRepository
+                                      WorkerRepository workerRepository, KeyReservationSettings reservationSettings,
+                                      PlatformTransactionManager transactionManager,
+                                      KeyUsageDesignation designatedUsage, ApplicationEventPublisher eventPublisher
     ) {
         this.keysRepository = keysRepository;
         this.signserverClient = signserverClient;
         this.workerRepository = workerRepository;
+        if (reservationSettings == null) {
+            reservationSettings = KeyReservationSettings.defaults();
+        }
+        this.orphanedReservationAge = reservationSettings.orphanedReservationAge();
+        this.reservationQueue = new KeyReservationQueue<>(
+                new FreeKeyClaimer<>(keysRepository, transactionManager),
+                reservationSettings,
+                (cryptoTokenId, keyAlgorithm, change) -> eventPublisher.publishEvent(
+                        new KeyPoolDepthChangedEvent(designatedUsage, cryptoTokenId, keyAlgorithm, change))
+        );
     }
 
     @Override
@@ -97,40 +121,103 @@ public abstract class AbstractSigningKeysService<E extends KeyEntity, K extends
         logger.debug("Acquiring a signing key of CryptoToken '{}' with algorithm '{}'",
                      cryptoToken.identifier(), keyAlgorithm
         );
-        // Get or create a lock object for this specific crypto token ID
-        // This ensures all threads trying to acquire keys for the same crypto token
-        // will synchronize on the same lock object, even if they have different CryptoToken instances
-        Object lock = cryptoTokenLocks.computeIfAbsent(cryptoToken.id(), id -> new Object());
-        
-        synchronized (lock) {
-            return keysRepository.findFirstByCryptoTokenIdAndKeyAlgorithmAndInUse(
-                                         cryptoToken.id(), keyAlgorithm, false
-                                 )
-                                 .map(entity -> {
-                                     entity.setAcquiredAt(ZonedDateTime.now());
-                                     entity.setInUse(true);
-                                     return keysRepository.save(entity);
-                                 })
-                                 .map(keyEntity -> this.mapEntityToSigningKey(keyEntity, cryptoToken))
-                                 .map(Result::<K, TextError>success)
-                                 // If no key is found, try to generate a new one
-                                 .orElseGet(() -> generateKey(cryptoToken, keyAlgorithm)
-                                         .flatMap(k -> {
-                                                 keysRepository.findById(k.id()).ifPresent(e -> {
-                                                     e.setAcquiredAt(ZonedDateTime.now());
-                                                     e.setInUse(true);
-                                                     keysRepository.save(e);
-                                                 });
-                                             return Result.success(k);
-                                         })
-                                         .mapError(e -> e.extend(
-                                                 "New key couldn't be acquired from CryptoToken '%s'.",
-                                                 cryptoToken.identifier()
-                                         ))
-                                 );
+        Optional<E> reservedKey = reservationQueue.poll(cryptoToken.id(), keyAlgorithm);
+        if (reservedKey.isPresent()) {
+            // Reserved keys are already marked as used, only the acquisition time is recorded
+            E key = reservedKey.get();
+            ZonedDateTime acquiredAt = ZonedDateTime.now();
+            var markResult = markReservedKeyAsAcquired(key, acquiredAt);
+            if (markResult instanceof Error(var err)) {
+                return Result.error(err.extend("Reserved key couldn't be acquired from CryptoToken '%s'.",
+                                               cryptoToken.identifier()
+                ));
+            }
+            if (markResult.unwrap()) {
+                key.setAcquiredAt(acquiredAt);
+                return Result.success(mapEntityToSigningKey(key, cryptoToken));
+            }
+            logger.warn("Reservation of key '{}' was released before the key was handed out, a new key will be "
+                                + "generated.", key.getKeyAlias()
+            );
+        }
+
+        // If no key is found, try to generate a new one
+        return generateKey(cryptoToken, keyAlgorithm)
+                .flatMap(k -> markKeyAsUsed(k.id(), k.keyAlias(), ZonedDateTime.now())
+                        .flatMap(marked -> marked
+                                ? Result.success(k)
+                                : Result.error(TextError.of("Generated key '%s' was acquired by someone else.",
+                                                            k.keyAlias()
+                                ))
+                        ))
+                .mapError(e -> e.extend(
+                        "New key couldn't be acquired from CryptoToken '%s'.",
+                        cryptoToken.identifier()
+                ));
+    }
+
+    /**
+     * @return true if the key was marked as acquired, false if its reservation has been released in the meantime
+     */
+    private Result<Boolean, TextError> markReservedKeyAsAcquired(E key, ZonedDateTime acquiredAt) {
+        try {
+            return Result.success(keysRepository.markAcquired(key.getId(), acquiredAt) == 1);
+        } catch (Exception e) {
+            logger.error("Failed to mark reserved key '{}' as acquired.", key.getKeyAlias(), e);
+            return Result.error(TextError.of("Failed to mark reserved key '%s' as acquired.", key.getKeyAlias()));
+        }
+    }
+
+    /**
+     * @return true if the key was marked as used, false if it has been acquired by someone else
+     */
+    private Result<Boolean, TextError> markKeyAsUsed(UUID keyId, String keyAlias, ZonedDateTime acquiredAt) {
+        try {
+            return Result.success(keysRepository.markInUseIfFree(keyId, acquiredAt) == 1);
+        } catch (Exception e) {
+            logger.error("Failed to mark key '{}' as used.", keyAlias, e);
+            return Result.error(TextError.of("Failed to mark key '%s' as used.", keyAlias));
         }
     }
 
+    /**
+     * Releases the reserved keys that were not handed out within the maximum reservation age.
+     */
+    public void releaseExpiredReservations() {
+        reservationQueue.releaseExpired();
+    }
+
+    /**
+     * Releases the keys reserved for longer than the orphaned reservation age that were never handed out back to
+     * the pool of free keys. Such keys are left reserved by instances that were not shut down gracefully. Keys that
+     * were handed out are never released, as they may already be bound to a certificate.
+     */
+    public void releaseOrphanedReservations() {
+        List<E> orphanedKeys;
+        try {
+            orphanedKeys = keysRepository.findReservedBefore(ZonedDateTime.now().minus(orphanedReservationAge),
+                                                             Limit.of(ORPHANED_RESERVATIONS_BATCH_SIZE)
+            );
+        } catch (Exception e) {
+            logger.error("Failed to load keys with orphaned reservations.", e);
+            return;
+        }
+        if (!orphanedKeys.isEmpty()) {
+            logger.info("Releasing {} keys with orphaned reservations back to the pool of free keys.",
+                        orphanedKeys.size()
+            );
+            reservationQueue.release(orphanedKeys);
+        }
+    }
+
+    /**
+     * Releases the reserved keys that were not used, so that they can be acquired by other instances.
+     */
+    @PreDestroy
+    public void releaseReservedKeys() {
+        reservationQueue.releaseAll();
+    }
+
     public Result<K, TextError> getKey(UUID keyId) {
         logger.debug("Obtaining signing key with id {}", keyId);
         Optional<E> keyEntity = keysRepository.findById(keyId);
@@ -0,0 +1,57 @@
+package com.czertainly.csc.service.keys;
+
+import com.czertainly.csc.configuration.keypools.KeyPoolAdaptiveSizing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Estimates the size a key pool should have from the rate at which its keys are used.
+ * <p>
+ * The number of keys used since the previous replenish is derived from the number of free keys seen
+ * by the previous replenish, the number of keys generated since then and the current number of free keys.
+ * The usage is smoothed by an exponentially weighted moving average and the target size is the average
+ * usage over the configured number of replenish intervals, bounded by the minimal and maximal size.
+ */
+class AdaptivePoolSize {
+
+    private final KeyPoolAdaptiveSizing sizing;
+    private final AtomicInteger keysGeneratedSinceLastUpdate = new AtomicInteger();
+    private double averageKeysUsed;
+    private Integer lastNumberOfFreeKeys;
+
+    AdaptivePoolSize(KeyPoolAdaptiveSizing sizing, int initialSize) {
+        this.sizing = sizing;
+        this.averageKeysUsed = (double) clamp(initialSize) / sizing.replenishIntervalsCovered();
+    }
+
+    /**
+     * Records a key generated into the pool.
+     */
+    void keyGenerated() {
+        keysGeneratedSinceLastUpdate.incrementAndGet();
+    }
+
+    /**
+     * Updates the average key usage with the current number of free keys in the pool.
+     *
+     * @return the size the pool should be replenished to
+     */
+    synchronized int update(int numberOfFreeKeys) {
+        int keysGenerated = keysGeneratedSinceLastUpdate.getAndSet(0);
+        if (lastNumberOfFreeKeys != null) {
+            int keysUsed = Math.max(0, lastNumberOfFreeKeys + keysGenerated - numberOfFreeKeys);
+            averageKeysUsed = sizing.smoothingFactor() * keysUsed
+                    + (1 - sizing.smoothingFactor()) * averageKeysUsed;
+        }
+        lastNumberOfFreeKeys = numberOfFreeKeys;
+        return targetSize();
+    }
+
+    synchronized int targetSize() {
+        return clamp((int) Math.ceil(averageKeysUsed * sizing.replenishIntervalsCovered()));
+    }
+
+    private int clamp(int size) {
+        return Math.clamp(size, sizing.minSize(), sizing.maxSize());
+    }
+}
@@ -0,0 +1,85 @@
+package com.czertainly.csc.service.keys;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.repository.KeyRepository;
+import com.czertainly.csc.repository.entities.KeyEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Claims free keys in the database, so that they can't be acquired by other instances of the application.
+ * <p>
+ * The keys are claimed by locking a batch of free keys with {@code FOR UPDATE SKIP LOCKED} and marking them
+ * as reserved in the same transaction. Concurrent claims, possibly from different instances, skip the rows locked
+ * by each other and so claim disjoint sets of keys without waiting.
+ */
+public class FreeKeyClaimer<E extends KeyEntity> {
+
+    private static final Logger logger = LoggerFactory.getLogger(FreeKeyClaimer.class);
+
+    private final KeyRepository<E> keysRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public FreeKeyClaimer(KeyRepository<E> keysRepository, PlatformTransactionManager transactionManager) {
+        this.keysRepository = keysRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Claims up to {@code limit} free keys of the crypto token with the given key algorithm.
+     * The claimed keys are marked as used with the time of the claim as their reservation time, their acquisition
+     * time is recorded when they are handed out.
+     */
+    public Result<List<E>, TextError> claim(int cryptoTokenId, String keyAlgorithm, int limit) {
+        try {
+            List<E> claimedKeys = transactionTemplate.execute(status -> {
+                List<E> keys = keysRepository.lockFreeKeys(cryptoTokenId, keyAlgorithm, Limit.of(limit));
+                if (keys.isEmpty()) return keys;
+
+                ZonedDateTime claimedAt = ZonedDateTime.now();
+                keysRepository.markReserved(keys.stream().map(KeyEntity::getId).toList(), claimedAt);
+                // The entities are detached by the update, so the changes are not flushed again
+                for (E key : keys) {
+                    key.setInUse(true);
+                    key.setReservedAt(claimedAt);
+                    key.setAcquiredAt(null);
+                }
+                return keys;
+            });
+            return Result.success(claimedKeys == null ? List.of() : claimedKeys);
+        } catch (Exception e) {
+            logger.error("Failed to claim free keys of CryptoToken '{}' with algorithm '{}'.", cryptoTokenId,
+                         keyAlgorithm, e
+            );
+            return Result.error(TextError.of("Failed to claim free keys of CryptoToken '%s' with algorithm '%s'.",
+                                             cryptoTokenId, keyAlgorithm
+            ));
+        }
+    }
+
+    /**
+     * Returns the claimed keys that were not handed out back to the pool of free keys.
+     *
+     * @return the number of released keys, keys that were handed out, are no longer marked as used or were deleted
+     * in the meantime are not counted
+     */
+    public Result<Integer, TextError> release(List<UUID> keyIds) {
+        if (keyIds.isEmpty()) return Result.success(0);
+        try {
+            int released = keysRepository.release(keyIds);
+            logger.debug("Released {} of {} claimed keys back to the pool of free keys.", released, keyIds.size());
+            return Result.success(released);
+        } catch (Exception e) {
+            logger.error("Failed to release {} claimed keys.", keyIds.size(), e);
+            return Result.error(TextError.of("Failed to release %d claimed keys.", keyIds.size()));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.czertainly.csc.service.keys;
+
+import com.czertainly.csc.configuration.keypools.KeyPoolProfile;
+import com.czertainly.csc.model.signserver.CryptoToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the generations of keys into the key pools.
+ * <p>
+ * Finished generations are counted by the {@value #GENERATIONS_METRIC_NAME} counter tagged with the outcome,
+ * which is {@code completed} or {@code failed}. The generations submitted but not finished yet are reported
+ * by the {@value #PENDING_METRIC_NAME} gauge. Both are tagged with the crypto token, the key pool profile,
+ * the key algorithm and the designated usage of the pool.
+ */
+@Component
+public class KeyGenerationMetrics {
+
+    public static final String GENERATIONS_METRIC_NAME = "csc.key.pool.generations";
+    public static final String PENDING_METRIC_NAME = "csc.key.pool.generations.pending";
+    public static final String OUTCOME_COMPLETED = "completed";
+    public static final String OUTCOME_FAILED = "failed";
+
+    private final MeterRegistry meterRegistry;
+
+    public KeyGenerationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void registerPending(CryptoToken cryptoToken, KeyPoolProfile keyPoolProfile, AtomicInteger pending) {
+        Gauge.builder(PENDING_METRIC_NAME, pending, AtomicInteger::get)
+             .description("Number of key generations submitted to a key pool and not finished yet")
+             .tags(tags(cryptoToken, keyPoolProfile))
+             .register(meterRegistry);
+    }
+
+    public void generationFinished(CryptoToken cryptoToken, KeyPoolProfile keyPoolProfile, boolean completed) {
+        Counter.builder(GENERATIONS_METRIC_NAME)
+               .description("Number of finished key generations of a key pool")
+               .tags(tags(cryptoToken, keyPoolProfile))
+               .tag("outcome", completed ? OUTCOME_COMPLETED : OUTCOME_FAILED)
+               .register(meterRegistry)
+               .increment();
+    }
+
+    private static Tags tags(CryptoToken cryptoToken, KeyPoolProfile keyPoolProfile) {
+        return Tags.of("crypto_token", cryptoToken.name(),
+                       "key_pool_profile", keyPoolProfile.name(),
+                       "key_algorithm", keyPoolProfile.keyAlgorithm(),
+                       "usage", keyPoolProfile.designatedUsage().name()
+        );
+    }
+}
@@ -0,0 +1,16 @@
+package com.czertainly.csc.service.keys;
+
+import com.czertainly.csc.configuration.keypools.KeyUsageDesignation;
+
+/**
+ * Published when free keys are taken from or returned to a key pool. It is an application event, so it is only
+ * received within the instance that took or returned the keys.
+ *
+ * @param change the change of the number of free keys in the pool, negative when keys were taken
+ */
+public record KeyPoolDepthChangedEvent(
+        KeyUsageDesignation designatedUsage,
+        int cryptoTokenId,
+        String keyAlgorithm,
+        int change
+) {}
@@ -1,101 +1,246 @@
 package com.czertainly.csc.service.keys;
 
 import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.Success;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.configuration.csc.KeyReplenishmentSettings;
 import com.czertainly.csc.configuration.keypools.KeyPoolProfile;
 import com.czertainly.csc.model.signserver.CryptoToken;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Replenishes the key pools of the crypto tokens.
+ * <p>
+ * All pools are replenished periodically based on the number of free keys counted in the database. In between,
+ * the number of free keys of each pool is tracked in memory from the {@link KeyPoolDepthChangedEvent}s and
+ * the keys generated into the pool, and a pool that drops below the low watermark is replenished immediately.
+ * Replenishments triggered within the debounce time are merged into a single one.
+ * <p>
+ * The events are published only within the application instance, so only the keys taken from and returned to
+ * the pools by the key generating instance itself are tracked. The keys taken by other instances are noticed by
+ * the next periodic replenishment.
+ * <p>
+ * Keys whose generation was submitted but has not finished yet count towards the size of the pool, so that
+ * a slow generation is not submitted again by the next replenishment. At most
+ * {@link KeyPoolProfile#maxKeysGeneratedPerReplenish()} generations are pending for a pool at any time.
+ */
 public class KeyPoolReplenisher<K extends SigningKey> {
 
     private static final Logger logger = LoggerFactory.getLogger(KeyPoolReplenisher.class);
+    private static final int UNKNOWN = -1;
+
     private final KeysService<K> keysService;
-    private final List<CryptoToken> cryptoTokens;
+    private final List<Pool> pools = new ArrayList<>();
     private final ExecutorService keyGenerationExecutor;
+    private final KeyReplenishmentSettings replenishmentSettings;
+    private final ScheduledExecutorService replenishScheduler;
+    private final KeyGenerationMetrics keyGenerationMetrics;
 
-    public KeyPoolReplenisher(List<CryptoToken> cryptoTokens, KeysService<K> keysService, ExecutorService keyGenerationExecutor) {
+    public KeyPoolReplenisher(List<CryptoToken> cryptoTokens, KeysService<K> keysService,
+                              ExecutorService keyGenerationExecutor, KeyReplenishmentSettings replenishmentSettings,
+                              ScheduledExecutorService replenishScheduler, KeyGenerationMetrics keyGenerationMetrics
+    ) {
         this.keysService = keysService;
-        this.cryptoTokens = cryptoTokens;
         this.keyGenerationExecutor = keyGenerationExecutor;
+        this.replenishmentSettings = replenishmentSettings;
+        this.replenishScheduler = replenishScheduler;
+        this.keyGenerationMetrics = keyGenerationMetrics;
+        for (CryptoToken cryptoToken : cryptoTokens) {
+            for (KeyPoolProfile keyPoolProfile : cryptoToken.keyPoolProfiles()) {
+                Pool pool = new Pool(cryptoToken, keyPoolProfile);
+                keyGenerationMetrics.registerPending(cryptoToken, keyPoolProfile, pool.pendingGenerations);
+                pools.add(pool);
+            }
+        }
     }
 
     public void replenishPools() {
-        for (CryptoToken cryptoToken : cryptoTokens) {
-            for (KeyPoolProfile keyPoolProfile : cryptoToken.keyPoolProfiles()) {
-                keysService.getNumberOfUsableKeys(cryptoToken, keyPoolProfile.keyAlgorithm())
-                           .flatMap(numOfFreeKeys -> replenishPool(cryptoToken, keyPoolProfile, numOfFreeKeys))
-                           .consume(numberOfKeysGenerated -> logger.debug(
-                                   "Triggered replenishment of {} new keys from Key Pool of CryptoToken '{}' with algorithm '{}' and usage '{}'.",
-                                   numberOfKeysGenerated, cryptoToken.name(), keyPoolProfile.keyAlgorithm(), keyPoolProfile.designatedUsage()
-                           ))
-                           .consumeError(error ->
-                                                 logger.error(
-                                                         "Failed to trigger replenishment from Key Pool of CryptoToken '{}'  with algorithm '{}' and usage '{}'. {}",
-                                                         cryptoToken.name(), keyPoolProfile.keyAlgorithm(), keyPoolProfile.designatedUsage(), error.getErrorText()
-                                                 )
-                           );
+        for (Pool pool : pools) {
+            CryptoToken cryptoToken = pool.cryptoToken;
+            KeyPoolProfile keyPoolProfile = pool.profile;
+            keysService.getNumberOfUsableKeys(cryptoToken, keyPoolProfile.keyAlgorithm())
+                       .flatMap(numOfFreeKeys -> {
+                           pool.freeKeys.set(numOfFreeKeys);
+                           int desiredSize = pool.adaptivePoolSize == null
+                                   ? keyPoolProfile.desiredSize()
+                                   : pool.adaptivePoolSize.update(numOfFreeKeys);
+                           return replenishPool(pool, numOfFreeKeys, desiredSize);
+                       })
+                       .consume(numberOfKeysGenerated -> logger.debug(
+                               "Triggered replenishment of {} new keys from Key Pool of CryptoToken '{}' with algorithm '{}' and usage '{}'.",
+                               numberOfKeysGenerated, cryptoToken.name(), keyPoolProfile.keyAlgorithm(), keyPoolProfile.designatedUsage()
+                       ))
+                       .consumeError(error ->
+                                             logger.error(
+                                                     "Failed to trigger replenishment from Key Pool of CryptoToken '{}'  with algorithm '{}' and usage '{}'. {}",
+                                                     cryptoToken.name(), keyPoolProfile.keyAlgorithm(), keyPoolProfile.designatedUsage(), error.getErrorText()
+                                             )
+                       );
+        }
+    }
+
+    /**
+     * Updates the number of free keys of the pools of the crypto token with the given key algorithm and
+     * schedules their replenishment when they drop below the low watermark.
+     */
+    public void onDepthChanged(int cryptoTokenId, String keyAlgorithm, int change) {
+        for (Pool pool : pools) {
+            if (pool.cryptoToken.id() != cryptoTokenId || !pool.profile.keyAlgorithm().equals(keyAlgorithm)) {
+                continue;
+            }
+            int freeKeys = pool.freeKeys.updateAndGet(n -> n == UNKNOWN ? UNKNOWN : Math.max(0, n + change));
+            if (freeKeys != UNKNOWN && freeKeys < replenishmentSettings.lowWatermark() * pool.desiredSize()) {
+                scheduleReplenishment(pool);
             }
         }
     }
 
-    private Result<Integer, TextError> replenishPool(CryptoToken cryptoToken, KeyPoolProfile keyPoolProfile,
-                                                     int currentPoolSize
-    ) {
-        if (currentPoolSize >= keyPoolProfile.desiredSize()) {
-            logger.trace("Key pool of CryptoToken '{}' with algorithm '{}' and usage '{}' is up to its desired size.",
-                         cryptoToken.name(), keyPoolProfile.keyAlgorithm(), keyPoolProfile.designatedUsage()
-            );
-            return Result.success(0);
+    private void scheduleReplenishment(Pool pool) {
+        if (replenishScheduler == null || !pool.replenishmentScheduled.compareAndSet(false, true)) {
+            return;
         }
-        int numOfKeysNeeded = keyPoolProfile.desiredSize() - currentPoolSize;
-        int numOfKeysToGenerate = numOfKeysNeeded;
-        if (numOfKeysNeeded > keyPoolProfile.maxKeysGeneratedPerReplenish()) {
-            numOfKeysToGenerate = keyPoolProfile.maxKeysGeneratedPerReplenish();
-            logger.trace(
-                    "Key pool of CryptoToken '{}' with algorithm '{}' and usage '{}' will be replenished by {} keys (maximal number of keys generated per replenish).",
-                    cryptoToken.name(), keyPoolProfile.keyAlgorithm(), keyPoolProfile.desiredSize(),
-                    numOfKeysToGenerate
-            );
-        } else {
-            logger.trace(
-                    "Key pool of CryptoToken '{}' with algorithm '{}' and usage '{}' will be replenished by {} keys to its desired size {}.",
-                    cryptoToken.name(), keyPoolProfile.keyAlgorithm(), keyPoolProfile.desiredSize(),
-                    numOfKeysToGenerate, keyPoolProfile.desiredSize()
-            );
+        logger.debug("Key pool of CryptoToken '{}' with algorithm '{}' and usage '{}' dropped below its low watermark.",
+                     pool.cryptoToken.name(), pool.profile.keyAlgorithm(), pool.profile.designatedUsage()
+        );
+        replenishScheduler.schedule(() -> {
+            pool.replenishmentScheduled.set(false);
+            replenishPool(pool, pool.freeKeys.get(), pool.desiredSize())
+                    .consume(numberOfKeysGenerated -> logger.debug(
+                            "Triggered replenishment of {} new keys from Key Pool of CryptoToken '{}' with algorithm '{}' and usage '{}' below its low watermark.",
+                            numberOfKeysGenerated, pool.cryptoToken.name(), pool.profile.keyAlgorithm(),
+                            pool.profile.designatedUsage()
+                    ))
+                    .consumeError(error -> logger.error(error.getErrorText()));
+        }, replenishmentSettings.debounce().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private Result<Integer, TextError> replenishPool(Pool pool, int currentPoolSize, int desiredSize) {
+        CryptoToken cryptoToken = pool.cryptoToken;
+        KeyPoolProfile keyPoolProfile = pool.profile;
+        int numOfKeysToGenerate;
+        synchronized (pool) {
+            int pendingGenerations = pool.pendingGenerations.get();
+            if (currentPoolSize + pendingGenerations >= desiredSize) {
+                logger.trace(
+                        "Key pool of CryptoToken '{}' with algorithm '{}' and usage '{}' is up to its desired size with {} keys being generated.",
+                        cryptoToken.name(), keyPoolProfile.keyAlgorithm(), keyPoolProfile.designatedUsage(),
+                        pendingGenerations
+                );
+                return Result.success(0);
+            }
+            int numOfKeysNeeded = desiredSize - currentPoolSize - pendingGenerations;
+            int numOfKeysAllowed = keyPoolProfile.maxKeysGeneratedPerReplenish() - pendingGenerations;
+            if (numOfKeysAllowed <= 0) {
+                logger.trace(
+                        "Key pool of CryptoToken '{}' with algorithm '{}' and usage '{}' can't be replenished, {} keys are already being generated.",
+                        cryptoToken.name(), keyPoolProfile.keyAlgorithm(), keyPoolProfile.designatedUsage(),
+                        pendingGenerations
+                );
+                return Result.success(0);
+            }
+            numOfKeysToGenerate = Math.min(numOfKeysNeeded, numOfKeysAllowed);
+            if (numOfKeysNeeded > numOfKeysAllowed) {
+                logger.trace(
+                        "Key pool of CryptoToken '{}' with algorithm '{}' and usage '{}' will be replenished by {} keys (maximal number of keys generated at once).",
+                        cryptoToken.name(), keyPoolProfile.keyAlgorithm(), keyPoolProfile.designatedUsage(),
+                        numOfKeysToGenerate
+                );
+            } else {
+                logger.trace(
+                        "Key pool of CryptoToken '{}' with algorithm '{}' and usage '{}' will be replenished by {} keys to its desired size {}.",
+                        cryptoToken.name(), keyPoolProfile.keyAlgorithm(), keyPoolProfile.designatedUsage(),
+                        numOfKeysToGenerate, desiredSize
+                );
+            }
+            pool.pendingGenerations.addAndGet(numOfKeysToGenerate);
         }
 
         for (int i = 0; i < numOfKeysToGenerate; i++) {
-            keyGenerationExecutor.execute(() -> {
-                logger.info("Replenishing key pool of CryptoToken '{}' with algorithm '{}' and usage '{}'.",
-                        cryptoToken.name(),
-                        keyPoolProfile.keyAlgorithm(), keyPoolProfile.designatedUsage()
-                );
-                String keyAlias = getUniqueKeyAlias(keyPoolProfile.keyPrefix());
-                var generateKeyResult = keysService.generateKey(
-                                cryptoToken, keyAlias, keyPoolProfile.keyAlgorithm(),
-                                keyPoolProfile.keySpecification()
-                        )
-                        .mapError(error -> error.extend(
-                                        "Generation of a key '%s' for key poll of CryptoToken '%s' has failed.",
-                                        keyAlias, cryptoToken.name()
-                                )
-                        )
-                        .consumeError(error -> logger.error(error.getErrorText()));
-            });
+            try {
+                keyGenerationExecutor.execute(() -> generateKey(pool));
+            } catch (RejectedExecutionException e) {
+                pool.pendingGenerations.addAndGet(i - numOfKeysToGenerate);
+                return Result.error(TextError.of("Generation of %d keys for key pool of CryptoToken '%s' was rejected.",
+                                                 numOfKeysToGenerate - i, cryptoToken.name()
+                ));
+            }
         }
 
         return Result.success(numOfKeysToGenerate);
     }
 
+    private void generateKey(Pool pool) {
+        CryptoToken cryptoToken = pool.cryptoToken;
+        KeyPoolProfile keyPoolProfile = pool.profile;
+        boolean completed = false;
+        try {
+            logger.info("Replenishing key pool of CryptoToken '{}' with algorithm '{}' and usage '{}'.",
+                        cryptoToken.name(),
+                        keyPoolProfile.keyAlgorithm(), keyPoolProfile.designatedUsage()
+            );
+            String keyAlias = getUniqueKeyAlias(keyPoolProfile.keyPrefix());
+            var generateKeyResult = keysService.generateKey(
+                            cryptoToken, keyAlias, keyPoolProfile.keyAlgorithm(),
+                            keyPoolProfile.keySpecification()
+                    )
+                    .mapError(error -> error.extend(
+                                    "Generation of a key '%s' for key poll of CryptoToken '%s' has failed.",
+                                    keyAlias, cryptoToken.name()
+                            )
+                    )
+                    .consumeError(error -> logger.error(error.getErrorText()));
+            completed = generateKeyResult instanceof Success;
+            if (completed) {
+                pool.keyGenerated();
+            }
+        } finally {
+            pool.pendingGenerations.decrementAndGet();
+            keyGenerationMetrics.generationFinished(cryptoToken, keyPoolProfile, completed);
+        }
+    }
+
     private String getUniqueKeyAlias(String userId) {
         String random_id = RandomStringUtils.secure().next(8, true, true);
         String alias = String.format("%s-%s", userId, random_id);
         logger.trace("Generated new unique key alias {}", alias);
         return alias;
     }
+
+    private static class Pool {
+        private final CryptoToken cryptoToken;
+        private final KeyPoolProfile profile;
+        private final AdaptivePoolSize adaptivePoolSize;
+        // Number of free keys in the pool, unknown until the pool is replenished for the first time
+        private final AtomicInteger freeKeys = new AtomicInteger(UNKNOWN);
+        private final AtomicBoolean replenishmentScheduled = new AtomicBoolean(false);
+        private final AtomicInteger pendingGenerations = new AtomicInteger();
+
+        Pool(CryptoToken cryptoToken, KeyPoolProfile profile) {
+            this.cryptoToken = cryptoToken;
+            this.profile = profile;
+            this.adaptivePoolSize = profile.adaptiveSizing() == null
+                    ? null
+                    : new AdaptivePoolSize(profile.adaptiveSizing(), profile.desiredSize());
+        }
+
+        int desiredSize() {
+            return adaptivePoolSize == null ? profile.desiredSize() : adaptivePoolSize.targetSize();
+        }
+
+        void keyGenerated() {
+            freeKeys.updateAndGet(n -> n == UNKNOWN ? UNKNOWN : n + 1);
+            if (adaptivePoolSize != null) adaptivePoolSize.keyGenerated();
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package com.czertainly.csc.service.keys;
+
+import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.repository.entities.KeyEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Removes batches of keys from Signserver.
+ * <p>
+ * Signserver removes keys one by one, so the keys are grouped by their crypto token and removed in rounds.
+ * Each round removes at most the configured number of keys of every crypto token concurrently, so that a batch
+ * of keys of a single crypto token doesn't overload it, while the keys of different crypto tokens are removed
+ * in parallel.
+ */
+public class KeyRemover {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyRemover.class);
+
+    private final SignserverClient signserverClient;
+    private final ExecutorService removalExecutor;
+    private final int maxParallelRemovalsPerCryptoToken;
+
+    public KeyRemover(SignserverClient signserverClient, ExecutorService removalExecutor,
+                      int maxParallelRemovalsPerCryptoToken
+    ) {
+        this.signserverClient = signserverClient;
+        this.removalExecutor = removalExecutor;
+        this.maxParallelRemovalsPerCryptoToken = maxParallelRemovalsPerCryptoToken;
+    }
+
+    /**
+     * Removes the keys from Signserver. Keys that don't exist in Signserver are considered removed.
+     *
+     * @return the ids of the removed keys
+     */
+    public List<UUID> remove(Collection<? extends KeyEntity> keys) {
+        Map<Integer, ArrayDeque<KeyEntity>> keysByCryptoToken = new LinkedHashMap<>();
+        for (KeyEntity key : keys) {
+            keysByCryptoToken.computeIfAbsent(key.getCryptoTokenId(), id -> new ArrayDeque<>()).add(key);
+        }
+
+        List<UUID> removedKeys = new ArrayList<>(keys.size());
+        List<Removal> round = new ArrayList<>();
+        do {
+            round.clear();
+            for (ArrayDeque<KeyEntity> cryptoTokenKeys : keysByCryptoToken.values()) {
+                for (int i = 0; i < maxParallelRemovalsPerCryptoToken && !cryptoTokenKeys.isEmpty(); i++) {
+                    KeyEntity key = cryptoTokenKeys.poll();
+                    round.add(new Removal(key, removalExecutor.submit(
+                            () -> signserverClient.removeKeyOkIfNotExists(key.getCryptoTokenId(), key.getKeyAlias())
+                    )));
+                }
+            }
+            for (Removal removal : round) {
+                KeyEntity key = removal.key();
+                if (waitForRemoval(removal.result()) instanceof Error(var err)) {
+                    logger.error("Failed to remove key '{}' from CryptoToken '{}'. {}", key.getKeyAlias(),
+                                 key.getCryptoTokenId(), err.getErrorText()
+                    );
+                } else {
+                    removedKeys.add(key.getId());
+                }
+            }
+        } while (!round.isEmpty());
+        return removedKeys;
+    }
+
+    private Result<Void, TextError> waitForRemoval(Future<Result<Void, TextError>> removal) {
+        try {
+            return removal.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.error(TextError.of("Interrupted while waiting for the removal of the key."));
+        } catch (ExecutionException e) {
+            return Result.error(TextError.of(e));
+        }
+    }
+
+    private record Removal(KeyEntity key, Future<Result<Void, TextError>> result) {}
+}
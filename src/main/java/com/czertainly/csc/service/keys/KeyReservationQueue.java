@@ -0,0 +1,272 @@
+package com.czertainly.csc.service.keys;
+
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.configuration.csc.KeyReservationSettings;
+import com.czertainly.csc.repository.entities.KeyEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps an in-memory queue of reserved keys per crypto token and key algorithm, from which the keys are handed
+ * out without any locking or database access.
+ * <p>
+ * The keys are reserved in batches by the {@link FreeKeyClaimer}, which durably marks them as used, so the
+ * keys in the queue can't be acquired by other instances of the application. A queue that drops below the
+ * refill threshold is refilled in the background. Callers finding the queue empty wait for a single refill of the
+ * queue, so that a burst of requests doesn't claim a batch of keys per request.
+ * <p>
+ * Reserved keys that stay in the queue for longer than the maximum reservation age are released back to the
+ * pool of free keys instead of being handed out, so that they are not cleaned up as used keys in the meantime.
+ * The expired keys are released when the queue is polled and by {@link #releaseExpired()}, which is called
+ * periodically, so that the keys of pools that are not used anymore are released as well. The remaining reserved
+ * keys are released when the queue is closed.
+ * <p>
+ * Every claim and release is reported to the {@link DepthListener}, so that the key pools can be replenished
+ * without counting their free keys in the database. Released keys are reported only when the database confirms
+ * that they were returned to the pool.
+ */
+public class KeyReservationQueue<E extends KeyEntity> {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyReservationQueue.class);
+
+    private final FreeKeyClaimer<E> claimer;
+    private final int batchSize;
+    private final int refillThreshold;
+    private final Duration maxReservationAge;
+    private final DepthListener depthListener;
+    private final Clock clock;
+    private final Map<PoolKey, Pool<E>> pools = new ConcurrentHashMap<>();
+
+    public KeyReservationQueue(FreeKeyClaimer<E> claimer, KeyReservationSettings settings,
+                               DepthListener depthListener
+    ) {
+        this(claimer, settings, depthListener, Clock.systemUTC());
+    }
+
+    KeyReservationQueue(FreeKeyClaimer<E> claimer, KeyReservationSettings settings, DepthListener depthListener,
+                        Clock clock
+    ) {
+        this.claimer = claimer;
+        this.depthListener = depthListener;
+        this.batchSize = settings.batchSize();
+        this.refillThreshold = settings.refillThreshold();
+        this.maxReservationAge = settings.maxReservationAge();
+        this.clock = clock;
+    }
+
+    /**
+     * Takes the next reserved key of the crypto token with the given key algorithm from the queue.
+     *
+     * @return the key, already marked as used, or an empty optional if there is no free key in the database
+     */
+    public Optional<E> poll(int cryptoTokenId, String keyAlgorithm) {
+        Pool<E> pool = pools.computeIfAbsent(new PoolKey(cryptoTokenId, keyAlgorithm), Pool::new);
+        E key = pollFresh(pool);
+        if (key == null) {
+            // Wait for the refill in progress instead of claiming another batch for every waiting caller
+            startRefill(pool).join();
+            key = pollFresh(pool);
+        }
+        if (pool.size() < refillThreshold) {
+            startRefill(pool);
+        }
+        return Optional.ofNullable(key);
+    }
+
+    /**
+     * @return the number of keys in the queue of the crypto token with the given key algorithm
+     */
+    public int size(int cryptoTokenId, String keyAlgorithm) {
+        Pool<E> pool = pools.get(new PoolKey(cryptoTokenId, keyAlgorithm));
+        return pool == null ? 0 : pool.size();
+    }
+
+    /**
+     * Releases the reserved keys of all queues that stayed in the queue for longer than the maximum reservation age
+     * back to the pool of free keys.
+     */
+    public void releaseExpired() {
+        Instant reservedAfter = clock.instant().minus(maxReservationAge);
+        for (Pool<E> pool : pools.values()) {
+            List<UUID> expired = new ArrayList<>();
+            for (Reservation<E> reservation : pool.reservations) {
+                // A reservation polled concurrently is not removed and so it is not released
+                if (!reservation.reservedAt().isAfter(reservedAfter) && pool.remove(reservation)) {
+                    expired.add(reservation.key().getId());
+                }
+            }
+            if (!expired.isEmpty()) {
+                logger.debug("Releasing {} keys of CryptoToken '{}' with algorithm '{}' reserved for too long.",
+                             expired.size(), pool.key.cryptoTokenId(), pool.key.keyAlgorithm()
+                );
+                release(pool.key, expired);
+            }
+        }
+    }
+
+    /**
+     * Releases the given keys that are marked as used, but were not used, back to the pool of free keys.
+     */
+    public void release(List<E> keys) {
+        keys.stream()
+            .collect(Collectors.groupingBy(key -> new PoolKey(key.getCryptoTokenId(), key.getKeyAlgorithm()),
+                                           Collectors.mapping(KeyEntity::getId, Collectors.toList())
+            ))
+            .forEach(this::release);
+    }
+
+    /**
+     * Releases all reserved keys that were not handed out back to the pool of free keys.
+     */
+    public void releaseAll() {
+        logger.info("Releasing reserved keys that were not used.");
+        for (Pool<E> pool : pools.values()) {
+            List<UUID> keyIds = new ArrayList<>();
+            Reservation<E> reservation;
+            while ((reservation = pool.poll()) != null) {
+                keyIds.add(reservation.key().getId());
+            }
+            release(pool.key, keyIds);
+        }
+    }
+
+    private E pollFresh(Pool<E> pool) {
+        Instant reservedAfter = clock.instant().minus(maxReservationAge);
+        List<UUID> expired = new ArrayList<>();
+        Reservation<E> reservation;
+        try {
+            while ((reservation = pool.poll()) != null) {
+                if (reservation.reservedAt().isAfter(reservedAfter)) {
+                    return reservation.key();
+                }
+                expired.add(reservation.key().getId());
+            }
+            return null;
+        } finally {
+            if (!expired.isEmpty()) {
+                logger.debug("Releasing {} keys of CryptoToken '{}' with algorithm '{}' reserved for too long.",
+                             expired.size(), pool.key.cryptoTokenId(), pool.key.keyAlgorithm()
+                );
+                Thread.ofVirtual().name("key-reservation-release").start(() -> release(pool.key, expired));
+            }
+        }
+    }
+
+    /**
+     * Starts a refill of the queue in the background, unless a refill of the queue is already in progress.
+     *
+     * @return a future completed when the refill in progress finishes
+     */
+    private CompletableFuture<Void> startRefill(Pool<E> pool) {
+        while (true) {
+            CompletableFuture<Void> inProgress = pool.refilling.get();
+            if (inProgress != null) {
+                return inProgress;
+            }
+            CompletableFuture<Void> started = new CompletableFuture<>();
+            if (pool.refilling.compareAndSet(null, started)) {
+                Thread.ofVirtual().name("key-reservation-refill").start(() -> {
+                    try {
+                        refill(pool);
+                    } finally {
+                        pool.refilling.set(null);
+                        started.complete(null);
+                    }
+                });
+                return started;
+            }
+        }
+    }
+
+    private void refill(Pool<E> pool) {
+        var claimResult = claimer.claim(pool.key.cryptoTokenId(), pool.key.keyAlgorithm(), batchSize);
+        if (claimResult instanceof Error(var err)) {
+            logger.error("Failed to refill the reservation queue of CryptoToken '{}' with algorithm '{}'. {}",
+                         pool.key.cryptoTokenId(), pool.key.keyAlgorithm(), err.getErrorText()
+            );
+            return;
+        }
+        Instant reservedAt = clock.instant();
+        List<E> claimedKeys = claimResult.unwrap();
+        if (!claimedKeys.isEmpty()) {
+            depthListener.onDepthChanged(pool.key.cryptoTokenId(), pool.key.keyAlgorithm(), -claimedKeys.size());
+        }
+        for (E claimedKey : claimedKeys) {
+            pool.offer(new Reservation<>(claimedKey, reservedAt));
+        }
+        logger.trace("Reserved {} keys of CryptoToken '{}' with algorithm '{}'.", claimedKeys.size(),
+                     pool.key.cryptoTokenId(), pool.key.keyAlgorithm()
+        );
+    }
+
+    private void release(PoolKey poolKey, List<UUID> keyIds) {
+        if (keyIds.isEmpty()) return;
+        claimer.release(keyIds)
+               .consume(released -> {
+                   if (released > 0) {
+                       depthListener.onDepthChanged(poolKey.cryptoTokenId(), poolKey.keyAlgorithm(), released);
+                   }
+               })
+               .consumeError(err -> logger.error(err.getErrorText()));
+    }
+
+    /**
+     * Listens to the changes of the number of free keys in the database caused by the queue.
+     */
+    @FunctionalInterface
+    public interface DepthListener {
+        void onDepthChanged(int cryptoTokenId, String keyAlgorithm, int change);
+    }
+
+    private record PoolKey(int cryptoTokenId, String keyAlgorithm) {}
+
+    private record Reservation<E>(E key, Instant reservedAt) {}
+
+    private static class Pool<E extends KeyEntity> {
+        private final PoolKey key;
+        private final Queue<Reservation<E>> reservations = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicReference<CompletableFuture<Void>> refilling = new AtomicReference<>();
+
+        Pool(PoolKey key) {
+            this.key = key;
+        }
+
+        void offer(Reservation<E> reservation) {
+            reservations.offer(reservation);
+            size.incrementAndGet();
+        }
+
+        Reservation<E> poll() {
+            Reservation<E> reservation = reservations.poll();
+            if (reservation != null) size.decrementAndGet();
+            return reservation;
+        }
+
+        boolean remove(Reservation<E> reservation) {
+            boolean removed = reservations.remove(reservation);
+            if (removed) size.decrementAndGet();
+            return removed;
+        }
+
+        int size() {
+            return size.get();
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.czertainly.csc.service.keys;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
 import com.czertainly.csc.model.signserver.CryptoToken;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.UUID;
 
@@ -15,7 +14,6 @@ public interface KeysService<K extends SigningKey> {
             CryptoToken cryptoToken, String keyAlias, String keyAlgorithm, String keySpec
     );
 
-    @Transactional
     Result<K, TextError> acquireKey(CryptoToken cryptoToken, String keyAlgorithm);
 
     Result<K, TextError> getKey(UUID keyId);
@@ -1,24 +1,222 @@
 package com.czertainly.csc.service.keys;
 
+import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.configuration.csc.CscConfiguration;
+import com.czertainly.csc.repository.OneTimeKeyRepository;
+import com.czertainly.csc.repository.entities.OneTimeKeyEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes used one-time keys through a deletion queue persisted in the database.
+ * <p>
+ * A key is queued by marking it as being deleted, so the queue survives restarts of the application.
+ * The queue is drained in batches: a batch of due keys is claimed by locking it with {@code FOR UPDATE SKIP LOCKED}
+ * and leasing it, i.e. postponing its next deletion attempt by the lease time, in a single transaction, so that
+ * the instances of the application draining the queue concurrently delete disjoint batches. The keys of a batch
+ * are removed from Signserver by the {@link KeyRemover} on the deletion executor and the removed keys are deleted
+ * from the database by a single statement. Keys that could not be removed stay in the queue, their failed attempts
+ * are counted and their next attempt is postponed by a delay that doubles with every failed attempt, so that keys
+ * failing repeatedly don't hold back the rest of the queue. Keys with fewer failed attempts are deleted first.
+ * Keys of an instance that stopped while deleting them are retried once their lease expires.
+ * <p>
+ * The number of queued keys is reported by the {@value #PENDING_METRIC_NAME} gauge and the processed keys
+ * are counted by the {@value #DELETIONS_METRIC_NAME} counter tagged with the outcome, which is
+ * {@code deleted} or {@code failed}.
+ */
 @Service
 public class OneTimeKeyAsyncDeletionService {
 
+    public static final String PENDING_METRIC_NAME = "csc.one.time.keys.deletion.pending";
+    public static final String DELETIONS_METRIC_NAME = "csc.one.time.keys.deletions";
+
     private static final Logger logger = LoggerFactory.getLogger(OneTimeKeyAsyncDeletionService.class);
 
-    private final OneTimeKeysService oneTimeKeysService;
+    private final OneTimeKeyRepository keysRepository;
+    private final KeyRemover keyRemover;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration retryDelay;
+    private final Duration maxRetryDelay;
+    private final Duration leaseTime;
+    private final AtomicLong pending = new AtomicLong();
+    private final Counter deletedKeys;
+    private final Counter failedKeys;
 
-    public OneTimeKeyAsyncDeletionService(OneTimeKeysService oneTimeKeysService) {
-        this.oneTimeKeysService = oneTimeKeysService;
+    public OneTimeKeyAsyncDeletionService(OneTimeKeyRepository keysRepository, SignserverClient signserverClient,
+                                          @Qualifier("oneTimeKeyDeletionExecutor") ExecutorService deletionExecutor,
+                                          CscConfiguration cscConfiguration,
+                                          PlatformTransactionManager transactionManager, MeterRegistry meterRegistry
+    ) {
+        this.keysRepository = keysRepository;
+        this.keyRemover = new KeyRemover(signserverClient, deletionExecutor,
+                                         cscConfiguration.oneTimeKeys().maxParallelDeletionsPerCryptoToken()
+        );
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = cscConfiguration.oneTimeKeys().deletionBatchSize();
+        this.retryDelay = cscConfiguration.oneTimeKeys().deletionRetryDelay();
+        this.maxRetryDelay = cscConfiguration.oneTimeKeys().maxDeletionRetryDelay();
+        this.leaseTime = cscConfiguration.oneTimeKeys().deletionLeaseTime();
+        Gauge.builder(PENDING_METRIC_NAME, pending, AtomicLong::get)
+             .description("Number of used one-time keys waiting for deletion")
+             .register(meterRegistry);
+        this.deletedKeys = deletionCounter(meterRegistry, "deleted");
+        this.failedKeys = deletionCounter(meterRegistry, "failed");
     }
 
-    @Async("oneTimeKeyDeletionExecutor")
+    /**
+     * Queues the key for deletion.
+     */
     public void deleteKeyAsync(OneTimeKey key) {
-        oneTimeKeysService.deleteKey(key)
-                .consumeError(err -> logger.error("Async deletion failed for one-time key '{}': {}", key.keyAlias(), err));
+        try {
+            if (keysRepository.markForDeletion(key.id()) > 0) {
+                pending.incrementAndGet();
+                logger.debug("One-time key '{}' was queued for deletion.", key.keyAlias());
+            }
+        } catch (Exception e) {
+            logger.error("Failed to queue one-time key '{}' for deletion.", key.keyAlias(), e);
+        }
+    }
+
+    /**
+     * Queues the keys for deletion, the keys already queued are skipped.
+     *
+     * @return the number of keys queued
+     */
+    public Result<Integer, TextError> queueForDeletion(List<OneTimeKeyEntity> keys) {
+        try {
+            int queued = keysRepository.markAllForDeletion(keys.stream().map(OneTimeKeyEntity::getId).toList());
+            pending.addAndGet(queued);
+            return Result.success(queued);
+        } catch (Exception e) {
+            logger.error("Failed to queue {} one-time keys for deletion.", keys.size(), e);
+            return Result.error(TextError.of("Failed to queue %d one-time keys for deletion.", keys.size()));
+        }
+    }
+
+    /**
+     * Deletes the queued keys that are due batch by batch until no due keys are left.
+     */
+    public void drain() {
+        while (true) {
+            List<OneTimeKeyEntity> batch;
+            try {
+                batch = claimDueKeys();
+            } catch (Exception e) {
+                logger.error("Failed to claim one-time keys queued for deletion.", e);
+                return;
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            var deleteResult = removeAndDelete(batch);
+            if (deleteResult instanceof Error(var err)) {
+                logger.error(err.getErrorText());
+                return;
+            }
+            Set<UUID> removedKeys = new HashSet<>(deleteResult.unwrap());
+            logger.info("Deleted {} of {} one-time keys queued for deletion.", removedKeys.size(), batch.size());
+
+            List<OneTimeKeyEntity> failedKeys = batch.stream().filter(key -> !removedKeys.contains(key.getId()))
+                                                     .toList();
+            // The failed keys must be postponed, otherwise they would be claimed again after their lease expires
+            if (!postpone(failedKeys)) {
+                return;
+            }
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+        updatePending();
+    }
+
+    private List<OneTimeKeyEntity> claimDueKeys() {
+        List<OneTimeKeyEntity> claimedKeys = transactionTemplate.execute(status -> {
+            ZonedDateTime now = ZonedDateTime.now();
+            List<OneTimeKeyEntity> keys = keysRepository.lockDueForDeletion(now, Limit.of(batchSize));
+            if (keys.isEmpty()) return keys;
+
+            keysRepository.leaseDeletion(keys.stream().map(OneTimeKeyEntity::getId).toList(), now.plus(leaseTime));
+            return keys;
+        });
+        return claimedKeys == null ? List.of() : claimedKeys;
+    }
+
+    private Result<List<UUID>, TextError> removeAndDelete(List<OneTimeKeyEntity> keys) {
+        List<UUID> removedKeys = keyRemover.remove(keys);
+        if (!removedKeys.isEmpty()) {
+            try {
+                keysRepository.deleteAllByIdIn(removedKeys);
+            } catch (Exception e) {
+                logger.error("Failed to delete {} one-time keys from database.", removedKeys.size(), e);
+                return Result.error(TextError.of("Failed to delete %d one-time keys from database.",
+                                                 removedKeys.size()
+                ));
+            }
+        }
+        deletedKeys.increment(removedKeys.size());
+        failedKeys.increment(keys.size() - removedKeys.size());
+        return Result.success(removedKeys);
+    }
+
+    private boolean postpone(List<OneTimeKeyEntity> keys) {
+        Map<Integer, List<UUID>> keysByAttempts = keys.stream().collect(Collectors.groupingBy(
+                key -> key.getDeletionAttempts() + 1,
+                Collectors.mapping(OneTimeKeyEntity::getId, Collectors.toList())
+        ));
+        ZonedDateTime now = ZonedDateTime.now();
+        try {
+            keysByAttempts.forEach((attempts, ids) -> keysRepository.postponeDeletion(
+                    ids, attempts, now.plus(retryDelay(attempts))
+            ));
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to postpone deletion of {} one-time keys.", keys.size(), e);
+            return false;
+        }
+    }
+
+    private Duration retryDelay(int attempts) {
+        int doublings = Math.min(attempts - 1, 30);
+        Duration delay = retryDelay.multipliedBy(1L << doublings);
+        return delay.compareTo(maxRetryDelay) > 0 ? maxRetryDelay : delay;
+    }
+
+    private void updatePending() {
+        try {
+            pending.set(keysRepository.countByDeleting(true));
+        } catch (Exception e) {
+            logger.warn("Failed to count one-time keys queued for deletion.", e);
+        }
+    }
+
+    private static Counter deletionCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder(DELETIONS_METRIC_NAME)
+                      .description("Number of used one-time keys processed for deletion")
+                      .tag("outcome", outcome)
+                      .register(meterRegistry);
     }
 }
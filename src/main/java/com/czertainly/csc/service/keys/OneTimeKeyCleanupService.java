@@ -1,44 +1,102 @@
 package com.czertainly.csc.service.keys;
 
+import com.czertainly.csc.common.result.Error;
 import com.czertainly.csc.configuration.csc.CscConfiguration;
+import com.czertainly.csc.repository.OneTimeKeyRepository;
+import com.czertainly.csc.repository.entities.OneTimeKeyEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
 
+/**
+ * Queues the one-time keys that were used up before the keep time for deletion.
+ * <p>
+ * The keys are read in pages ordered by their acquisition time and id, each page continuing after the last key
+ * of the previous one, and every page is queued to the {@link OneTimeKeyAsyncDeletionService}. The keys are removed
+ * only by the deletion queue, which claims them with {@code FOR UPDATE SKIP LOCKED}, so instances cleaning up
+ * concurrently never remove the same key twice.
+ * <p>
+ * A cleanup stops after a page once its time budget is exhausted and remembers the last key as a checkpoint, from
+ * which the next cleanup continues. The checkpoint is kept in memory, so the cleanup resumes from it only within
+ * a single running instance. Another instance, or the same one after a restart, starts from the oldest key again,
+ * which is safe, as the keys already queued are excluded by the query.
+ */
 @Component
 public class OneTimeKeyCleanupService {
 
     private static final Logger logger = LoggerFactory.getLogger(OneTimeKeyCleanupService.class);
-    private final OneTimeKeysService oneTimeKeysService;
+    private final OneTimeKeyRepository keysRepository;
+    private final OneTimeKeyAsyncDeletionService deletionService;
     private final Duration usedUpKeysKeepTime;
+    private final int pageSize;
+    private final Duration timeBudget;
+    private volatile Checkpoint checkpoint;
 
-    public OneTimeKeyCleanupService(OneTimeKeysService oneTimeKeysService, CscConfiguration cscConfiguration) {
-        this.oneTimeKeysService = oneTimeKeysService;
+    public OneTimeKeyCleanupService(OneTimeKeyRepository keysRepository,
+                                    OneTimeKeyAsyncDeletionService deletionService, CscConfiguration cscConfiguration
+    ) {
+        this.keysRepository = keysRepository;
+        this.deletionService = deletionService;
         this.usedUpKeysKeepTime = cscConfiguration.oneTimeKeys().usedUpKeyKeepTime();
+        this.pageSize = cscConfiguration.oneTimeKeys().deletionBatchSize();
+        this.timeBudget = cscConfiguration.oneTimeKeys().cleanupTimeBudget();
     }
 
     public void cleanUsedUpKeys() {
-        ZonedDateTime now = ZonedDateTime.now();
-        ZonedDateTime before = now.minus(usedUpKeysKeepTime);
-        oneTimeKeysService.getKeysAcquiredBefore(before)
-                          .consume(expiredKeys -> {
-                              logger.info("Found {} one-time keys for cleanup", expiredKeys.size());
-                              for (OneTimeKey expired : expiredKeys) {
-                                  oneTimeKeysService
-                                          .deleteKey(expired)
-                                          .consumeError(err -> logger.error(
-                                                                "An error occurred while deleting used one-time key '{}'. {}",
-                                                                expired.keyAlias(), err
-                                                        )
-                                          );
-                              }
-                          })
-                          .consumeError(
-                                  err -> logger.error(
-                                          "An error occurred while cleaning up used one-time keys. {}", err)
-                          );
+        ZonedDateTime before = ZonedDateTime.now().minus(usedUpKeysKeepTime);
+        long deadline = System.nanoTime() + timeBudget.toNanos();
+        Checkpoint last = checkpoint;
+        if (last == null) {
+            logger.info("Starting cleanup of one-time keys used before '{}'.", before);
+        } else {
+            logger.info("Resuming cleanup of one-time keys used before '{}' after key '{}'.", before, last.id());
+        }
+
+        int processed = 0;
+        int queued = 0;
+        while (true) {
+            List<OneTimeKeyEntity> page;
+            try {
+                page = last == null
+                        ? keysRepository.findUsedKeysAcquiredBefore(before, Limit.of(pageSize))
+                        : keysRepository.findUsedKeysAcquiredBeforeAfter(before, last.acquiredAt(), last.id(),
+                                                                         Limit.of(pageSize)
+                        );
+            } catch (Exception e) {
+                logger.error("An error occurred while retrieving used one-time keys for cleanup.", e);
+                break;
+            }
+
+            if (!page.isEmpty()) {
+                var queueResult = deletionService.queueForDeletion(page);
+                if (queueResult instanceof Error(var err)) {
+                    logger.error("An error occurred while cleaning up used one-time keys. {}", err.getErrorText());
+                    break;
+                }
+                processed += page.size();
+                queued += queueResult.unwrap();
+                OneTimeKeyEntity lastKey = page.getLast();
+                last = new Checkpoint(lastKey.getAcquiredAt(), lastKey.getId());
+            }
+
+            if (page.size() < pageSize) {
+                last = null;
+                break;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                logger.info("Time budget of the cleanup of one-time keys exhausted, the next cleanup will continue.");
+                break;
+            }
+        }
+        checkpoint = last;
+        logger.info("Queued {} of {} used one-time keys for deletion.", queued, processed);
     }
+
+    private record Checkpoint(ZonedDateTime acquiredAt, UUID id) {}
 }
@@ -1,11 +1,15 @@
 package com.czertainly.csc.service.keys;
 
 import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.configuration.csc.CscConfiguration;
+import com.czertainly.csc.configuration.keypools.KeyUsageDesignation;
 import com.czertainly.csc.model.signserver.CryptoToken;
 import com.czertainly.csc.repository.KeyRepository;
 import com.czertainly.csc.repository.entities.SessionKeyEntity;
 import com.czertainly.csc.signing.configuration.WorkerRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.UUID;
 
@@ -13,9 +17,13 @@ import java.util.UUID;
 public class SessionKeysService extends AbstractSigningKeysService<SessionKeyEntity, SessionKey> {
 
     public SessionKeysService(KeyRepository<SessionKeyEntity> keysRepository,
-                              SignserverClient signserverClient, WorkerRepository workerRepository
+                              SignserverClient signserverClient, WorkerRepository workerRepository,
+                              CscConfiguration cscConfiguration, PlatformTransactionManager transactionManager,
+                              ApplicationEventPublisher eventPublisher
     ) {
-        super(keysRepository, signserverClient, workerRepository);
+        super(keysRepository, signserverClient, workerRepository, cscConfiguration.keyReservation(),
+              transactionManager, KeyUsageDesignation.SESSION_SIGNATURE, eventPublisher
+        );
     }
 
     @Override
@@ -1,17 +1,21 @@
 package com.czertainly.csc.service.scheduled;
 
 import com.czertainly.csc.common.exceptions.ApplicationException;
+import com.czertainly.csc.configuration.csc.CscConfiguration;
+import com.czertainly.csc.configuration.csc.KeyReplenishmentSettings;
 import com.czertainly.csc.configuration.keypools.KeyUsageDesignation;
 import com.czertainly.csc.model.signserver.CryptoToken;
 import com.czertainly.csc.service.keys.*;
 import com.czertainly.csc.signing.configuration.WorkerRepository;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
 @Component
 @Profile("keys-generator")
@@ -21,18 +25,29 @@ public class KeyPoolReplenishTrigger {
     private final KeyPoolReplenisher<OneTimeKey> oneTimeKeyPoolReplenisher;
 
     public KeyPoolReplenishTrigger(WorkerRepository repository, SessionKeysService sessionKeysService,
-                                   OneTimeKeysService oneTimeKeysService,
-                                   @Qualifier("keyGenerationExecutor") ExecutorService keyGenerationExecutor) {
+                                   OneTimeKeysService oneTimeKeysService, CscConfiguration cscConfiguration,
+                                   @Qualifier("keyGenerationExecutor") ExecutorService keyGenerationExecutor,
+                                   @Qualifier("keyReplenishScheduler") ScheduledExecutorService keyReplenishScheduler,
+                                   KeyGenerationMetrics keyGenerationMetrics) {
+        KeyReplenishmentSettings replenishmentSettings = cscConfiguration.keyReplenishment() == null
+                ? KeyReplenishmentSettings.defaults()
+                : cscConfiguration.keyReplenishment();
 
         List<CryptoToken> cryptoTokensForSessionSignatures = getCryptoTokensWithDesignatedUsage(
                 repository, KeyUsageDesignation.SESSION_SIGNATURE
         );
-        sessionKeyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokensForSessionSignatures, sessionKeysService, keyGenerationExecutor);
+        sessionKeyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokensForSessionSignatures, sessionKeysService,
+                                                             keyGenerationExecutor, replenishmentSettings,
+                                                             keyReplenishScheduler, keyGenerationMetrics
+        );
 
         List<CryptoToken> cryptoTokensForOneTimeSignatures = getCryptoTokensWithDesignatedUsage(
                 repository, KeyUsageDesignation.ONE_TIME_SIGNATURE
         );
-        oneTimeKeyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokensForOneTimeSignatures, oneTimeKeysService, keyGenerationExecutor);
+        oneTimeKeyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokensForOneTimeSignatures, oneTimeKeysService,
+                                                             keyGenerationExecutor, replenishmentSettings,
+                                                             keyReplenishScheduler, keyGenerationMetrics
+        );
     }
 
     @Scheduled(cron = "${csc.signingSessions.generateCronExpression:30 */1 * * * *}")
@@ -45,6 +60,16 @@ public class KeyPoolReplenishTrigger {
         oneTimeKeyPoolReplenisher.replenishPools();
     }
 
+    @EventListener
+    public void onKeyPoolDepthChanged(KeyPoolDepthChangedEvent event) {
+        switch (event.designatedUsage()) {
+            case SESSION_SIGNATURE -> sessionKeyPoolReplenisher.onDepthChanged(
+                    event.cryptoTokenId(), event.keyAlgorithm(), event.change());
+            case ONE_TIME_SIGNATURE -> oneTimeKeyPoolReplenisher.onDepthChanged(
+                    event.cryptoTokenId(), event.keyAlgorithm(), event.change());
+        }
+    }
+
     private static List<CryptoToken> getCryptoTokensWithDesignatedUsage(
             WorkerRepository repository, KeyUsageDesignation keyUsage
     ) {
@@ -0,0 +1,26 @@
+package com.czertainly.csc.service.scheduled;
+
+import com.czertainly.csc.service.keys.OneTimeKeysService;
+import com.czertainly.csc.service.keys.SessionKeysService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class KeyReservationSweepTrigger {
+
+    private final OneTimeKeysService oneTimeKeysService;
+    private final SessionKeysService sessionKeysService;
+
+    public KeyReservationSweepTrigger(OneTimeKeysService oneTimeKeysService, SessionKeysService sessionKeysService) {
+        this.oneTimeKeysService = oneTimeKeysService;
+        this.sessionKeysService = sessionKeysService;
+    }
+
+    @Scheduled(fixedDelayString = "${csc.keyReservation.sweepInterval:PT1M}")
+    public void releaseExpiredReservations() {
+        oneTimeKeysService.releaseExpiredReservations();
+        sessionKeysService.releaseExpiredReservations();
+        oneTimeKeysService.releaseOrphanedReservations();
+        sessionKeysService.releaseOrphanedReservations();
+    }
+}
@@ -0,0 +1,20 @@
+package com.czertainly.csc.service.scheduled;
+
+import com.czertainly.csc.service.keys.OneTimeKeyAsyncDeletionService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class OneTimeKeyDeletionTrigger {
+
+    private final OneTimeKeyAsyncDeletionService oneTimeKeyAsyncDeletionService;
+
+    public OneTimeKeyDeletionTrigger(OneTimeKeyAsyncDeletionService oneTimeKeyAsyncDeletionService) {
+        this.oneTimeKeyAsyncDeletionService = oneTimeKeyAsyncDeletionService;
+    }
+
+    @Scheduled(fixedDelayString = "${csc.oneTimeKeys.deletionInterval:PT5S}")
+    public void deleteQueuedKeys() {
+        oneTimeKeyAsyncDeletionService.drain();
+    }
+}
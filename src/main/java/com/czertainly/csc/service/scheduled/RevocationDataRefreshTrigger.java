@@ -0,0 +1,29 @@
+package com.czertainly.csc.service.scheduled;
+
+import com.czertainly.csc.clients.ejbca.CertificateRevokedEvent;
+import com.czertainly.csc.components.revocation.RevocationStatusProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class RevocationDataRefreshTrigger {
+
+    private final RevocationStatusProvider revocationStatusProvider;
+
+    public RevocationDataRefreshTrigger(RevocationStatusProvider revocationStatusProvider) {
+        this.revocationStatusProvider = revocationStatusProvider;
+    }
+
+    @Scheduled(fixedDelayString = "${caProvider.revocation.crlRefreshInterval:PT5M}")
+    public void refreshRevocationData() {
+        revocationStatusProvider.refresh();
+    }
+
+    @EventListener
+    public void onCertificateRevoked(CertificateRevokedEvent event) {
+        revocationStatusProvider.certificateRevoked(event.certificateSerialNumberHex(), event.issuerDN(),
+                                                    event.revocationReason()
+        );
+    }
+}
@@ -5,7 +5,10 @@ import com.czertainly.csc.clients.signserver.SignserverClient;
 import com.czertainly.csc.common.result.Error;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.common.utils.ParallelExecution;
+import com.czertainly.csc.configuration.csc.CscConfiguration;
 import com.czertainly.csc.crypto.AlgorithmHelper;
+import com.czertainly.csc.crypto.SignatureAlgorithm;
 import com.czertainly.csc.model.DocumentContentToSign;
 import com.czertainly.csc.model.SignDocParameters;
 import com.czertainly.csc.model.SignedDocuments;
@@ -16,8 +19,12 @@ import com.czertainly.csc.service.credentials.SigningSessionsService;
 import com.czertainly.csc.service.keys.OneTimeKeyAsyncDeletionService;
 import com.czertainly.csc.service.keys.OneTimeKeysService;
 import com.czertainly.csc.service.keys.SessionKeysService;
+import com.czertainly.csc.signing.configuration.ConformanceLevel;
+import com.czertainly.csc.signing.configuration.SignatureFormat;
+import com.czertainly.csc.signing.configuration.SignaturePackaging;
 import com.czertainly.csc.signing.configuration.WorkerRepository;
 import com.czertainly.csc.signing.configuration.process.SignatureProcessTemplate;
+import com.czertainly.csc.signing.configuration.process.SignatureStageMetrics;
 import com.czertainly.csc.signing.configuration.process.configuration.*;
 import com.czertainly.csc.signing.configuration.process.signers.DocumentContentSigner;
 import com.czertainly.csc.signing.configuration.process.token.*;
@@ -26,9 +33,12 @@ import com.czertainly.csc.signing.signatureauthorizers.DocumentAuthorizer;
 import com.czertainly.csc.signing.signatureauthorizers.DocumentHashAuthorizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 @Component
 public class DocumentContentSigning {
@@ -40,6 +50,8 @@ public class DocumentContentSigning {
     private final SignatureProcessTemplate<SessionTokenConfiguration, DocumentContentSignatureProcessConfiguration, SessionToken> sessionContentSignature;
 
     private final SignatureTypeDecider signatureTypeDecider;
+    private final ExecutorService signingExecutor;
+    private final int maxParallelSignatures;
 
     SignserverClient signserverClient;
     WorkerRepository workerRepository;
@@ -54,9 +66,14 @@ public class DocumentContentSigning {
                                   SigningSessionsService signingSessionsService,
                                   SessionCredentialsService sessionCredentialsService,
                                   CredentialProfileRepository credentialProfileRepository,
-                                  SignatureTypeDecider signatureTypeDecider
+                                  SignatureTypeDecider signatureTypeDecider,
+                                  CscConfiguration cscConfiguration,
+                                  @Qualifier("signingExecutor") ExecutorService signingExecutor,
+                                  SignatureStageMetrics signatureStageMetrics
     ) {
         this.signatureTypeDecider = signatureTypeDecider;
+        this.signingExecutor = signingExecutor;
+        this.maxParallelSignatures = cscConfiguration.concurrency().maxParallelSignatures();
         DocumentAuthorizer documentAuthorizer = new DocumentAuthorizer(
                 new AlgorithmHelper(), new DocumentHashAuthorizer()
         );
@@ -79,28 +96,34 @@ public class DocumentContentSigning {
         );
 
         DocumentContentSigner<DocumentContentSignatureProcessConfiguration> documentContentSigner = new DocumentContentSigner<>(
-                signserverClient);
+                signserverClient, signingExecutor);
 
         this.signserverClient = signserverClient;
         this.workerRepository = workerRepository;
 
         longTermContentSignature = new SignatureProcessTemplate<>(
+                SignatureType.LONG_TERM,
                 documentAuthorizer,
                 workerRepository,
                 longTermTokenProvider,
-                documentContentSigner
+                documentContentSigner,
+                signatureStageMetrics
         );
         oneTimeContentSignature = new SignatureProcessTemplate<>(
+                SignatureType.ONE_TIME,
                 documentAuthorizer,
                 workerRepository,
                 oneTimeTokenProvider,
-                documentContentSigner
+                documentContentSigner,
+                signatureStageMetrics
         );
         sessionContentSignature = new SignatureProcessTemplate<>(
+                SignatureType.SESSION,
                 documentAuthorizer,
                 workerRepository,
                 sessionTokenProvider,
-                documentContentSigner
+                documentContentSigner,
+                signatureStageMetrics
         );
     }
 
@@ -109,61 +132,153 @@ public class DocumentContentSigning {
             return Result.error(TextError.of("No documents to sign."));
         }
 
-        SignedDocuments signedDocuments = SignedDocuments.empty();
-        for (DocumentContentToSign documentToSign : parameters.documentsToSign()) {
-            DocumentContentSignatureProcessConfiguration configuration = new DocumentContentSignatureProcessConfiguration(
-                    parameters.userID(),
-                    parameters.sad(),
-                    parameters.signatureQualifier(),
-                    documentToSign.signatureFormat(),
-                    documentToSign.conformanceLevel(),
-                    documentToSign.signaturePackaging(),
-                    documentToSign.signatureAlgorithm(),
-                    parameters.returnValidationInfo()
+        if (parameters.documentsToSign().size() > parameters.sad().getNumSignatures()) {
+            logger.info("Number of documents to sign {} is greater than the number of signatures {} allowed by the SAD.",
+                        parameters.documentsToSign().size(), parameters.sad().getNumSignatures()
             );
+            return Result.error(TextError.of(
+                    "Number of documents to sign is greater than the number of signatures allowed by the SAD."));
+        }
+
+        Result<SignatureType, TextError> getSignatureType = signatureTypeDecider.decideType(parameters);
+        if (getSignatureType instanceof Error(var err))
+            return Result.error(err.extend("Failed to determine signature type."));
+        SignatureType signatureType = getSignatureType.unwrap();
+
+        // Documents sharing the same signature configuration are signed together using a single signing token
+        List<DocumentGroup> documentGroups = groupDocuments(parameters.documentsToSign());
+        logger.debug("{} documents to sign were split into {} groups.", parameters.documentsToSign().size(),
+                     documentGroups.size()
+        );
+
+        Signature[] signatures = new Signature[parameters.documentsToSign().size()];
+        SignedDocuments validationData = SignedDocuments.empty();
+        if (signatureType == SignatureType.SESSION && documentGroups.size() > 1) {
+            // The first signature of a session may create the session, so it must finish before the rest
+            // of the groups can share it.
+            var firstGroupResult = signGroup(parameters, cscAuthenticationToken, signatureType,
+                                             documentGroups.getFirst(), maxParallelSignatures
+            );
+            if (firstGroupResult instanceof Error(var err))
+                return Result.error(err.extend("Failed to sign one of the documents to sign."));
+            collect(documentGroups.getFirst(), firstGroupResult.unwrap(), signatures, validationData);
+            documentGroups = documentGroups.subList(1, documentGroups.size());
+        }
+
+        // The groups and the documents within them are signed in parallel, the limit of concurrent signatures
+        // is split between the groups running at the same time so that the whole request stays within it
+        int parallelGroups = Math.max(1, Math.min(maxParallelSignatures, documentGroups.size()));
+        int parallelSignaturesPerGroup = Math.max(1, maxParallelSignatures / parallelGroups);
+        List<Supplier<Result<SignedDocuments, TextError>>> tasks = new ArrayList<>(documentGroups.size());
+        for (DocumentGroup documentGroup : documentGroups) {
+            tasks.add(() -> signGroup(parameters, cscAuthenticationToken, signatureType, documentGroup,
+                                      parallelSignaturesPerGroup
+            ));
+        }
+
+        var signGroupsResult = ParallelExecution.runAll(tasks, signingExecutor, parallelGroups);
+        if (signGroupsResult instanceof Error(var err))
+            return Result.error(err.extend("Failed to sign one of the documents to sign."));
+        List<SignedDocuments> signedGroups = signGroupsResult.unwrap();
+        for (int i = 0; i < documentGroups.size(); i++) {
+            collect(documentGroups.get(i), signedGroups.get(i), signatures, validationData);
+        }
+
+        return Result.success(new SignedDocuments(
+                new ArrayList<>(Arrays.asList(signatures)),
+                validationData.crls(),
+                validationData.ocsps(),
+                validationData.certs()
+        ));
+    }
 
-            Result<SignedDocuments, TextError> signatureResult = null;
-            Result<SignatureType, TextError> getSignatureType = signatureTypeDecider.decideType(parameters);
-            if (getSignatureType instanceof Error(var err))
-                return Result.error(err.extend("Failed to determine signature type."));
-            SignatureType signatureType = getSignatureType.unwrap();
+    private Result<SignedDocuments, TextError> signGroup(
+            SignDocParameters parameters, CscAuthenticationToken cscAuthenticationToken,
+            SignatureType signatureType, DocumentGroup documentGroup, int maxParallelSignatures
+    ) {
+        DocumentContentToSign first = documentGroup.documents().getFirst();
+        DocumentContentSignatureProcessConfiguration configuration = new DocumentContentSignatureProcessConfiguration(
+                parameters.userID(),
+                parameters.sad(),
+                parameters.signatureQualifier(),
+                first.signatureFormat(),
+                first.conformanceLevel(),
+                first.signaturePackaging(),
+                first.signatureAlgorithm(),
+                parameters.returnValidationInfo(),
+                maxParallelSignatures
+        );
+        List<String> contents = documentGroup.documents().stream().map(DocumentContentToSign::content).toList();
 
-            switch (signatureType) {
-                case LONG_TERM -> {
-                    logger.info("Signing with long term token with credential ID: {}", parameters.credentialID());
-                    LongTermTokenConfiguration tokenConfiguration = new LongTermTokenConfiguration(
+        return switch (signatureType) {
+            case LONG_TERM -> {
+                logger.info("Signing {} documents with long term token with credential ID: {}", contents.size(),
                             parameters.credentialID()
-                    );
-                    signatureResult = longTermContentSignature.sign(configuration, tokenConfiguration,
-                            List.of(documentToSign.content())
-                    );
-                }
-                case ONE_TIME -> {
-                    logger.info("Signing with one time token.");
-                    OneTimeTokenConfiguration tokenConfiguration = new OneTimeTokenConfiguration(
-                            cscAuthenticationToken
-                    );
-                    signatureResult = oneTimeContentSignature.sign(configuration, tokenConfiguration,
-                            List.of(documentToSign.content())
-                    );
-                }
-                case SESSION -> {
-                    logger.info("Signing with session token. Session ID: {}", parameters.sessionId().orElseThrow());
-                    SessionTokenConfiguration tokenConfiguration = new SessionTokenConfiguration(
-                            parameters.sessionId().orElseThrow(), cscAuthenticationToken
-                    );
-                    signatureResult = sessionContentSignature.sign(configuration, tokenConfiguration,
-                            List.of(documentToSign.content()));
-                }
+                );
+                LongTermTokenConfiguration tokenConfiguration = new LongTermTokenConfiguration(
+                        parameters.credentialID()
+                );
+                yield longTermContentSignature.sign(configuration, tokenConfiguration, contents);
             }
+            case ONE_TIME -> {
+                logger.info("Signing {} documents with one time token.", contents.size());
+                OneTimeTokenConfiguration tokenConfiguration = new OneTimeTokenConfiguration(
+                        cscAuthenticationToken
+                );
+                yield oneTimeContentSignature.sign(configuration, tokenConfiguration, contents);
+            }
+            case SESSION -> {
+                logger.info("Signing {} documents with session token. Session ID: {}", contents.size(),
+                            parameters.sessionId().orElseThrow()
+                );
+                SessionTokenConfiguration tokenConfiguration = new SessionTokenConfiguration(
+                        parameters.sessionId().orElseThrow(), cscAuthenticationToken
+                );
+                yield sessionContentSignature.sign(configuration, tokenConfiguration, contents);
+            }
+        };
+    }
 
-            if (signatureResult instanceof Error(var err))
-                return Result.error(err.extend("Failed to sign one of the document digest to sign."));
-            SignedDocuments docs = signatureResult.unwrap();
-            signedDocuments.extend(docs);
+    private static List<DocumentGroup> groupDocuments(List<DocumentContentToSign> documentsToSign) {
+        Map<DocumentGroupKey, DocumentGroup> groups = new LinkedHashMap<>();
+        for (int i = 0; i < documentsToSign.size(); i++) {
+            DocumentContentToSign document = documentsToSign.get(i);
+            DocumentGroupKey key = new DocumentGroupKey(
+                    document.signatureFormat(),
+                    document.conformanceLevel(),
+                    document.signaturePackaging(),
+                    document.signatureAlgorithm()
+            );
+            DocumentGroup group = groups.computeIfAbsent(key, k -> new DocumentGroup(new ArrayList<>(),
+                                                                                    new ArrayList<>()
+            ));
+            group.documents().add(document);
+            group.positions().add(i);
         }
+        return new ArrayList<>(groups.values());
+    }
 
-        return Result.success(signedDocuments);
+    private static void collect(DocumentGroup group, SignedDocuments signed, Signature[] signatures,
+                                SignedDocuments validationData
+    ) {
+        for (int i = 0; i < group.positions().size(); i++) {
+            signatures[group.positions().get(i)] = signed.signatures().get(i);
+        }
+        validationData.crls().addAll(signed.crls());
+        validationData.ocsps().addAll(signed.ocsps());
+        validationData.certs().addAll(signed.certs());
     }
 
+    private record DocumentGroupKey(
+            SignatureFormat signatureFormat,
+            ConformanceLevel conformanceLevel,
+            SignaturePackaging signaturePackaging,
+            SignatureAlgorithm signatureAlgorithm
+    ) {}
+
+    /**
+     * Documents signed together with a single signing token, with their positions in the original request.
+     */
+    private record DocumentGroup(List<DocumentContentToSign> documents, List<Integer> positions) {}
+
 }
@@ -2,9 +2,12 @@ package com.czertainly.csc.signing;
 
 import com.czertainly.csc.api.auth.CscAuthenticationToken;
 import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.clients.signserver.SingleHashSignatureCoalescer;
 import com.czertainly.csc.common.result.Error;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.common.utils.ParallelExecution;
+import com.czertainly.csc.configuration.csc.CscConfiguration;
 import com.czertainly.csc.model.DocumentDigestsToSign;
 import com.czertainly.csc.model.SignDocParameters;
 import com.czertainly.csc.model.SignedDocuments;
@@ -17,6 +20,7 @@ import com.czertainly.csc.service.keys.OneTimeKeysService;
 import com.czertainly.csc.service.keys.SessionKeysService;
 import com.czertainly.csc.signing.configuration.WorkerRepository;
 import com.czertainly.csc.signing.configuration.process.SignatureProcessTemplate;
+import com.czertainly.csc.signing.configuration.process.SignatureStageMetrics;
 import com.czertainly.csc.signing.configuration.process.configuration.DocumentHashSignatureProcessConfiguration;
 import com.czertainly.csc.signing.configuration.process.configuration.LongTermTokenConfiguration;
 import com.czertainly.csc.signing.configuration.process.configuration.OneTimeTokenConfiguration;
@@ -27,8 +31,14 @@ import com.czertainly.csc.signing.configuration.profiles.CredentialProfileReposi
 import com.czertainly.csc.signing.signatureauthorizers.DocumentHashAuthorizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
 @Component
 public class DocumentHashSigning {
 
@@ -38,6 +48,8 @@ public class DocumentHashSigning {
     private final SignatureProcessTemplate<LongTermTokenConfiguration, DocumentHashSignatureProcessConfiguration, LongTermToken> longTermHashSignature;
     private final SignatureProcessTemplate<SessionTokenConfiguration, DocumentHashSignatureProcessConfiguration, SessionToken> sessionSignature;
     private final SignatureTypeDecider signatureTypeDecider;
+    private final ExecutorService signingExecutor;
+    private final int maxParallelSignatures;
 
     public DocumentHashSigning(WorkerRepository workerRepository,
                                OneTimeKeySelector oneTimeKeySelector, SessionKeySelector sessionKeySelector,
@@ -48,9 +60,15 @@ public class DocumentHashSigning {
                                SigningSessionsService signingSessionsService,
                                SessionCredentialsService sessionCredentialsService,
                                CredentialProfileRepository credentialProfileRepository,
-                               SignatureTypeDecider signatureTypeDecider
+                               SignatureTypeDecider signatureTypeDecider,
+                               CscConfiguration cscConfiguration,
+                               @Qualifier("signingExecutor") ExecutorService signingExecutor,
+                               SignatureStageMetrics signatureStageMetrics,
+                               SingleHashSignatureCoalescer singleHashSignatureCoalescer
     ) {
         this.signatureTypeDecider = signatureTypeDecider;
+        this.signingExecutor = signingExecutor;
+        this.maxParallelSignatures = cscConfiguration.concurrency().maxParallelSignatures();
         DocumentHashAuthorizer documentHashAuthorizer = new DocumentHashAuthorizer();
         OneTimeTokenProvider<DocumentHashSignatureProcessConfiguration> oneTimeTokenProvider = new OneTimeTokenProvider<>(
                 signatureQualifierBasedCredentialFactory, oneTimeKeySelector, oneTimeKeysService, asyncDeletionService);
@@ -67,26 +85,35 @@ public class DocumentHashSigning {
 
         DocumentHashSigner<DocumentHashSignatureProcessConfiguration> documentHashSigner = new DocumentHashSigner<>(
                 signserverClient);
+        // Only requests with long-term credentials can share the key with other concurrent requests
+        DocumentHashSigner<DocumentHashSignatureProcessConfiguration> coalescingDocumentHashSigner = new DocumentHashSigner<>(
+                signserverClient, singleHashSignatureCoalescer);
 
         oneTimeHashSignature = new SignatureProcessTemplate<>(
+                SignatureType.ONE_TIME,
                 documentHashAuthorizer,
                 workerRepository,
                 oneTimeTokenProvider,
-                documentHashSigner
+                documentHashSigner,
+                signatureStageMetrics
         );
 
         longTermHashSignature = new SignatureProcessTemplate<>(
+                SignatureType.LONG_TERM,
                 documentHashAuthorizer,
                 workerRepository,
                 longTermTokenProvider,
-                documentHashSigner
+                coalescingDocumentHashSigner,
+                signatureStageMetrics
         );
 
         sessionSignature = new SignatureProcessTemplate<>(
+                SignatureType.SESSION,
                 documentHashAuthorizer,
                 workerRepository,
                 sessionTokenProvider,
-                documentHashSigner
+                documentHashSigner,
+                signatureStageMetrics
         );
     }
 
@@ -97,58 +124,75 @@ public class DocumentHashSigning {
         if (parameters.documentDigestsToSign().isEmpty()) {
             return Result.error(TextError.of("No document digests to sign."));
         }
-        SignedDocuments signedDocuments = SignedDocuments.empty();
-        for (DocumentDigestsToSign digestsToSign : parameters.documentDigestsToSign()) {
-            DocumentHashSignatureProcessConfiguration configuration = new DocumentHashSignatureProcessConfiguration(
-                    parameters.userID(),
-                    parameters.sad(),
-                    parameters.signatureQualifier(),
-                    digestsToSign.signatureFormat(),
-                    digestsToSign.conformanceLevel(),
-                    digestsToSign.signaturePackaging(),
-                    digestsToSign.signatureAlgorithm(),
-                    parameters.returnValidationInfo()
-            );
-
-            Result<SignedDocuments, TextError> signatureResult = null;
-            Result<SignatureType, TextError> getSignatureType = signatureTypeDecider.decideType(parameters);
-            if (getSignatureType instanceof Error(var err))
-                return Result.error(err.extend("Failed to determine signature type."));
-            SignatureType signatureType = getSignatureType.unwrap();
-
-            switch (signatureType) {
-                case LONG_TERM -> {
-                    logger.info("Signing with long term token with credential ID: {}", parameters.credentialID());
-                    LongTermTokenConfiguration tokenConfiguration = new LongTermTokenConfiguration(
-                            parameters.credentialID()
-                    );
-                    signatureResult = longTermHashSignature.sign(configuration, tokenConfiguration,
-                                                                 digestsToSign.hashes()
-                    );
-                }
-                case ONE_TIME -> {
-                    logger.info("Signing with one time token.");
-                    OneTimeTokenConfiguration tokenConfiguration = new OneTimeTokenConfiguration(
-                            cscAuthenticationToken
-                    );
-                    signatureResult = oneTimeHashSignature.sign(configuration, tokenConfiguration,
-                                                                digestsToSign.hashes()
-                    );
-                }
-                case SESSION -> {
-                    logger.info("Signing with session token. Session ID: {}", parameters.sessionId().orElseThrow());
-                    SessionTokenConfiguration tokenConfiguration = new SessionTokenConfiguration(
-                            parameters.sessionId().orElseThrow(), cscAuthenticationToken
-                    );
-                    signatureResult = sessionSignature.sign(configuration, tokenConfiguration, digestsToSign.hashes());
-                }
-            }
 
-            if (signatureResult instanceof Error(var err))
+        Result<SignatureType, TextError> getSignatureType = signatureTypeDecider.decideType(parameters);
+        if (getSignatureType instanceof Error(var err))
+            return Result.error(err.extend("Failed to determine signature type."));
+        SignatureType signatureType = getSignatureType.unwrap();
+
+        List<DocumentDigestsToSign> digestGroups = parameters.documentDigestsToSign();
+        SignedDocuments signedDocuments = SignedDocuments.empty();
+        if (signatureType == SignatureType.SESSION && digestGroups.size() > 1) {
+            // The first signature of a session may create the session, so it must finish before the rest
+            // of the groups can share it.
+            var firstGroupResult = signGroup(parameters, cscAuthenticationToken, signatureType, digestGroups.getFirst());
+            if (firstGroupResult instanceof Error(var err))
                 return Result.error(err.extend("Failed to sign one of the document digest to sign."));
-            SignedDocuments docs = signatureResult.unwrap();
+            signedDocuments.extend(firstGroupResult.unwrap());
+            digestGroups = digestGroups.subList(1, digestGroups.size());
+        }
+
+        List<Supplier<Result<SignedDocuments, TextError>>> tasks = new ArrayList<>(digestGroups.size());
+        for (DocumentDigestsToSign digestsToSign : digestGroups) {
+            tasks.add(() -> signGroup(parameters, cscAuthenticationToken, signatureType, digestsToSign));
+        }
+
+        var signGroupsResult = ParallelExecution.runAll(tasks, signingExecutor, maxParallelSignatures);
+        if (signGroupsResult instanceof Error(var err))
+            return Result.error(err.extend("Failed to sign one of the document digest to sign."));
+        for (SignedDocuments docs : signGroupsResult.unwrap()) {
             signedDocuments.extend(docs);
         }
         return Result.success(signedDocuments);
     }
+
+    private Result<SignedDocuments, TextError> signGroup(
+            SignDocParameters parameters, CscAuthenticationToken cscAuthenticationToken,
+            SignatureType signatureType, DocumentDigestsToSign digestsToSign
+    ) {
+        DocumentHashSignatureProcessConfiguration configuration = new DocumentHashSignatureProcessConfiguration(
+                parameters.userID(),
+                parameters.sad(),
+                parameters.signatureQualifier(),
+                digestsToSign.signatureFormat(),
+                digestsToSign.conformanceLevel(),
+                digestsToSign.signaturePackaging(),
+                digestsToSign.signatureAlgorithm(),
+                parameters.returnValidationInfo()
+        );
+
+        return switch (signatureType) {
+            case LONG_TERM -> {
+                logger.info("Signing with long term token with credential ID: {}", parameters.credentialID());
+                LongTermTokenConfiguration tokenConfiguration = new LongTermTokenConfiguration(
+                        parameters.credentialID()
+                );
+                yield longTermHashSignature.sign(configuration, tokenConfiguration, digestsToSign.hashes());
+            }
+            case ONE_TIME -> {
+                logger.info("Signing with one time token.");
+                OneTimeTokenConfiguration tokenConfiguration = new OneTimeTokenConfiguration(
+                        cscAuthenticationToken
+                );
+                yield oneTimeHashSignature.sign(configuration, tokenConfiguration, digestsToSign.hashes());
+            }
+            case SESSION -> {
+                logger.info("Signing with session token. Session ID: {}", parameters.sessionId().orElseThrow());
+                SessionTokenConfiguration tokenConfiguration = new SessionTokenConfiguration(
+                        parameters.sessionId().orElseThrow(), cscAuthenticationToken
+                );
+                yield sessionSignature.sign(configuration, tokenConfiguration, digestsToSign.hashes());
+            }
+        };
+    }
 }
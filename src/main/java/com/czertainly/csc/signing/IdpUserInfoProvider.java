@@ -3,26 +3,41 @@ package com.czertainly.csc.signing;
 import com.czertainly.csc.clients.idp.IdpClient;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.configuration.idp.IdpConfiguration;
+import com.czertainly.csc.configuration.idp.UserInfoCacheSettings;
 import com.czertainly.csc.model.UserInfo;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+
 @Component
 public class IdpUserInfoProvider implements UserInfoProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(IdpUserInfoProvider.class);
     private final IdpClient idpClient;
+    private final UserInfoCache userInfoCache;
 
 
-    public IdpUserInfoProvider(IdpClient idpClient) {
+    public IdpUserInfoProvider(IdpClient idpClient, IdpConfiguration idpConfiguration, MeterRegistry meterRegistry) {
         this.idpClient = idpClient;
+        UserInfoCacheSettings cacheSettings = idpConfiguration.userInfoCache() == null
+                ? UserInfoCacheSettings.defaults()
+                : idpConfiguration.userInfoCache();
+        this.userInfoCache = new UserInfoCache(cacheSettings.maxTtl(), cacheSettings.maxSize(), meterRegistry);
     }
 
     @Override
     public Result<UserInfo, TextError> getUserInfo(String token) {
+        return getUserInfo(token, null);
+    }
+
+    @Override
+    public Result<UserInfo, TextError> getUserInfo(String token, Instant validUntil) {
         if (idpClient.canDownloadUserInfo()) {
-                return idpClient.downloadUserInfo(token);
+            return userInfoCache.get(token, validUntil, () -> idpClient.downloadUserInfo(token));
         } else {
             logger.debug("Application is not configured to download user info. Empty user info will be returned.");
             return Result.success(UserInfo.empty());
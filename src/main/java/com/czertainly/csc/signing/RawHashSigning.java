@@ -0,0 +1,84 @@
+package com.czertainly.csc.signing;
+
+import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.clients.signserver.SingleHashSignatureCoalescer;
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.crypto.SignatureAlgorithm;
+import com.czertainly.csc.model.SignHashParameters;
+import com.czertainly.csc.model.SignedHashes;
+import com.czertainly.csc.model.csc.CredentialMetadata;
+import com.czertainly.csc.service.credentials.CredentialsService;
+import com.czertainly.csc.signing.configuration.WorkerRepository;
+import com.czertainly.csc.signing.configuration.process.SignatureProcessTemplate;
+import com.czertainly.csc.signing.configuration.process.SignatureStageMetrics;
+import com.czertainly.csc.signing.configuration.process.configuration.LongTermTokenConfiguration;
+import com.czertainly.csc.signing.configuration.process.configuration.RawHashSignatureProcessConfiguration;
+import com.czertainly.csc.signing.configuration.process.signers.DocumentHashSigner;
+import com.czertainly.csc.signing.configuration.process.token.LongTermToken;
+import com.czertainly.csc.signing.configuration.process.token.LongTermTokenProvider;
+import com.czertainly.csc.signing.signatureauthorizers.DocumentHashAuthorizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates raw signatures of hashes with a long-term credential.
+ * <p>
+ * All hashes of a request are signed by a single batch request to the Signserver, which the
+ * {@link SignserverClient} splits into chunks signed in parallel when the batch is large.
+ */
+@Component
+public class RawHashSigning {
+
+    private final static Logger logger = LoggerFactory.getLogger(RawHashSigning.class);
+
+    private final SignatureProcessTemplate<LongTermTokenConfiguration, RawHashSignatureProcessConfiguration, LongTermToken> longTermRawHashSignature;
+    private final CredentialsService credentialsService;
+
+    public RawHashSigning(WorkerRepository workerRepository, SignserverClient signserverClient,
+                          CredentialsService credentialsService,
+                          SignatureStageMetrics signatureStageMetrics,
+                          SingleHashSignatureCoalescer singleHashSignatureCoalescer
+    ) {
+        this.credentialsService = credentialsService;
+        longTermRawHashSignature = new SignatureProcessTemplate<>(
+                SignatureType.LONG_TERM,
+                new DocumentHashAuthorizer(),
+                workerRepository,
+                new LongTermTokenProvider<>(credentialsService),
+                new DocumentHashSigner<>(signserverClient, singleHashSignatureCoalescer),
+                signatureStageMetrics
+        );
+    }
+
+    public Result<SignedHashes, TextError> sign(SignHashParameters parameters) {
+        if (parameters.hashes().isEmpty()) {
+            return Result.error(TextError.of("No hashes to sign."));
+        }
+
+        // The signHash request carries no signature qualifier, the worker is selected by the qualifier
+        // of the credential instead.
+        var getCredentialResult = credentialsService.getCredentialMetadata(parameters.credentialID(),
+                                                                           parameters.userID()
+        );
+        if (getCredentialResult instanceof Error(var err))
+            return Result.error(err.extend("Failed to load credential '%s'", parameters.credentialID()));
+        CredentialMetadata credential = getCredentialResult.unwrap();
+
+        logger.info("Signing {} hashes with long term token with credential ID: {}", parameters.hashes().size(),
+                    parameters.credentialID()
+        );
+        RawHashSignatureProcessConfiguration configuration = new RawHashSignatureProcessConfiguration(
+                parameters.userID(),
+                parameters.sad(),
+                credential.signatureQualifier().orElse(null),
+                SignatureAlgorithm.of(parameters.keyAlgo(), parameters.digestAlgo())
+        );
+        return longTermRawHashSignature.sign(configuration, new LongTermTokenConfiguration(parameters.credentialID()),
+                                             parameters.hashes()
+                                       )
+                                       .map(signedDocuments -> new SignedHashes(signedDocuments.signatures()));
+    }
+}
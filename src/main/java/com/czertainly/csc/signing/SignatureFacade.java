@@ -14,10 +14,14 @@ public class SignatureFacade {
 
     DocumentContentSigning documentSigning;
     DocumentHashSigning documentHashSigning;
+    RawHashSigning rawHashSigning;
 
-    public SignatureFacade(DocumentContentSigning documentSigning, DocumentHashSigning documentHashSigning) {
+    public SignatureFacade(DocumentContentSigning documentSigning, DocumentHashSigning documentHashSigning,
+                           RawHashSigning rawHashSigning
+    ) {
         this.documentSigning = documentSigning;
         this.documentHashSigning = documentHashSigning;
+        this.rawHashSigning = rawHashSigning;
     }
 
     public Result<SignedDocuments, TextError> signDocuments(
@@ -35,7 +39,7 @@ public class SignatureFacade {
     }
 
     public Result<SignedHashes, TextError> signHashes(SignHashParameters signHashParameters) {
-        return Result.error(TextError.of("Not implemented", "The method is not yet implemented."));
+        return rawHashSigning.sign(signHashParameters);
     }
 
 }
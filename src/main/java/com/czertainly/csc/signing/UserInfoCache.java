@@ -0,0 +1,143 @@
+package com.czertainly.csc.signing;
+
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.model.UserInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches the user info of access tokens.
+ * <p>
+ * The entries are keyed by the SHA-256 hash of the access token, so the tokens themselves are not kept in memory.
+ * An entry lives until the token expires, but at most for {@code maxTtl}; a zero {@code maxTtl} disables the cache.
+ * Concurrent lookups of the same token share a single load, and only successfully loaded user infos are kept.
+ * When the cache grows over {@code maxSize}, the expired entries are evicted first, followed by arbitrary ones.
+ * <p>
+ * The lookups are counted by the {@value #METRIC_NAME} counter tagged with the result, which is {@code hit}
+ * or {@code miss}, and the number of entries is exposed by the {@value #SIZE_METRIC_NAME} gauge.
+ */
+public class UserInfoCache {
+
+    public static final String METRIC_NAME = "csc.idp.userinfo.cache";
+    public static final String SIZE_METRIC_NAME = "csc.idp.userinfo.cache.size";
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Duration maxTtl;
+    private final int maxSize;
+    private final Clock clock;
+    private final Counter hits;
+    private final Counter misses;
+
+    public UserInfoCache(Duration maxTtl, int maxSize, MeterRegistry meterRegistry) {
+        this(maxTtl, maxSize, meterRegistry, Clock.systemUTC());
+    }
+
+    public UserInfoCache(Duration maxTtl, int maxSize, MeterRegistry meterRegistry, Clock clock) {
+        this.maxTtl = maxTtl;
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.hits = lookupsCounter(meterRegistry, "hit");
+        this.misses = lookupsCounter(meterRegistry, "miss");
+        Gauge.builder(SIZE_METRIC_NAME, entries, Map::size)
+             .description("Number of cached user infos")
+             .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached user info of the token, or loads it by the {@code loader} if it is not cached.
+     *
+     * @param token          the access token
+     * @param tokenExpiresAt expiration of the access token, {@code null} if unknown
+     * @param loader         loads the user info of the token
+     */
+    public Result<UserInfo, TextError> get(String token, Instant tokenExpiresAt,
+                                           Supplier<Result<UserInfo, TextError>> loader
+    ) {
+        Instant now = clock.instant();
+        Instant expiresAt = now.plus(maxTtl);
+        if (tokenExpiresAt != null && tokenExpiresAt.isBefore(expiresAt)) {
+            expiresAt = tokenExpiresAt;
+        }
+        if (!expiresAt.isAfter(now)) {
+            misses.increment();
+            return loader.get();
+        }
+
+        String key = fingerprint(token);
+        Entry created = new Entry(new CompletableFuture<>(), expiresAt);
+        Entry entry = entries.compute(key, (k, current) -> current != null && current.isValidAt(now)
+                ? current
+                : created
+        );
+        if (entry != created) {
+            hits.increment();
+            return entry.userInfo().join();
+        }
+
+        misses.increment();
+        evictIfFull(now, created);
+        Result<UserInfo, TextError> userInfo;
+        try {
+            userInfo = loader.get();
+        } catch (RuntimeException e) {
+            entries.remove(key, created);
+            created.userInfo().completeExceptionally(e);
+            throw e;
+        }
+        if (userInfo instanceof Error) {
+            entries.remove(key, created);
+        }
+        created.userInfo().complete(userInfo);
+        return userInfo;
+    }
+
+    private void evictIfFull(Instant now, Entry created) {
+        if (entries.size() <= maxSize) return;
+        entries.values().removeIf(entry -> !entry.isValidAt(now));
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            if (iterator.next() != created) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String fingerprint(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the JVM.", e);
+        }
+    }
+
+    private static Counter lookupsCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder(METRIC_NAME)
+                      .description("Number of user info lookups in the cache")
+                      .tag("result", result)
+                      .register(meterRegistry);
+    }
+
+    private record Entry(CompletableFuture<Result<UserInfo, TextError>> userInfo, Instant expiresAt) {
+        boolean isValidAt(Instant instant) {
+            return expiresAt.isAfter(instant);
+        }
+    }
+}
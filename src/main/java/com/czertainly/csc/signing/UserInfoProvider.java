@@ -4,8 +4,18 @@ import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
 import com.czertainly.csc.model.UserInfo;
 
+import java.time.Instant;
+
 public interface UserInfoProvider {
 
     Result<UserInfo, TextError> getUserInfo(String identifier);
 
+    /**
+     * Returns the user info of the identifier, which is known to be valid until {@code validUntil}.
+     * Providers may use the validity to reuse the user info until the identifier expires.
+     */
+    default Result<UserInfo, TextError> getUserInfo(String identifier, Instant validUntil) {
+        return getUserInfo(identifier);
+    }
+
 }
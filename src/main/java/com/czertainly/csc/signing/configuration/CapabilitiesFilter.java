@@ -59,7 +59,19 @@ public class CapabilitiesFilter {
         return this;
     }
 
+    /**
+     * Builds the criterion matching the configured capabilities. When the signature format, conformance level
+     * and signature packaging are configured, the criterion is a {@link CapabilitiesKey} that can be looked up
+     * in the index of the {@link WorkerRepository} instead of being evaluated against every worker.
+     */
     public Criterion<WorkerCapabilities> build() {
+        if (signatureFormat != null && conformanceLevel != null && signaturePackaging != null
+                && signatureAlgorithmParameters == null) {
+            return CapabilitiesKey.of(signatureQualifier, signatureFormat, conformanceLevel, signaturePackaging,
+                                      signatureAlgorithm, returnValidationInfo, documentType
+            );
+        }
+
         var andCriterion = new AndCriterion<WorkerCapabilities>();
         if (signatureQualifier != null) {
             andCriterion.add(new SignatureQualifierCriterion(signatureQualifier));
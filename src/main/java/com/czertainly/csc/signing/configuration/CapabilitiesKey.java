@@ -0,0 +1,50 @@
+package com.czertainly.csc.signing.configuration;
+
+import com.czertainly.csc.signing.filter.Criterion;
+
+import java.util.Locale;
+
+/**
+ * Required worker capabilities in a form that can be used as a key of a hash lookup.
+ * <p>
+ * The signature qualifier, the signature algorithm and the document type may be {@code null},
+ * in which case any value matches. The signature algorithm is kept in upper case, because the algorithms
+ * are matched case-insensitively.
+ */
+public record CapabilitiesKey(
+        String signatureQualifier,
+        SignatureFormat signatureFormat,
+        ConformanceLevel conformanceLevel,
+        SignaturePackaging signaturePackaging,
+        String signatureAlgorithm,
+        boolean returnValidationInfo,
+        DocumentType documentType
+) implements Criterion<WorkerCapabilities> {
+
+    public static CapabilitiesKey of(String signatureQualifier, SignatureFormat signatureFormat,
+                                     ConformanceLevel conformanceLevel, SignaturePackaging signaturePackaging,
+                                     String signatureAlgorithm, boolean returnValidationInfo,
+                                     DocumentType documentType
+    ) {
+        return new CapabilitiesKey(
+                signatureQualifier, signatureFormat, conformanceLevel, signaturePackaging,
+                normalizeAlgorithm(signatureAlgorithm), returnValidationInfo, documentType
+        );
+    }
+
+    static String normalizeAlgorithm(String signatureAlgorithm) {
+        return signatureAlgorithm == null ? null : signatureAlgorithm.toUpperCase(Locale.ROOT);
+    }
+
+    @Override
+    public boolean matches(WorkerCapabilities element) {
+        return (signatureQualifier == null || element.signatureQualifiers().contains(signatureQualifier))
+                && element.signatureFormat() == signatureFormat
+                && element.conformanceLevel() == conformanceLevel
+                && element.signaturePackaging() == signaturePackaging
+                && (signatureAlgorithm == null || element.supportedSignatureAlgorithms().stream()
+                                                         .anyMatch(alg -> alg.equalsIgnoreCase(signatureAlgorithm)))
+                && element.returnsValidationInfo() == returnValidationInfo
+                && (documentType == null || element.documentTypes().contains(documentType));
+    }
+}
@@ -1,25 +1,93 @@
 package com.czertainly.csc.signing.configuration;
 
+import com.czertainly.csc.common.resilience.CircuitBreakerRegistry;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
 import com.czertainly.csc.configuration.keypools.KeyUsageDesignation;
+import com.czertainly.csc.configuration.csc.WorkerSelectionSettings;
 import com.czertainly.csc.model.signserver.CryptoToken;
+import com.czertainly.csc.signing.configuration.selection.FirstMatchSelectionStrategy;
+import com.czertainly.csc.signing.configuration.selection.WorkerLoadTracker;
+import com.czertainly.csc.signing.configuration.selection.WorkerSelectionStrategy;
 import com.czertainly.csc.signing.filter.Criterion;
 import com.czertainly.csc.signing.filter.Worker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-import java.util.Objects;
+import java.time.Duration;
+import java.util.*;
 
+/**
+ * Provides the configured workers and their crypto tokens.
+ * <p>
+ * All lookups are served from indexes that are built once when the repository is created. Workers that match
+ * a {@link CapabilitiesKey} are looked up by the key directly, other criteria are evaluated against all workers.
+ */
 public class WorkerRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(WorkerRepository.class);
     private final List<WorkerWithCapabilities> workersWithCapabilities;
+    private final WorkerSelectionStrategy selectionStrategy;
+    private final WorkerLoadTracker loadTracker;
+    private final CircuitBreakerRegistry circuitBreakers;
+
+    private final Map<CapabilitiesKey, List<WorkerWithCapabilities>> workersByCapabilities;
+    private final Map<Integer, WorkerWithCapabilities> workersById;
+    private final Map<String, CryptoToken> cryptoTokensByName;
+    private final Map<Integer, CryptoToken> cryptoTokensById;
+    private final Map<String, List<String>> signatureAlgorithmsByTokenName;
+    private final Map<KeyUsageDesignation, List<CryptoToken>> cryptoTokensWithPools;
 
 
     public WorkerRepository(List<WorkerWithCapabilities> workersWithCapabilities) {
-        this.workersWithCapabilities = workersWithCapabilities;
+        this(workersWithCapabilities, new FirstMatchSelectionStrategy(), new WorkerLoadTracker(
+                WorkerSelectionSettings.defaults().failureThreshold(),
+                WorkerSelectionSettings.defaults().ejectionDuration()
+        ));
+    }
+
+    public WorkerRepository(List<WorkerWithCapabilities> workersWithCapabilities,
+                            WorkerSelectionStrategy selectionStrategy, WorkerLoadTracker loadTracker
+    ) {
+        this(workersWithCapabilities, selectionStrategy, loadTracker, new CircuitBreakerRegistry(
+                Integer.MAX_VALUE, Duration.ZERO, Integer.MAX_VALUE
+        ));
+    }
+
+    /**
+     * @param circuitBreakers circuit breakers of the calls to the workers, a worker with an open circuit breaker
+     *                        is not selected unless there is no other matching worker
+     */
+    public WorkerRepository(List<WorkerWithCapabilities> workersWithCapabilities,
+                            WorkerSelectionStrategy selectionStrategy, WorkerLoadTracker loadTracker,
+                            CircuitBreakerRegistry circuitBreakers
+    ) {
+        this.workersWithCapabilities = List.copyOf(workersWithCapabilities);
+        this.selectionStrategy = selectionStrategy;
+        this.loadTracker = loadTracker;
+        this.circuitBreakers = circuitBreakers;
+
+        this.workersByCapabilities = indexByCapabilities(this.workersWithCapabilities);
+        this.workersById = new HashMap<>();
+        this.cryptoTokensByName = new HashMap<>();
+        this.cryptoTokensById = new HashMap<>();
+        Map<String, Set<String>> algorithmsByTokenName = new LinkedHashMap<>();
+        for (WorkerWithCapabilities workerWithCapabilities : this.workersWithCapabilities) {
+            Worker worker = workerWithCapabilities.worker();
+            CryptoToken cryptoToken = worker.cryptoToken();
+            workersById.putIfAbsent(worker.workerId(), workerWithCapabilities);
+            cryptoTokensByName.putIfAbsent(cryptoToken.name(), cryptoToken);
+            cryptoTokensById.putIfAbsent(cryptoToken.id(), cryptoToken);
+            algorithmsByTokenName.computeIfAbsent(cryptoToken.name(), name -> new LinkedHashSet<>())
+                                 .addAll(workerWithCapabilities.capabilities().supportedSignatureAlgorithms());
+        }
+        this.signatureAlgorithmsByTokenName = new HashMap<>();
+        algorithmsByTokenName.forEach((name, algorithms) -> signatureAlgorithmsByTokenName.put(
+                name, List.copyOf(algorithms)));
+        this.cryptoTokensWithPools = new EnumMap<>(KeyUsageDesignation.class);
+        for (KeyUsageDesignation designatedUsage : KeyUsageDesignation.values()) {
+            cryptoTokensWithPools.put(designatedUsage, findCryptoTokensWithPools(designatedUsage));
+        }
     }
 
     public List<WorkerWithCapabilities> getAllWorkers() {
@@ -27,67 +95,145 @@ public class WorkerRepository {
     }
 
     public WorkerWithCapabilities selectWorker(Criterion<WorkerCapabilities> desiredCapabilities) {
-        return workersWithCapabilities.stream()
-                                      .filter(worker -> desiredCapabilities.matches(worker.capabilities()))
-                                      .findFirst()
-                                      .orElse(null);
+        List<WorkerWithCapabilities> matchingWorkers;
+        if (desiredCapabilities instanceof CapabilitiesKey key) {
+            matchingWorkers = workersByCapabilities.getOrDefault(key, List.of());
+        } else {
+            matchingWorkers = workersWithCapabilities
+                    .stream()
+                    .filter(worker -> desiredCapabilities.matches(worker.capabilities()))
+                    .toList();
+        }
+        if (matchingWorkers.isEmpty()) {
+            return null;
+        }
+
+        List<WorkerWithCapabilities> availableWorkers = matchingWorkers;
+        if (!allAvailable(matchingWorkers)) {
+            availableWorkers = matchingWorkers
+                    .stream()
+                    .filter(worker -> isAvailable(worker.worker().workerName()))
+                    .toList();
+        }
+        if (availableWorkers.isEmpty()) {
+            // It is better to try an ejected worker than to reject the request right away
+            logger.warn("All workers matching the capabilities are unavailable, selecting among all of them.");
+            availableWorkers = matchingWorkers;
+        }
+        return selectionStrategy.select(availableWorkers);
+    }
+
+    /**
+     * Records that the worker has started to process a request. Each call must be followed by a call
+     * to {@link #requestFinished(WorkerWithCapabilities, Duration, boolean)}.
+     */
+    public void requestStarted(WorkerWithCapabilities worker) {
+        loadTracker.requestStarted(worker.worker().workerName());
+    }
+
+    /**
+     * Records that the worker has finished processing a request.
+     *
+     * @param successful false only if the worker failed to process the request, errors caused by the request
+     *                   itself are not failures of the worker
+     */
+    public void requestFinished(WorkerWithCapabilities worker, Duration latency, boolean successful) {
+        loadTracker.requestFinished(worker.worker().workerName(), latency, successful);
     }
 
     public WorkerWithCapabilities getWorker(int workerId) {
-        return workersWithCapabilities.stream()
-                                      .filter(worker -> worker.worker().workerId() == workerId)
-                                      .findFirst()
-                                      .orElse(null);
+        return workersById.get(workerId);
     }
 
     public Result<CryptoToken, TextError> getCryptoToken(String tokenName) {
-        var maybeToken = workersWithCapabilities.stream()
-                                                .map(WorkerWithCapabilities::worker)
-                                                .map(Worker::cryptoToken)
-                                                .filter(token -> Objects.equals(token.name(), tokenName))
-                                                .findFirst();
-
-        return maybeToken
-                .<Result<CryptoToken, TextError>>map(Result::success)
-                .orElseGet(() -> Result.error(TextError.of("Crypto token '%s' not found.", tokenName)));
+        CryptoToken token = cryptoTokensByName.get(tokenName);
+        if (token == null) {
+            return Result.error(TextError.of("Crypto token '%s' not found.", tokenName));
+        }
+        return Result.success(token);
     }
 
     public Result<CryptoToken, TextError> getCryptoToken(int tokenId) {
-        var maybeToken = workersWithCapabilities.stream()
-                                                .map(WorkerWithCapabilities::worker)
-                                                .map(Worker::cryptoToken)
-                                                .filter(token -> Objects.equals(token.id(), tokenId))
-                                                .findFirst();
-
-        return maybeToken
-                .<Result<CryptoToken, TextError>>map(Result::success)
-                .orElseGet(() -> Result.error(TextError.of("Crypto token with id '%s' not found.", tokenId)));
+        CryptoToken token = cryptoTokensById.get(tokenId);
+        if (token == null) {
+            return Result.error(TextError.of("Crypto token with id '%s' not found.", tokenId));
+        }
+        return Result.success(token);
     }
 
     public Result<List<CryptoToken>, TextError> getCryptoTokensWithPools(KeyUsageDesignation designatedUsage) {
-        var tokens = workersWithCapabilities
+        return Result.success(cryptoTokensWithPools.get(designatedUsage));
+    }
+
+    public Result<List<String>, TextError> getAvailableSignatureAlgorithmsForToken(String tokenName) {
+        return Result.success(signatureAlgorithmsByTokenName.getOrDefault(tokenName, List.of()));
+    }
+
+    private boolean allAvailable(List<WorkerWithCapabilities> workers) {
+        for (WorkerWithCapabilities worker : workers) {
+            if (!isAvailable(worker.worker().workerName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAvailable(String workerName) {
+        return loadTracker.isAvailable(workerName) && circuitBreakers.isAvailable(workerName);
+    }
+
+    private List<CryptoToken> findCryptoTokensWithPools(KeyUsageDesignation designatedUsage) {
+        return workersWithCapabilities
                 .stream()
                 .map(WorkerWithCapabilities::worker)
                 .map(Worker::cryptoToken)
                 .map(cryptoToken -> new CryptoToken(cryptoToken.name(), cryptoToken.id(),
                                                     cryptoToken.keyPoolProfiles().stream()
                                                                .filter(profile -> profile.designatedUsage() == designatedUsage)
-                                                               .toList()
+                                                               .toList(),
+                                                    cryptoToken.trustGeneratedKeyAlias()
                 ))
                 .filter(cryptoToken -> !cryptoToken.keyPoolProfiles().isEmpty())
                 .distinct()
                 .toList();
-        return Result.success(tokens);
     }
 
-    public Result<List<String>, TextError> getAvailableSignatureAlgorithmsForToken(String tokenName) {
-        var algorithms = workersWithCapabilities
-                .stream()
-                .filter(workerWithCaps -> workerWithCaps.worker().cryptoToken().name().equals(tokenName))
-                .map(workerWithCaps -> workerWithCaps.capabilities().supportedSignatureAlgorithms())
-                .flatMap(List::stream)
-                .distinct()
-                .toList();
-        return Result.success(algorithms);
+    /*
+     * Every worker is registered under all keys it matches. The signature qualifier, signature algorithm and
+     * document type are also registered as null, because a null value in the key matches any value.
+     */
+    private static Map<CapabilitiesKey, List<WorkerWithCapabilities>> indexByCapabilities(
+            List<WorkerWithCapabilities> workers
+    ) {
+        Map<CapabilitiesKey, List<WorkerWithCapabilities>> index = new HashMap<>();
+        for (WorkerWithCapabilities worker : workers) {
+            WorkerCapabilities capabilities = worker.capabilities();
+            for (String qualifier : withAny(capabilities.signatureQualifiers())) {
+                for (String algorithm : withAny(capabilities.supportedSignatureAlgorithms())) {
+                    for (DocumentType documentType : withAny(capabilities.documentTypes())) {
+                        CapabilitiesKey key = CapabilitiesKey.of(
+                                qualifier, capabilities.signatureFormat(), capabilities.conformanceLevel(),
+                                capabilities.signaturePackaging(), algorithm, capabilities.returnsValidationInfo(),
+                                documentType
+                        );
+                        List<WorkerWithCapabilities> indexedWorkers = index.computeIfAbsent(
+                                key, k -> new ArrayList<>());
+                        // The same worker can be registered under the same key again, e.g. for algorithms
+                        // differing only in case
+                        if (indexedWorkers.isEmpty() || indexedWorkers.getLast() != worker) {
+                            indexedWorkers.add(worker);
+                        }
+                    }
+                }
+            }
+        }
+        index.replaceAll((key, indexedWorkers) -> List.copyOf(indexedWorkers));
+        return index;
+    }
+
+    private static <T> List<T> withAny(List<T> values) {
+        List<T> valuesWithAny = new ArrayList<>(values == null ? List.of() : values);
+        valuesWithAny.add(null);
+        return valuesWithAny;
     }
 }
@@ -7,6 +7,7 @@ public class CryptoTokenDefinition {
     private String name;
     private int id = -1;
     private List<String> keyPoolProfiles;
+    private boolean trustGeneratedKeyAlias;
 
     public String getName() {
         return name;
@@ -31,4 +32,12 @@ public class CryptoTokenDefinition {
     public void setKeyPoolProfiles(List<String> keyPoolProfiles) {
         this.keyPoolProfiles = keyPoolProfiles;
     }
+
+    public boolean isTrustGeneratedKeyAlias() {
+        return trustGeneratedKeyAlias;
+    }
+
+    public void setTrustGeneratedKeyAlias(boolean trustGeneratedKeyAlias) {
+        this.trustGeneratedKeyAlias = trustGeneratedKeyAlias;
+    }
 }
\ No newline at end of file
@@ -156,7 +156,9 @@ public class WorkerConfigurationLoader {
                 keyPoolProfiles.add(keyPoolProfile);
             }
 
-            map.put(tokenName, new CryptoToken(tokenName, id, keyPoolProfiles));
+            map.put(tokenName, new CryptoToken(tokenName, id, keyPoolProfiles,
+                                               cryptoTokenConfiguration.isTrustGeneratedKeyAlias()
+            ));
         }
         return map;
     }
@@ -3,10 +3,14 @@ package com.czertainly.csc.signing.configuration.process;
 import com.czertainly.csc.common.result.Error;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.common.result.TextErrorWithRetryIndication;
 import com.czertainly.csc.model.SignedDocuments;
+import com.czertainly.csc.signing.SignatureType;
 import com.czertainly.csc.signing.configuration.CapabilitiesFilter;
 import com.czertainly.csc.signing.configuration.WorkerRepository;
 import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
+import com.czertainly.csc.signing.configuration.process.SignatureStageMetrics.Stage;
+import com.czertainly.csc.signing.configuration.process.SignatureStageMetrics.StageRecorder;
 import com.czertainly.csc.signing.configuration.process.configuration.SignatureProcessConfiguration;
 import com.czertainly.csc.signing.configuration.process.configuration.TokenConfiguration;
 import com.czertainly.csc.signing.configuration.process.signers.DocumentSigner;
@@ -16,6 +20,7 @@ import com.czertainly.csc.signing.signatureauthorizers.SignatureAuthorizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.List;
 
 public class SignatureProcessTemplate<
@@ -29,30 +34,38 @@ public class SignatureProcessTemplate<
     private final WorkerRepository workerRepository;
     private final TokenProvider<TC, C, T> tokenProvider;
     private final DocumentSigner<C> signer;
+    private final SignatureType signatureType;
+    private final SignatureStageMetrics metrics;
 
-    public SignatureProcessTemplate(SignatureAuthorizer signatureAuthorizer,
+    public SignatureProcessTemplate(SignatureType signatureType, SignatureAuthorizer signatureAuthorizer,
                                        WorkerRepository workerRepository, TokenProvider<TC, C, T> tokenProvider,
-                                       DocumentSigner<C> signer
+                                       DocumentSigner<C> signer, SignatureStageMetrics metrics
     ) {
+        this.signatureType = signatureType;
         this.signatureAuthorizer = signatureAuthorizer;
         this.workerRepository = workerRepository;
         this.tokenProvider = tokenProvider;
         this.signer = signer;
+        this.metrics = metrics;
     }
 
     public Result<SignedDocuments, TextError> sign(C configuration, TC tokenConfiguration,  List<String> data) {
-        var authorizationResult = signatureAuthorizer.authorize(data, configuration.sad());
+        StageRecorder stages = metrics.start(signatureType, configuration.signatureQualifier());
+        var authorizationResult = stages.record(
+                Stage.AUTHORIZATION, () -> signatureAuthorizer.authorize(data, configuration.sad()));
         if (authorizationResult instanceof Error(var err))
             return Result.error(err.extend("Failed to authorize signature request."));
         Boolean authorized = authorizationResult.unwrap();
 
         if (authorized) {
-            var getWorkerResult = getWorker(configuration);
+            var getWorkerResult = stages.record(Stage.WORKER_SELECTION, () -> getWorker(configuration));
             if (getWorkerResult instanceof Error(var err))
                 return Result.error(err.extend("Failed to obtain suitable worker for the signature request."));
             WorkerWithCapabilities worker = getWorkerResult.unwrap();
+            stages.setWorker(worker.worker().workerName());
 
-            var getSigningTokenResult = tokenProvider.getSigningToken(configuration, tokenConfiguration, worker);
+            var getSigningTokenResult = stages.record(
+                    Stage.SIGNING_TOKEN, () -> tokenProvider.getSigningToken(configuration, tokenConfiguration, worker));
             if (getSigningTokenResult instanceof Error(var err))
                 return Result.error(err.extend("Failed to get signing token for the signature request."));
             T signingToken = getSigningTokenResult.unwrap();
@@ -63,12 +76,17 @@ public class SignatureProcessTemplate<
 
             // Here we can assume that the signing token is valid and can be used for signing.
             // Therefore, we can clean up the signing token after the signing process independently of the result
-            Result<SignedDocuments, TextError> result;
+            Result<SignedDocuments, TextError> result = null;
+            workerRepository.requestStarted(worker);
+            long signingStart = System.nanoTime();
             try {
-                result = signer.sign(data, configuration, signingToken, worker)
-                        .mapError(err -> err.extend("Error occurred during signing."));
+                result = stages.record(Stage.SIGNING, () -> signer.sign(data, configuration, signingToken, worker))
+                               .mapError(err -> err.extend("Error occurred during signing."));
             } finally {
-                tokenProvider.cleanup(signingToken);
+                workerRepository.requestFinished(worker, Duration.ofNanos(System.nanoTime() - signingStart),
+                                                 !isWorkerFailure(result)
+                );
+                stages.record(Stage.CLEANUP, () -> tokenProvider.cleanup(signingToken));
             }
             return result;
         } else {
@@ -76,6 +94,18 @@ public class SignatureProcessTemplate<
         }
     }
 
+    /**
+     * Only transport failures and errors that indicate a retry count as failures of the worker. Errors caused
+     * by the request itself, e.g. invalid input rejected by Signserver, say nothing about the health of the worker.
+     */
+    private static boolean isWorkerFailure(Result<SignedDocuments, TextError> result) {
+        if (result == null) {
+            // The signing has thrown an exception
+            return true;
+        }
+        return result instanceof Error(var err) && TextErrorWithRetryIndication.indicatesRetry(err);
+    }
+
     protected Result<WorkerWithCapabilities, TextError> getWorker(
             SignatureProcessConfiguration configuration
     ) {
@@ -0,0 +1,124 @@
+package com.czertainly.csc.signing.configuration.process;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.Success;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.signing.SignatureType;
+import com.czertainly.csc.signing.configuration.profiles.CredentialProfileRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records the duration of the stages of the signature process as the {@value #METRIC_NAME} timer.
+ * <p>
+ * The timer is tagged with the stage, the signature type, the selected worker, the signature qualifier and
+ * the outcome of the stage. Stages that precede the selection of the worker are tagged with the worker
+ * {@value #NONE}, as is a missing signature qualifier. The signature qualifier comes from the request, so only
+ * the qualifiers of the configured signature qualifier profiles are used as tags and any other qualifier is
+ * tagged as {@value #OTHER}, which keeps the number of timers bounded.
+ * <p>
+ * The percentile histogram is published only by the {@value #LATENCY_METRIC_NAME} timer, which is tagged with
+ * the stage, the signature type and the outcome, so that the number of histogram buckets doesn't grow with
+ * the number of workers and signature qualifiers.
+ */
+@Component
+public class SignatureStageMetrics {
+
+    public static final String METRIC_NAME = "csc.signature.stage";
+    public static final String LATENCY_METRIC_NAME = "csc.signature.stage.latency";
+    public static final String NONE = "none";
+    public static final String OTHER = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final CredentialProfileRepository credentialProfileRepository;
+
+    public SignatureStageMetrics(MeterRegistry meterRegistry,
+                                 CredentialProfileRepository credentialProfileRepository
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.credentialProfileRepository = credentialProfileRepository;
+    }
+
+    public enum Stage {
+        AUTHORIZATION("authorization"),
+        WORKER_SELECTION("worker_selection"),
+        SIGNING_TOKEN("signing_token"),
+        SIGNING("signing"),
+        CLEANUP("cleanup");
+
+        private final String tagValue;
+
+        Stage(String tagValue) {
+            this.tagValue = tagValue;
+        }
+
+        public String getTagValue() {
+            return tagValue;
+        }
+    }
+
+    /**
+     * Starts recording the stages of a single signature request.
+     */
+    public StageRecorder start(SignatureType signatureType, String signatureQualifier) {
+        return new StageRecorder(signatureType == null ? NONE : signatureType.name(),
+                                 qualifierTag(signatureQualifier)
+        );
+    }
+
+    private String qualifierTag(String signatureQualifier) {
+        if (signatureQualifier == null) return NONE;
+        return credentialProfileRepository.hasSignatureQualifierProfile(signatureQualifier)
+                ? signatureQualifier : OTHER;
+    }
+
+    public class StageRecorder {
+
+        private final String signatureType;
+        private final String signatureQualifier;
+        private String worker = NONE;
+
+        private StageRecorder(String signatureType, String signatureQualifier) {
+            this.signatureType = signatureType;
+            this.signatureQualifier = signatureQualifier;
+        }
+
+        /**
+         * Sets the worker the following stages are tagged with.
+         */
+        public void setWorker(String workerName) {
+            this.worker = workerName;
+        }
+
+        public <V> Result<V, TextError> record(Stage stage, Supplier<Result<V, TextError>> call) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "exception";
+            try {
+                Result<V, TextError> result = call.get();
+                outcome = result instanceof Success ? "success" : "error";
+                return result;
+            } finally {
+                long duration = sample.stop(Timer.builder(METRIC_NAME)
+                                                 .description("Duration of the stages of the signature process")
+                                                 .tag("stage", stage.getTagValue())
+                                                 .tag("type", signatureType)
+                                                 .tag("worker", worker)
+                                                 .tag("qualifier", signatureQualifier)
+                                                 .tag("outcome", outcome)
+                                                 .register(meterRegistry));
+                Timer.builder(LATENCY_METRIC_NAME)
+                     .description("Distribution of the duration of the stages of the signature process")
+                     .tag("stage", stage.getTagValue())
+                     .tag("type", signatureType)
+                     .tag("outcome", outcome)
+                     .publishPercentileHistogram()
+                     .register(meterRegistry)
+                     .record(duration, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -9,16 +9,27 @@ import com.czertainly.csc.signing.configuration.SignaturePackaging;
 
 public class DocumentContentSignatureProcessConfiguration extends SignatureProcessConfiguration {
 
+    private final int maxParallelSignatures;
+
+    /**
+     * @param maxParallelSignatures maximum number of the documents signed concurrently with this configuration,
+     *                              it's the share of the concurrency limit of the whole request
+     */
     public DocumentContentSignatureProcessConfiguration(
             String userID, SignatureActivationData sad,
             String signatureQualifier, SignatureFormat signatureFormat,
             ConformanceLevel conformanceLevel,
             SignaturePackaging signaturePackaging, SignatureAlgorithm signatureAlgorithm,
-            boolean returnValidationInfo
+            boolean returnValidationInfo, int maxParallelSignatures
     ) {
         super(userID, sad, signatureQualifier, signatureFormat, conformanceLevel, signaturePackaging,
               signatureAlgorithm, returnValidationInfo, DocumentType.FULL
         );
+        this.maxParallelSignatures = maxParallelSignatures;
+    }
+
+    public int maxParallelSignatures() {
+        return maxParallelSignatures;
     }
 
     public String digestAlgorithm() {
@@ -16,9 +16,21 @@ public class DocumentHashSignatureProcessConfiguration extends SignatureProcessC
             ConformanceLevel conformanceLevel,
             SignaturePackaging signaturePackaging, SignatureAlgorithm signatureAlgorithm,
             boolean returnValidationInfo
+    ) {
+        this(userID, sad, signatureQualifier, signatureFormat, conformanceLevel, signaturePackaging,
+             signatureAlgorithm, returnValidationInfo, DocumentType.HASH
+        );
+    }
+
+    protected DocumentHashSignatureProcessConfiguration(
+            String userID, SignatureActivationData sad,
+            String signatureQualifier, SignatureFormat signatureFormat,
+            ConformanceLevel conformanceLevel,
+            SignaturePackaging signaturePackaging, SignatureAlgorithm signatureAlgorithm,
+            boolean returnValidationInfo, DocumentType documentType
     ) {
         super(userID, sad, signatureQualifier, signatureFormat, conformanceLevel, signaturePackaging,
-              signatureAlgorithm, returnValidationInfo, DocumentType.HASH
+              signatureAlgorithm, returnValidationInfo, documentType
         );
     }
 
@@ -0,0 +1,20 @@
+package com.czertainly.csc.signing.configuration.process.configuration;
+
+import com.czertainly.csc.api.auth.SignatureActivationData;
+import com.czertainly.csc.crypto.SignatureAlgorithm;
+import com.czertainly.csc.signing.configuration.DocumentType;
+
+/**
+ * Configuration of a signature process that creates raw signatures of hashes, as requested by the
+ * signatures/signHash endpoint. Raw signatures have no signature format, conformance level or packaging,
+ * so the process is served by the workers supporting the {@link DocumentType#RAW} document type.
+ */
+public class RawHashSignatureProcessConfiguration extends DocumentHashSignatureProcessConfiguration {
+
+    public RawHashSignatureProcessConfiguration(
+            String userID, SignatureActivationData sad, String signatureQualifier,
+            SignatureAlgorithm signatureAlgorithm
+    ) {
+        super(userID, sad, signatureQualifier, null, null, null, signatureAlgorithm, false, DocumentType.RAW);
+    }
+}
@@ -3,6 +3,7 @@ package com.czertainly.csc.signing.configuration.process.signers;
 import com.czertainly.csc.clients.signserver.SignserverClient;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.common.utils.ParallelExecution;
 import com.czertainly.csc.model.SignedDocuments;
 import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
 import com.czertainly.csc.signing.configuration.process.configuration.DocumentContentSignatureProcessConfiguration;
@@ -10,20 +11,21 @@ import com.czertainly.csc.signing.configuration.process.token.SigningToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Base64;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 public class DocumentContentSigner<C extends DocumentContentSignatureProcessConfiguration> implements DocumentSigner<C> {
 
     public static final Logger logger = LoggerFactory.getLogger(DocumentContentSigner.class);
-    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
 
     private final SignserverClient signserverClient;
+    private final ExecutorService signingExecutor;
 
-    public DocumentContentSigner(
-            SignserverClient signserverClient
-    ) {
+    public DocumentContentSigner(SignserverClient signserverClient, ExecutorService signingExecutor) {
         this.signserverClient = signserverClient;
+        this.signingExecutor = signingExecutor;
     }
 
     @Override
@@ -32,35 +34,63 @@ public class DocumentContentSigner<C extends DocumentContentSignatureProcessConf
     ) {
         Result<SignedDocuments, TextError> result;
         if (data.size() == 1) {
-            if (configuration.returnValidationInfo()) {
-                result = signSingleContentWithValidationInfo(data, configuration, signingToken, worker);
-            } else {
-                result = signSingleContent(data, configuration, signingToken, worker);
-            }
+            result = signContent(data.getFirst(), configuration, signingToken, worker);
         } else {
-            return Result.error(TextError.of("Document content signing does not support multiple documents."));
+            result = signMultipleContents(data, configuration, signingToken, worker);
         }
 
         return result.flatMap(signed -> verifyNumberOfSignatures(data, signed));
     }
 
-    private Result<SignedDocuments, TextError> signSingleContent(
+    private Result<SignedDocuments, TextError> signMultipleContents(
             List<String> data, C configuration, SigningToken signingToken, WorkerWithCapabilities worker
+    ) {
+        // Signserver process API accepts a single document per request, so the documents are submitted
+        // concurrently using the same signing key, limited by the share of the request's concurrency limit
+        // assigned to the configuration
+        logger.debug("Signing {} documents with key '{}' on worker '{}'.", data.size(), signingToken.getKeyAlias(),
+                     worker.worker().workerName()
+        );
+        List<Supplier<Result<SignedDocuments, TextError>>> tasks = new ArrayList<>(data.size());
+        for (String document : data) {
+            tasks.add(() -> signContent(document, configuration, signingToken, worker));
+        }
+
+        return ParallelExecution.runAll(tasks, signingExecutor, configuration.maxParallelSignatures())
+                                .map(signedDocuments -> {
+                                    SignedDocuments merged = SignedDocuments.empty();
+                                    signedDocuments.forEach(merged::extend);
+                                    return merged;
+                                });
+    }
+
+    private Result<SignedDocuments, TextError> signContent(
+            String document, C configuration, SigningToken signingToken, WorkerWithCapabilities worker
+    ) {
+        if (configuration.returnValidationInfo()) {
+            return signSingleContentWithValidationInfo(document, configuration, signingToken, worker);
+        } else {
+            return signSingleContent(document, configuration, signingToken, worker);
+        }
+    }
+
+    private Result<SignedDocuments, TextError> signSingleContent(
+            String document, C configuration, SigningToken signingToken, WorkerWithCapabilities worker
     ) {
         return signserverClient.signSingleContent(
                 worker.worker().workerName(),
-                BASE64_DECODER.decode(data.getFirst()),
+                document,
                 signingToken.getKeyAlias(),
                 configuration.signaturePackaging()
         ).map(SignedDocuments::of);
     }
 
     private Result<SignedDocuments, TextError> signSingleContentWithValidationInfo(
-            List<String> data, C configuration, SigningToken signingToken, WorkerWithCapabilities worker
+            String document, C configuration, SigningToken signingToken, WorkerWithCapabilities worker
     ) {
         return signserverClient.signSingleContentWithValidationData(
                 worker.worker().workerName(),
-                BASE64_DECODER.decode(data.getFirst()),
+                document,
                 signingToken.getKeyAlias(),
                 configuration.signaturePackaging()
         );
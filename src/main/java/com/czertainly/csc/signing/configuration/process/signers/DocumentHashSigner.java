@@ -1,6 +1,7 @@
 package com.czertainly.csc.signing.configuration.process.signers;
 
 import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.clients.signserver.SingleHashSignatureCoalescer;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
 import com.czertainly.csc.model.SignedDocuments;
@@ -17,11 +18,23 @@ public class DocumentHashSigner<C extends DocumentHashSignatureProcessConfigurat
     public static final Logger logger = LoggerFactory.getLogger(DocumentHashSigner.class);
 
     private final SignserverClient signserverClient;
+    private final SingleHashSignatureCoalescer coalescer;
 
     public DocumentHashSigner(
             SignserverClient signserverClient
+    ) {
+        this(signserverClient, null);
+    }
+
+    /**
+     * @param coalescer coalescer of the concurrent signatures of a single hash, if null, each hash is signed
+     *                  by its own request
+     */
+    public DocumentHashSigner(
+            SignserverClient signserverClient, SingleHashSignatureCoalescer coalescer
     ) {
         this.signserverClient = signserverClient;
+        this.coalescer = coalescer;
     }
 
     @Override
@@ -57,6 +70,14 @@ public class DocumentHashSigner<C extends DocumentHashSignatureProcessConfigurat
     private Result<SignedDocuments, TextError> signSingleHash(
             List<String> data, C configuration, SigningToken signingToken, WorkerWithCapabilities worker
     ) {
+        if (coalescer != null && coalescer.isEnabled()) {
+            return coalescer.signSingleHash(
+                    worker.worker().workerName(),
+                    data.getFirst(),
+                    signingToken.getKeyAlias(),
+                    configuration.digestAlgorithm()
+            ).map(SignedDocuments::of);
+        }
         return signserverClient.signSingleHash(
                     worker.worker().workerName(),
                     data.getFirst().getBytes(),
@@ -41,29 +41,28 @@ public class OneTimeTokenProvider<C extends SignatureProcessConfiguration> imple
             OneTimeTokenConfiguration tokenConfiguration,
             WorkerWithCapabilities worker
     ) {
-        return keySelector.selectKey(
-                                  worker.worker().workerId(),
-                                  signatureConfiguration.signatureAlgorithm().keyAlgorithm()
-                          )
-                          .flatMap(key ->
-                                  signatureQualifierBasedCredentialFactory.createCredential(
-                                          key,
-                                          signatureConfiguration.signatureQualifier(),
-                                          signatureConfiguration.userID(),
-                                          signatureConfiguration.sad(),
-                                          tokenConfiguration.cscAuthenticationToken()
-                                  )
-                                  .map(credential -> new OneTimeToken(
-                                          credential.key(), credential.multisign()
-                                  ))
-                                  .mapError(err -> {
-                                      logger.warn("Assign credential to one-time key failed, " +
-                                                      "scheduling deletion for one‑time key '{}': {}",
-                                              key.keyAlias(), err);
-                                      asyncDeletionService.deleteKeyAsync(key);
-                                      return err.extend("Failed to create One‑Time Token");
-                                  })
-                          );
+        // The key is acquired by the credential factory concurrently with the other steps of the credential creation
+        // and handed back for deletion when no credential is created for it, even when it is acquired too late
+        return signatureQualifierBasedCredentialFactory
+                .acquireKeyAndCreateCredential(
+                        () -> keySelector.selectKey(
+                                worker.worker().workerId(),
+                                signatureConfiguration.signatureAlgorithm().keyAlgorithm()
+                        ),
+                        key -> {
+                            logger.warn("Assign credential to one-time key failed, " +
+                                                "scheduling deletion for one‑time key '{}'", key.keyAlias());
+                            asyncDeletionService.deleteKeyAsync(key);
+                        },
+                        signatureConfiguration.signatureQualifier(),
+                        signatureConfiguration.userID(),
+                        signatureConfiguration.sad(),
+                        tokenConfiguration.cscAuthenticationToken()
+                )
+                .map(credential -> new OneTimeToken(
+                        credential.key(), credential.multisign()
+                ))
+                .mapError(err -> err.extend("Failed to create One‑Time Token"));
     }
 
     @Override
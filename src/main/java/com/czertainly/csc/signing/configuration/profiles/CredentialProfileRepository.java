@@ -62,4 +62,8 @@ public class CredentialProfileRepository {
         }
         return Result.success(signatureQualifierProfile);
     }
+
+    public boolean hasSignatureQualifierProfile(String name) {
+        return signatureQualifierProfiles.containsKey(name);
+    }
 }
@@ -0,0 +1,13 @@
+package com.czertainly.csc.signing.configuration.selection;
+
+import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
+
+import java.util.List;
+
+public class FirstMatchSelectionStrategy implements WorkerSelectionStrategy {
+
+    @Override
+    public WorkerWithCapabilities select(List<WorkerWithCapabilities> candidates) {
+        return candidates.getFirst();
+    }
+}
@@ -0,0 +1,51 @@
+package com.czertainly.csc.signing.configuration.selection;
+
+import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
+
+import java.util.List;
+
+/**
+ * Selects the worker with the lowest expected cost of a new request. The cost is the number of requests
+ * currently processed by the worker (including the new one) multiplied by its recent average latency,
+ * so that a worker which is both idle and fast is preferred. Workers without any latency measurement yet
+ * are assumed to be as fast as the fastest measured candidate. Ties are resolved by the configured order
+ * of the workers.
+ */
+public class LeastOutstandingRequestsSelectionStrategy implements WorkerSelectionStrategy {
+
+    private static final double UNKNOWN_LATENCY_MILLIS = 1.0;
+
+    private final WorkerLoadTracker loadTracker;
+
+    public LeastOutstandingRequestsSelectionStrategy(WorkerLoadTracker loadTracker) {
+        this.loadTracker = loadTracker;
+    }
+
+    @Override
+    public WorkerWithCapabilities select(List<WorkerWithCapabilities> candidates) {
+        double[] latencies = new double[candidates.size()];
+        double fastestKnownLatency = Double.MAX_VALUE;
+        for (int i = 0; i < candidates.size(); i++) {
+            latencies[i] = loadTracker.getAverageLatencyMillis(candidates.get(i).worker().workerName());
+            if (latencies[i] > 0) {
+                fastestKnownLatency = Math.min(fastestKnownLatency, latencies[i]);
+            }
+        }
+        if (fastestKnownLatency == Double.MAX_VALUE) {
+            fastestKnownLatency = UNKNOWN_LATENCY_MILLIS;
+        }
+
+        WorkerWithCapabilities selected = null;
+        double selectedCost = Double.MAX_VALUE;
+        for (int i = 0; i < candidates.size(); i++) {
+            WorkerWithCapabilities candidate = candidates.get(i);
+            double latency = latencies[i] > 0 ? latencies[i] : fastestKnownLatency;
+            double cost = (loadTracker.getOutstandingRequests(candidate.worker().workerName()) + 1) * latency;
+            if (selected == null || cost < selectedCost) {
+                selected = candidate;
+                selectedCost = cost;
+            }
+        }
+        return selected;
+    }
+}
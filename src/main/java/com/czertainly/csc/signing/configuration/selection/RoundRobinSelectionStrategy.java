@@ -0,0 +1,17 @@
+package com.czertainly.csc.signing.configuration.selection;
+
+import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RoundRobinSelectionStrategy implements WorkerSelectionStrategy {
+
+    private final AtomicLong counter = new AtomicLong();
+
+    @Override
+    public WorkerWithCapabilities select(List<WorkerWithCapabilities> candidates) {
+        int index = (int) Math.floorMod(counter.getAndIncrement(), (long) candidates.size());
+        return candidates.get(index);
+    }
+}
@@ -0,0 +1,44 @@
+package com.czertainly.csc.signing.configuration.selection;
+
+import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Distributes requests among the workers proportionally to their configured weights.
+ * Workers without a configured weight have a weight of 1.
+ */
+public class WeightedSelectionStrategy implements WorkerSelectionStrategy {
+
+    private static final int DEFAULT_WEIGHT = 1;
+
+    private final Map<String, Integer> weights;
+    private final AtomicLong counter = new AtomicLong();
+
+    public WeightedSelectionStrategy(Map<String, Integer> weights) {
+        this.weights = Map.copyOf(weights);
+    }
+
+    @Override
+    public WorkerWithCapabilities select(List<WorkerWithCapabilities> candidates) {
+        long totalWeight = 0;
+        for (WorkerWithCapabilities candidate : candidates) {
+            totalWeight += weightOf(candidate);
+        }
+
+        long position = Math.floorMod(counter.getAndIncrement(), totalWeight);
+        for (WorkerWithCapabilities candidate : candidates) {
+            position -= weightOf(candidate);
+            if (position < 0) {
+                return candidate;
+            }
+        }
+        return candidates.getLast();
+    }
+
+    private int weightOf(WorkerWithCapabilities candidate) {
+        return weights.getOrDefault(candidate.worker().workerName(), DEFAULT_WEIGHT);
+    }
+}
@@ -0,0 +1,111 @@
+package com.czertainly.csc.signing.configuration.selection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps live statistics about the requests processed by the Signserver workers.
+ * <p>
+ * For every worker the number of outstanding requests and an exponentially weighted moving average of the
+ * request latency are tracked. A worker whose requests failed {@code failureThreshold} times in a row is
+ * ejected for the {@code ejectionDuration}. Once the ejection expires, the worker receives requests again;
+ * a successful request brings it back completely, while another failure ejects it again.
+ */
+public class WorkerLoadTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkerLoadTracker.class);
+    private static final double LATENCY_SMOOTHING_FACTOR = 0.2;
+
+    private final ConcurrentMap<String, WorkerStatistics> statistics = new ConcurrentHashMap<>();
+    private final int failureThreshold;
+    private final Duration ejectionDuration;
+    private final Clock clock;
+
+    public WorkerLoadTracker(int failureThreshold, Duration ejectionDuration) {
+        this(failureThreshold, ejectionDuration, Clock.systemUTC());
+    }
+
+    public WorkerLoadTracker(int failureThreshold, Duration ejectionDuration, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.ejectionDuration = ejectionDuration;
+        this.clock = clock;
+    }
+
+    public void requestStarted(String workerName) {
+        statisticsOf(workerName).outstandingRequests.incrementAndGet();
+    }
+
+    public void requestFinished(String workerName, Duration latency, boolean successful) {
+        WorkerStatistics workerStatistics = statisticsOf(workerName);
+        workerStatistics.outstandingRequests.decrementAndGet();
+        synchronized (workerStatistics) {
+            double latencyMillis = latency.toNanos() / 1_000_000.0;
+            workerStatistics.averageLatencyMillis = workerStatistics.averageLatencyMillis == 0
+                    ? latencyMillis
+                    : LATENCY_SMOOTHING_FACTOR * latencyMillis
+                            + (1 - LATENCY_SMOOTHING_FACTOR) * workerStatistics.averageLatencyMillis;
+
+            if (successful) {
+                if (workerStatistics.ejectedUntil != null) {
+                    logger.info("Worker '{}' has recovered and is available again.", workerName);
+                }
+                workerStatistics.consecutiveFailures = 0;
+                workerStatistics.ejectedUntil = null;
+            } else {
+                workerStatistics.consecutiveFailures++;
+                if (workerStatistics.consecutiveFailures >= failureThreshold) {
+                    workerStatistics.ejectedUntil = clock.instant().plus(ejectionDuration);
+                    logger.warn("Worker '{}' has failed {} times in a row and is ejected until {}.",
+                                workerName, workerStatistics.consecutiveFailures, workerStatistics.ejectedUntil
+                    );
+                }
+            }
+        }
+    }
+
+    public boolean isAvailable(String workerName) {
+        WorkerStatistics workerStatistics = statistics.get(workerName);
+        if (workerStatistics == null) {
+            return true;
+        }
+        synchronized (workerStatistics) {
+            return workerStatistics.ejectedUntil == null || !clock.instant().isBefore(workerStatistics.ejectedUntil);
+        }
+    }
+
+    public int getOutstandingRequests(String workerName) {
+        WorkerStatistics workerStatistics = statistics.get(workerName);
+        return workerStatistics == null ? 0 : workerStatistics.outstandingRequests.get();
+    }
+
+    /**
+     * @return the average latency of the recent requests in milliseconds or 0 if no request has finished yet
+     */
+    public double getAverageLatencyMillis(String workerName) {
+        WorkerStatistics workerStatistics = statistics.get(workerName);
+        if (workerStatistics == null) {
+            return 0;
+        }
+        synchronized (workerStatistics) {
+            return workerStatistics.averageLatencyMillis;
+        }
+    }
+
+    private WorkerStatistics statisticsOf(String workerName) {
+        return statistics.computeIfAbsent(workerName, name -> new WorkerStatistics());
+    }
+
+    private static class WorkerStatistics {
+        private final AtomicInteger outstandingRequests = new AtomicInteger();
+        private double averageLatencyMillis;
+        private int consecutiveFailures;
+        private Instant ejectedUntil;
+    }
+}
@@ -0,0 +1,17 @@
+package com.czertainly.csc.signing.configuration.selection;
+
+import com.czertainly.csc.configuration.csc.WorkerSelectionSettings;
+
+public final class WorkerSelectionStrategies {
+
+    private WorkerSelectionStrategies() {}
+
+    public static WorkerSelectionStrategy create(WorkerSelectionSettings settings, WorkerLoadTracker loadTracker) {
+        return switch (settings.strategy()) {
+            case FIRST_MATCH -> new FirstMatchSelectionStrategy();
+            case ROUND_ROBIN -> new RoundRobinSelectionStrategy();
+            case WEIGHTED -> new WeightedSelectionStrategy(settings.weights());
+            case LEAST_OUTSTANDING_REQUESTS -> new LeastOutstandingRequestsSelectionStrategy(loadTracker);
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package com.czertainly.csc.signing.configuration.selection;
+
+import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
+
+import java.util.List;
+
+/**
+ * Chooses one worker out of workers that are all capable of processing a signature request.
+ */
+public interface WorkerSelectionStrategy {
+
+    /**
+     * Selects a worker to process the request.
+     *
+     * @param candidates non-empty list of equivalent workers, in the order in which they are configured
+     * @return the selected worker
+     */
+    WorkerWithCapabilities select(List<WorkerWithCapabilities> candidates);
+
+}
@@ -0,0 +1,2 @@
+ALTER TABLE session_keys ADD COLUMN reserved_at timestamp null;
+ALTER TABLE one_time_keys ADD COLUMN reserved_at timestamp null;
@@ -0,0 +1,3 @@
+CREATE INDEX session_keys_free_idx ON session_keys (crypto_token_id(16), key_algorithm(64), in_use);
+
+CREATE INDEX one_time_keys_free_idx ON one_time_keys (crypto_token_id(16), key_algorithm(64), in_use);
\ No newline at end of file
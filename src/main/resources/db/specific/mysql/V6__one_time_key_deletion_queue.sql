@@ -0,0 +1,3 @@
+ALTER TABLE one_time_keys ADD COLUMN deleting boolean not null default false;
+
+CREATE INDEX one_time_keys_deleting_idx ON one_time_keys (deleting);
\ No newline at end of file
@@ -0,0 +1 @@
+CREATE INDEX one_time_keys_used_idx ON one_time_keys (in_use, deleting, acquired_at, id);
@@ -0,0 +1,3 @@
+CREATE INDEX session_keys_free_idx ON session_keys (crypto_token_id, key_algorithm) WHERE in_use = false;
+
+CREATE INDEX one_time_keys_free_idx ON one_time_keys (crypto_token_id, key_algorithm) WHERE in_use = false;
\ No newline at end of file
@@ -0,0 +1 @@
+CREATE INDEX one_time_keys_used_idx ON one_time_keys (acquired_at, id) WHERE in_use = true AND deleting = false;
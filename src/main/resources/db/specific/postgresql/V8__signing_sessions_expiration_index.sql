@@ -0,0 +1 @@
+CREATE INDEX signing_sessions_expires_in_idx ON signing_sessions (expires_in, id);
@@ -0,0 +1,5 @@
+ALTER TABLE one_time_keys ADD COLUMN deletion_attempts integer not null default 0;
+ALTER TABLE one_time_keys ADD COLUMN next_deletion_attempt_at timestamp with time zone null;
+
+DROP INDEX one_time_keys_deleting_idx;
+CREATE INDEX one_time_keys_deleting_idx ON one_time_keys (deletion_attempts, id) WHERE deleting = true;
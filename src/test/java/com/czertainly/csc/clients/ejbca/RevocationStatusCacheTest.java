@@ -0,0 +1,117 @@
+package com.czertainly.csc.clients.ejbca;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.model.RevocationStatus;
+import com.czertainly.csc.utils.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RevocationStatusCacheTest {
+
+    private static final String ISSUER_DN = "CN=Test CA,O=Test,C=CZ";
+
+    MutableClock clock = MutableClock.now();
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    RevocationStatusCache cache = new RevocationStatusCache(Duration.ofMinutes(1), Duration.ofSeconds(10), 100,
+                                                            meterRegistry, clock
+    );
+    AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void revocationStatusIsLoadedOnceWithinTtl() {
+        // given
+        cache.get("1a", ISSUER_DN, loader(RevocationStatus.NOT_REVOKED));
+
+        // when
+        var status = cache.get("1A", "cn=test ca, o=test, c=cz", loader(RevocationStatus.REVOKED));
+
+        // then
+        assertEquals(RevocationStatus.NOT_REVOKED, assertSuccessAndGet(status));
+        assertEquals(1, loads.get());
+        assertEquals(1.0, lookups("hit"));
+        assertEquals(1.0, lookups("miss"));
+    }
+
+    @Test
+    void revocationStatusExpiresAfterTtl() {
+        // given
+        cache.get("1a", ISSUER_DN, loader(RevocationStatus.NOT_REVOKED));
+
+        // when
+        clock.advance(Duration.ofMinutes(1));
+        var status = cache.get("1a", ISSUER_DN, loader(RevocationStatus.REVOKED));
+
+        // then
+        assertEquals(RevocationStatus.REVOKED, assertSuccessAndGet(status));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void failedLookupIsCachedForNegativeTtl() {
+        // given
+        Supplier<Result<RevocationStatus, TextError>> failingLoader = () -> {
+            loads.incrementAndGet();
+            return Result.error(TextError.of("Certificate not found in EJBCA"));
+        };
+        cache.get("1a", ISSUER_DN, failingLoader);
+
+        // when
+        var cachedStatus = cache.get("1a", ISSUER_DN, failingLoader);
+        clock.advance(Duration.ofSeconds(10));
+        var reloadedStatus = cache.get("1a", ISSUER_DN, loader(RevocationStatus.NOT_REVOKED));
+
+        // then
+        assertErrorContains(cachedStatus, "Certificate not found in EJBCA");
+        assertEquals(RevocationStatus.NOT_REVOKED, assertSuccessAndGet(reloadedStatus));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidatedRevocationStatusIsLoadedAgain() {
+        // given
+        cache.get("01a", "C=CZ,O=Test,CN=Test CA", loader(RevocationStatus.NOT_REVOKED));
+
+        // when
+        cache.invalidate("1a", ISSUER_DN);
+        var status = cache.get("1a", ISSUER_DN, loader(RevocationStatus.REVOKED));
+
+        // then
+        assertEquals(RevocationStatus.REVOKED, assertSuccessAndGet(status));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void lookupRunningDuringInvalidationIsNotCached() {
+        // given
+        cache.get("1a", ISSUER_DN, () -> {
+            cache.invalidate("1a", ISSUER_DN);
+            return Result.success(RevocationStatus.NOT_REVOKED);
+        });
+
+        // when
+        var status = cache.get("1a", ISSUER_DN, loader(RevocationStatus.REVOKED));
+
+        // then
+        assertEquals(RevocationStatus.REVOKED, assertSuccessAndGet(status));
+    }
+
+    private Supplier<Result<RevocationStatus, TextError>> loader(RevocationStatus status) {
+        return () -> {
+            loads.incrementAndGet();
+            return Result.success(status);
+        };
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get(RevocationStatusCache.METRIC_NAME).tag("result", result).counter().count();
+    }
+}
@@ -4,8 +4,11 @@ import com.czertainly.csc.api.auth.JwksParser;
 import com.czertainly.csc.configuration.idp.IdpConfiguration;
 import com.czertainly.csc.model.UserInfo;
 import com.czertainly.csc.utils.configuration.IdpConfigurationBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dasniko.testcontainers.keycloak.KeycloakContainer;
 import io.jsonwebtoken.security.PublicJwk;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.keycloak.admin.client.Keycloak;
@@ -95,7 +98,7 @@ public class IdpClientTest {
         IdpConfiguration idpConfiguration = IdpConfigurationBuilder.create()
                                                                    .withUserInfoUrl(null)
                                                                    .build();
-        IdpClient idpClient = new IdpClient(idpConfiguration, null);
+        IdpClient idpClient = new IdpClient(idpConfiguration, null, new SimpleMeterRegistry(), new ObjectMapper());
 
         // when
         boolean canDownloadUserInfo = idpClient.canDownloadUserInfo();
@@ -124,6 +127,16 @@ public class IdpClientTest {
             return new HttpComponentsClientHttpRequestFactory();
         }
 
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
         @Bean
         public IdpConfiguration idpConfiguration() {
             return IdpConfigurationBuilder.create()
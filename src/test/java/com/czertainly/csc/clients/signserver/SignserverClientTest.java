@@ -1,31 +1,47 @@
 package com.czertainly.csc.clients.signserver;
 
+import com.czertainly.csc.clients.signserver.rest.SignserverAsyncRestClient;
 import com.czertainly.csc.clients.signserver.rest.SignserverRestClient;
 import com.czertainly.csc.clients.signserver.ws.SignserverWsClient;
+import com.czertainly.csc.clients.signserver.ws.dto.TokenEntry;
+import com.czertainly.csc.clients.signserver.ws.dto.TokenSearchResults;
 import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
 import com.czertainly.csc.crypto.CertificateParser;
 import com.czertainly.csc.model.SignedDocuments;
+import com.czertainly.csc.model.signserver.CryptoToken;
 import com.czertainly.csc.signing.Signature;
 import com.czertainly.csc.signing.configuration.SignaturePackaging;
 import com.fasterxml.jackson.core.StreamReadFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
 import java.security.cert.CertificateException;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.czertainly.csc.utils.ResourceLoader.loadBytesFromResources;
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
 import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -36,6 +52,8 @@ class SignserverClientTest {
     SignserverWsClient signserverWSClient;
     @Mock
     SignserverRestClient signserverRestClient;
+    @Mock
+    SignserverAsyncRestClient signserverAsyncRestClient;
     @Spy
     KeySpecificationParser keySpecificationParser = new KeySpecificationParser();
     @Spy
@@ -44,9 +62,20 @@ class SignserverClientTest {
                                           .build();
     @Spy
     CertificateParser certificateParser = new CertificateParser();
-    @InjectMocks
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
     SignserverClient signserverClient;
 
+    @BeforeEach
+    void setUp() {
+        signserverClient = signserverClient(100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
 
     SignserverClientTest() throws CertificateException {}
 
@@ -55,6 +84,7 @@ class SignserverClientTest {
     List<String> multipleHashes = List.of("dummyData1", "dummyData2");
     String keyAlias = "signingKey01";
     String digestAlgorithm = "SHA-256";
+    String encodedContent = Base64.getEncoder().encodeToString("dummyDocument".getBytes());
 
 
     @Test
@@ -126,6 +156,258 @@ class SignserverClientTest {
         assertEquals(SignaturePackaging.DETACHED, signatures.signatures().getLast().packaging());
     }
 
+    @Test
+    void signSingleContentPassesEncodedContentThrough() {
+        // given
+        byte[] signedContent = "signedDocument".getBytes();
+        when(signserverRestClient.processEncoded(eq(signerName), eq(encodedContent), any())).thenReturn(
+                Result.success(signedContent));
+
+        // when
+        var signingresult = signserverClient.signSingleContent(signerName, encodedContent, keyAlias,
+                                                               SignaturePackaging.ENVELOPED
+        );
+
+        // then
+        Signature signature = assertSuccessAndGet(signingresult);
+        assertArrayEquals(signedContent, signature.value());
+        assertEquals(SignaturePackaging.ENVELOPED, signature.packaging());
+    }
+
+    @Test
+    void signSingleContentWithValidationInfo() throws IOException {
+        // given
+        byte[] signedContentWithValidationData = Base64.getDecoder().decode(
+                loadSignature("signatureSingleHashWithValidationData"));
+        when(signserverRestClient.processEncoded(eq(signerName), eq(encodedContent), any())).thenReturn(
+                Result.success(signedContentWithValidationData));
+
+        // when
+        var signingresult = signserverClient.signSingleContentWithValidationData(signerName, encodedContent,
+                                                                                 keyAlias, SignaturePackaging.ENVELOPED
+        );
+
+        // then
+        SignedDocuments signature = assertSuccessAndGet(signingresult);
+        assertEquals(1, signature.signatures().size());
+        assertEquals(SignaturePackaging.ENVELOPED, signature.signatures().getFirst().packaging());
+    }
+
+    @Test
+    void signSingleHashAsync() throws IOException {
+        // given
+        byte[] singleSignedHash = loadSignature("signatureSingleHash");
+        when(signserverAsyncRestClient.process(eq(signerName), eq(singleHash), any(), any())).thenReturn(
+                CompletableFuture.completedFuture(Result.success(singleSignedHash)));
+
+        // when
+        var signingresult = signserverClient.signSingleHashAsync(signerName, singleHash, keyAlias, digestAlgorithm)
+                                            .join();
+
+        // then
+        Signature signature = assertSuccessAndGet(signingresult);
+        assertEquals(SignaturePackaging.DETACHED, signature.packaging());
+    }
+
+    @Test
+    void signMultipleHashesAsync() throws IOException {
+        // given
+        byte[] multipleSignedHashes = loadSignature("signatureMultipleHashes");
+        when(signserverAsyncRestClient.process(eq(signerName), any(), any(), any())).thenReturn(
+                CompletableFuture.completedFuture(Result.success(multipleSignedHashes)));
+
+        // when
+        var signingresult = signserverClient.signMultipleHashesAsync(signerName, multipleHashes, keyAlias,
+                                                                     digestAlgorithm
+        ).join();
+
+        // then
+        List<Signature> signatures = assertSuccessAndGet(signingresult);
+        assertEquals(2, signatures.size());
+    }
+
+    @Test
+    void signSingleContentAsync() {
+        // given
+        byte[] signedContent = "signedDocument".getBytes();
+        when(signserverAsyncRestClient.processEncoded(eq(signerName), eq(encodedContent), any())).thenReturn(
+                CompletableFuture.completedFuture(Result.success(signedContent)));
+
+        // when
+        var signingresult = signserverClient.signSingleContentAsync(signerName, encodedContent, keyAlias,
+                                                                    SignaturePackaging.ENVELOPED
+        ).join();
+
+        // then
+        Signature signature = assertSuccessAndGet(signingresult);
+        assertArrayEquals(signedContent, signature.value());
+    }
+
+    @Test
+    void signMultipleHashesSplitsLargeBatchIntoChunksWithUniqueRequestIds() {
+        // given
+        SignserverClient chunkingClient = signserverClient(2);
+        List<String> hashes = List.of("hash0", "hash1", "hash2", "hash3", "hash4");
+        List<String> requestIds = Collections.synchronizedList(new ArrayList<>());
+        when(signserverRestClient.process(eq(signerName), any(), any(), any())).thenAnswer(invocation -> {
+            var request = objectMapper.readValue((byte[]) invocation.getArgument(1), BatchSignatureRequests.class);
+            request.signatureRequests().forEach(r -> requestIds.add(r.customIdentifier()));
+            return Result.success(reversedBatchResponse(request));
+        });
+
+        // when
+        var signingresult = chunkingClient.signMultipleHashes(signerName, hashes, keyAlias, digestAlgorithm);
+
+        // then
+        List<Signature> signatures = assertSuccessAndGet(signingresult);
+        assertEquals(5, signatures.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            assertArrayEquals(hashes.get(i).getBytes(), signatures.get(i).value());
+        }
+        verify(signserverRestClient, times(3)).process(eq(signerName), any(), any(), any());
+        assertEquals(Set.of("r0", "r1", "r2", "r3", "r4"), new HashSet<>(requestIds));
+    }
+
+    @Test
+    void signMultipleHashesFailsWhenAnyChunkFails() {
+        // given
+        SignserverClient chunkingClient = signserverClient(2);
+        List<String> hashes = List.of("hash0", "hash1", "hash2");
+        when(signserverRestClient.process(eq(signerName), any(), any(), any())).thenAnswer(invocation -> {
+            var request = objectMapper.readValue((byte[]) invocation.getArgument(1), BatchSignatureRequests.class);
+            if (request.signatureRequests().getFirst().customIdentifier().equals("r2")) {
+                return Result.error(TextError.of("Chunk has failed"));
+            }
+            return Result.success(reversedBatchResponse(request));
+        });
+
+        // when
+        var signingresult = chunkingClient.signMultipleHashes(signerName, hashes, keyAlias, digestAlgorithm);
+
+        // then
+        assertErrorContains(signingresult, "Chunk has failed");
+    }
+
+    @Test
+    void signMultipleHashesAsyncSendsAtMostMaxParallelChunksConcurrently() throws IOException {
+        // given
+        SignserverClient chunkingClient = signserverClient(1);
+        List<String> hashes = List.of("hash0", "hash1", "hash2", "hash3", "hash4");
+        List<BatchSignatureRequests> requests = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Result<byte[], TextError>>> pendingChunks = Collections.synchronizedList(
+                new ArrayList<>());
+        when(signserverAsyncRestClient.process(eq(signerName), any(), any(), any())).thenAnswer(invocation -> {
+            requests.add(objectMapper.readValue((byte[]) invocation.getArgument(1), BatchSignatureRequests.class));
+            var chunkFuture = new CompletableFuture<Result<byte[], TextError>>();
+            pendingChunks.add(chunkFuture);
+            return chunkFuture;
+        });
+
+        // when
+        var signingresult = chunkingClient.signMultipleHashesAsync(signerName, hashes, keyAlias, digestAlgorithm);
+
+        // then
+        assertEquals(4, pendingChunks.size());
+        pendingChunks.getFirst().complete(Result.success(reversedBatchResponse(requests.getFirst())));
+        assertEquals(5, pendingChunks.size());
+        for (int i = 1; i < pendingChunks.size(); i++) {
+            pendingChunks.get(i).complete(Result.success(reversedBatchResponse(requests.get(i))));
+        }
+        List<Signature> signatures = assertSuccessAndGet(signingresult.join());
+        assertEquals(5, signatures.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            assertArrayEquals(hashes.get(i).getBytes(), signatures.get(i).value());
+        }
+    }
+
+    @Test
+    void signMultipleHashesFailsWhenSignatureIsNotBase64Encoded() {
+        // given
+        when(signserverRestClient.process(eq(signerName), any(), any(), any())).thenAnswer(invocation -> {
+            var responses = List.of(new BatchSignatureResponse("not base64!", "dummyData1", "r0"),
+                                    new BatchSignatureResponse("c2lnbmF0dXJl", "dummyData2", "r1")
+            );
+            return Result.success(
+                    Base64.getEncoder().encode(objectMapper.writeValueAsBytes(new BatchSignaturesResponse(responses))));
+        });
+
+        // when
+        var signingresult = signserverClient.signMultipleHashes(signerName, multipleHashes, keyAlias, digestAlgorithm);
+
+        // then
+        assertErrorContains(signingresult, "decoding of the signature data has failed");
+    }
+
+    @Test
+    void generateKeyReturnsRequestedAliasWithoutQueryingTrustedCryptoToken() {
+        // given
+        var cryptoToken = new CryptoToken("cryptoToken", 1, List.of(), true);
+        when(signserverWSClient.generateKey(1, "key-1", "RSA", "2048")).thenReturn(Result.success("key-1"));
+
+        // when
+        var result = signserverClient.generateKey(cryptoToken, "key-1", "RSA", "2048");
+
+        // then
+        assertEquals("key-1", assertSuccessAndGet(result));
+        verify(signserverWSClient, never()).queryTokenEntries(anyInt(), anyBoolean(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void generateKeyQueriesCryptoTokenForRequestedAliasByDefault() {
+        // given
+        var cryptoToken = new CryptoToken("cryptoToken", 1, List.of());
+        when(signserverWSClient.generateKey(1, "key-1", "RSA", "2048")).thenReturn(Result.success("key-1"));
+        var entry = new TokenEntry();
+        entry.setAlias("key-1");
+        var searchResults = new TokenSearchResults();
+        searchResults.getEntries().add(entry);
+        when(signserverWSClient.queryTokenEntries(1, false, 0, 2, "key-1%")).thenReturn(Result.success(searchResults));
+
+        // when
+        var result = signserverClient.generateKey(cryptoToken, "key-1", "RSA", "2048");
+
+        // then
+        assertEquals("key-1", assertSuccessAndGet(result));
+        verify(signserverWSClient).queryTokenEntries(1, false, 0, 2, "key-1%");
+    }
+
+    @Test
+    void generateKeyQueriesCryptoTokenForAlteredAlias() {
+        // given
+        var cryptoToken = new CryptoToken("cryptoToken", 1, List.of());
+        when(signserverWSClient.generateKey(1, "key-1", "RSA", "2048")).thenReturn(Result.success("key"));
+        var entry = new TokenEntry();
+        entry.setAlias("key-1-0001");
+        var searchResults = new TokenSearchResults();
+        searchResults.getEntries().add(entry);
+        when(signserverWSClient.queryTokenEntries(1, false, 0, 2, "key%")).thenReturn(Result.success(searchResults));
+
+        // when
+        var result = signserverClient.generateKey(cryptoToken, "key-1", "RSA", "2048");
+
+        // then
+        assertEquals("key-1-0001", assertSuccessAndGet(result));
+    }
+
+    private SignserverClient signserverClient(int multisignChunkSize) {
+        return new SignserverClient(signserverWSClient, signserverRestClient, signserverAsyncRestClient,
+                                    keySpecificationParser, objectMapper, certificateParser, executor,
+                                    multisignChunkSize, 4
+        );
+    }
+
+    // Signs each hash by its own value and returns the signatures in the reversed order of the requests
+    private byte[] reversedBatchResponse(BatchSignatureRequests request) throws IOException {
+        List<BatchSignatureResponse> responses = new ArrayList<>();
+        for (BatchSignatureRequest signatureRequest : request.signatureRequests().reversed()) {
+            responses.add(new BatchSignatureResponse(
+                    Base64.getEncoder().encodeToString(signatureRequest.data().getBytes()), signatureRequest.data(),
+                    signatureRequest.customIdentifier()
+            ));
+        }
+        return Base64.getEncoder().encode(objectMapper.writeValueAsBytes(new BatchSignaturesResponse(responses)));
+    }
+
     private byte[] loadSignature(String name) throws IOException {
         return loadBytesFromResources("com/czertainly/csc/clients/signserver/" + name);
     }
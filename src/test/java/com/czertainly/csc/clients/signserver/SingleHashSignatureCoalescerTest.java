@@ -0,0 +1,191 @@
+package com.czertainly.csc.clients.signserver;
+
+import com.czertainly.csc.clients.signserver.SingleHashSignatureCoalescer.BatchKey;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextErrorWithRetryIndication;
+import com.czertainly.csc.configuration.csc.SignatureCoalescingSettings;
+import com.czertainly.csc.signing.Signature;
+import com.czertainly.csc.signing.configuration.SignaturePackaging;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SingleHashSignatureCoalescerTest {
+
+    @Mock
+    SignserverClient signserverClient;
+
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    BatchKey key = new BatchKey("worker", "alias", "SHA256");
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void concurrentRequestsWithinWindowAreSentAsSingleBatch() {
+        // given
+        var coalescer = coalescer(Duration.ofMillis(200), 10);
+        when(signserverClient.signMultipleHashes("worker", List.of("hash1", "hash2", "hash3"), "alias", "SHA256"))
+                .thenReturn(Result.success(List.of(signature("sig1"), signature("sig2"), signature("sig3"))));
+
+        // when
+        var first = coalescer.submit(key, "hash1");
+        var second = coalescer.submit(key, "hash2");
+        var third = coalescer.submit(key, "hash3");
+
+        // then
+        assertArrayEquals("sig1".getBytes(), assertSuccessAndGet(first.join()).value());
+        assertArrayEquals("sig2".getBytes(), assertSuccessAndGet(second.join()).value());
+        assertArrayEquals("sig3".getBytes(), assertSuccessAndGet(third.join()).value());
+        verify(signserverClient, times(1)).signMultipleHashes(any(), any(), any(), any());
+    }
+
+    @Test
+    void singleRequestIsSentAsSingleHashSignature() {
+        // given
+        var coalescer = coalescer(Duration.ofMillis(10), 10);
+        when(signserverClient.signSingleHash("worker", "hash1".getBytes(), "alias", "SHA256"))
+                .thenReturn(Result.success(signature("sig1")));
+
+        // when
+        var result = coalescer.submit(key, "hash1").join();
+
+        // then
+        assertArrayEquals("sig1".getBytes(), assertSuccessAndGet(result).value());
+        verify(signserverClient, never()).signMultipleHashes(any(), any(), any(), any());
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForWindow() throws Exception {
+        // given
+        var coalescer = coalescer(Duration.ofMinutes(1), 2);
+        when(signserverClient.signMultipleHashes("worker", List.of("hash1", "hash2"), "alias", "SHA256"))
+                .thenReturn(Result.success(List.of(signature("sig1"), signature("sig2"))));
+
+        // when
+        var first = coalescer.submit(key, "hash1");
+        var second = coalescer.submit(key, "hash2");
+
+        // then
+        assertSuccessAndGet(first.get(5, TimeUnit.SECONDS));
+        assertSuccessAndGet(second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void requestsForDifferentKeysAreNotCoalesced() {
+        // given
+        var coalescer = coalescer(Duration.ofMillis(50), 10);
+        when(signserverClient.signSingleHash(any(), any(), any(), any()))
+                .thenReturn(Result.success(signature("sig")));
+
+        // when
+        var first = coalescer.submit(key, "hash1");
+        var second = coalescer.submit(new BatchKey("worker", "another-alias", "SHA256"), "hash2");
+
+        // then
+        assertSuccessAndGet(first.join());
+        assertSuccessAndGet(second.join());
+        verify(signserverClient, times(2)).signSingleHash(any(), any(), any(), any());
+    }
+
+    @Test
+    void retryableBatchErrorIsReturnedToAllCallers() {
+        // given
+        var coalescer = coalescer(Duration.ofMillis(200), 10);
+        when(signserverClient.signMultipleHashes(any(), any(), any(), any()))
+                .thenReturn(Result.error(TextErrorWithRetryIndication.doRetry("Signserver is down")));
+
+        // when
+        var first = coalescer.submit(key, "hash1");
+        var second = coalescer.submit(key, "hash2");
+
+        // then
+        assertErrorContains(first.join(), "Signserver is down");
+        assertErrorContains(second.join(), "Signserver is down");
+        verify(signserverClient, never()).signSingleHash(any(), any(), any(), any());
+    }
+
+    @Test
+    void hashesOfRejectedBatchAreSignedIndividually() {
+        // given
+        var coalescer = coalescer(Duration.ofMillis(200), 10);
+        when(signserverClient.signMultipleHashes(any(), any(), any(), any()))
+                .thenReturn(Result.error(TextErrorWithRetryIndication.doNotRetry("Invalid hash length")));
+        when(signserverClient.signSingleHash("worker", "hash1".getBytes(), "alias", "SHA256"))
+                .thenReturn(Result.success(signature("sig1")));
+        when(signserverClient.signSingleHash("worker", "invalid".getBytes(), "alias", "SHA256"))
+                .thenReturn(Result.error(TextErrorWithRetryIndication.doNotRetry("Invalid hash length")));
+        when(signserverClient.signSingleHash("worker", "hash3".getBytes(), "alias", "SHA256"))
+                .thenReturn(Result.success(signature("sig3")));
+
+        // when
+        var first = coalescer.submit(key, "hash1");
+        var second = coalescer.submit(key, "invalid");
+        var third = coalescer.submit(key, "hash3");
+
+        // then
+        assertArrayEquals("sig1".getBytes(), assertSuccessAndGet(first.join()).value());
+        assertErrorContains(second.join(), "Invalid hash length");
+        assertArrayEquals("sig3".getBytes(), assertSuccessAndGet(third.join()).value());
+    }
+
+    @Test
+    void mismatchingNumberOfSignaturesIsReturnedAsError() {
+        // given
+        var coalescer = coalescer(Duration.ofMillis(200), 10);
+        when(signserverClient.signMultipleHashes(any(), any(), any(), any()))
+                .thenReturn(Result.success(List.of(signature("sig1"))));
+
+        // when
+        var first = coalescer.submit(key, "hash1");
+        var second = coalescer.submit(key, "hash2");
+
+        // then
+        assertErrorContains(first.join(), "number of signatures does not match");
+        assertErrorContains(second.join(), "number of signatures does not match");
+    }
+
+    @Test
+    void signSingleHashCallsSignserverDirectlyWhenDisabled() {
+        // given
+        var coalescer = new SingleHashSignatureCoalescer(signserverClient, SignatureCoalescingSettings.defaults(),
+                                                         executor
+        );
+        when(signserverClient.signSingleHash("worker", "hash1".getBytes(), "alias", "SHA256"))
+                .thenReturn(Result.success(signature("sig1")));
+
+        // when
+        var result = coalescer.signSingleHash("worker", "hash1", "alias", "SHA256");
+
+        // then
+        assertArrayEquals("sig1".getBytes(), assertSuccessAndGet(result).value());
+    }
+
+    private SingleHashSignatureCoalescer coalescer(Duration window, int maxBatchSize) {
+        return new SingleHashSignatureCoalescer(
+                signserverClient, new SignatureCoalescingSettings(true, window, maxBatchSize), executor
+        );
+    }
+
+    private static Signature signature(String value) {
+        return Signature.of(value.getBytes(), SignaturePackaging.DETACHED);
+    }
+}
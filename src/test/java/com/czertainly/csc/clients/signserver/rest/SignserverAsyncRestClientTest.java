@@ -0,0 +1,219 @@
+package com.czertainly.csc.clients.signserver.rest;
+
+import com.czertainly.csc.common.resilience.CircuitBreakerRegistry;
+import com.czertainly.csc.common.resilience.JitteredBackoff;
+import com.czertainly.csc.common.resilience.ResilientCallExecutor;
+import com.czertainly.csc.common.resilience.RetryBudget;
+import com.czertainly.csc.common.result.Error;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.common.result.TextErrorWithRetryIndication;
+import com.czertainly.csc.configuration.ServerConfiguration;
+import com.czertainly.csc.configuration.SignApiAuthorization;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class SignserverAsyncRestClientTest {
+
+    static final String WORKER_NAME = "worker1";
+
+    HttpServer signserver;
+    volatile int responseStatus;
+    volatile String responseBody;
+    List<String> receivedProtocols = new CopyOnWriteArrayList<>();
+
+    ExecutorService responseExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    CloseableHttpAsyncClient httpClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        signserver = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        signserver.createContext("/", exchange -> {
+            receivedProtocols.add(exchange.getProtocol());
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(responseStatus, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        signserver.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        signserver.stop(0);
+        responseExecutor.close();
+    }
+
+    @Test
+    void processReturnsDataOfSuccessfulResponse() {
+        // given
+        respondWith(200, "{\"data\":\"c2lnbmF0dXJl\"}");
+        var client = asyncClient(HttpVersionPolicy.NEGOTIATE);
+
+        // when
+        var result = process(client);
+
+        // then
+        assertArrayEquals("c2lnbmF0dXJl".getBytes(), assertSuccessAndGet(result));
+    }
+
+    @Test
+    void unavailableSignserverIsIndicatedAsRetryable() {
+        for (int status : List.of(502, 503, 504)) {
+            // given
+            respondWith(status, "{}");
+            var client = asyncClient(HttpVersionPolicy.NEGOTIATE);
+
+            // when
+            var result = process(client);
+
+            // then
+            assertTrue(TextErrorWithRetryIndication.indicatesRetry(assertErrorAndGet(result)),
+                       "Status " + status + " should be retryable");
+        }
+    }
+
+    @Test
+    void rejectedRequestIsIndicatedAsNotRetryable() {
+        for (int status : List.of(400, 404, 500)) {
+            // given
+            respondWith(status, "{}");
+            var client = asyncClient(HttpVersionPolicy.NEGOTIATE);
+
+            // when
+            var result = process(client);
+
+            // then
+            assertFalse(TextErrorWithRetryIndication.indicatesRetry(assertErrorAndGet(result)),
+                        "Status " + status + " should not be retryable");
+        }
+    }
+
+    @Test
+    void responseWithoutDataIsIndicatedAsNotRetryable() {
+        // given
+        respondWith(200, "{}");
+        var client = asyncClient(HttpVersionPolicy.NEGOTIATE);
+
+        // when
+        var result = process(client);
+
+        // then
+        assertFalse(TextErrorWithRetryIndication.indicatesRetry(assertErrorAndGet(result)));
+    }
+
+    @Test
+    void connectionFailureIsIndicatedAsRetryable() {
+        // given
+        var client = asyncClient(HttpVersionPolicy.NEGOTIATE);
+        signserver.stop(0);
+
+        // when
+        var result = process(client);
+
+        // then
+        assertTrue(TextErrorWithRetryIndication.indicatesRetry(assertErrorAndGet(result)));
+    }
+
+    @Test
+    void http1IsUsedWhenForced() {
+        // given
+        respondWith(200, "{\"data\":\"c2lnbmF0dXJl\"}");
+        var client = asyncClient(HttpVersionPolicy.FORCE_HTTP_1);
+
+        // when
+        var result = process(client);
+
+        // then
+        assertSuccessAndGet(result);
+        assertEquals(List.of("HTTP/1.1"), receivedProtocols);
+    }
+
+    @Test
+    void forcedHttp2IsNotDowngradedWhenSignserverDoesNotSupportIt() {
+        // given
+        respondWith(200, "{\"data\":\"c2lnbmF0dXJl\"}");
+        var client = asyncClient(HttpVersionPolicy.FORCE_HTTP_2);
+
+        // when
+        var result = process(client);
+
+        // then
+        assertErrorAndGet(result);
+        assertFalse(receivedProtocols.contains("HTTP/1.1"));
+    }
+
+    private void respondWith(int status, String body) {
+        this.responseStatus = status;
+        this.responseBody = body;
+    }
+
+    private Result<byte[], TextError> process(SignserverAsyncRestClient client) {
+        return client.process(WORKER_NAME, "hash".getBytes(), Map.of(), SignserverProcessEncoding.NONE).join();
+    }
+
+    private SignserverAsyncRestClient asyncClient(HttpVersionPolicy versionPolicy) {
+        try {
+            if (httpClient != null) {
+                httpClient.close();
+            }
+            // The client uses the HttpClient configured for the application
+            var environment = new MockEnvironment()
+                    .withProperty("signingProvider.signserver.client.connectionPool.responseTimeout", "PT5S");
+            httpClient = new ServerConfiguration().signserverAsyncHttpClient(
+                    SignApiAuthorization.BASIC, "none", "none", versionPolicy, null, environment,
+                    new SimpleMeterRegistry()
+            );
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        // A single attempt, so that the returned error is the one of the response
+        var callExecutor = new ResilientCallExecutor(
+                new CircuitBreakerRegistry(100, Duration.ofSeconds(10), 1), new RetryBudget(0.2, 10),
+                new JitteredBackoff(Duration.ZERO, Duration.ZERO), 1
+        );
+        return new SignserverAsyncRestClient(
+                "http://localhost:" + signserver.getAddress().getPort() + "/signserver",
+                SignApiAuthorization.BASIC, "admin", "admin", httpClient, new ObjectMapper(), callExecutor,
+                responseExecutor, new SimpleMeterRegistry()
+        );
+    }
+
+    private static TextError assertErrorAndGet(Result<byte[], TextError> result) {
+        if (result instanceof Error(var err)) {
+            return err;
+        }
+        fail("Expected an error, got a success.");
+        return null;
+    }
+}
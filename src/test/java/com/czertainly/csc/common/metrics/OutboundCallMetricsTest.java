@@ -0,0 +1,80 @@
+package com.czertainly.csc.common.metrics;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundCallMetricsTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    OutboundCallMetrics metrics = new OutboundCallMetrics(meterRegistry, "test-client");
+
+    @Test
+    void recordTagsCallWithOutcomeOfResult() {
+        // when
+        metrics.record("operation", () -> Result.success("ok"));
+        metrics.record("operation", () -> Result.error(TextError.of("failed")));
+
+        // then
+        assertEquals(1, timer("success").count());
+        assertEquals(1, timer("error").count());
+    }
+
+    @Test
+    void recordTagsThrowingCallAsException() {
+        // when
+        assertThrows(IllegalStateException.class, () -> metrics.record("operation", () -> {
+            throw new IllegalStateException("unexpected");
+        }));
+
+        // then
+        assertEquals(1, timer("exception").count());
+    }
+
+    @Test
+    void recordAsyncRecordsCallWhenFutureCompletes() {
+        // given
+        CompletableFuture<Result<String, TextError>> response = new CompletableFuture<>();
+
+        // when
+        var future = metrics.recordAsync("operation", () -> response);
+
+        // then
+        assertNull(meterRegistry.find(OutboundCallMetrics.METRIC_NAME).timer());
+        response.complete(Result.success("ok"));
+        future.join();
+        assertEquals(1, timer("success").count());
+    }
+
+    @Test
+    void latencyIsRecordedWithoutOperationTag() {
+        // when
+        metrics.record("operation1", () -> Result.success("ok"));
+        metrics.record("operation2", () -> Result.success("ok"));
+
+        // then
+        Timer latency = meterRegistry.get(OutboundCallMetrics.LATENCY_METRIC_NAME)
+                                     .tag("client", "test-client")
+                                     .tag("outcome", "success")
+                                     .timer();
+        assertEquals(2, latency.count());
+        assertTrue(latency.getId().getTags().stream().noneMatch(tag -> tag.getKey().equals("operation")));
+    }
+
+    private Timer timer(String outcome) {
+        Timer timer = meterRegistry.find(OutboundCallMetrics.METRIC_NAME)
+                                   .tag("client", "test-client")
+                                   .tag("operation", "operation")
+                                   .tag("outcome", outcome)
+                                   .timer();
+        assertNotNull(timer);
+        return timer;
+    }
+}
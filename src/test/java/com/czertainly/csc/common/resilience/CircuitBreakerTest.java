@@ -0,0 +1,89 @@
+package com.czertainly.csc.common.resilience;
+
+import com.czertainly.csc.utils.MutableClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    MutableClock clock = MutableClock.now();
+    CircuitBreaker circuitBreaker = new CircuitBreaker("worker1/process", 2, Duration.ofSeconds(10), 1, clock);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        // given
+        circuitBreaker.onFailure();
+
+        // when
+        circuitBreaker.onFailure();
+
+        // then
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void successResetsConsecutiveFailures() {
+        // given
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+
+        // when
+        circuitBreaker.onFailure();
+
+        // then
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void letsLimitedProbesThroughAfterOpenDuration() {
+        // given
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+
+        // when
+        clock.advance(Duration.ofSeconds(10));
+
+        // then
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void closesAfterSuccessfulProbe() {
+        // given
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        clock.advance(Duration.ofSeconds(10));
+        circuitBreaker.tryAcquirePermission();
+
+        // when
+        circuitBreaker.onSuccess();
+
+        // then
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void opensAgainAfterFailedProbe() {
+        // given
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        clock.advance(Duration.ofSeconds(10));
+        circuitBreaker.tryAcquirePermission();
+
+        // when
+        circuitBreaker.onFailure();
+
+        // then
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+}
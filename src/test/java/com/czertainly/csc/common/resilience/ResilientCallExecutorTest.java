@@ -0,0 +1,144 @@
+package com.czertainly.csc.common.resilience;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.common.result.TextErrorWithRetryIndication;
+import com.czertainly.csc.utils.MutableClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResilientCallExecutorTest {
+
+    MutableClock clock = MutableClock.now();
+    CircuitBreakerRegistry circuitBreakers = new CircuitBreakerRegistry(3, Duration.ofSeconds(10), 1, clock);
+    JitteredBackoff noBackoff = new JitteredBackoff(Duration.ZERO, Duration.ZERO);
+    ResilientCallExecutor executor = new ResilientCallExecutor(
+            circuitBreakers, new RetryBudget(0.2, 10, clock), noBackoff, 3
+    );
+
+    @Test
+    void retriesRetryableErrors() {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+
+        // when
+        var result = executor.execute("worker1", "process", () -> calls.incrementAndGet() < 3
+                ? Result.error(TextErrorWithRetryIndication.doRetry("unavailable"))
+                : Result.success("signed"));
+
+        // then
+        assertEquals("signed", assertSuccessAndGet(result));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void doesNotRetryNonRetryableErrors() {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+
+        // when
+        var result = executor.<String>execute("worker1", "process", () -> {
+            calls.incrementAndGet();
+            return Result.error(TextErrorWithRetryIndication.doNotRetry("bad request"));
+        });
+
+        // then
+        assertErrorContains(result, "bad request");
+        assertEquals(1, calls.get());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreakers.get("worker1", "process").getState());
+    }
+
+    @Test
+    void doesNotRetryBeyondRetryBudget() {
+        // given
+        var executorWithoutBudget = new ResilientCallExecutor(
+                circuitBreakers, new RetryBudget(0, 0, clock), noBackoff, 3
+        );
+        AtomicInteger calls = new AtomicInteger();
+
+        // when
+        var result = executorWithoutBudget.<String>execute("worker1", "process", () -> {
+            calls.incrementAndGet();
+            return Result.error(TextErrorWithRetryIndication.doRetry("unavailable"));
+        });
+
+        // then
+        assertErrorContains(result, "unavailable");
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void failsFastWhenCircuitBreakerIsOpen() {
+        // given
+        executor.<String>execute("worker1", "process",
+                                 () -> Result.error(TextErrorWithRetryIndication.doRetry("unavailable")));
+        AtomicInteger calls = new AtomicInteger();
+
+        // when
+        var result = executor.<String>execute("worker1", "process", () -> {
+            calls.incrementAndGet();
+            return Result.success("signed");
+        });
+
+        // then
+        assertErrorContains(result, "Circuit breaker 'worker1/process' is open");
+        assertEquals(0, calls.get());
+        assertFalse(circuitBreakers.isAvailable("worker1"));
+        assertTrue(circuitBreakers.isAvailable("worker2"));
+    }
+
+    @Test
+    void retriesRetryableErrorsOfAsynchronousCalls() {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+
+        // when
+        var result = executor.executeAsync("worker1", "process", () -> CompletableFuture.supplyAsync(
+                () -> calls.incrementAndGet() < 3
+                        ? Result.<String, TextError>error(TextErrorWithRetryIndication.doRetry("unavailable"))
+                        : Result.success("signed")
+        )).join();
+
+        // then
+        assertEquals("signed", assertSuccessAndGet(result));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void failsFastAsynchronousCallWhenCircuitBreakerIsOpen() {
+        // given
+        executor.<String>execute("worker1", "process",
+                                 () -> Result.error(TextErrorWithRetryIndication.doRetry("unavailable")));
+
+        // when
+        var result = executor.<String>executeAsync(
+                "worker1", "process", () -> CompletableFuture.completedFuture(Result.success("signed"))
+        ).join();
+
+        // then
+        assertErrorContains(result, "Circuit breaker 'worker1/process' is open");
+    }
+
+    @Test
+    void otherErrorsThanRetryIndicationAreNotRetried() {
+        // when
+        AtomicInteger calls = new AtomicInteger();
+        var result = executor.<String>execute("worker1", "process", () -> {
+            calls.incrementAndGet();
+            return Result.error(TextError.of("some error"));
+        });
+
+        // then
+        assertErrorContains(result, "some error");
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,62 @@
+package com.czertainly.csc.common.resilience;
+
+import com.czertainly.csc.utils.MutableClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryBudgetTest {
+
+    MutableClock clock = MutableClock.now();
+
+    @Test
+    void allowsMinimalRetriesWithoutRequests() {
+        // given
+        RetryBudget retryBudget = new RetryBudget(0.1, 2, clock);
+
+        // when
+        boolean first = retryBudget.tryAcquireRetry();
+        boolean second = retryBudget.tryAcquireRetry();
+        boolean third = retryBudget.tryAcquireRetry();
+
+        // then
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+    }
+
+    @Test
+    void allowsRetriesProportionallyToRequests() {
+        // given
+        RetryBudget retryBudget = new RetryBudget(0.5, 0, clock);
+
+        // when
+        retryBudget.onRequest();
+        boolean afterOneRequest = retryBudget.tryAcquireRetry();
+        retryBudget.onRequest();
+        boolean afterTwoRequests = retryBudget.tryAcquireRetry();
+
+        // then
+        assertFalse(afterOneRequest);
+        assertTrue(afterTwoRequests);
+    }
+
+    @Test
+    void refillsMinimalRetriesOverTime() {
+        // given
+        RetryBudget retryBudget = new RetryBudget(0.1, 1, clock);
+        retryBudget.tryAcquireRetry();
+
+        // when
+        boolean beforeRefill = retryBudget.tryAcquireRetry();
+        clock.advance(Duration.ofSeconds(1));
+        boolean afterRefill = retryBudget.tryAcquireRetry();
+
+        // then
+        assertFalse(beforeRefill);
+        assertTrue(afterRefill);
+    }
+}
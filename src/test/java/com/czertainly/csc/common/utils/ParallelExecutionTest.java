@@ -0,0 +1,234 @@
+package com.czertainly.csc.common.utils;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelExecutionTest {
+
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void runAllReturnsResultsInTaskOrder() {
+        // given
+        List<Supplier<Result<Integer, TextError>>> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int value = i;
+            tasks.add(() -> {
+                sleep(10 - value);
+                return Result.success(value);
+            });
+        }
+
+        // when
+        var result = ParallelExecution.runAll(tasks, executor, 4);
+
+        // then
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), assertSuccessAndGet(result));
+    }
+
+    @Test
+    void runAllDoesNotExceedMaxParallelism() {
+        // given
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Supplier<Result<Integer, TextError>>> tasks = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            tasks.add(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(5);
+                running.decrementAndGet();
+                return Result.success(1);
+            });
+        }
+
+        // when
+        var result = ParallelExecution.runAll(tasks, executor, 3);
+
+        // then
+        assertEquals(12, assertSuccessAndGet(result).size());
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    void runAllStopsStartingTasksAfterFirstError() {
+        // given
+        AtomicInteger started = new AtomicInteger();
+        List<Supplier<Result<Integer, TextError>>> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            started.incrementAndGet();
+            return Result.error(TextError.of("first task failed"));
+        });
+        for (int i = 0; i < 20; i++) {
+            tasks.add(() -> {
+                started.incrementAndGet();
+                sleep(20);
+                return Result.success(1);
+            });
+        }
+
+        // when
+        var result = ParallelExecution.runAll(tasks, executor, 2);
+
+        // then
+        assertErrorContains(result, "first task failed");
+        assertTrue(started.get() < tasks.size());
+    }
+
+    @Test
+    void runAllReturnsErrorWhenTaskThrows() {
+        // given
+        List<Supplier<Result<Integer, TextError>>> tasks = List.of(
+                () -> Result.success(1),
+                () -> {
+                    throw new IllegalStateException("unexpected");
+                }
+        );
+
+        // when
+        var result = ParallelExecution.runAll(tasks, executor, 2);
+
+        // then
+        assertErrorContains(result, "unexpected");
+    }
+
+    @Test
+    void runAllRunsSequentiallyWhenParallelismIsOne() {
+        // given
+        List<String> threads = new ArrayList<>();
+        List<Supplier<Result<Integer, TextError>>> tasks = List.of(
+                () -> {
+                    threads.add(Thread.currentThread().getName());
+                    return Result.success(1);
+                },
+                () -> {
+                    threads.add(Thread.currentThread().getName());
+                    return Result.success(2);
+                }
+        );
+
+        // when
+        var result = ParallelExecution.runAll(tasks, executor, 1);
+
+        // then
+        assertEquals(List.of(1, 2), assertSuccessAndGet(result));
+        assertEquals(List.of(Thread.currentThread().getName(), Thread.currentThread().getName()), threads);
+    }
+
+    @Test
+    void runAllAsyncReturnsResultsInTaskOrder() {
+        // given
+        List<CompletableFuture<Result<Integer, TextError>>> pending = new ArrayList<>();
+        List<Supplier<CompletableFuture<Result<Integer, TextError>>>> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(() -> {
+                var future = new CompletableFuture<Result<Integer, TextError>>();
+                pending.add(future);
+                return future;
+            });
+        }
+
+        // when
+        var result = ParallelExecution.runAllAsync(tasks, 3);
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            pending.get(i).complete(Result.success(i));
+        }
+
+        // then
+        assertEquals(List.of(0, 1, 2), assertSuccessAndGet(result.join()));
+    }
+
+    @Test
+    void runAllAsyncStartsNextTaskWhenRunningTaskCompletes() {
+        // given
+        List<CompletableFuture<Result<Integer, TextError>>> pending = new ArrayList<>();
+        List<Supplier<CompletableFuture<Result<Integer, TextError>>>> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tasks.add(() -> {
+                var future = new CompletableFuture<Result<Integer, TextError>>();
+                pending.add(future);
+                return future;
+            });
+        }
+
+        // when
+        var result = ParallelExecution.runAllAsync(tasks, 2);
+
+        // then
+        assertEquals(2, pending.size());
+        pending.get(1).complete(Result.success(1));
+        assertEquals(3, pending.size());
+        pending.get(0).complete(Result.success(0));
+        pending.get(2).complete(Result.success(2));
+        assertEquals(5, pending.size());
+        pending.get(3).complete(Result.success(3));
+        pending.get(4).complete(Result.success(4));
+        assertEquals(List.of(0, 1, 2, 3, 4), assertSuccessAndGet(result.join()));
+    }
+
+    @Test
+    void runAllAsyncStopsStartingTasksAfterFirstError() {
+        // given
+        AtomicInteger started = new AtomicInteger();
+        List<Supplier<CompletableFuture<Result<Integer, TextError>>>> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture(Result.error(TextError.of("first task failed")));
+        });
+        for (int i = 0; i < 5; i++) {
+            tasks.add(() -> {
+                started.incrementAndGet();
+                return CompletableFuture.completedFuture(Result.success(1));
+            });
+        }
+
+        // when
+        var result = ParallelExecution.runAllAsync(tasks, 1);
+
+        // then
+        assertErrorContains(result.join(), "first task failed");
+        assertEquals(1, started.get());
+    }
+
+    @Test
+    void runAllAsyncReturnsErrorWhenTaskFailsExceptionally() {
+        // given
+        List<Supplier<CompletableFuture<Result<Integer, TextError>>>> tasks = List.of(
+                () -> CompletableFuture.completedFuture(Result.success(1)),
+                () -> CompletableFuture.failedFuture(new IllegalStateException("unexpected"))
+        );
+
+        // when
+        var result = ParallelExecution.runAllAsync(tasks, 2);
+
+        // then
+        assertErrorContains(result.join(), "unexpected");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.czertainly.csc.components;
 import com.czertainly.csc.clients.ejbca.EjbcaClient;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.components.revocation.EjbcaRevocationStatusProvider;
 import com.czertainly.csc.model.RevocationStatus;
 import com.czertainly.csc.model.csc.CertificateStatus;
 import org.junit.jupiter.api.BeforeEach;
@@ -29,7 +30,7 @@ class CertificateValidityDeciderTest {
     void setUp() {
         dateConverter = new DateConverter();
         ejbcaClient = mock(EjbcaClient.class);
-        validityDecider = new CertificateValidityDecider(dateConverter, ejbcaClient);
+        validityDecider = new CertificateValidityDecider(dateConverter, new EjbcaRevocationStatusProvider(ejbcaClient));
     }
 
     @Test
@@ -0,0 +1,241 @@
+package com.czertainly.csc.components.revocation;
+
+import com.czertainly.csc.configuration.revocation.CrlLocation;
+import com.czertainly.csc.model.CertificateRevocationReason;
+import com.czertainly.csc.model.RevocationStatus;
+import com.czertainly.csc.utils.MutableClock;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CrlRevocationStatusProviderTest {
+
+    private static final X500Name CA_NAME = new X500Name("CN=Test Issuing CA,O=Test,C=CZ");
+    private static final BigInteger LONG_SERIAL_NUMBER = new BigInteger("7f1e2d3c4b5a69788796a5b4c3d2e1f00f1e2d3c", 16);
+
+    @TempDir
+    Path directory;
+
+    MutableClock clock = MutableClock.now();
+    KeyPair caKeys;
+    Path caCertificate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        caKeys = generateKeyPair();
+        caCertificate = writeCaCertificate(caKeys);
+    }
+
+    @Test
+    void revocationStatusIsLookedUpInFullCrl() throws Exception {
+        // given
+        Path crl = writeCrl("full.crl", caKeys, 5, null, Map.of(
+                BigInteger.ONE, CRLReason.keyCompromise,
+                BigInteger.TWO, CRLReason.certificateHold,
+                LONG_SERIAL_NUMBER, CRLReason.superseded
+        ));
+        var provider = createProvider(new CrlLocation(crl.toUri().toString(), null, caCertificate.toString()));
+
+        // when
+        provider.refresh();
+
+        // then
+        assertEquals(RevocationStatus.REVOKED, assertSuccessAndGet(provider.getRevocationStatus(certificate(1))));
+        assertEquals(RevocationStatus.SUSPENDED, assertSuccessAndGet(provider.getRevocationStatus(certificate(2))));
+        assertEquals(RevocationStatus.NOT_REVOKED, assertSuccessAndGet(provider.getRevocationStatus(certificate(3))));
+        assertEquals(RevocationStatus.REVOKED,
+                     assertSuccessAndGet(provider.getRevocationStatus(certificate(LONG_SERIAL_NUMBER)))
+        );
+    }
+
+    @Test
+    void deltaCrlIsAppliedOnFullCrl() throws Exception {
+        // given
+        Path fullCrl = writeCrl("full.crl", caKeys, 5, null, Map.of(
+                BigInteger.ONE, CRLReason.keyCompromise,
+                BigInteger.TWO, CRLReason.certificateHold
+        ));
+        Path deltaCrl = writeCrl("delta.crl", caKeys, 6, 5, Map.of(
+                BigInteger.TWO, CRLReason.removeFromCRL,
+                BigInteger.valueOf(3), CRLReason.cessationOfOperation
+        ));
+        var provider = createProvider(new CrlLocation(fullCrl.toUri().toString(), deltaCrl.toUri().toString(),
+                                                      caCertificate.toString()
+        ));
+
+        // when
+        provider.refresh();
+
+        // then
+        assertEquals(RevocationStatus.REVOKED, assertSuccessAndGet(provider.getRevocationStatus(certificate(1))));
+        assertEquals(RevocationStatus.NOT_REVOKED, assertSuccessAndGet(provider.getRevocationStatus(certificate(2))));
+        assertEquals(RevocationStatus.REVOKED, assertSuccessAndGet(provider.getRevocationStatus(certificate(3))));
+    }
+
+    @Test
+    void crlWithInvalidSignatureIsRejected() throws Exception {
+        // given
+        Path crl = writeCrl("full.crl", generateKeyPair(), 5, null, Map.of());
+        var provider = createProvider(new CrlLocation(crl.toUri().toString(), null, caCertificate.toString()));
+
+        // when
+        provider.refresh();
+
+        // then
+        assertErrorContains(provider.getRevocationStatus(certificate(1)), "No CRL of the issuer");
+    }
+
+    @Test
+    void outdatedCrlIsNotUsed() throws Exception {
+        // given
+        Path crl = writeCrl("full.crl", caKeys, 5, null, Map.of());
+        var provider = createProvider(new CrlLocation(crl.toUri().toString(), null, caCertificate.toString()));
+        provider.refresh();
+
+        // when
+        clock.advance(Duration.ofHours(2));
+
+        // then
+        assertErrorContains(provider.getRevocationStatus(certificate(1)), "is outdated");
+    }
+
+    @Test
+    void failedRefreshKeepsPreviousCrl() throws Exception {
+        // given
+        Path crl = writeCrl("full.crl", caKeys, 5, null, Map.of(BigInteger.ONE, CRLReason.keyCompromise));
+        var provider = createProvider(new CrlLocation(crl.toUri().toString(), null, caCertificate.toString()));
+        provider.refresh();
+
+        // when
+        Files.delete(crl);
+        provider.refresh();
+
+        // then
+        assertEquals(RevocationStatus.REVOKED, assertSuccessAndGet(provider.getRevocationStatus(certificate(1))));
+    }
+
+    @Test
+    void crlLargerThanMaximumSizeIsRejected() throws Exception {
+        // given
+        Path crl = writeCrl("full.crl", caKeys, 5, null, Map.of(BigInteger.ONE, CRLReason.keyCompromise));
+        var provider = new CrlRevocationStatusProvider(
+                List.of(new CrlLocation(crl.toUri().toString(), null, caCertificate.toString())),
+                new UrlCrlSource(null, Files.size(crl) - 1), clock
+        );
+
+        // when
+        provider.refresh();
+
+        // then
+        assertErrorContains(provider.getRevocationStatus(certificate(1)), "No CRL of the issuer");
+    }
+
+    @Test
+    void certificateRevokedByThisApplicationIsReportedBeforeItIsPublished() throws Exception {
+        // given
+        Path crl = writeCrl("full.crl", caKeys, 5, null, Map.of());
+        var provider = createProvider(new CrlLocation(crl.toUri().toString(), null, caCertificate.toString()));
+        provider.refresh();
+
+        // when
+        provider.certificateRevoked("1", CA_NAME.toString(), CertificateRevocationReason.KEY_COMPROMISE);
+        provider.certificateRevoked("2", new X500Principal(CA_NAME.toString()).getName(),
+                                    CertificateRevocationReason.CERTIFICATE_HOLD
+        );
+
+        // then
+        assertEquals(RevocationStatus.REVOKED, assertSuccessAndGet(provider.getRevocationStatus(certificate(1))));
+        assertEquals(RevocationStatus.SUSPENDED, assertSuccessAndGet(provider.getRevocationStatus(certificate(2))));
+        assertEquals(RevocationStatus.NOT_REVOKED, assertSuccessAndGet(provider.getRevocationStatus(certificate(3))));
+    }
+
+    @Test
+    void locallyRecordedRevocationIsDroppedOnceCrlListsTheCertificate() throws Exception {
+        // given
+        Path crl = writeCrl("full.crl", caKeys, 5, null, Map.of());
+        var provider = createProvider(new CrlLocation(crl.toUri().toString(), null, caCertificate.toString()));
+        provider.refresh();
+        provider.certificateRevoked("1", CA_NAME.toString(), CertificateRevocationReason.CERTIFICATE_HOLD);
+
+        // when
+        writeCrl("full.crl", caKeys, 6, null, Map.of(BigInteger.ONE, CRLReason.keyCompromise));
+        provider.refresh();
+
+        // then
+        assertEquals(RevocationStatus.REVOKED, assertSuccessAndGet(provider.getRevocationStatus(certificate(1))));
+    }
+
+    private CrlRevocationStatusProvider createProvider(CrlLocation location) {
+        return new CrlRevocationStatusProvider(List.of(location), new UrlCrlSource(null, 1024 * 1024), clock);
+    }
+
+    private X509Certificate certificate(long serialNumber) {
+        return certificate(BigInteger.valueOf(serialNumber));
+    }
+
+    private X509Certificate certificate(BigInteger serialNumber) {
+        X509Certificate certificate = mock(X509Certificate.class);
+        when(certificate.getSerialNumber()).thenReturn(serialNumber);
+        when(certificate.getIssuerX500Principal()).thenReturn(new X500Principal(CA_NAME.toString()));
+        return certificate;
+    }
+
+    private Path writeCaCertificate(KeyPair keys) throws Exception {
+        Date notBefore = Date.from(clock.instant().minus(Duration.ofDays(1)));
+        Date notAfter = Date.from(clock.instant().plus(Duration.ofDays(365)));
+        var certificateHolder = new JcaX509v3CertificateBuilder(CA_NAME, BigInteger.TEN, notBefore, notAfter, CA_NAME,
+                                                                keys.getPublic()
+        ).build(new JcaContentSignerBuilder("SHA256withECDSA").build(keys.getPrivate()));
+        X509Certificate certificate = new JcaX509CertificateConverter().getCertificate(certificateHolder);
+        return Files.write(directory.resolve("ca.der"), certificate.getEncoded());
+    }
+
+    private Path writeCrl(String fileName, KeyPair signingKeys, int crlNumber, Integer baseCrlNumber,
+                          Map<BigInteger, Integer> entries
+    ) throws Exception {
+        var builder = new X509v2CRLBuilder(CA_NAME, Date.from(clock.instant()));
+        builder.setNextUpdate(Date.from(clock.instant().plus(Duration.ofHours(1))));
+        entries.forEach((serialNumber, reason) -> builder.addCRLEntry(serialNumber, Date.from(clock.instant()),
+                                                                      reason
+        ));
+        builder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(crlNumber)));
+        if (baseCrlNumber != null) {
+            builder.addExtension(Extension.deltaCRLIndicator, true, new CRLNumber(BigInteger.valueOf(baseCrlNumber)));
+        }
+        byte[] crl = builder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(signingKeys.getPrivate()))
+                            .getEncoded();
+        return Files.write(directory.resolve(fileName), crl);
+    }
+
+    private static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        return generator.generateKeyPair();
+    }
+}
@@ -0,0 +1,70 @@
+package com.czertainly.csc.configuration.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.boot.context.properties.bind.BindException;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HttpClientPoolSettingsTest {
+
+    @Test
+    void unsetValuesAreDefaulted() {
+        // given
+        var source = new MapConfigurationPropertySource(Map.of(
+                "signingProvider.signserver.client.connectionPool.maxTotal", "200",
+                "signingProvider.signserver.client.connectionPool.responseTimeout", "PT30S"
+        ));
+
+        // when
+        HttpClientPoolSettings settings = new Binder(source)
+                .bind("signingprovider.signserver.client.connection-pool", HttpClientPoolSettings.class)
+                .orElseGet(HttpClientPoolSettings::defaults);
+
+        // then
+        assertEquals(200, settings.maxTotal());
+        assertEquals(200, settings.maxPerRoute());
+        assertEquals(Duration.ofSeconds(30), settings.responseTimeout());
+        assertEquals(HttpClientPoolSettings.defaults().connectTimeout(), settings.connectTimeout());
+        assertEquals(HttpClientPoolSettings.defaults().timeToLive(), settings.timeToLive());
+    }
+
+    @Test
+    void maxPerRouteDefaultsToMaxTotal() {
+        // when
+        HttpClientPoolSettings settings = new HttpClientPoolSettings(10, null, null, null, null, null, null, null);
+
+        // then
+        assertEquals(10, settings.maxPerRoute());
+    }
+
+    @Test
+    void bindingFailsWhenPoolSizeIsNotPositive() {
+        // given
+        var source = new MapConfigurationPropertySource(Map.of(
+                "signingProvider.signserver.client.connectionPool.maxTotal", "0"
+        ));
+
+        // when
+        Executable bind = () -> new Binder(source)
+                .bind("signingprovider.signserver.client.connection-pool", HttpClientPoolSettings.class);
+
+        // then
+        assertThrows(BindException.class, bind);
+    }
+
+    @Test
+    void maxPerRouteMustBePositive() {
+        // when
+        Executable create = () -> new HttpClientPoolSettings(10, 0, null, null, null, null, null, null);
+
+        // then
+        assertThrows(IllegalArgumentException.class, create);
+    }
+}
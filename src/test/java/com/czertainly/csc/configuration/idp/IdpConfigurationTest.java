@@ -12,7 +12,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 class IdpConfigurationTest {
 
-    IdpConfiguration validator = new IdpConfiguration(null, null, null, null, null, null, null, null);
+    IdpConfiguration validator = new IdpConfiguration(null, null, null, null, null, null, null, null, null);
 
     Errors errors;
 
@@ -101,6 +101,23 @@ class KeyPoolProfilesConfigurationTest {
         assertEquals(0, errors.getFieldErrors().size());
     }
 
+    @Test
+    void adaptiveSizingWithMinSizeGreaterThanMaxSizeProducesConfigurationError() {
+        // given
+        KeyPoolProfile profile = KeyPoolProfileBuilder.create()
+                                                      .withName("profile1")
+                                                      .withAdaptiveSizing(new KeyPoolAdaptiveSizing(10, 5, null, null))
+                                                      .build();
+        KeyPoolProfilesConfiguration keyPoolProfilesConfiguration = new KeyPoolProfilesConfiguration(List.of(profile));
+
+        // when
+        validator.validate(keyPoolProfilesConfiguration, errors);
+
+        // then
+        assertEquals(1, errors.getFieldErrors().size());
+        assertEquals("keyPoolProfiles.adaptiveSizing", errors.getFieldErrors().getFirst().getCode());
+    }
+
     @Test
     void validConfigurationProducesNoErrors() {
         // given
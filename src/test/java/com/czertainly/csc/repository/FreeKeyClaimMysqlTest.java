@@ -0,0 +1,95 @@
+package com.czertainly.csc.repository;
+
+import com.czertainly.csc.repository.entities.OneTimeKeyEntity;
+import com.czertainly.csc.service.keys.FreeKeyClaimer;
+import com.czertainly.csc.utils.db.MysqlTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Claims keys concurrently from several simulated instances of the application, each with its own thread,
+ * to verify that every free key is claimed by exactly one instance and is left reserved.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FreeKeyClaimMysqlTest extends MysqlTest {
+
+    private static final int NUMBER_OF_KEYS = 2000;
+    private static final int BATCH_SIZE = 10;
+
+    @Autowired
+    private OneTimeKeyRepository oneTimeKeyRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void deleteKeys() {
+        oneTimeKeyRepository.deleteAll();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4, 8})
+    void concurrentInstancesClaimDisjointSetsOfKeys(int numberOfInstances) throws Exception {
+        // given
+        oneTimeKeyRepository.saveAll(IntStream.range(0, NUMBER_OF_KEYS)
+                                              .mapToObj(i -> new OneTimeKeyEntity(UUID.randomUUID(), 1, "Key" + i,
+                                                                                  "RSA", false, null
+                                              ))
+                                              .toList());
+        var claimer = new FreeKeyClaimer<>(oneTimeKeyRepository, transactionManager);
+
+        // when
+        List<Future<List<UUID>>> claims = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(numberOfInstances)) {
+            for (int i = 0; i < numberOfInstances; i++) {
+                claims.add(executor.submit(() -> claimUntilExhausted(claimer)));
+            }
+        }
+
+        // then
+        Set<UUID> claimedKeys = new HashSet<>();
+        int numberOfClaims = 0;
+        for (Future<List<UUID>> claim : claims) {
+            List<UUID> keys = claim.get();
+            claimedKeys.addAll(keys);
+            numberOfClaims += keys.size();
+        }
+        assertEquals(NUMBER_OF_KEYS, numberOfClaims);
+        assertEquals(NUMBER_OF_KEYS, claimedKeys.size());
+        assertEquals(0, oneTimeKeyRepository.countByCryptoTokenIdAndKeyAlgorithmAndInUse(1, "RSA", false));
+        for (OneTimeKeyEntity key : oneTimeKeyRepository.findAll()) {
+            assertTrue(key.getInUse());
+            assertNotNull(key.getReservedAt());
+            assertNull(key.getAcquiredAt());
+        }
+    }
+
+    private List<UUID> claimUntilExhausted(FreeKeyClaimer<OneTimeKeyEntity> claimer) {
+        List<UUID> claimed = new ArrayList<>();
+        while (true) {
+            List<OneTimeKeyEntity> keys = claimer.claim(1, "RSA", BATCH_SIZE).unwrap();
+            if (keys.isEmpty()) return claimed;
+            keys.forEach(key -> claimed.add(key.getId()));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.czertainly.csc.repository;
+
+import com.czertainly.csc.repository.entities.OneTimeKeyEntity;
+import com.czertainly.csc.utils.db.PostgresTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+
+class OneTimeKeyRepositoryPostgresTest extends PostgresTest {
+
+    @Autowired
+    private OneTimeKeyRepository oneTimeKeyRepository;
+
+    @Test
+    void keysMarkedForDeletionAreFoundAndDeletedInBulk() {
+        // given
+        UUID key1 = insertKeyEntity("Key1", 1, true, ZonedDateTime.now());
+        UUID key2 = insertKeyEntity("Key2", 2, true, ZonedDateTime.now());
+        UUID key3 = insertKeyEntity("Key3", 1, true, ZonedDateTime.now());
+
+        // when
+        oneTimeKeyRepository.markForDeletion(key1);
+        oneTimeKeyRepository.markForDeletion(key2);
+
+        // then
+        var queuedKeys = oneTimeKeyRepository.lockDueForDeletion(ZonedDateTime.now(), Limit.of(10));
+        assertEquals(2, queuedKeys.size());
+        assertEquals(2, oneTimeKeyRepository.countByDeleting(true));
+
+        // when
+        int deleted = oneTimeKeyRepository.deleteAllByIdIn(List.of(key1, key2));
+
+        // then
+        assertEquals(2, deleted);
+        assertEquals(0, oneTimeKeyRepository.countByDeleting(true));
+        assertFalse(oneTimeKeyRepository.findById(key3).get().isDeleting());
+    }
+
+    @Test
+    void keysAlreadyQueuedForDeletionAreNotQueuedAgain() {
+        // given
+        UUID key1 = insertKeyEntity("Key1", 1, true, ZonedDateTime.now());
+        UUID key2 = insertKeyEntity("Key2", 1, true, ZonedDateTime.now());
+        oneTimeKeyRepository.markForDeletion(key1);
+
+        // when
+        int queued = oneTimeKeyRepository.markAllForDeletion(List.of(key1, key2));
+
+        // then
+        assertEquals(1, queued);
+        assertEquals(2, oneTimeKeyRepository.countByDeleting(true));
+    }
+
+    @Test
+    void usedKeysAcquiredBeforeArePagedByAcquisitionTime() {
+        // given
+        ZonedDateTime now = ZonedDateTime.now();
+        UUID key1 = insertKeyEntity("Key1", 1, true, now.minusHours(3));
+        UUID key2 = insertKeyEntity("Key2", 2, true, now.minusHours(2));
+        UUID key3 = insertKeyEntity("Key3", 1, true, now.minusHours(1));
+        insertKeyEntity("Key4", 1, false, null);
+        insertKeyEntity("Key5", 1, true, now);
+        oneTimeKeyRepository.markForDeletion(insertKeyEntity("Key6", 1, true, now.minusHours(4)));
+
+        // when
+        var firstPage = oneTimeKeyRepository.findUsedKeysAcquiredBefore(now.minusMinutes(1), Limit.of(2));
+
+        // then
+        assertEquals(List.of(key1, key2), firstPage.stream().map(OneTimeKeyEntity::getId).toList());
+
+        // when
+        var lastKey = firstPage.getLast();
+        var secondPage = oneTimeKeyRepository.findUsedKeysAcquiredBeforeAfter(
+                now.minusMinutes(1), lastKey.getAcquiredAt(), lastKey.getId(), Limit.of(2));
+
+        // then
+        assertEquals(List.of(key3), secondPage.stream().map(OneTimeKeyEntity::getId).toList());
+    }
+
+    @Test
+    void postponedKeysAreNotDueForDeletionUntilTheirNextAttempt() {
+        // given
+        ZonedDateTime now = ZonedDateTime.now();
+        UUID key1 = insertKeyEntity("Key1", 1, true, now);
+        UUID key2 = insertKeyEntity("Key2", 1, true, now);
+        UUID key3 = insertKeyEntity("Key3", 1, true, now);
+        oneTimeKeyRepository.markForDeletion(key1);
+        oneTimeKeyRepository.markForDeletion(key2);
+        oneTimeKeyRepository.markForDeletion(key3);
+
+        // when
+        oneTimeKeyRepository.postponeDeletion(List.of(key1), 1, now.plusMinutes(5));
+        oneTimeKeyRepository.postponeDeletion(List.of(key2), 2, now.minusMinutes(5));
+
+        // then
+        var dueKeys = oneTimeKeyRepository.lockDueForDeletion(now, Limit.of(10));
+        assertEquals(List.of(key3, key2), dueKeys.stream().map(OneTimeKeyEntity::getId).toList());
+        assertEquals(3, oneTimeKeyRepository.countByDeleting(true));
+    }
+
+    @Test
+    void leasedKeysAreNotDueForDeletionUntilTheLeaseExpires() {
+        // given
+        ZonedDateTime now = ZonedDateTime.now();
+        UUID key1 = insertKeyEntity("Key1", 1, true, now);
+        UUID key2 = insertKeyEntity("Key2", 1, true, now);
+        oneTimeKeyRepository.markForDeletion(key1);
+        oneTimeKeyRepository.markForDeletion(key2);
+
+        // when
+        oneTimeKeyRepository.leaseDeletion(List.of(key1), now.plusMinutes(5));
+
+        // then
+        var dueKeys = oneTimeKeyRepository.lockDueForDeletion(now, Limit.of(10));
+        assertEquals(List.of(key2), dueKeys.stream().map(OneTimeKeyEntity::getId).toList());
+        var dueKeysAfterLease = oneTimeKeyRepository.lockDueForDeletion(now.plusMinutes(6), Limit.of(10));
+        assertEquals(2, dueKeysAfterLease.size());
+        assertEquals(0, oneTimeKeyRepository.findById(key1).get().getDeletionAttempts());
+    }
+
+    UUID insertKeyEntity(String keyAlias, int cryptoTokenId, Boolean inUse, ZonedDateTime acquiredAt) {
+        UUID keyId = UUID.randomUUID();
+
+        var entity = new OneTimeKeyEntity(
+                keyId,
+                cryptoTokenId,
+                keyAlias,
+                "RSA",
+                inUse,
+                acquiredAt
+        );
+
+        oneTimeKeyRepository.save(entity);
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        return keyId;
+    }
+}
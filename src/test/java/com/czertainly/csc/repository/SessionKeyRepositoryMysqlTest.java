@@ -5,12 +5,16 @@ import com.czertainly.csc.utils.db.MysqlTest;
 import eu.rekawek.toxiproxy.model.ToxicDirection;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 
 import java.io.IOException;
 import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 class SessionKeyRepositoryMysqlTest extends MysqlTest {
@@ -86,23 +90,100 @@ class SessionKeyRepositoryMysqlTest extends MysqlTest {
     }
 
     @Test
-    void findByInUseAndAcquiredAtBeforeOrderByAcquiredAtAsc() {
+    void lockFreeKeysReturnsAtMostLimitFreeKeys() {
         // given
-        insertKeyEntity("Key1", 1, "RSA", false, ZonedDateTime.now().minusHours(1));
-        insertKeyEntity("Key2", 1, "RSA", true, ZonedDateTime.now().minusHours(1));
-        insertKeyEntity("Key3", 2, "ECDSA", true, ZonedDateTime.now().minusHours(2));
-        insertKeyEntity("Key4", 2, "ECDSA", false, ZonedDateTime.now().minusHours(2));
-        insertKeyEntity("Key5", 3, "ECDSA", true, ZonedDateTime.now().minusHours(3));
+        insertKeyEntity("RSAKey1", 1, "RSA", false, null);
+        insertKeyEntity("RSAKey2", 1, "RSA", false, null);
+        insertKeyEntity("RSAKey3", 1, "RSA", false, null);
+        insertKeyEntity("RSAKey4", 1, "RSA", true, ZonedDateTime.now());
+        insertKeyEntity("ECDSAKey1", 1, "ECDSA", false, null);
 
         // when
-        var keys = sessionKeyRepository.findByInUseAndAcquiredAtBeforeOrderByAcquiredAtAsc(true, ZonedDateTime.now().minusMinutes(90));
+        var keys = sessionKeyRepository.lockFreeKeys(1, "RSA", Limit.of(2));
 
         // then
         assertEquals(2, keys.size());
-        assertEquals("Key5", keys.getFirst().getKeyAlias());
-        assertEquals("Key3", keys.getLast().getKeyAlias());
+        assertTrue(keys.stream().allMatch(key -> key.getKeyAlias().startsWith("RSAKey") && !key.getInUse()));
+    }
+
+    @Test
+    void markInUseIfFreeMarksOnlyFreeKey() {
+        // given
+        UUID freeKey = insertKeyEntity("RSAKey1", 1, "RSA", false, null);
+        UUID usedKey = insertKeyEntity("RSAKey2", 1, "RSA", true, ZonedDateTime.now());
+
+        // when
+        int markedFree = sessionKeyRepository.markInUseIfFree(freeKey, ZonedDateTime.now());
+        int markedAgain = sessionKeyRepository.markInUseIfFree(freeKey, ZonedDateTime.now());
+        int markedUsed = sessionKeyRepository.markInUseIfFree(usedKey, ZonedDateTime.now());
+
+        // then
+        assertEquals(1, markedFree);
+        assertEquals(0, markedAgain);
+        assertEquals(0, markedUsed);
+        assertTrue(sessionKeyRepository.findById(freeKey).orElseThrow().getInUse());
     }
 
+    @Test
+    void markReservedAndReleaseChangeStateOfAllGivenKeys() {
+        // given
+        UUID key1 = insertKeyEntity("RSAKey1", 1, "RSA", false, null);
+        UUID key2 = insertKeyEntity("RSAKey2", 1, "RSA", false, null);
+        UUID key3 = insertKeyEntity("RSAKey3", 1, "RSA", false, null);
+
+        // when
+        int marked = sessionKeyRepository.markReserved(List.of(key1, key2), ZonedDateTime.now());
+
+        // then
+        assertEquals(2, marked);
+        assertEquals(1, sessionKeyRepository.countByCryptoTokenIdAndKeyAlgorithmAndInUse(1, "RSA", false));
+
+        // when
+        int released = sessionKeyRepository.release(List.of(key1, key2, key3));
+
+        // then
+        assertEquals(2, released);
+        assertEquals(3, sessionKeyRepository.countByCryptoTokenIdAndKeyAlgorithmAndInUse(1, "RSA", false));
+    }
+
+    @Test
+    void acquiredKeysAreNeitherAcquiredAgainNorReleased() {
+        // given
+        UUID key1 = insertKeyEntity("RSAKey1", 1, "RSA", false, null);
+        sessionKeyRepository.markReserved(List.of(key1), ZonedDateTime.now());
+
+        // when
+        int acquired = sessionKeyRepository.markAcquired(key1, ZonedDateTime.now());
+        int acquiredAgain = sessionKeyRepository.markAcquired(key1, ZonedDateTime.now());
+        int released = sessionKeyRepository.release(List.of(key1));
+
+        // then
+        assertEquals(1, acquired);
+        assertEquals(0, acquiredAgain);
+        assertEquals(0, released);
+        var key = sessionKeyRepository.findById(key1).orElseThrow();
+        assertTrue(key.getInUse());
+        assertNotNull(key.getAcquiredAt());
+    }
+
+    @Test
+    void findReservedBeforeSkipsRecentlyReservedAndAcquiredKeys() {
+        // given
+        ZonedDateTime now = ZonedDateTime.now();
+        UUID orphanedKey = insertKeyEntity("RSAKey1", 1, "RSA", false, null);
+        UUID recentKey = insertKeyEntity("RSAKey2", 1, "RSA", false, null);
+        UUID acquiredKey = insertKeyEntity("RSAKey3", 1, "RSA", false, null);
+        insertKeyEntity("RSAKey4", 1, "RSA", false, null);
+        sessionKeyRepository.markReserved(List.of(orphanedKey, acquiredKey), now.minusHours(2));
+        sessionKeyRepository.markReserved(List.of(recentKey), now.minusMinutes(5));
+        sessionKeyRepository.markAcquired(acquiredKey, now.minusHours(2));
+
+        // when
+        var keys = sessionKeyRepository.findReservedBefore(now.minusHours(1), Limit.of(10));
+
+        // then
+        assertEquals(List.of(orphanedKey), keys.stream().map(SessionKeyEntity::getId).toList());
+    }
 
     UUID insertKeyEntity(String keyAlias, int cryptoTokenId, String keyAlgorithm, Boolean inUse,
                          ZonedDateTime acquiredAt
@@ -8,9 +8,11 @@ import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.UUID;
 
 import static com.czertainly.csc.utils.assertions.ExceptionAssertions.assertThrowsAndMessageContains;
@@ -68,6 +70,40 @@ class SigningSessionsRepositoryMysqlTest extends MysqlTest {
         assertEquals(session2Id, credentials.get(1).getId());
     }
 
+    @Test
+    public void expiredSessionsArePagedByExpirationAndDeletedInBulk() {
+        // setup
+        UUID credentialId = createCredentialAndInsertIntoDB();
+        ZonedDateTime expiresIn1 = ZonedDateTime.of(2020, 10, 5, 12, 0, 0, 0, ZoneOffset.UTC);
+        ZonedDateTime expiresIn2 = ZonedDateTime.of(2020, 10, 5, 13, 0, 0, 0, ZoneOffset.UTC);
+        ZonedDateTime expiresIn3 = ZonedDateTime.of(2020, 10, 5, 14, 0, 0, 0, ZoneOffset.UTC);
+        UUID session1Id = createAndInsertSessionIntoDB(credentialId, expiresIn1);
+        UUID session2Id = createAndInsertSessionIntoDB(credentialId, expiresIn2);
+        UUID session3Id = createAndInsertSessionIntoDB(credentialId, expiresIn3);
+
+        // given
+        ZonedDateTime testTime = ZonedDateTime.of(2020, 10, 5, 15, 0, 0, 0, ZoneOffset.UTC);
+
+        // when
+        var firstPage = signingSessionsRepository.findExpiredBefore(testTime, Limit.of(2));
+        var lastSession = firstPage.getLast();
+        var secondPage = signingSessionsRepository.findExpiredBeforeAfter(
+                testTime, lastSession.getExpiresIn(), lastSession.getId(), Limit.of(2));
+
+        // then
+        assertEquals(List.of(session1Id, session2Id), firstPage.stream().map(SigningSessionEntity::getId).toList());
+        assertEquals(List.of(session3Id), secondPage.stream().map(SigningSessionEntity::getId).toList());
+
+        // when
+        int deleted = signingSessionsRepository.deleteAllByIdIn(List.of(session1Id, session2Id));
+
+        // then
+        assertEquals(2, deleted);
+        assertEquals(List.of(session3Id), signingSessionsRepository.findExpiredBefore(testTime, Limit.of(2))
+                                                                   .stream().map(SigningSessionEntity::getId)
+                                                                   .toList());
+    }
+
     @Test
     public void sessionMustReferenceExistingCredential() {
         // setup
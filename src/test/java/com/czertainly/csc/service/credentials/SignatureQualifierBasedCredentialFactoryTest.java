@@ -0,0 +1,296 @@
+package com.czertainly.csc.service.credentials;
+
+import com.czertainly.csc.api.auth.CscAuthenticationToken;
+import com.czertainly.csc.api.auth.SignatureActivationData;
+import com.czertainly.csc.clients.ejbca.EjbcaClient;
+import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.configuration.csc.CredentialIssuanceSettings;
+import com.czertainly.csc.configuration.csc.CscConfiguration;
+import com.czertainly.csc.crypto.CertificateParser;
+import com.czertainly.csc.crypto.PasswordGenerator;
+import com.czertainly.csc.model.UserInfo;
+import com.czertainly.csc.model.ejbca.EndEntity;
+import com.czertainly.csc.service.keys.OneTimeKey;
+import com.czertainly.csc.signing.UserInfoProvider;
+import com.czertainly.csc.signing.configuration.profiles.CredentialProfileRepository;
+import com.czertainly.csc.signing.configuration.profiles.signaturequalifierprofile.SignatureQualifierProfile;
+import com.czertainly.csc.utils.signing.OneTimeKeyBuilder;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SignatureQualifierBasedCredentialFactoryTest {
+
+    private static final String SIGNATURE_QUALIFIER = "qualifier";
+
+    @Mock
+    UserInfoProvider userInfoProvider;
+
+    @Mock
+    PasswordGenerator passwordGenerator;
+
+    @Mock
+    CredentialProfileRepository credentialProfileRepository;
+
+    @Mock
+    SignserverClient signserverClient;
+
+    @Mock
+    EjbcaClient ejbcaClient;
+
+    @Mock
+    CertificateParser certificateParser;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    CscAuthenticationToken cscAuthenticationToken;
+
+    @Mock
+    X509CertificateHolder certificate;
+
+    ExecutorService issuanceExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    OneTimeKey key = OneTimeKeyBuilder.aOneTimeKey();
+    SignatureActivationData sad = new SignatureActivationData("user", null, SIGNATURE_QUALIFIER, 1, Set.of(), null,
+                                                              null, Map.of()
+    );
+    SignatureQualifierProfile profile = new SignatureQualifierProfile(
+            SIGNATURE_QUALIFIER, "CA", "CertificateProfile", "EndEntityProfile", Duration.ofDays(1),
+            Duration.ZERO, "SHA256withRSA", source -> Result.success("username"),
+            source -> Result.success("CN=User"), source -> Result.success(""), 1
+    );
+
+    @BeforeEach
+    void setUp() {
+        given(cscAuthenticationToken.getToken().getTokenValue()).willReturn("accessToken");
+        given(userInfoProvider.getUserInfo(eq("accessToken"), any())).willReturn(Result.success(new UserInfo(Map.of())));
+        given(credentialProfileRepository.getSignatureQualifierProfile(SIGNATURE_QUALIFIER))
+                .willReturn(Result.success(profile));
+        given(passwordGenerator.generate()).willReturn(Result.success("password"));
+        given(ejbcaClient.createEndEntity(any(), any())).willAnswer(invocation -> Result.success(
+                invocation.<EndEntity>getArgument(0)));
+        given(signserverClient.generateCSR(any(), anyString(), anyString(), anyString()))
+                .willReturn(Result.success(new byte[]{1}));
+        given(ejbcaClient.signCertificateRequest(any(), any(), any())).willReturn(Result.success(new byte[]{2}));
+        given(certificateParser.getEndCertificateFromPkcs7Chain(any())).willReturn(Result.success(certificate));
+        given(signserverClient.importCertificateChain(any(), anyString(), any())).willReturn(Result.emptySuccess());
+        given(certificate.getSerialNumber()).willReturn(BigInteger.TEN);
+        given(certificate.getIssuer()).willReturn(new X500Name("CN=CA"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        issuanceExecutor.shutdownNow();
+    }
+
+    @Test
+    void createCredentialReturnsCredentialWithIssuedCertificate() {
+        // given
+        var factory = createFactory(Duration.ofSeconds(5));
+
+        // when
+        var createResult = factory.createCredential(key, SIGNATURE_QUALIFIER, "user", sad, cscAuthenticationToken);
+
+        // then
+        var credential = assertSuccessAndGet(createResult);
+        assertEquals(key, credential.key());
+        assertEquals(certificate, credential.certificate());
+    }
+
+    @Test
+    void keyIsAcquiredConcurrentlyWithUserInfoDownload() {
+        // given
+        var factory = createFactory(Duration.ofSeconds(5));
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        given(userInfoProvider.getUserInfo(eq("accessToken"), any())).willAnswer(invocation -> {
+            barrier.await(2, TimeUnit.SECONDS);
+            return Result.success(new UserInfo(Map.of()));
+        });
+
+        // when
+        var createResult = factory.acquireKeyAndCreateCredential(
+                () -> {
+                    try {
+                        barrier.await(2, TimeUnit.SECONDS);
+                        return Result.success(key);
+                    } catch (Exception e) {
+                        return Result.error(TextError.of("Key acquisition was not concurrent."));
+                    }
+                }, unusedKey -> {}, SIGNATURE_QUALIFIER, "user", sad, cscAuthenticationToken
+        );
+
+        // then
+        assertSuccessAndGet(createResult);
+    }
+
+    @Test
+    void endEntityIsCreatedConcurrentlyWithCsrGeneration() {
+        // given
+        var factory = createFactory(Duration.ofSeconds(5));
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        given(ejbcaClient.createEndEntity(any(), any())).willAnswer(invocation -> {
+            barrier.await(2, TimeUnit.SECONDS);
+            return Result.success(invocation.<EndEntity>getArgument(0));
+        });
+        given(signserverClient.generateCSR(any(), anyString(), anyString(), anyString())).willAnswer(invocation -> {
+            barrier.await(2, TimeUnit.SECONDS);
+            return Result.success(new byte[]{1});
+        });
+
+        // when
+        var createResult = factory.createCredential(key, SIGNATURE_QUALIFIER, "user", sad, cscAuthenticationToken);
+
+        // then
+        assertSuccessAndGet(createResult);
+    }
+
+    @Test
+    void createCredentialFailsWhenStepTimesOut() {
+        // given
+        var factory = createFactory(Duration.ofMillis(100));
+        given(signserverClient.generateCSR(any(), anyString(), anyString(), anyString())).willAnswer(invocation -> {
+            Thread.sleep(1000);
+            return Result.success(new byte[]{1});
+        });
+
+        // when
+        var createResult = factory.createCredential(key, SIGNATURE_QUALIFIER, "user", sad, cscAuthenticationToken);
+
+        // then
+        assertErrorContains(createResult, "CSR generation");
+        then(ejbcaClient).should(never()).signCertificateRequest(any(), any(), any());
+    }
+
+    @Test
+    void certificateIsRevokedWhenItCannotBeImported() {
+        // given
+        var factory = createFactory(Duration.ofSeconds(5));
+        given(signserverClient.importCertificateChain(any(), anyString(), any()))
+                .willReturn(Result.error(TextError.of("Import failed.")));
+        given(ejbcaClient.revokeCertificate(anyString(), anyString(), any())).willAnswer(
+                invocation -> Result.emptySuccess());
+
+        // when
+        var createResult = factory.createCredential(key, SIGNATURE_QUALIFIER, "user", sad, cscAuthenticationToken);
+
+        // then
+        assertErrorContains(createResult, "Import failed.");
+        then(ejbcaClient).should().revokeCertificate(anyString(), anyString(), any());
+    }
+
+    @Test
+    void keyAcquiredAfterTimeoutIsDisposed() throws Exception {
+        // given
+        var factory = createFactory(Duration.ofMillis(100));
+        CompletableFuture<OneTimeKey> disposedKey = new CompletableFuture<>();
+
+        // when
+        var createResult = factory.acquireKeyAndCreateCredential(
+                () -> {
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Result.success(key);
+                }, disposedKey::complete, SIGNATURE_QUALIFIER, "user", sad, cscAuthenticationToken
+        );
+
+        // then
+        assertErrorContains(createResult, "key acquisition");
+        assertEquals(key, disposedKey.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void certificateIssuedAfterTimeoutIsRevokedAndKeyIsDisposed() throws Exception {
+        // given
+        var factory = createFactory(Duration.ofMillis(100));
+        CompletableFuture<OneTimeKey> disposedKey = new CompletableFuture<>();
+        given(ejbcaClient.signCertificateRequest(any(), any(), any())).willAnswer(invocation -> {
+            Thread.sleep(500);
+            return Result.success(new byte[]{2});
+        });
+        given(ejbcaClient.revokeCertificate(anyString(), anyString(), any())).willAnswer(
+                invocation -> Result.emptySuccess());
+
+        // when
+        var createResult = factory.acquireKeyAndCreateCredential(
+                () -> Result.success(key), disposedKey::complete, SIGNATURE_QUALIFIER, "user", sad,
+                cscAuthenticationToken
+        );
+
+        // then
+        assertErrorContains(createResult, "certificate request");
+        assertEquals(key, disposedKey.get(2, TimeUnit.SECONDS));
+        then(ejbcaClient).should(timeout(2000)).revokeCertificate(anyString(), anyString(), any());
+    }
+
+    @Test
+    void certificateIsRevokedWhenTimedOutImportFinishes() {
+        // given
+        var factory = createFactory(Duration.ofMillis(100));
+        CountDownLatch importAllowed = new CountDownLatch(1);
+        given(signserverClient.importCertificateChain(any(), anyString(), any())).willAnswer(invocation -> {
+            importAllowed.await(2, TimeUnit.SECONDS);
+            return Result.emptySuccess();
+        });
+        given(ejbcaClient.revokeCertificate(anyString(), anyString(), any())).willAnswer(
+                invocation -> Result.emptySuccess());
+
+        // when
+        var createResult = factory.createCredential(key, SIGNATURE_QUALIFIER, "user", sad, cscAuthenticationToken);
+
+        // then
+        assertErrorContains(createResult, "certificate chain import");
+        then(ejbcaClient).should(never()).revokeCertificate(anyString(), anyString(), any());
+
+        // when
+        importAllowed.countDown();
+
+        // then
+        then(ejbcaClient).should(timeout(2000)).revokeCertificate(anyString(), anyString(), any());
+    }
+
+    private SignatureQualifierBasedCredentialFactory createFactory(Duration stepTimeout) {
+        var cscConfiguration = mock(CscConfiguration.class);
+        given(cscConfiguration.credentialIssuance()).willReturn(new CredentialIssuanceSettings(stepTimeout));
+        return new SignatureQualifierBasedCredentialFactory(userInfoProvider, passwordGenerator,
+                                                            credentialProfileRepository, signserverClient,
+                                                            ejbcaClient, certificateParser, issuanceExecutor,
+                                                            cscConfiguration
+        );
+    }
+}
@@ -0,0 +1,228 @@
+package com.czertainly.csc.service.credentials;
+
+import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.configuration.csc.SigningSessions;
+import com.czertainly.csc.repository.SessionCredentialsRepository;
+import com.czertainly.csc.repository.SessionKeyRepository;
+import com.czertainly.csc.repository.SigningSessionsRepository;
+import com.czertainly.csc.repository.entities.SessionCredentialMetadataEntity;
+import com.czertainly.csc.repository.entities.SessionKeyEntity;
+import com.czertainly.csc.repository.entities.SigningSessionEntity;
+import com.czertainly.csc.utils.configuration.CscConfigurationBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+
+@ExtendWith(MockitoExtension.class)
+class SigningSessionCleanupServiceTest {
+
+    private static final int CHUNK_SIZE = 2;
+
+    @Mock
+    SigningSessionsRepository signingSessionsRepository;
+
+    @Mock
+    SessionCredentialsRepository sessionCredentialsRepository;
+
+    @Mock
+    SessionKeyRepository sessionKeyRepository;
+
+    @Mock
+    SignserverClient signserverClient;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    ExecutorService keyDeletionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        keyDeletionExecutor.shutdownNow();
+    }
+
+    @Test
+    void cleanExpiredSessionsDeletesSessionsCredentialsAndKeysInChunks() {
+        // given
+        var cleanupService = createCleanupService(Duration.ofMinutes(10));
+        var session1 = createSession(1, "Key1", 30);
+        var session2 = createSession(2, "Key2", 20);
+        var session3 = createSession(1, "Key3", 10);
+        given(signingSessionsRepository.findExpiredBefore(any(), eq(Limit.of(CHUNK_SIZE))))
+                .willReturn(List.of(session1.session(), session2.session()));
+        given(signingSessionsRepository.findExpiredBeforeAfter(any(), eq(session2.session().getExpiresIn()),
+                                                               eq(session2.session().getId()),
+                                                               eq(Limit.of(CHUNK_SIZE))
+        )).willReturn(List.of(session3.session()));
+        stubResources(session1, session2);
+        stubResources(session3);
+        given(signserverClient.removeKeyOkIfNotExists(any(Integer.class), any())).willReturn(Result.emptySuccess());
+
+        // when
+        cleanupService.cleanExpiredSessions();
+
+        // then
+        then(signingSessionsRepository).should().deleteAllByIdIn(List.of(session1.id(), session2.id()));
+        then(sessionCredentialsRepository).should().deleteAllByIdIn(
+                List.of(session1.credential().getId(), session2.credential().getId()));
+        then(sessionKeyRepository).should().deleteAllByIdIn(List.of(session1.key().getId(), session2.key().getId()));
+        then(signingSessionsRepository).should().deleteAllByIdIn(List.of(session3.id()));
+        assertEquals(3.0, sessions("deleted"));
+    }
+
+    @Test
+    void cleanExpiredSessionsKeepsSessionsWhoseKeyFailedToBeRemoved() {
+        // given
+        var cleanupService = createCleanupService(Duration.ofMinutes(10));
+        var session1 = createSession(1, "Key1", 30);
+        given(signingSessionsRepository.findExpiredBefore(any(), eq(Limit.of(CHUNK_SIZE))))
+                .willReturn(List.of(session1.session()));
+        stubResources(session1);
+        given(signserverClient.removeKeyOkIfNotExists(1, "Key1"))
+                .willReturn(Result.error(TextError.of("Signserver is not available.")));
+
+        // when
+        cleanupService.cleanExpiredSessions();
+
+        // then
+        then(signingSessionsRepository).should(never()).deleteAllByIdIn(any());
+        then(sessionKeyRepository).should(never()).deleteAllByIdIn(any());
+        assertEquals(1.0, sessions("failed"));
+    }
+
+    @Test
+    void cleanExpiredSessionsResumesFromCheckpointWhenTimeBudgetIsExhausted() {
+        // given
+        var cleanupService = createCleanupService(Duration.ZERO);
+        var session1 = createSession(1, "Key1", 30);
+        var session2 = createSession(1, "Key2", 20);
+        var session3 = createSession(1, "Key3", 10);
+        given(signingSessionsRepository.findExpiredBefore(any(), eq(Limit.of(CHUNK_SIZE))))
+                .willReturn(List.of(session1.session(), session2.session()));
+        given(signingSessionsRepository.findExpiredBeforeAfter(any(), eq(session2.session().getExpiresIn()),
+                                                               eq(session2.session().getId()),
+                                                               eq(Limit.of(CHUNK_SIZE))
+        )).willReturn(List.of(session3.session()));
+        stubResources(session1, session2);
+        stubResources(session3);
+        given(signserverClient.removeKeyOkIfNotExists(any(Integer.class), any())).willReturn(Result.emptySuccess());
+
+        // when
+        cleanupService.cleanExpiredSessions();
+
+        // then
+        then(signingSessionsRepository).should().deleteAllByIdIn(List.of(session1.id(), session2.id()));
+        then(signingSessionsRepository).should(never()).deleteAllByIdIn(List.of(session3.id()));
+
+        // when
+        cleanupService.cleanExpiredSessions();
+
+        // then
+        then(signingSessionsRepository).should().deleteAllByIdIn(List.of(session3.id()));
+        then(signingSessionsRepository).should().findExpiredBefore(any(), any());
+    }
+
+    @Test
+    void cleanExpiredSessionsDeletesSessionsOneByOneWhenChunkFailsToBeDeleted() {
+        // given
+        var cleanupService = createCleanupService(Duration.ofMinutes(10));
+        var session1 = createSession(1, "Key1", 30);
+        var session2 = createSession(1, "Key2", 20);
+        var session3 = createSession(1, "Key3", 10);
+        given(signingSessionsRepository.findExpiredBefore(any(), eq(Limit.of(CHUNK_SIZE))))
+                .willReturn(List.of(session1.session(), session2.session()));
+        given(signingSessionsRepository.findExpiredBeforeAfter(any(), eq(session2.session().getExpiresIn()),
+                                                               eq(session2.session().getId()),
+                                                               eq(Limit.of(CHUNK_SIZE))
+        )).willReturn(List.of(session3.session()));
+        stubResources(session1, session2);
+        stubResources(session3);
+        given(signserverClient.removeKeyOkIfNotExists(any(Integer.class), any())).willReturn(Result.emptySuccess());
+        willThrow(new DataIntegrityViolationException("Session is referenced."))
+                .given(signingSessionsRepository).deleteAllByIdIn(List.of(session1.id(), session2.id()));
+        willThrow(new DataIntegrityViolationException("Session is referenced."))
+                .given(signingSessionsRepository).deleteAllByIdIn(List.of(session1.id()));
+
+        // when
+        cleanupService.cleanExpiredSessions();
+
+        // then
+        then(signingSessionsRepository).should().deleteAllByIdIn(List.of(session2.id()));
+        then(sessionCredentialsRepository).should().deleteAllByIdIn(List.of(session2.credential().getId()));
+        then(sessionKeyRepository).should().deleteAllByIdIn(List.of(session2.key().getId()));
+        then(sessionCredentialsRepository).should(never()).deleteAllByIdIn(List.of(session1.credential().getId()));
+        then(signingSessionsRepository).should().deleteAllByIdIn(List.of(session3.id()));
+        assertEquals(2.0, sessions("deleted"));
+        assertEquals(1.0, sessions("failed"));
+    }
+
+    private SigningSessionCleanupService createCleanupService(Duration timeBudget) {
+        var cscConfiguration = new CscConfigurationBuilder()
+                .withSigningSessions(new SigningSessions(Duration.ofHours(1), "0 0 * * * *", CHUNK_SIZE, 1,
+                                                         timeBudget
+                ))
+                .build();
+        return new SigningSessionCleanupService(signingSessionsRepository, sessionCredentialsRepository,
+                                                sessionKeyRepository, signserverClient, keyDeletionExecutor,
+                                                cscConfiguration, transactionManager, meterRegistry
+        );
+    }
+
+    private void stubResources(ExpiredSession... sessions) {
+        List<ExpiredSession> expiredSessions = List.of(sessions);
+        given(sessionCredentialsRepository.findAllById(
+                expiredSessions.stream().map(s -> s.credential().getId()).toList()))
+                .willReturn(expiredSessions.stream().map(ExpiredSession::credential).toList());
+        given(sessionKeyRepository.findAllById(expiredSessions.stream().map(s -> s.key().getId()).toList()))
+                .willReturn(expiredSessions.stream().map(ExpiredSession::key).toList());
+    }
+
+    private ExpiredSession createSession(int cryptoTokenId, String keyAlias, int expiredMinutesAgo) {
+        var key = new SessionKeyEntity(UUID.randomUUID(), cryptoTokenId, keyAlias, "RSA", true, ZonedDateTime.now());
+        var credential = new SessionCredentialMetadataEntity(UUID.randomUUID(), "user", keyAlias, key.getId(),
+                                                             "EndEntity", "qualifier", 1, "CryptoToken"
+        );
+        var session = new SigningSessionEntity(UUID.randomUUID(), credential.getId(),
+                                               ZonedDateTime.now().minusHours(1).minusMinutes(expiredMinutesAgo)
+        );
+        return new ExpiredSession(session, credential, key);
+    }
+
+    private double sessions(String outcome) {
+        return meterRegistry.get(SigningSessionCleanupService.SESSIONS_METRIC_NAME)
+                            .tag("outcome", outcome)
+                            .counter()
+                            .count();
+    }
+
+    private record ExpiredSession(SigningSessionEntity session, SessionCredentialMetadataEntity credential,
+                                  SessionKeyEntity key
+    ) {
+        UUID id() {
+            return session.getId();
+        }
+    }
+}
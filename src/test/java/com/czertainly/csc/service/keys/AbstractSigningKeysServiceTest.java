@@ -3,16 +3,19 @@ package com.czertainly.csc.service.keys;
 import com.czertainly.csc.clients.signserver.SignserverClient;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.configuration.csc.CscConfiguration;
+import com.czertainly.csc.configuration.keypools.KeyUsageDesignation;
 import com.czertainly.csc.model.signserver.CryptoToken;
-import com.czertainly.csc.repository.KeyRepository;
+import com.czertainly.csc.repository.SessionKeyRepository;
 import com.czertainly.csc.repository.entities.SessionKeyEntity;
 import com.czertainly.csc.signing.configuration.WorkerRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.time.ZonedDateTime;
 import java.util.List;
@@ -22,15 +25,15 @@ import java.util.UUID;
 import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
 import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class AbstractSigningKeysServiceTest {
 
     @Mock
-    KeyRepository<SessionKeyEntity> keysRepository;
+    SessionKeyRepository keysRepository;
 
     @Mock
     SignserverClient signserverClient;
@@ -38,6 +41,15 @@ class AbstractSigningKeysServiceTest {
     @Mock
     WorkerRepository workerRepository;
 
+    @Mock
+    CscConfiguration cscConfiguration;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     SessionKeysService testKeysService;
 
@@ -149,23 +161,91 @@ class AbstractSigningKeysServiceTest {
         CryptoToken cryptoToken = new CryptoToken("cryptoToken", 1, List.of());
         String keyAlgorithm = "RSA";
 
-        var sessionEntity = Mockito.spy(aSessionKeyEntity(cryptoToken, "key-alias", keyAlgorithm));
+        var sessionEntity = aSessionKeyEntity(cryptoToken, "key-alias", keyAlgorithm);
 
-        when(keysRepository.findFirstByCryptoTokenIdAndKeyAlgorithmAndInUse(cryptoToken.id(), keyAlgorithm, false))
-                .thenReturn(Optional.of(sessionEntity));
-        when(keysRepository.save(sessionEntity)).thenAnswer(invocation -> invocation.getArgument(0));
+        when(keysRepository.lockFreeKeys(eq(cryptoToken.id()), eq(keyAlgorithm), any()))
+                .thenReturn(List.of(sessionEntity))
+                .thenReturn(List.of());
+        when(keysRepository.markAcquired(eq(sessionEntity.getId()), any())).thenReturn(1);
 
         // when
         var result = testKeysService.acquireKey(cryptoToken, keyAlgorithm);
 
         // then
         SessionKey key = assertSuccessAndGet(result);
-        verify(sessionEntity).setAcquiredAt(any());
-        verify(sessionEntity).setInUse(true);
+        verify(keysRepository).markReserved(eq(List.of(sessionEntity.getId())), any());
+        verify(keysRepository).markAcquired(eq(sessionEntity.getId()), any());
         assertEquals("key-alias", key.keyAlias());
         assertEquals(cryptoToken, key.cryptoToken());
         assertEquals(keyAlgorithm, key.keyAlgorithm());
         assertEquals(true, key.inUse());
+        assertNotNull(key.acquiredAt());
+    }
+
+    @Test
+    void acquireKeyHandsOutReservedKeysWithoutClaimingThemAgain() {
+        // setup
+        CryptoToken cryptoToken = new CryptoToken("cryptoToken", 1, List.of());
+        String keyAlgorithm = "RSA";
+
+        var firstEntity = aSessionKeyEntity(cryptoToken, "key-alias-1", keyAlgorithm);
+        var secondEntity = aSessionKeyEntity(cryptoToken, "key-alias-2", keyAlgorithm);
+        var thirdEntity = aSessionKeyEntity(cryptoToken, "key-alias-3", keyAlgorithm);
+        var fourthEntity = aSessionKeyEntity(cryptoToken, "key-alias-4", keyAlgorithm);
+
+        // enough keys to stay above the refill threshold
+        when(keysRepository.lockFreeKeys(eq(cryptoToken.id()), eq(keyAlgorithm), any()))
+                .thenReturn(List.of(firstEntity, secondEntity, thirdEntity, fourthEntity));
+        when(keysRepository.markAcquired(any(), any())).thenReturn(1);
+
+        // when
+        var first = testKeysService.acquireKey(cryptoToken, keyAlgorithm);
+        var second = testKeysService.acquireKey(cryptoToken, keyAlgorithm);
+
+        // then
+        assertEquals("key-alias-1", assertSuccessAndGet(first).keyAlias());
+        assertEquals("key-alias-2", assertSuccessAndGet(second).keyAlias());
+        verify(keysRepository, times(1)).lockFreeKeys(anyInt(), any(), any());
+        verify(keysRepository, times(1)).markReserved(any(), any());
+        verify(keysRepository, times(2)).markAcquired(any(), any());
+    }
+
+    @Test
+    void acquireKeyPublishesKeysTakenFromPool() {
+        // setup
+        CryptoToken cryptoToken = new CryptoToken("cryptoToken", 1, List.of());
+        String keyAlgorithm = "RSA";
+
+        when(keysRepository.lockFreeKeys(eq(cryptoToken.id()), eq(keyAlgorithm), any()))
+                .thenReturn(List.of(aSessionKeyEntity(cryptoToken, "key-alias-1", keyAlgorithm),
+                                    aSessionKeyEntity(cryptoToken, "key-alias-2", keyAlgorithm),
+                                    aSessionKeyEntity(cryptoToken, "key-alias-3", keyAlgorithm)
+                ));
+        when(keysRepository.markAcquired(any(), any())).thenReturn(1);
+
+        // when
+        testKeysService.acquireKey(cryptoToken, keyAlgorithm);
+
+        // then
+        verify(eventPublisher).publishEvent(
+                new KeyPoolDepthChangedEvent(KeyUsageDesignation.SESSION_SIGNATURE, 1, keyAlgorithm, -3));
+    }
+
+    @Test
+    void releaseOrphanedReservationsReleasesKeysReservedByStoppedInstances() {
+        // given
+        CryptoToken cryptoToken = new CryptoToken("cryptoToken", 1, List.of());
+        var orphanedKey = aSessionKeyEntity(cryptoToken, "key-alias", "RSA");
+        when(keysRepository.findReservedBefore(any(), any())).thenReturn(List.of(orphanedKey));
+        when(keysRepository.release(List.of(orphanedKey.getId()))).thenReturn(1);
+
+        // when
+        testKeysService.releaseOrphanedReservations();
+
+        // then
+        verify(keysRepository).release(List.of(orphanedKey.getId()));
+        verify(eventPublisher).publishEvent(
+                new KeyPoolDepthChangedEvent(KeyUsageDesignation.SESSION_SIGNATURE, 1, "RSA", 1));
     }
 
     @Test
@@ -173,8 +253,7 @@ class AbstractSigningKeysServiceTest {
         // given
         CryptoToken cryptoToken = new CryptoToken("tokenA", 1, List.of());
         String keyAlgorithm = "RSA";
-        when(keysRepository.findFirstByCryptoTokenIdAndKeyAlgorithmAndInUse(1, keyAlgorithm, false))
-                .thenReturn(Optional.empty());
+        when(keysRepository.lockFreeKeys(eq(1), eq(keyAlgorithm), any())).thenReturn(List.of());
 
         // when
         var result = testKeysService.acquireKey(cryptoToken, keyAlgorithm);
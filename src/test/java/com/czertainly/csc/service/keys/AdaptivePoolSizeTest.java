@@ -0,0 +1,71 @@
+package com.czertainly.csc.service.keys;
+
+import com.czertainly.csc.configuration.keypools.KeyPoolAdaptiveSizing;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptivePoolSizeTest {
+
+    KeyPoolAdaptiveSizing sizing = new KeyPoolAdaptiveSizing(2, 50, 0.5, 2);
+
+    @Test
+    void initialTargetSizeIsDesiredSize() {
+        // given
+        var poolSize = new AdaptivePoolSize(sizing, 10);
+
+        // when
+        int targetSize = poolSize.update(10);
+
+        // then
+        assertEquals(10, targetSize);
+    }
+
+    @Test
+    void targetSizeGrowsWithKeyUsage() {
+        // given
+        var poolSize = new AdaptivePoolSize(sizing, 10);
+        poolSize.update(10);
+
+        // when
+        // 10 free keys, 20 generated, 0 free keys left -> 30 keys used
+        for (int i = 0; i < 20; i++) poolSize.keyGenerated();
+        int targetSize = poolSize.update(0);
+
+        // then
+        // average usage 0.5 * 30 + 0.5 * 5 = 17.5 keys per interval, covering 2 intervals
+        assertEquals(35, targetSize);
+    }
+
+    @Test
+    void targetSizeShrinksWhenKeysAreNotUsed() {
+        // given
+        var poolSize = new AdaptivePoolSize(sizing, 40);
+        int targetSize = poolSize.update(40);
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            int previousTargetSize = targetSize;
+            targetSize = poolSize.update(40);
+            assertTrue(targetSize < previousTargetSize);
+        }
+
+        // then
+        assertEquals(2, targetSize);
+    }
+
+    @Test
+    void targetSizeIsBoundedByMaxSize() {
+        // given
+        var poolSize = new AdaptivePoolSize(sizing, 100);
+        poolSize.update(50);
+
+        // when
+        for (int i = 0; i < 1000; i++) poolSize.keyGenerated();
+        int targetSize = poolSize.update(0);
+
+        // then
+        assertEquals(50, targetSize);
+    }
+}
@@ -2,23 +2,32 @@ package com.czertainly.csc.service.keys;
 
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.configuration.csc.KeyReplenishmentSettings;
+import com.czertainly.csc.configuration.keypools.KeyPoolAdaptiveSizing;
 import com.czertainly.csc.configuration.keypools.KeyPoolProfile;
 import com.czertainly.csc.configuration.keypools.KeyUsageDesignation;
 import com.czertainly.csc.model.signserver.CryptoToken;
 import com.czertainly.csc.utils.configuration.KeyPoolProfileBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.function.Executable;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -32,8 +41,12 @@ class KeyPoolReplenisherTest {
     KeyPoolReplenisher<SessionKey> keyPoolReplenisher;
 
     static ExecutorService directExecutor() {
+        return collectingExecutor(Runnable::run);
+    }
+
+    static ExecutorService collectingExecutor(Consumer<Runnable> submittedTasks) {
         return new AbstractExecutorService() {
-            @Override public void execute(@NotNull Runnable command) { command.run(); }
+            @Override public void execute(@NotNull Runnable command) { submittedTasks.accept(command); }
             @Override public void shutdown() {}
             @Override public @NotNull List<Runnable> shutdownNow() { return List.of(); }
             @Override public boolean isShutdown() { return true; }
@@ -42,6 +55,16 @@ class KeyPoolReplenisherTest {
         };
     }
 
+    // Replenishes the pools only when replenishPools() is called
+    KeyPoolReplenisher<SessionKey> replenisherWithoutLowWatermark(List<CryptoToken> tokens,
+                                                                  ExecutorService executor
+    ) {
+        return new KeyPoolReplenisher<>(tokens, keysService, executor,
+                                        new KeyReplenishmentSettings(0.0, null), null,
+                                        new KeyGenerationMetrics(new SimpleMeterRegistry())
+        );
+    }
+
     /* in each test */
     ExecutorService keyGenerationExecutor = directExecutor();
 
@@ -56,7 +79,7 @@ class KeyPoolReplenisherTest {
         CryptoToken ct2 = new CryptoToken("cryptoToken2", 2, List.of(sessionRsaSize1));
 
         cryptoTokens = List.of(ct1, ct2);
-        keyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokens, keysService, keyGenerationExecutor);
+        keyPoolReplenisher = replenisherWithoutLowWatermark(cryptoTokens, keyGenerationExecutor);
 
         // when
         keyPoolReplenisher.replenishPools();
@@ -75,7 +98,7 @@ class KeyPoolReplenisherTest {
         CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(sessionRsaSize1, sessionEcdsaSize1));
 
         cryptoTokens = List.of(ct1);
-        keyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokens, keysService, keyGenerationExecutor);
+        keyPoolReplenisher = replenisherWithoutLowWatermark(cryptoTokens, keyGenerationExecutor);
 
         // when
         keyPoolReplenisher.replenishPools();
@@ -95,7 +118,7 @@ class KeyPoolReplenisherTest {
 
         // setup
         cryptoTokens = List.of(ct1);
-        keyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokens, keysService, keyGenerationExecutor);
+        keyPoolReplenisher = replenisherWithoutLowWatermark(cryptoTokens, keyGenerationExecutor);
 
         // when
         keyPoolReplenisher.replenishPools();
@@ -119,7 +142,7 @@ class KeyPoolReplenisherTest {
         // setup
         CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(sessionRsaSize5));
         cryptoTokens = List.of(ct1);
-        keyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokens, keysService, keyGenerationExecutor);
+        keyPoolReplenisher = replenisherWithoutLowWatermark(cryptoTokens, keyGenerationExecutor);
 
         // when
         keyPoolReplenisher.replenishPools();
@@ -143,7 +166,7 @@ class KeyPoolReplenisherTest {
         // setup
         CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(profile));
         cryptoTokens = List.of(ct1);
-        keyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokens, keysService, keyGenerationExecutor);
+        keyPoolReplenisher = replenisherWithoutLowWatermark(cryptoTokens, keyGenerationExecutor);
 
         // when
         keyPoolReplenisher.replenishPools();
@@ -159,7 +182,7 @@ class KeyPoolReplenisherTest {
         // setup
         CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(sessionRsaSize1));
         cryptoTokens = List.of(ct1);
-        keyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokens, keysService, keyGenerationExecutor);
+        keyPoolReplenisher = replenisherWithoutLowWatermark(cryptoTokens, keyGenerationExecutor);
 
         //given
         when(keysService.getNumberOfUsableKeys(any(), any())).thenReturn(Result.error(TextError.of("error")));
@@ -178,7 +201,7 @@ class KeyPoolReplenisherTest {
         KeyPoolProfile profile = sessionRsaSize5;
         CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(profile));
         cryptoTokens = List.of(ct1);
-        keyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokens, keysService, keyGenerationExecutor);
+        keyPoolReplenisher = replenisherWithoutLowWatermark(cryptoTokens, keyGenerationExecutor);
 
         //given
 
@@ -202,7 +225,7 @@ class KeyPoolReplenisherTest {
         CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(profile));
         CryptoToken ct2 = new CryptoToken("cryptoToken2", 2, List.of(profile));
         cryptoTokens = List.of(ct1, ct2);
-        keyPoolReplenisher = new KeyPoolReplenisher<>(cryptoTokens, keysService, keyGenerationExecutor);
+        keyPoolReplenisher = replenisherWithoutLowWatermark(cryptoTokens, keyGenerationExecutor);
 
         //given
         when(keysService.generateKey(eq(ct1), any(), any(), any())).thenReturn(Result.error(TextError.of("error")));
@@ -217,6 +240,159 @@ class KeyPoolReplenisherTest {
         verify(keysService, times(5)).generateKey(eq(ct2), any(), any(), any());
     }
 
+    @Test
+    void replenishPoolsGrowsAdaptivePoolWhenKeysAreUsed() {
+        // setup
+        when(keysService.getNumberOfUsableKeys(any(), any())).thenReturn(Result.success(0));
+        when(keysService.generateKey(any(), any(), any(), any())).thenReturn(Result.success(null));
+        KeyPoolProfile profile = KeyPoolProfileBuilder.create().withName("session_rsa").withKeyAlgorithm("RSA")
+                                                      .withDesiredSize(5)
+                                                      .withMaxKeysGeneratedPerReplenish(100)
+                                                      .withAdaptiveSizing(new KeyPoolAdaptiveSizing(1, 50, 0.5, 2))
+                                                      .withDesignatedUsage(KeyUsageDesignation.SESSION_SIGNATURE)
+                                                      .build();
+        CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(profile));
+        cryptoTokens = List.of(ct1);
+        keyPoolReplenisher = replenisherWithoutLowWatermark(cryptoTokens, keyGenerationExecutor);
+
+        // given
+        // the pool starts at its desired size
+        keyPoolReplenisher.replenishPools();
+        verify(keysService, times(5)).generateKey(any(), any(), any(), any());
+        clearInvocations(keysService);
+
+        // when
+        // all 5 generated keys were used before the next replenish
+        keyPoolReplenisher.replenishPools();
+
+        // then
+        // average usage 0.5 * 5 + 0.5 * 2.5 = 3.75 keys per interval, covering 2 intervals
+        verify(keysService, times(8)).generateKey(any(), any(), any(), any());
+    }
+
+    @Test
+    void onDepthChangedReplenishesPoolFromInMemoryCountWhenItDropsBelowLowWatermark() {
+        // setup
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        when(keysService.getNumberOfUsableKeys(any(), any())).thenReturn(Result.success(10));
+        CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(sessionRsaSize10));
+        keyPoolReplenisher = new KeyPoolReplenisher<>(List.of(ct1), keysService, keyGenerationExecutor,
+                                                      new KeyReplenishmentSettings(0.5, Duration.ofSeconds(1)),
+                                                      scheduler, new KeyGenerationMetrics(new SimpleMeterRegistry())
+        );
+        keyPoolReplenisher.replenishPools();
+
+        // given
+        keyPoolReplenisher.onDepthChanged(1, "RSA", -5);
+        verifyNoInteractions(scheduler);
+
+        // when
+        keyPoolReplenisher.onDepthChanged(1, "RSA", -2);
+        keyPoolReplenisher.onDepthChanged(1, "RSA", -1);
+
+        // then
+        // both triggers are merged into a single replenishment
+        ArgumentCaptor<Runnable> replenishment = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, times(1)).schedule(replenishment.capture(), eq(1000L), eq(TimeUnit.MILLISECONDS));
+        when(keysService.generateKey(any(), any(), any(), any())).thenReturn(Result.success(null));
+        replenishment.getValue().run();
+        verify(keysService, times(8)).generateKey(eq(ct1), any(), any(), any());
+        verify(keysService, times(1)).getNumberOfUsableKeys(any(), any());
+    }
+
+    @Test
+    void onDepthChangedIgnoresPoolsWithUnknownNumberOfFreeKeys() {
+        // setup
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(sessionRsaSize10));
+        keyPoolReplenisher = new KeyPoolReplenisher<>(List.of(ct1), keysService, keyGenerationExecutor,
+                                                      KeyReplenishmentSettings.defaults(), scheduler,
+                                                      new KeyGenerationMetrics(new SimpleMeterRegistry())
+        );
+
+        // when
+        keyPoolReplenisher.onDepthChanged(1, "RSA", -10);
+
+        // then
+        verifyNoInteractions(scheduler, keysService);
+    }
+
+    @Test
+    void replenishPoolsCountsPendingGenerationsTowardsPoolSize() {
+        // setup
+        List<Runnable> submittedGenerations = new ArrayList<>();
+        when(keysService.getNumberOfUsableKeys(any(), any())).thenReturn(Result.success(0));
+        CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(sessionRsaSize10));
+        keyPoolReplenisher = replenisherWithoutLowWatermark(List.of(ct1), collectingExecutor(submittedGenerations::add));
+
+        // given
+        keyPoolReplenisher.replenishPools();
+        assertEquals(10, submittedGenerations.size());
+
+        // when
+        // the generations have not finished before the next replenishment
+        keyPoolReplenisher.replenishPools();
+
+        // then
+        assertEquals(10, submittedGenerations.size());
+    }
+
+    @Test
+    void replenishPoolsLimitsNumberOfPendingGenerations() {
+        // setup
+        List<Runnable> submittedGenerations = new ArrayList<>();
+        when(keysService.getNumberOfUsableKeys(any(), any())).thenReturn(Result.success(0));
+        CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(profileRequires10Max2PerReplenish));
+        keyPoolReplenisher = replenisherWithoutLowWatermark(List.of(ct1), collectingExecutor(submittedGenerations::add));
+
+        // given
+        keyPoolReplenisher.replenishPools();
+        keyPoolReplenisher.replenishPools();
+        assertEquals(2, submittedGenerations.size());
+
+        // when
+        when(keysService.generateKey(any(), any(), any(), any())).thenReturn(Result.success(null));
+        submittedGenerations.getFirst().run();
+        keyPoolReplenisher.replenishPools();
+
+        // then
+        assertEquals(3, submittedGenerations.size());
+    }
+
+    @Test
+    void replenishPoolsRecordsFinishedAndPendingGenerations() {
+        // setup
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        List<Runnable> submittedGenerations = new ArrayList<>();
+        when(keysService.getNumberOfUsableKeys(any(), any())).thenReturn(Result.success(0));
+        when(keysService.generateKey(any(), any(), any(), any()))
+                .thenReturn(Result.success(null))
+                .thenReturn(Result.error(TextError.of("error")));
+        CryptoToken ct1 = new CryptoToken("cryptoToken1", 1, List.of(sessionRsaSize5));
+        keyPoolReplenisher = new KeyPoolReplenisher<>(List.of(ct1), keysService, collectingExecutor(submittedGenerations::add),
+                                                      KeyReplenishmentSettings.defaults(), null,
+                                                      new KeyGenerationMetrics(meterRegistry)
+        );
+
+        // when
+        keyPoolReplenisher.replenishPools();
+        submittedGenerations.get(0).run();
+        submittedGenerations.get(1).run();
+
+        // then
+        assertEquals(3, meterRegistry.get(KeyGenerationMetrics.PENDING_METRIC_NAME).gauge().value());
+        assertEquals(1, meterRegistry.get(KeyGenerationMetrics.GENERATIONS_METRIC_NAME)
+                                     .tag("outcome", KeyGenerationMetrics.OUTCOME_COMPLETED).counter().count());
+        assertEquals(1, meterRegistry.get(KeyGenerationMetrics.GENERATIONS_METRIC_NAME)
+                                     .tag("outcome", KeyGenerationMetrics.OUTCOME_FAILED).counter().count());
+    }
+
+    KeyPoolProfile sessionRsaSize10 = KeyPoolProfileBuilder.create().withName("session_rsa").withKeyAlgorithm("RSA")
+                                                           .withDesiredSize(10)
+                                                           .withMaxKeysGeneratedPerReplenish(10)
+                                                           .withDesignatedUsage(KeyUsageDesignation.SESSION_SIGNATURE)
+                                                           .build();
+
     KeyPoolProfile sessionRsaSize1 = KeyPoolProfileBuilder.create().withName("session_rsa").withKeyAlgorithm("RSA")
                                                           .withDesiredSize(1)
                                                           .withDesignatedUsage(KeyUsageDesignation.SESSION_SIGNATURE)
@@ -0,0 +1,88 @@
+package com.czertainly.csc.service.keys;
+
+import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.repository.entities.SessionKeyEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class KeyRemoverTest {
+
+    @Mock
+    SignserverClient signserverClient;
+
+    ExecutorService removalExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        removalExecutor.shutdownNow();
+    }
+
+    @Test
+    void removeLimitsConcurrentRemovalsPerCryptoToken() {
+        // given
+        var keyRemover = new KeyRemover(signserverClient, removalExecutor, 2);
+        List<SessionKeyEntity> keys = List.of(createKey(1, "Key1"), createKey(1, "Key2"), createKey(1, "Key3"),
+                                              createKey(2, "Key4"), createKey(2, "Key5")
+        );
+        Map<Integer, AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<Integer, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+        given(signserverClient.removeKeyOkIfNotExists(anyInt(), anyString())).willAnswer(invocation -> {
+            int cryptoTokenId = invocation.getArgument(0);
+            int current = running.computeIfAbsent(cryptoTokenId, id -> new AtomicInteger()).incrementAndGet();
+            maxRunning.computeIfAbsent(cryptoTokenId, id -> new AtomicInteger()).accumulateAndGet(current, Math::max);
+            Thread.sleep(20);
+            running.get(cryptoTokenId).decrementAndGet();
+            return Result.emptySuccess();
+        });
+
+        // when
+        var removedKeys = keyRemover.remove(keys);
+
+        // then
+        assertEquals(keys.size(), removedKeys.size());
+        assertTrue(maxRunning.get(1).get() <= 2);
+        assertTrue(maxRunning.get(2).get() <= 2);
+    }
+
+    @Test
+    void removeDoesNotReturnKeysThatFailedToBeRemoved() {
+        // given
+        var keyRemover = new KeyRemover(signserverClient, removalExecutor, 4);
+        var key1 = createKey(1, "Key1");
+        var key2 = createKey(1, "Key2");
+        given(signserverClient.removeKeyOkIfNotExists(1, "Key1")).willReturn(Result.emptySuccess());
+        given(signserverClient.removeKeyOkIfNotExists(1, "Key2"))
+                .willReturn(Result.error(TextError.of("Signserver is not available.")));
+
+        // when
+        var removedKeys = keyRemover.remove(List.of(key1, key2));
+
+        // then
+        assertEquals(List.of(key1.getId()), removedKeys);
+    }
+
+    private SessionKeyEntity createKey(int cryptoTokenId, String keyAlias) {
+        return new SessionKeyEntity(UUID.randomUUID(), cryptoTokenId, keyAlias, "RSA", true, ZonedDateTime.now());
+    }
+}
@@ -0,0 +1,108 @@
+package com.czertainly.csc.service.keys;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.configuration.csc.KeyReservationSettings;
+import com.czertainly.csc.repository.entities.SessionKeyEntity;
+import com.czertainly.csc.utils.MutableClock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+@ExtendWith(MockitoExtension.class)
+class KeyReservationQueueTest {
+
+    private static final int CRYPTO_TOKEN_ID = 1;
+    private static final String KEY_ALGORITHM = "RSA";
+
+    @Mock
+    FreeKeyClaimer<SessionKeyEntity> claimer;
+
+    @Test
+    void concurrentPollsOfEmptyQueueClaimASingleBatch() throws Exception {
+        // given
+        int callers = 8;
+        var settings = new KeyReservationSettings(callers, 0, Duration.ofMinutes(5), null, null);
+        var queue = new KeyReservationQueue<>(claimer, settings, (cryptoTokenId, keyAlgorithm, change) -> {});
+        CountDownLatch claimStarted = new CountDownLatch(1);
+        CountDownLatch claimAllowed = new CountDownLatch(1);
+        given(claimer.claim(CRYPTO_TOKEN_ID, KEY_ALGORITHM, callers)).willAnswer(invocation -> {
+            claimStarted.countDown();
+            claimAllowed.await(5, TimeUnit.SECONDS);
+            return Result.success(createKeys(callers));
+        });
+
+        // when
+        List<Future<Optional<SessionKeyEntity>>> polls = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+            for (int i = 0; i < callers; i++) {
+                polls.add(executor.submit(() -> queue.poll(CRYPTO_TOKEN_ID, KEY_ALGORITHM)));
+            }
+            assertTrue(claimStarted.await(5, TimeUnit.SECONDS));
+            claimAllowed.countDown();
+        }
+
+        // then
+        then(claimer).should(times(1)).claim(CRYPTO_TOKEN_ID, KEY_ALGORITHM, callers);
+        for (var poll : polls) {
+            assertTrue(poll.get().isPresent());
+        }
+        assertEquals(0, queue.size(CRYPTO_TOKEN_ID, KEY_ALGORITHM));
+    }
+
+    @Test
+    void releaseExpiredReleasesKeysOfIdleQueueAndReportsReleasedKeysOnly() {
+        // given
+        MutableClock clock = MutableClock.now();
+        List<Integer> depthChanges = new ArrayList<>();
+        var settings = new KeyReservationSettings(3, 0, Duration.ofMinutes(5), null, null);
+        var queue = new KeyReservationQueue<>(claimer, settings,
+                                              (cryptoTokenId, keyAlgorithm, change) -> depthChanges.add(change),
+                                              clock
+        );
+        var keys = createKeys(3);
+        given(claimer.claim(CRYPTO_TOKEN_ID, KEY_ALGORITHM, 3)).willReturn(Result.success(keys));
+        var expiredKeys = List.of(keys.get(1).getId(), keys.get(2).getId());
+        // One of the reserved keys was deleted in the meantime
+        given(claimer.release(expiredKeys)).willReturn(Result.success(1));
+        queue.poll(CRYPTO_TOKEN_ID, KEY_ALGORITHM);
+
+        // when
+        queue.releaseExpired();
+        clock.advance(Duration.ofMinutes(6));
+        queue.releaseExpired();
+
+        // then
+        then(claimer).should(times(1)).release(expiredKeys);
+        assertEquals(List.of(-3, 1), depthChanges);
+        assertEquals(0, queue.size(CRYPTO_TOKEN_ID, KEY_ALGORITHM));
+    }
+
+    private static List<SessionKeyEntity> createKeys(int count) {
+        List<SessionKeyEntity> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(new SessionKeyEntity(UUID.randomUUID(), CRYPTO_TOKEN_ID, "Key" + i, KEY_ALGORITHM, true,
+                                          ZonedDateTime.now()
+            ));
+        }
+        return keys;
+    }
+}
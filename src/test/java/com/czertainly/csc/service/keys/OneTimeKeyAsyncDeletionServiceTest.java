@@ -0,0 +1,248 @@
+package com.czertainly.csc.service.keys;
+
+import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.configuration.csc.OneTimeKeysCleanupSettings;
+import com.czertainly.csc.repository.OneTimeKeyRepository;
+import com.czertainly.csc.repository.entities.OneTimeKeyEntity;
+import com.czertainly.csc.utils.configuration.CscConfigurationBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+
+@ExtendWith(MockitoExtension.class)
+class OneTimeKeyAsyncDeletionServiceTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    @Mock
+    OneTimeKeyRepository keysRepository;
+
+    @Mock
+    SignserverClient signserverClient;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    ExecutorService deletionExecutor;
+    SimpleMeterRegistry meterRegistry;
+    OneTimeKeyAsyncDeletionService deletionService;
+
+    @BeforeEach
+    void setUp() {
+        deletionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        meterRegistry = new SimpleMeterRegistry();
+        var cscConfiguration = new CscConfigurationBuilder()
+                .withOneTimeKeysCleanupSettings(
+                        new OneTimeKeysCleanupSettings(Duration.ofHours(1), "0 0 * * * *", BATCH_SIZE, null, 1, null,
+                                                       Duration.ofMinutes(1), Duration.ofMinutes(5),
+                                                       Duration.ofMinutes(10)))
+                .build();
+        deletionService = new OneTimeKeyAsyncDeletionService(keysRepository, signserverClient, deletionExecutor,
+                                                             cscConfiguration, transactionManager, meterRegistry
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        deletionExecutor.shutdownNow();
+    }
+
+    @Test
+    void deleteKeyAsyncQueuesTheKey() {
+        // given
+        OneTimeKey key = new OneTimeKey(UUID.randomUUID(), null, "Key1", "RSA", true, ZonedDateTime.now());
+        given(keysRepository.markForDeletion(key.id())).willReturn(1);
+
+        // when
+        deletionService.deleteKeyAsync(key);
+
+        // then
+        then(keysRepository).should().markForDeletion(key.id());
+        then(signserverClient).shouldHaveNoInteractions();
+        assertEquals(1.0, pendingDeletions());
+    }
+
+    @Test
+    void queueForDeletionQueuesTheKeysWithoutRemovingThem() {
+        // given
+        var key1 = createEntity(1, "Key1");
+        var key2 = createEntity(2, "Key2");
+        given(keysRepository.markAllForDeletion(List.of(key1.getId(), key2.getId()))).willReturn(1);
+
+        // when
+        var result = deletionService.queueForDeletion(List.of(key1, key2));
+
+        // then
+        assertEquals(1, assertSuccessAndGet(result));
+        then(signserverClient).shouldHaveNoInteractions();
+        assertEquals(1.0, pendingDeletions());
+    }
+
+    @Test
+    void drainRemovesKeysOfAllCryptoTokensAndDeletesThemAtOnce() {
+        // given
+        var key1 = createEntity(1, "Key1");
+        var key2 = createEntity(2, "Key2");
+        given(keysRepository.lockDueForDeletion(any(), eq(Limit.of(BATCH_SIZE)))).willReturn(List.of(key1, key2))
+                                                                                 .willReturn(List.of());
+        given(signserverClient.removeKeyOkIfNotExists(anyInt(), anyString())).willReturn(Result.emptySuccess());
+
+        // when
+        deletionService.drain();
+
+        // then
+        then(signserverClient).should().removeKeyOkIfNotExists(1, "Key1");
+        then(signserverClient).should().removeKeyOkIfNotExists(2, "Key2");
+        then(keysRepository).should().deleteAllByIdIn(List.of(key1.getId(), key2.getId()));
+        assertEquals(2.0, deletions("deleted"));
+    }
+
+    @Test
+    void drainLeasesClaimedKeysBeforeRemovingThem() {
+        // given
+        var key1 = createEntity(1, "Key1");
+        var key2 = createEntity(2, "Key2");
+        given(keysRepository.lockDueForDeletion(any(), eq(Limit.of(BATCH_SIZE)))).willReturn(List.of(key1, key2))
+                                                                                 .willReturn(List.of());
+        given(signserverClient.removeKeyOkIfNotExists(anyInt(), anyString())).willReturn(Result.emptySuccess());
+        ZonedDateTime start = ZonedDateTime.now();
+
+        // when
+        deletionService.drain();
+
+        // then
+        ArgumentCaptor<ZonedDateTime> leasedUntil = ArgumentCaptor.forClass(ZonedDateTime.class);
+        var inOrder = inOrder(keysRepository, signserverClient);
+        inOrder.verify(keysRepository).leaseDeletion(eq(List.of(key1.getId(), key2.getId())), leasedUntil.capture());
+        inOrder.verify(signserverClient).removeKeyOkIfNotExists(1, "Key1");
+        assertEquals(Duration.ofMinutes(10), Duration.between(start, leasedUntil.getValue()).withNanos(0));
+    }
+
+    @Test
+    void drainKeepsKeysThatFailedToBeRemovedQueued() {
+        // given
+        var key1 = createEntity(1, "Key1");
+        var key2 = createEntity(1, "Key2");
+        given(keysRepository.lockDueForDeletion(any(), eq(Limit.of(BATCH_SIZE)))).willReturn(List.of(key1, key2));
+        given(signserverClient.removeKeyOkIfNotExists(1, "Key1")).willReturn(Result.emptySuccess());
+        given(signserverClient.removeKeyOkIfNotExists(1, "Key2"))
+                .willReturn(Result.error(TextError.of("Signserver is not available.")));
+        given(keysRepository.countByDeleting(true)).willReturn(1L);
+
+        // when
+        deletionService.drain();
+
+        // then
+        then(keysRepository).should().deleteAllByIdIn(List.of(key1.getId()));
+        then(keysRepository).should().postponeDeletion(eq(List.of(key2.getId())), eq(1), any());
+        assertEquals(1.0, deletions("deleted"));
+        assertEquals(1.0, deletions("failed"));
+        assertEquals(1.0, pendingDeletions());
+    }
+
+    @Test
+    void drainContinuesWithNextBatchAfterPartiallyFailedBatch() {
+        // given
+        var key1 = createEntity(1, "Key1");
+        var key2 = createEntity(1, "Key2");
+        var key3 = createEntity(1, "Key3");
+        given(keysRepository.lockDueForDeletion(any(), eq(Limit.of(BATCH_SIZE)))).willReturn(List.of(key1, key2))
+                                                                                 .willReturn(List.of(key3));
+        given(signserverClient.removeKeyOkIfNotExists(anyInt(), anyString())).willReturn(Result.emptySuccess());
+        given(signserverClient.removeKeyOkIfNotExists(1, "Key1"))
+                .willReturn(Result.error(TextError.of("Signserver is not available.")));
+
+        // when
+        deletionService.drain();
+
+        // then
+        then(keysRepository).should().deleteAllByIdIn(List.of(key2.getId()));
+        then(keysRepository).should().deleteAllByIdIn(List.of(key3.getId()));
+        then(keysRepository).should().postponeDeletion(eq(List.of(key1.getId())), eq(1), any());
+    }
+
+    @Test
+    void drainPostponesRepeatedlyFailingKeysWithGrowingDelay() {
+        // given
+        var key1 = createEntity(1, "Key1");
+        key1.setDeletionAttempts(2);
+        var key2 = createEntity(1, "Key2");
+        key2.setDeletionAttempts(5);
+        given(keysRepository.lockDueForDeletion(any(), eq(Limit.of(BATCH_SIZE)))).willReturn(List.of(key1, key2))
+                                                                                 .willReturn(List.of());
+        given(signserverClient.removeKeyOkIfNotExists(anyInt(), anyString()))
+                .willReturn(Result.error(TextError.of("Signserver is not available.")));
+        ZonedDateTime start = ZonedDateTime.now();
+
+        // when
+        deletionService.drain();
+
+        // then
+        ArgumentCaptor<ZonedDateTime> thirdAttempt = ArgumentCaptor.forClass(ZonedDateTime.class);
+        then(keysRepository).should().postponeDeletion(eq(List.of(key1.getId())), eq(3), thirdAttempt.capture());
+        assertEquals(Duration.ofMinutes(4), Duration.between(start, thirdAttempt.getValue()).withNanos(0));
+        ArgumentCaptor<ZonedDateTime> sixthAttempt = ArgumentCaptor.forClass(ZonedDateTime.class);
+        then(keysRepository).should().postponeDeletion(eq(List.of(key2.getId())), eq(6), sixthAttempt.capture());
+        assertEquals(Duration.ofMinutes(5), Duration.between(start, sixthAttempt.getValue()).withNanos(0));
+    }
+
+    @Test
+    void drainDoesNothingWhenQueueIsEmpty() {
+        // given
+        given(keysRepository.lockDueForDeletion(any(), eq(Limit.of(BATCH_SIZE)))).willReturn(List.of());
+
+        // when
+        deletionService.drain();
+
+        // then
+        then(signserverClient).shouldHaveNoInteractions();
+        then(keysRepository).should(never()).leaseDeletion(any(), any());
+        then(keysRepository).should(never()).deleteAllByIdIn(any());
+    }
+
+    private OneTimeKeyEntity createEntity(int cryptoTokenId, String keyAlias) {
+        var entity = new OneTimeKeyEntity(UUID.randomUUID(), cryptoTokenId, keyAlias, "RSA", true,
+                                          ZonedDateTime.now()
+        );
+        entity.setDeleting(true);
+        return entity;
+    }
+
+    private double pendingDeletions() {
+        return meterRegistry.get(OneTimeKeyAsyncDeletionService.PENDING_METRIC_NAME).gauge().value();
+    }
+
+    private double deletions(String outcome) {
+        return meterRegistry.get(OneTimeKeyAsyncDeletionService.DELETIONS_METRIC_NAME)
+                            .tag("outcome", outcome)
+                            .counter()
+                            .count();
+    }
+}
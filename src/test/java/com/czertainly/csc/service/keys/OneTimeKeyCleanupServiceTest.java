@@ -0,0 +1,119 @@
+package com.czertainly.csc.service.keys;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.configuration.csc.OneTimeKeysCleanupSettings;
+import com.czertainly.csc.repository.OneTimeKeyRepository;
+import com.czertainly.csc.repository.entities.OneTimeKeyEntity;
+import com.czertainly.csc.utils.configuration.CscConfigurationBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+@ExtendWith(MockitoExtension.class)
+class OneTimeKeyCleanupServiceTest {
+
+    private static final int PAGE_SIZE = 2;
+
+    @Mock
+    OneTimeKeyRepository keysRepository;
+
+    @Mock
+    OneTimeKeyAsyncDeletionService deletionService;
+
+    @Test
+    void cleanUsedUpKeysQueuesKeysPageByPage() {
+        // given
+        var cleanupService = createCleanupService(Duration.ofMinutes(10));
+        var key1 = createEntity(30);
+        var key2 = createEntity(20);
+        var key3 = createEntity(10);
+        given(keysRepository.findUsedKeysAcquiredBefore(any(), eq(Limit.of(PAGE_SIZE))))
+                .willReturn(List.of(key1, key2));
+        given(keysRepository.findUsedKeysAcquiredBeforeAfter(any(), eq(key2.getAcquiredAt()), eq(key2.getId()),
+                                                             eq(Limit.of(PAGE_SIZE))
+        )).willReturn(List.of(key3));
+        given(deletionService.queueForDeletion(any())).willReturn(Result.success(PAGE_SIZE), Result.success(1));
+
+        // when
+        cleanupService.cleanUsedUpKeys();
+
+        // then
+        then(deletionService).should().queueForDeletion(List.of(key1, key2));
+        then(deletionService).should().queueForDeletion(List.of(key3));
+    }
+
+    @Test
+    void cleanUsedUpKeysResumesFromCheckpointWhenTimeBudgetIsExhausted() {
+        // given
+        var cleanupService = createCleanupService(Duration.ZERO);
+        var key1 = createEntity(30);
+        var key2 = createEntity(20);
+        var key3 = createEntity(10);
+        given(keysRepository.findUsedKeysAcquiredBefore(any(), eq(Limit.of(PAGE_SIZE))))
+                .willReturn(List.of(key1, key2));
+        given(keysRepository.findUsedKeysAcquiredBeforeAfter(any(), eq(key2.getAcquiredAt()), eq(key2.getId()),
+                                                             eq(Limit.of(PAGE_SIZE))
+        )).willReturn(List.of(key3));
+        given(deletionService.queueForDeletion(any())).willReturn(Result.success(PAGE_SIZE), Result.success(1));
+
+        // when
+        cleanupService.cleanUsedUpKeys();
+
+        // then
+        then(deletionService).should().queueForDeletion(List.of(key1, key2));
+        then(deletionService).should(never()).queueForDeletion(List.of(key3));
+
+        // when
+        cleanupService.cleanUsedUpKeys();
+
+        // then
+        then(deletionService).should().queueForDeletion(List.of(key3));
+        then(keysRepository).should().findUsedKeysAcquiredBefore(any(), any());
+    }
+
+    @Test
+    void cleanUsedUpKeysStartsOverAfterReachingTheEnd() {
+        // given
+        var cleanupService = createCleanupService(Duration.ofMinutes(10));
+        given(keysRepository.findUsedKeysAcquiredBefore(any(), eq(Limit.of(PAGE_SIZE))))
+                .willReturn(List.of(createEntity(10)));
+        given(deletionService.queueForDeletion(any())).willReturn(Result.success(0));
+
+        // when
+        cleanupService.cleanUsedUpKeys();
+        cleanupService.cleanUsedUpKeys();
+
+        // then
+        then(keysRepository).should(times(2)).findUsedKeysAcquiredBefore(any(), any());
+        then(keysRepository).should(never()).findUsedKeysAcquiredBeforeAfter(any(), any(), any(), any());
+    }
+
+    private OneTimeKeyCleanupService createCleanupService(Duration timeBudget) {
+        var cscConfiguration = new CscConfigurationBuilder()
+                .withOneTimeKeysCleanupSettings(new OneTimeKeysCleanupSettings(
+                        Duration.ofHours(1), "0 0 * * * *", PAGE_SIZE, null, null, timeBudget, null, null,
+                        null))
+                .build();
+        return new OneTimeKeyCleanupService(keysRepository, deletionService, cscConfiguration);
+    }
+
+    private OneTimeKeyEntity createEntity(int usedMinutesAgo) {
+        return new OneTimeKeyEntity(UUID.randomUUID(), 1, "Key" + usedMinutesAgo, "RSA", true,
+                                    ZonedDateTime.now().minusHours(1).minusMinutes(usedMinutesAgo)
+        );
+    }
+}
@@ -0,0 +1,152 @@
+package com.czertainly.csc.signing;
+
+import com.czertainly.csc.api.OperationMode;
+import com.czertainly.csc.api.auth.SignatureActivationData;
+import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.model.SignHashParameters;
+import com.czertainly.csc.model.csc.CredentialMetadata;
+import com.czertainly.csc.service.credentials.CredentialsService;
+import com.czertainly.csc.signing.configuration.DocumentType;
+import com.czertainly.csc.signing.configuration.SignaturePackaging;
+import com.czertainly.csc.signing.configuration.WorkerCapabilities;
+import com.czertainly.csc.signing.configuration.WorkerRepository;
+import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
+import com.czertainly.csc.signing.configuration.process.SignatureStageMetrics;
+import com.czertainly.csc.signing.configuration.profiles.CredentialProfileRepository;
+import com.czertainly.csc.signing.filter.Criterion;
+import com.czertainly.csc.utils.configuration.WorkerCapabilitiesBuilder;
+import com.czertainly.csc.utils.signing.CredentialMetadataBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RawHashSigningTest {
+
+    @Mock
+    WorkerRepository workerRepository;
+
+    @Mock
+    SignserverClient signserverClient;
+
+    @Mock
+    CredentialsService credentialsService;
+
+    RawHashSigning rawHashSigning;
+
+    UUID credentialId = UUID.randomUUID();
+    List<String> hashes = List.of("hash1", "hash2", "hash3");
+    WorkerWithCapabilities worker = WorkerCapabilitiesBuilder.any();
+    CredentialMetadata credential = CredentialMetadataBuilder.create()
+                                                             .withId(credentialId)
+                                                             .withKeyAlias("key-alias")
+                                                             .withSignatureQualifier("eu_eidas_qes")
+                                                             .withMultisign(10)
+                                                             .build();
+
+    @BeforeEach
+    void setUp() {
+        rawHashSigning = new RawHashSigning(workerRepository, signserverClient, credentialsService,
+                                            new SignatureStageMetrics(new SimpleMeterRegistry(),
+                                                                      mock(CredentialProfileRepository.class)
+                                            ), null
+        );
+    }
+
+    @Test
+    void signSignsAllHashesWithSingleBatchRequest() {
+        // given
+        when(credentialsService.getCredentialMetadata(credentialId, "user")).thenReturn(Result.success(credential));
+        when(workerRepository.selectWorker(any())).thenReturn(worker);
+        when(signserverClient.signMultipleHashes(worker.worker().workerName(), hashes, "key-alias", "SHA256"))
+                .thenReturn(Result.success(List.of(signature("sig1"), signature("sig2"), signature("sig3"))));
+
+        // when
+        var result = rawHashSigning.sign(parameters(hashes, 3));
+
+        // then
+        var signedHashes = assertSuccessAndGet(result);
+        assertEquals(3, signedHashes.signatures().size());
+        assertArrayEquals("sig1".getBytes(), signedHashes.signatures().getFirst().value());
+        verify(signserverClient, times(1)).signMultipleHashes(any(), any(), any(), any());
+    }
+
+    @Test
+    void signSelectsRawSigningWorkerWithQualifierOfCredential() {
+        // given
+        when(credentialsService.getCredentialMetadata(credentialId, "user")).thenReturn(Result.success(credential));
+        when(workerRepository.selectWorker(any())).thenReturn(null);
+
+        // when
+        rawHashSigning.sign(parameters(hashes, 3));
+
+        // then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Criterion<WorkerCapabilities>> captor = ArgumentCaptor.forClass(Criterion.class);
+        verify(workerRepository).selectWorker(captor.capture());
+        var rawWorker = WorkerCapabilitiesBuilder.create()
+                                                 .withSignatureQualifiers(List.of("eu_eidas_qes"))
+                                                 .withSupportedSignatureAlgorithms(List.of("SHA256WithRSA"))
+                                                 .withReturnsValidationInfo(false)
+                                                 .withDocumentTypes(List.of(DocumentType.RAW));
+        assertTrue(captor.getValue().matches(rawWorker.build()));
+        assertFalse(captor.getValue().matches(rawWorker.withDocumentTypes(List.of(DocumentType.HASH)).build()));
+    }
+
+    @Test
+    void signReturnsErrorWhenHashesAreNotAuthorizedBySad() {
+        // given
+        when(credentialsService.getCredentialMetadata(credentialId, "user")).thenReturn(Result.success(credential));
+
+        // when
+        var result = rawHashSigning.sign(parameters(hashes, 2));
+
+        // then
+        assertErrorContains(result, "not authorized");
+        verifyNoInteractions(signserverClient);
+    }
+
+    @Test
+    void signReturnsErrorWhenCredentialCannotBeLoaded() {
+        // given
+        when(credentialsService.getCredentialMetadata(credentialId, "user"))
+                .thenReturn(Result.error(TextError.of("Credential not found")));
+
+        // when
+        var result = rawHashSigning.sign(parameters(hashes, 3));
+
+        // then
+        assertErrorContains(result, "Credential not found");
+        verifyNoInteractions(workerRepository, signserverClient);
+    }
+
+    private SignHashParameters parameters(List<String> hashes, int numSignatures) {
+        var sad = new SignatureActivationData("user", credentialId.toString(), null, numSignatures,
+                                              Set.copyOf(hashes), null, null, Map.of()
+        );
+        return new SignHashParameters("user", credentialId, hashes, "RSA", "SHA256", sad,
+                                      OperationMode.SYNCHRONOUS, ""
+        );
+    }
+
+    private static Signature signature(String value) {
+        return Signature.of(value.getBytes(), SignaturePackaging.DETACHED);
+    }
+}
@@ -0,0 +1,137 @@
+package com.czertainly.csc.signing;
+
+import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.model.UserInfo;
+import com.czertainly.csc.utils.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UserInfoCacheTest {
+
+    MutableClock clock = MutableClock.now();
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    UserInfoCache cache = new UserInfoCache(Duration.ofMinutes(5), 2, meterRegistry, clock);
+    AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void userInfoIsLoadedOncePerToken() {
+        // given
+        cache.get("token1", null, loader("user1"));
+
+        // when
+        var userInfo = assertSuccessAndGet(cache.get("token1", null, loader("user2")));
+
+        // then
+        assertEquals("user1", userInfo.getAttributes().get("sub"));
+        assertEquals(1, loads.get());
+        assertEquals(1.0, lookups("hit"));
+        assertEquals(1.0, lookups("miss"));
+    }
+
+    @Test
+    void userInfoDoesNotOutliveToken() {
+        // given
+        cache.get("token1", clock.instant().plus(Duration.ofMinutes(1)), loader("user1"));
+
+        // when
+        clock.advance(Duration.ofMinutes(1));
+        cache.get("token1", clock.instant(), loader("user1"));
+
+        // then
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void userInfoExpiresAfterMaxTtl() {
+        // given
+        cache.get("token1", clock.instant().plus(Duration.ofHours(1)), loader("user1"));
+
+        // when
+        clock.advance(Duration.ofMinutes(5));
+        cache.get("token1", clock.instant().plus(Duration.ofHours(1)), loader("user1"));
+
+        // then
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void errorsAreNotCached() {
+        // given
+        var error = cache.get("token1", null, () -> Result.error(TextError.of("IDP is not available.")));
+
+        // when
+        var userInfo = cache.get("token1", null, loader("user1"));
+
+        // then
+        assertErrorContains(error, "IDP is not available.");
+        assertSuccessAndGet(userInfo);
+    }
+
+    @Test
+    void concurrentLookupsOfSameTokenShareSingleLoad() throws Exception {
+        // given
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        Supplier<Result<UserInfo, TextError>> slowLoader = () -> {
+            loadStarted.countDown();
+            try {
+                releaseLoad.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return loader("user1").get();
+        };
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // when
+            var first = CompletableFuture.supplyAsync(() -> cache.get("token1", null, slowLoader), executor);
+            loadStarted.await(2, TimeUnit.SECONDS);
+            var second = CompletableFuture.supplyAsync(() -> cache.get("token1", null, loader("user2")), executor);
+            releaseLoad.countDown();
+
+            // then
+            assertEquals("user1", assertSuccessAndGet(first.get()).getAttributes().get("sub"));
+            assertEquals("user1", assertSuccessAndGet(second.get()).getAttributes().get("sub"));
+            assertEquals(1, loads.get());
+        }
+    }
+
+    @Test
+    void cacheIsBoundedByMaxSize() {
+        // given
+        cache.get("token1", null, loader("user1"));
+        cache.get("token2", null, loader("user2"));
+
+        // when
+        cache.get("token3", null, loader("user3"));
+
+        // then
+        assertEquals(2.0, meterRegistry.get(UserInfoCache.SIZE_METRIC_NAME).gauge().value());
+    }
+
+    private Supplier<Result<UserInfo, TextError>> loader(String subject) {
+        return () -> {
+            loads.incrementAndGet();
+            return Result.success(new UserInfo(Map.of("sub", subject)));
+        };
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get(UserInfoCache.METRIC_NAME).tag("result", result).counter().count();
+    }
+}
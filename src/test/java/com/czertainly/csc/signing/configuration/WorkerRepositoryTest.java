@@ -1,14 +1,18 @@
 package com.czertainly.csc.signing.configuration;
 
+import com.czertainly.csc.common.resilience.CircuitBreakerRegistry;
 import com.czertainly.csc.configuration.keypools.KeyPoolProfile;
 import com.czertainly.csc.configuration.keypools.KeyUsageDesignation;
 import com.czertainly.csc.model.signserver.CryptoToken;
+import com.czertainly.csc.signing.configuration.selection.RoundRobinSelectionStrategy;
+import com.czertainly.csc.signing.configuration.selection.WorkerLoadTracker;
 import com.czertainly.csc.signing.filter.ConformanceLevelCriterion;
 import com.czertainly.csc.signing.filter.Worker;
 import com.czertainly.csc.utils.configuration.KeyPoolProfileBuilder;
 import com.czertainly.csc.utils.configuration.WorkerCapabilitiesBuilder;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.List;
 
 import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
@@ -115,6 +119,129 @@ class WorkerRepositoryTest {
         assertNull(w);
     }
 
+    @Test
+    void selectWorkerUsesSelectionStrategyAmongMatchingWorkers() {
+        // given
+        var repository = new WorkerRepository(workersWithCapabilities, new RoundRobinSelectionStrategy(),
+                                              new WorkerLoadTracker(1, Duration.ofMinutes(1))
+        );
+        ConformanceLevelCriterion criterion = new ConformanceLevelCriterion(ConformanceLevel.AdES_B_B);
+
+        // when
+        var first = repository.selectWorker(criterion);
+        var second = repository.selectWorker(criterion);
+        var third = repository.selectWorker(criterion);
+
+        // then
+        assertEquals("worker1", first.worker().workerName());
+        assertEquals("worker2", second.worker().workerName());
+        assertEquals("worker4", third.worker().workerName());
+    }
+
+    @Test
+    void selectWorkerSkipsEjectedWorker() {
+        // given
+        var loadTracker = new WorkerLoadTracker(1, Duration.ofMinutes(1));
+        var repository = new WorkerRepository(workersWithCapabilities, new RoundRobinSelectionStrategy(),
+                                              loadTracker
+        );
+        ConformanceLevelCriterion criterion = new ConformanceLevelCriterion(ConformanceLevel.AdES_B_B);
+        repository.requestStarted(wcap2);
+        repository.requestFinished(wcap2, Duration.ofMillis(10), false);
+
+        // when
+        var first = repository.selectWorker(criterion);
+        var second = repository.selectWorker(criterion);
+
+        // then
+        assertEquals("worker1", first.worker().workerName());
+        assertEquals("worker4", second.worker().workerName());
+    }
+
+    @Test
+    void selectWorkerSkipsWorkerWithOpenCircuitBreaker() {
+        // given
+        var circuitBreakers = new CircuitBreakerRegistry(1, Duration.ofMinutes(1), 1);
+        var repository = new WorkerRepository(workersWithCapabilities, new RoundRobinSelectionStrategy(),
+                                              new WorkerLoadTracker(3, Duration.ofMinutes(1)), circuitBreakers
+        );
+        ConformanceLevelCriterion criterion = new ConformanceLevelCriterion(ConformanceLevel.AdES_B_B);
+        circuitBreakers.get("worker1", "process").onFailure();
+
+        // when
+        var first = repository.selectWorker(criterion);
+        var second = repository.selectWorker(criterion);
+
+        // then
+        assertEquals("worker2", first.worker().workerName());
+        assertEquals("worker4", second.worker().workerName());
+    }
+
+    @Test
+    void selectWorkerFallsBackToEjectedWorkersWhenNoOtherMatches() {
+        // given
+        var repository = new WorkerRepository(workersWithCapabilities, new RoundRobinSelectionStrategy(),
+                                              new WorkerLoadTracker(1, Duration.ofMinutes(1))
+        );
+        ConformanceLevelCriterion criterion = new ConformanceLevelCriterion(ConformanceLevel.AdES_B_LT);
+        repository.requestStarted(wcap3);
+        repository.requestFinished(wcap3, Duration.ofMillis(10), false);
+
+        // when
+        var w = repository.selectWorker(criterion);
+
+        // then
+        assertEquals("worker3", w.worker().workerName());
+    }
+
+    @Test
+    void selectWorkerByCapabilitiesKeyMatchesSameWorkersAsCriterionEvaluation() {
+        // given
+        List<CapabilitiesKey> keys = List.of(
+                keyOf(wcap1.capabilities(), "sha256withrsa"),
+                keyOf(wcap1.capabilities(), "SHA384withRSA"),
+                keyOf(wcap4.capabilities(), "SHA512withECDSA"),
+                keyOf(wcap2.capabilities(), null),
+                keyOf(wcap3.capabilities(), "unsupported")
+        );
+
+        for (CapabilitiesKey key : keys) {
+            // when
+            var w = workerRepository.selectWorker(key);
+
+            // then
+            var expected = workersWithCapabilities.stream()
+                                                  .filter(worker -> key.matches(worker.capabilities()))
+                                                  .findFirst()
+                                                  .orElse(null);
+            assertEquals(expected, w, "Different worker selected for " + key);
+        }
+    }
+
+    @Test
+    void selectWorkerByCapabilitiesKeyReturnsNullOnNoMatchingWorker() {
+        // given
+        var capabilities = wcap1.capabilities();
+        var key = CapabilitiesKey.of(null, capabilities.signatureFormat(), ConformanceLevel.AdES_B_LTA,
+                                     capabilities.signaturePackaging(), null, capabilities.returnsValidationInfo(),
+                                     null
+        );
+
+        // when
+        var w = workerRepository.selectWorker(key);
+
+        // then
+        assertNull(w);
+    }
+
+    private static CapabilitiesKey keyOf(WorkerCapabilities capabilities, String signatureAlgorithm) {
+        return CapabilitiesKey.of(
+                capabilities.signatureQualifiers().getFirst(), capabilities.signatureFormat(),
+                capabilities.conformanceLevel(), capabilities.signaturePackaging(), signatureAlgorithm,
+                capabilities.returnsValidationInfo(), capabilities.documentTypes().getFirst()
+        );
+    }
+
     @Test
     void getWorkerReturnsWorkerWithGivenId() {
         // given
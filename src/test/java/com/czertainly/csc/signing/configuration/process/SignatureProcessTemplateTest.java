@@ -2,23 +2,29 @@ package com.czertainly.csc.signing.configuration.process;
 
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.common.result.TextError;
+import com.czertainly.csc.common.result.TextErrorWithRetryIndication;
 import com.czertainly.csc.crypto.SignatureAlgorithm;
 import com.czertainly.csc.model.SignedDocuments;
 import com.czertainly.csc.signing.configuration.*;
 import com.czertainly.csc.signing.configuration.process.signers.DocumentSigner;
 import com.czertainly.csc.signing.configuration.process.token.TokenProvider;
+import com.czertainly.csc.signing.configuration.profiles.CredentialProfileRepository;
 import com.czertainly.csc.signing.filter.Criterion;
 import com.czertainly.csc.signing.signatureauthorizers.SignatureAuthorizer;
 import com.czertainly.csc.utils.configuration.WorkerCapabilitiesBuilder;
 import com.czertainly.csc.utils.signing.process.TestSignatureProcessConfiguration;
 import com.czertainly.csc.utils.signing.process.TestSigningToken;
 import com.czertainly.csc.utils.signing.process.TestTokenConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.List;
@@ -27,6 +33,7 @@ import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorCo
 import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -45,6 +52,15 @@ class SignatureProcessTemplateTest {
     @Mock
     DocumentSigner<TestSignatureProcessConfiguration> documentSigner;
 
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    CredentialProfileRepository credentialProfileRepository = Mockito.mock(CredentialProfileRepository.class);
+
+    @Spy
+    SignatureStageMetrics signatureStageMetrics = new SignatureStageMetrics(meterRegistry,
+                                                                            credentialProfileRepository
+    );
+
     @InjectMocks
     SignatureProcessTemplate<TestTokenConfiguration, TestSignatureProcessConfiguration, TestSigningToken> testSignatureProcessTemplate;
 
@@ -209,6 +225,46 @@ class SignatureProcessTemplateTest {
         assertErrorContains(result, "Error occurred during signing");
     }
 
+    @Test
+    void signReportsRetryableSigningErrorAsWorkerFailure() {
+        // setup
+        var worker = WorkerCapabilitiesBuilder.any();
+        when(signatureAuthorizer.authorize(any(), any())).thenReturn(Result.success(true));
+        when(workerRepository.selectWorker(any())).thenReturn(worker);
+        when(testTokenProvider.getSigningToken(any(), any(), any())).thenReturn(Result.success(TestSigningToken.any()));
+
+        // given
+        when(documentSigner.sign(any(), any(), any(), any())).thenReturn(
+                Result.error(TextErrorWithRetryIndication.doRetry("Processing failed").extend("Signing failed")));
+
+        // when
+        testSignatureProcessTemplate.sign(processConfiguration, testTokenConfiguration, dataToSign);
+
+        // then
+        verify(workerRepository).requestStarted(worker);
+        verify(workerRepository).requestFinished(eq(worker), any(), eq(false));
+    }
+
+    @Test
+    void signDoesNotReportErrorCausedByRequestAsWorkerFailure() {
+        // setup
+        var worker = WorkerCapabilitiesBuilder.any();
+        when(signatureAuthorizer.authorize(any(), any())).thenReturn(Result.success(true));
+        when(workerRepository.selectWorker(any())).thenReturn(worker);
+        when(testTokenProvider.getSigningToken(any(), any(), any())).thenReturn(Result.success(TestSigningToken.any()));
+
+        // given
+        when(documentSigner.sign(any(), any(), any(), any())).thenReturn(
+                Result.error(TextErrorWithRetryIndication.doNotRetry("Processing failed")));
+
+        // when
+        testSignatureProcessTemplate.sign(processConfiguration, testTokenConfiguration, dataToSign);
+
+        // then
+        verify(workerRepository).requestStarted(worker);
+        verify(workerRepository).requestFinished(eq(worker), any(), eq(true));
+    }
+
     @Test
     void signReturnsSuccessIfSigningSucceeds() {
         // setup
@@ -235,6 +291,65 @@ class SignatureProcessTemplateTest {
         assertEquals(docs, signedDocs);
     }
 
+    @Test
+    void signRecordsDurationOfEachStageTaggedWithWorker() {
+        // setup
+        var worker = WorkerCapabilitiesBuilder.any();
+        when(signatureAuthorizer.authorize(any(), any())).thenReturn(Result.success(true));
+        when(workerRepository.selectWorker(any())).thenReturn(worker);
+        when(testTokenProvider.getSigningToken(any(), any(), any())).thenReturn(Result.success(TestSigningToken.any()));
+        when(testTokenProvider.cleanup(any())).thenReturn(Result.emptySuccess());
+
+        // given
+        when(documentSigner.sign(any(), any(), any(), any())).thenReturn(Result.error(TextError.of("Some error")));
+
+        // when
+        testSignatureProcessTemplate.sign(processConfiguration, testTokenConfiguration, dataToSign);
+
+        // then
+        String workerName = worker.worker().workerName();
+        assertStageRecorded("authorization", SignatureStageMetrics.NONE, "success");
+        assertStageRecorded("worker_selection", SignatureStageMetrics.NONE, "success");
+        assertStageRecorded("signing_token", workerName, "success");
+        assertStageRecorded("signing", workerName, "error");
+        assertStageRecorded("cleanup", workerName, "success");
+    }
+
+    @Test
+    void signTagsStagesWithQualifierOfConfiguredProfileOnly() {
+        // given
+        var configuredQualifier = TestSignatureProcessConfiguration.builder()
+                                                                   .withSignatureQualifier("eu_eidas_qes")
+                                                                   .build();
+        var unknownQualifier = TestSignatureProcessConfiguration.builder()
+                                                                .withSignatureQualifier("random-qualifier")
+                                                                .build();
+        when(credentialProfileRepository.hasSignatureQualifierProfile("eu_eidas_qes")).thenReturn(true);
+        when(signatureAuthorizer.authorize(any(), any())).thenReturn(Result.success(false));
+
+        // when
+        testSignatureProcessTemplate.sign(configuredQualifier, testTokenConfiguration, dataToSign);
+        testSignatureProcessTemplate.sign(unknownQualifier, testTokenConfiguration, dataToSign);
+
+        // then
+        var qualifiers = meterRegistry.find(SignatureStageMetrics.METRIC_NAME).timers().stream()
+                                      .map(timer -> timer.getId().getTag("qualifier"))
+                                      .distinct()
+                                      .sorted()
+                                      .toList();
+        assertEquals(List.of("eu_eidas_qes", SignatureStageMetrics.OTHER), qualifiers);
+    }
+
+    private void assertStageRecorded(String stage, String worker, String outcome) {
+        Timer timer = meterRegistry.find(SignatureStageMetrics.METRIC_NAME)
+                                   .tag("stage", stage)
+                                   .tag("worker", worker)
+                                   .tag("outcome", outcome)
+                                   .timer();
+        assertNotNull(timer, "Stage '" + stage + "' was not recorded.");
+        assertEquals(1, timer.count());
+    }
+
     WorkerCapabilitiesBuilder fromProcessConfiguration(TestSignatureProcessConfiguration configuration) {
         return WorkerCapabilitiesBuilder.create()
                                         .withSignatureQualifiers(List.of(configuration.signatureQualifier()))
@@ -2,6 +2,7 @@ package com.czertainly.csc.signing.configuration.process.signers;
 
 import com.czertainly.csc.clients.signserver.SignserverClient;
 import com.czertainly.csc.common.result.Result;
+import com.czertainly.csc.common.result.TextError;
 import com.czertainly.csc.model.SignedDocuments;
 import com.czertainly.csc.signing.Signature;
 import com.czertainly.csc.signing.configuration.SignaturePackaging;
@@ -13,19 +14,28 @@ import com.czertainly.csc.utils.configuration.WorkerCapabilitiesBuilder;
 import com.czertainly.csc.utils.signing.DocumentContentSignatureProcessConfigurationBuilder;
 import com.czertainly.csc.utils.signing.DocumentHashSignatureProcessConfigurationBuilder;
 import com.czertainly.csc.utils.signing.process.TestSigningToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Base64;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorContains;
 import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccess;
+import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccessAndGet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -35,9 +45,20 @@ class DocumentContentSignerTest {
     @Mock
     SignserverClient signserverClient;
 
-    @InjectMocks
+    ExecutorService signingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
     DocumentContentSigner<DocumentContentSignatureProcessConfiguration> documentContentSigner;
 
+    @BeforeEach
+    void setUp() {
+        documentContentSigner = new DocumentContentSigner<>(signserverClient, signingExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        signingExecutor.close();
+    }
+
     private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
     private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder();
 
@@ -63,7 +84,7 @@ class DocumentContentSignerTest {
         assertSuccess(result);
         verify(signserverClient).signSingleContent(
                 eq(worker.worker().workerName()),
-                eq(BASE64_DECODER.decode(dataB64)),
+                eq(dataB64),
                 eq(signingToken.getKeyAlias()),
                 eq(configuration.signaturePackaging())
         );
@@ -92,16 +113,63 @@ class DocumentContentSignerTest {
         assertSuccess(result);
         verify(signserverClient).signSingleContentWithValidationData(
                 eq(worker.worker().workerName()),
-                eq(BASE64_DECODER.decode(dataB64)),
+                eq(dataB64),
                 eq(signingToken.getKeyAlias()),
                 eq(configuration.signaturePackaging())
         );
     }
 
     @Test
-    void returnsErrorWhenMultipleContentsToSign() {
+    void signCanSignMultipleContentsInRequestOrder() {
+        when(signserverClient.signSingleContent(any(), any(), any(), any()))
+                .thenAnswer(invocation -> Result.success(
+                        Signature.of(BASE64_DECODER.decode(invocation.getArgument(1, String.class)),
+                                     SignaturePackaging.ENVELOPED)));
+
         // given
-        List<String> data = List.of("data1", "data2");
+        List<String> data = List.of(
+                BASE64_ENCODER.encodeToString("data1".getBytes()),
+                BASE64_ENCODER.encodeToString("data2".getBytes()),
+                BASE64_ENCODER.encodeToString("data3".getBytes())
+        );
+        DocumentContentSignatureProcessConfiguration configuration = DocumentContentSignatureProcessConfigurationBuilder
+                .instance()
+                .withReturnValidationInfo(false)
+                .build();
+        WorkerWithCapabilities worker = WorkerCapabilitiesBuilder.any();
+        SigningToken signingToken = TestSigningToken.of("a-key-alias", true);
+
+        // when
+        var result = documentContentSigner.sign(data, configuration, signingToken, worker);
+
+        // then
+        SignedDocuments signedDocuments = assertSuccessAndGet(result);
+        assertEquals(3, signedDocuments.signatures().size());
+        assertArrayEquals("data1".getBytes(), signedDocuments.signatures().get(0).value());
+        assertArrayEquals("data2".getBytes(), signedDocuments.signatures().get(1).value());
+        assertArrayEquals("data3".getBytes(), signedDocuments.signatures().get(2).value());
+        verify(signserverClient, times(3)).signSingleContent(
+                eq(worker.worker().workerName()), any(), eq(signingToken.getKeyAlias()), any()
+        );
+    }
+
+    @Test
+    void signMergesValidationDataOfMultipleContents() {
+        when(signserverClient.signSingleContentWithValidationData(any(), any(), any(), any()))
+                .thenReturn(Result.success(new SignedDocuments(
+                        List.of(Signature.of("signature".getBytes(), SignaturePackaging.ENVELOPED)),
+                        Set.of("crl1"), Set.of("ocsp1"), Set.of("cert1")
+                )))
+                .thenReturn(Result.success(new SignedDocuments(
+                        List.of(Signature.of("signature".getBytes(), SignaturePackaging.ENVELOPED)),
+                        Set.of("crl2"), Set.of("ocsp1"), Set.of("cert1")
+                )));
+
+        // given
+        List<String> data = List.of(
+                BASE64_ENCODER.encodeToString("data1".getBytes()),
+                BASE64_ENCODER.encodeToString("data2".getBytes())
+        );
         DocumentContentSignatureProcessConfiguration configuration = DocumentContentSignatureProcessConfigurationBuilder
                 .instance()
                 .withReturnValidationInfo(true)
@@ -113,6 +181,64 @@ class DocumentContentSignerTest {
         var result = documentContentSigner.sign(data, configuration, signingToken, worker);
 
         // then
-        assertErrorContains(result, "Document content signing does not support multiple documents.");
+        SignedDocuments signedDocuments = assertSuccessAndGet(result);
+        assertEquals(2, signedDocuments.signatures().size());
+        assertEquals(Set.of("crl1", "crl2"), signedDocuments.crls());
+        assertEquals(Set.of("ocsp1"), signedDocuments.ocsps());
+        assertEquals(Set.of("cert1"), signedDocuments.certs());
+    }
+
+    @Test
+    void returnsErrorWhenOneOfMultipleContentsFails() {
+        when(signserverClient.signSingleContent(any(), any(), any(), any()))
+                .thenReturn(Result.success(Signature.of("signature".getBytes(), SignaturePackaging.ENVELOPED)))
+                .thenReturn(Result.error(TextError.of("Signserver failure")));
+
+        // given
+        List<String> data = List.of(
+                BASE64_ENCODER.encodeToString("data1".getBytes()),
+                BASE64_ENCODER.encodeToString("data2".getBytes())
+        );
+        DocumentContentSignatureProcessConfiguration configuration = DocumentContentSignatureProcessConfigurationBuilder
+                .instance()
+                .withReturnValidationInfo(false)
+                .build();
+        WorkerWithCapabilities worker = WorkerCapabilitiesBuilder.any();
+        SigningToken signingToken = TestSigningToken.of("a-key-alias", true);
+
+        // when
+        var result = documentContentSigner.sign(data, configuration, signingToken, worker);
+
+        // then
+        assertErrorContains(result, "Signserver failure");
+    }
+
+    @Test
+    void signDoesNotExceedParallelSignaturesOfConfiguration() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(signserverClient.signSingleContent(any(), any(), any(), any())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+            return Result.success(Signature.of("signature".getBytes(), SignaturePackaging.ENVELOPED));
+        });
+
+        // given
+        List<String> data = List.of("ZGF0YTE=", "ZGF0YTI=", "ZGF0YTM=", "ZGF0YTQ=", "ZGF0YTU=");
+        DocumentContentSignatureProcessConfiguration configuration = DocumentContentSignatureProcessConfigurationBuilder
+                .instance()
+                .withReturnValidationInfo(false)
+                .withMaxParallelSignatures(1)
+                .build();
+        WorkerWithCapabilities worker = WorkerCapabilitiesBuilder.any();
+        SigningToken signingToken = TestSigningToken.of("a-key-alias", true);
+
+        // when
+        var result = documentContentSigner.sign(data, configuration, signingToken, worker);
+
+        // then
+        assertSuccess(result);
+        assertEquals(1, maxInFlight.get());
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package com.czertainly.csc.signing.configuration.process.signers;
 
 import com.czertainly.csc.clients.signserver.SignserverClient;
+import com.czertainly.csc.clients.signserver.SingleHashSignatureCoalescer;
 import com.czertainly.csc.common.result.Result;
 import com.czertainly.csc.model.SignedDocuments;
 import com.czertainly.csc.signing.Signature;
@@ -23,6 +24,7 @@ import static com.czertainly.csc.utils.assertions.ResultAssertions.assertErrorCo
 import static com.czertainly.csc.utils.assertions.ResultAssertions.assertSuccess;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -32,6 +34,9 @@ class DocumentHashSignerTest {
     @Mock
     SignserverClient signserverClient;
 
+    @Mock
+    SingleHashSignatureCoalescer coalescer;
+
     @InjectMocks
     DocumentHashSigner<DocumentHashSignatureProcessConfiguration> documentHashSigner;
 
@@ -62,6 +67,34 @@ class DocumentHashSignerTest {
         );
     }
 
+    @Test
+    void signSignsSingleHashThroughCoalescerWhenEnabled() {
+        when(coalescer.isEnabled()).thenReturn(true);
+        when(coalescer.signSingleHash(any(), any(), any(), any()))
+                .thenReturn(Result.success(Signature.of("signature".getBytes(), SignaturePackaging.DETACHED)));
+
+        // given
+        var coalescingSigner = new DocumentHashSigner<DocumentHashSignatureProcessConfiguration>(
+                signserverClient, coalescer);
+        List<String> data = List.of("data");
+        DocumentHashSignatureProcessConfiguration configuration = DocumentHashSignatureProcessConfigurationBuilder
+                .instance()
+                .withReturnValidationInfo(false)
+                .build();
+        WorkerWithCapabilities worker = WorkerCapabilitiesBuilder.any();
+        SigningToken signingToken = TestSigningToken.of("a-key-alias", true);
+
+        // when
+        var result = coalescingSigner.sign(data, configuration, signingToken, worker);
+
+        // then
+        assertSuccess(result);
+        verify(coalescer).signSingleHash(worker.worker().workerName(), "data", signingToken.getKeyAlias(),
+                                         configuration.digestAlgorithm()
+        );
+        verify(signserverClient, never()).signSingleHash(any(), any(), any(), any());
+    }
+
     @Test
     void signCanSignSingleHashWithValidationInfo() {
         when(signserverClient.signSingleHashWithValidationData(any(), any(), any(), any()))
@@ -0,0 +1,82 @@
+package com.czertainly.csc.signing.configuration.selection;
+
+import com.czertainly.csc.model.signserver.CryptoToken;
+import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
+import com.czertainly.csc.signing.filter.Worker;
+import com.czertainly.csc.utils.configuration.WorkerCapabilitiesBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LeastOutstandingRequestsSelectionStrategyTest {
+
+    WorkerLoadTracker loadTracker = new WorkerLoadTracker(3, Duration.ofSeconds(30));
+    LeastOutstandingRequestsSelectionStrategy strategy = new LeastOutstandingRequestsSelectionStrategy(loadTracker);
+
+    WorkerWithCapabilities worker1 = worker("worker1", 1);
+    WorkerWithCapabilities worker2 = worker("worker2", 2);
+    List<WorkerWithCapabilities> candidates = List.of(worker1, worker2);
+
+    @Test
+    void selectsFirstWorkerWhenAllAreIdle() {
+        // when
+        var selected = strategy.select(candidates);
+
+        // then
+        assertEquals(worker1, selected);
+    }
+
+    @Test
+    void selectsWorkerWithFewerOutstandingRequests() {
+        // given
+        loadTracker.requestStarted("worker1");
+
+        // when
+        var selected = strategy.select(candidates);
+
+        // then
+        assertEquals(worker2, selected);
+    }
+
+    @Test
+    void selectsFasterWorkerWhenOutstandingRequestsAreEqual() {
+        // given
+        loadTracker.requestStarted("worker1");
+        loadTracker.requestFinished("worker1", Duration.ofMillis(300), true);
+        loadTracker.requestStarted("worker2");
+        loadTracker.requestFinished("worker2", Duration.ofMillis(50), true);
+
+        // when
+        var selected = strategy.select(candidates);
+
+        // then
+        assertEquals(worker2, selected);
+    }
+
+    @Test
+    void prefersIdleSlowerWorkerOverBusyFasterWorker() {
+        // given
+        loadTracker.requestStarted("worker1");
+        loadTracker.requestFinished("worker1", Duration.ofMillis(100), true);
+        loadTracker.requestStarted("worker2");
+        loadTracker.requestFinished("worker2", Duration.ofMillis(60), true);
+        loadTracker.requestStarted("worker2");
+        loadTracker.requestStarted("worker2");
+
+        // when
+        var selected = strategy.select(candidates);
+
+        // then
+        assertEquals(worker1, selected);
+    }
+
+    private static WorkerWithCapabilities worker(String name, int id) {
+        return new WorkerWithCapabilities(
+                new Worker(name, id, new CryptoToken("token" + id, id, List.of())),
+                WorkerCapabilitiesBuilder.create().build()
+        );
+    }
+}
@@ -0,0 +1,41 @@
+package com.czertainly.csc.signing.configuration.selection;
+
+import com.czertainly.csc.model.signserver.CryptoToken;
+import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
+import com.czertainly.csc.signing.filter.Worker;
+import com.czertainly.csc.utils.configuration.WorkerCapabilitiesBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RoundRobinSelectionStrategyTest {
+
+    WorkerWithCapabilities worker1 = worker("worker1", 1);
+    WorkerWithCapabilities worker2 = worker("worker2", 2);
+    WorkerWithCapabilities worker3 = worker("worker3", 3);
+    List<WorkerWithCapabilities> candidates = List.of(worker1, worker2, worker3);
+
+    @Test
+    void roundRobinUsesWorkersInTurns() {
+        // given
+        var strategy = new RoundRobinSelectionStrategy();
+
+        // when
+        var selected = List.of(
+                strategy.select(candidates), strategy.select(candidates),
+                strategy.select(candidates), strategy.select(candidates)
+        );
+
+        // then
+        assertEquals(List.of(worker1, worker2, worker3, worker1), selected);
+    }
+
+    private static WorkerWithCapabilities worker(String name, int id) {
+        return new WorkerWithCapabilities(
+                new Worker(name, id, new CryptoToken("token" + id, id, List.of())),
+                WorkerCapabilitiesBuilder.create().build()
+        );
+    }
+}
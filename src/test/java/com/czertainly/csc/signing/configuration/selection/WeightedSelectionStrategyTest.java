@@ -0,0 +1,46 @@
+package com.czertainly.csc.signing.configuration.selection;
+
+import com.czertainly.csc.model.signserver.CryptoToken;
+import com.czertainly.csc.signing.configuration.WorkerWithCapabilities;
+import com.czertainly.csc.signing.filter.Worker;
+import com.czertainly.csc.utils.configuration.WorkerCapabilitiesBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WeightedSelectionStrategyTest {
+
+    WorkerWithCapabilities worker1 = worker("worker1", 1);
+    WorkerWithCapabilities worker2 = worker("worker2", 2);
+    WorkerWithCapabilities worker3 = worker("worker3", 3);
+    List<WorkerWithCapabilities> candidates = List.of(worker1, worker2, worker3);
+
+    @Test
+    void distributesRequestsProportionallyToWeights() {
+        // given
+        var strategy = new WeightedSelectionStrategy(Map.of("worker1", 3, "worker2", 1));
+
+        // when
+        Map<String, Integer> selections = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            selections.merge(strategy.select(candidates).worker().workerName(), 1, Integer::sum);
+        }
+
+        // then
+        // worker3 has no configured weight and therefore the default weight of 1
+        assertEquals(30, selections.get("worker1"));
+        assertEquals(10, selections.get("worker2"));
+        assertEquals(10, selections.get("worker3"));
+    }
+
+    private static WorkerWithCapabilities worker(String name, int id) {
+        return new WorkerWithCapabilities(
+                new Worker(name, id, new CryptoToken("token" + id, id, List.of())),
+                WorkerCapabilitiesBuilder.create().build()
+        );
+    }
+}
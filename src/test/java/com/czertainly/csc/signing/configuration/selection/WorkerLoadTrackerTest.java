@@ -0,0 +1,108 @@
+package com.czertainly.csc.signing.configuration.selection;
+
+import com.czertainly.csc.utils.MutableClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkerLoadTrackerTest {
+
+    MutableClock clock = MutableClock.now();
+    WorkerLoadTracker loadTracker = new WorkerLoadTracker(2, Duration.ofSeconds(30), clock);
+
+    @Test
+    void tracksOutstandingRequests() {
+        // given
+        loadTracker.requestStarted("worker1");
+        loadTracker.requestStarted("worker1");
+        loadTracker.requestStarted("worker2");
+
+        // when
+        loadTracker.requestFinished("worker1", Duration.ofMillis(10), true);
+
+        // then
+        assertEquals(1, loadTracker.getOutstandingRequests("worker1"));
+        assertEquals(1, loadTracker.getOutstandingRequests("worker2"));
+        assertEquals(0, loadTracker.getOutstandingRequests("unknownWorker"));
+    }
+
+    @Test
+    void averageLatencyFollowsRecentRequests() {
+        // given
+        loadTracker.requestStarted("worker1");
+        loadTracker.requestFinished("worker1", Duration.ofMillis(100), true);
+        double firstLatency = loadTracker.getAverageLatencyMillis("worker1");
+
+        // when
+        loadTracker.requestStarted("worker1");
+        loadTracker.requestFinished("worker1", Duration.ofMillis(200), true);
+
+        // then
+        assertEquals(100, firstLatency, 0.001);
+        assertTrue(loadTracker.getAverageLatencyMillis("worker1") > 100);
+        assertTrue(loadTracker.getAverageLatencyMillis("worker1") < 200);
+    }
+
+    @Test
+    void workerIsEjectedAfterConsecutiveFailures() {
+        // given
+        fail("worker1");
+
+        // when
+        fail("worker1");
+
+        // then
+        assertFalse(loadTracker.isAvailable("worker1"));
+        assertTrue(loadTracker.isAvailable("worker2"));
+    }
+
+    @Test
+    void successResetsConsecutiveFailures() {
+        // given
+        fail("worker1");
+        loadTracker.requestStarted("worker1");
+        loadTracker.requestFinished("worker1", Duration.ofMillis(10), true);
+
+        // when
+        fail("worker1");
+
+        // then
+        assertTrue(loadTracker.isAvailable("worker1"));
+    }
+
+    @Test
+    void ejectedWorkerIsProbedAgainAfterEjectionDuration() {
+        // given
+        fail("worker1");
+        fail("worker1");
+
+        // when
+        clock.advance(Duration.ofSeconds(30));
+
+        // then
+        assertTrue(loadTracker.isAvailable("worker1"));
+    }
+
+    @Test
+    void failedProbeEjectsWorkerAgain() {
+        // given
+        fail("worker1");
+        fail("worker1");
+        clock.advance(Duration.ofSeconds(30));
+
+        // when
+        fail("worker1");
+
+        // then
+        assertFalse(loadTracker.isAvailable("worker1"));
+    }
+
+    private void fail(String workerName) {
+        loadTracker.requestStarted(workerName);
+        loadTracker.requestFinished(workerName, Duration.ofMillis(10), false);
+    }
+}
@@ -1,5 +1,6 @@
 package com.czertainly.csc.utils.configuration;
 
+import com.czertainly.csc.configuration.keypools.KeyPoolAdaptiveSizing;
 import com.czertainly.csc.configuration.keypools.KeyPoolProfile;
 import com.czertainly.csc.configuration.keypools.KeyUsageDesignation;
 import org.instancio.Instancio;
@@ -11,6 +12,10 @@ public class KeyPoolProfileBuilder {
 
     InstancioClassApi<KeyPoolProfile> partial = Instancio.of(KeyPoolProfile.class);
 
+    public KeyPoolProfileBuilder() {
+        partial.set(field(KeyPoolProfile::adaptiveSizing), null);
+    }
+
     public static KeyPoolProfile aKeyPoolProfile() {
         return Instancio.of(KeyPoolProfile.class)
                 .create();
@@ -55,6 +60,11 @@ public class KeyPoolProfileBuilder {
         return this;
     }
 
+    public KeyPoolProfileBuilder withAdaptiveSizing(KeyPoolAdaptiveSizing adaptiveSizing) {
+        partial.set(field(KeyPoolProfile::adaptiveSizing), adaptiveSizing);
+        return this;
+    }
+
     public KeyPoolProfile build() {
         return partial.create();
     }
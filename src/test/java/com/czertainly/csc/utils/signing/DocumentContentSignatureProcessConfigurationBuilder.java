@@ -21,7 +21,7 @@ public class DocumentContentSignatureProcessConfigurationBuilder {
     }
 
     public static DocumentContentSignatureProcessConfigurationBuilder instance() {
-        return new DocumentContentSignatureProcessConfigurationBuilder();
+        return new DocumentContentSignatureProcessConfigurationBuilder().withMaxParallelSignatures(2);
     }
 
     public DocumentContentSignatureProcessConfigurationBuilder withUserID(String userID) {
@@ -63,6 +63,11 @@ public class DocumentContentSignatureProcessConfigurationBuilder {
         return this;
     }
 
+    public DocumentContentSignatureProcessConfigurationBuilder withMaxParallelSignatures(int maxParallelSignatures) {
+        partial.set(field(DocumentContentSignatureProcessConfiguration::maxParallelSignatures), maxParallelSignatures);
+        return this;
+    }
+
     public DocumentContentSignatureProcessConfiguration build() {
         return partial.create();
     }